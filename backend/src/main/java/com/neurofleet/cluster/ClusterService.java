@@ -0,0 +1,522 @@
+package com.neurofleet.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.websocket.RawWebSocketHandler;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional clustering ({@code app.cluster.enabled}). Every node keeps the whole fleet in its {@link FleetStateStore}
+ * so it can serve any WebSocket subscriber, but each vehicle is simulated only by the node that owns it on a
+ * {@link HashRing} of the live nodes. After each tick the owner sends its vehicles' columns to every peer. Status
+ * changes made on another node (bookings, dispatch) are forwarded to the owner and held locally until the owner's
+ * state agrees. Event frames raised by an owner are relayed for the peers to broadcast to their own sessions.
+ * <p>
+ * Nodes talk over plain TCP: each dials every peer it knows (the configured seeds plus any node that says hello)
+ * and reads from connections dialled to it. A node missing heartbeats for {@code failure-timeout-ms} leaves the
+ * ring. Because every node already holds the latest relayed state, rebalancing is only a change of owner.
+ * <p>
+ * A connection must open with a hello carrying the shared {@code app.cluster.secret}; anything else, or a wrong
+ * secret, drops it before a single frame is acted on. Frames are otherwise unauthenticated and unencrypted, so bind
+ * the port to a private interface ({@code bind-address}).
+ */
+@Service
+public class ClusterService {
+
+    private static final byte HELLO = 1;
+    private static final byte HEARTBEAT = 2;
+    private static final byte STATE = 3;
+    private static final byte STATUS = 4;
+    private static final byte UPSERT = 5;
+    private static final byte REMOVE = 6;
+    private static final byte BROADCAST = 7;
+    private static final byte LEAVE = 8;
+    // A hello is two short strings and the secret; nothing longer is read from a connection that has not sent one
+    private static final int MAX_HELLO_BYTES = 4096;
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    private final FleetStateStore store;
+    private final RawWebSocketHandler broadcaster;
+    private final ObjectMapper mapper;
+    private final boolean enabled;
+    private final String nodeId;
+    private final String advertise;
+    private final int virtualNodes;
+    private final long heartbeatMs;
+    private final long failureTimeoutMs;
+    private final int queueCapacity;
+    private final byte[] secret;
+    private final int maxFrameBytes;
+
+    private final Map<String, PeerLink> links = new ConcurrentHashMap<>();
+    private final Map<String, String> addresses = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private volatile HashRing ring;
+    private volatile int ringVersion = 1;
+    private ServerSocket server;
+    private volatile boolean oversizeWarned;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService readers;
+
+    // Per-slot ownership cache, written by the shard that owns the slot during a tick.
+    private int[] ownerRing = new int[0];
+    private int[] ownerGeneration = new int[0];
+    private boolean[] owned = new boolean[0];
+    // Status set locally on a vehicle owned elsewhere, kept until the owner's state carries it or it expires.
+    private volatile byte[] pendingStatus = new byte[0];
+    private volatile long[] pendingUntilMs = new long[0];
+
+    private final AtomicLong recordsSent = new AtomicLong();
+    private final AtomicLong recordsApplied = new AtomicLong();
+    private final AtomicLong statusForwarded = new AtomicLong();
+    private final AtomicLong broadcastsRelayed = new AtomicLong();
+    private final AtomicLong rebalances = new AtomicLong();
+
+    public ClusterService(FleetStateStore store, RawWebSocketHandler broadcaster, ObjectMapper mapper,
+                          @Value("${app.cluster.enabled:false}") boolean enabled,
+                          @Value("${app.cluster.node-id:}") String nodeId,
+                          @Value("${app.cluster.bind-port:7400}") int bindPort,
+                          @Value("${app.cluster.bind-address:}") String bindAddress,
+                          @Value("${app.cluster.advertise-host:localhost}") String advertiseHost,
+                          @Value("${app.cluster.peers:}") String peers,
+                          @Value("${app.cluster.secret:}") String secret,
+                          @Value("${app.cluster.virtual-nodes:128}") int virtualNodes,
+                          @Value("${app.cluster.heartbeat-ms:1000}") long heartbeatMs,
+                          @Value("${app.cluster.failure-timeout-ms:5000}") long failureTimeoutMs,
+                          @Value("${app.cluster.queue-capacity:64}") int queueCapacity,
+                          @Value("${app.cluster.max-frame-mb:32}") int maxFrameMb) throws IOException {
+        this.store = store;
+        this.broadcaster = broadcaster;
+        this.mapper = mapper;
+        this.enabled = enabled;
+        this.nodeId = nodeId;
+        this.advertise = advertiseHost + ":" + bindPort;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatMs = heartbeatMs;
+        this.failureTimeoutMs = failureTimeoutMs;
+        this.queueCapacity = queueCapacity;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.maxFrameBytes = maxFrameMb * 1024 * 1024;
+        this.ring = new HashRing(List.of(nodeId), virtualNodes);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "cluster-heartbeat"));
+        this.readers = Executors.newCachedThreadPool(r -> daemon(r, "cluster-reader"));
+        if (!enabled) return;
+        if (nodeId.isBlank()) throw new IllegalStateException("app.cluster.node-id must be set when clustering is enabled");
+        if (secret.isBlank()) throw new IllegalStateException("app.cluster.secret must be set when clustering is enabled");
+
+        server = new ServerSocket(bindPort, 50, bindAddress.isBlank() ? null : InetAddress.getByName(bindAddress));
+        readers.execute(this::accept);
+        for (String peer : peers.split(",")) {
+            if (!peer.isBlank() && !peer.trim().equals(advertise)) link(peer.trim());
+        }
+        store.setStatusListener(this::onLocalStatus);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        System.out.println("[ClusterService] Node " + nodeId + " listening on " + advertise + ", peers " + links.keySet());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Called by the tick thread before the shards run. */
+    public void beginTick(int capacity) {
+        if (!enabled || capacity <= owned.length) return;
+        int size = Math.max(capacity, owned.length * 2);
+        ownerRing = Arrays.copyOf(ownerRing, size);
+        ownerGeneration = Arrays.copyOf(ownerGeneration, size);
+        owned = Arrays.copyOf(owned, size);
+        pendingUntilMs = Arrays.copyOf(pendingUntilMs, size);
+        pendingStatus = Arrays.copyOf(pendingStatus, size);
+    }
+
+    /** Whether this node simulates the slot; cached per slot until the ring or the slot's vehicle changes. */
+    public boolean owns(int slot) {
+        if (!enabled) return true;
+        int version = ringVersion;
+        int gen = store.generation(slot);
+        if (ownerRing[slot] != version || ownerGeneration[slot] != gen) {
+            owned[slot] = nodeId.equals(ring.owner(store.idAt(slot)));
+            ownerRing[slot] = version;
+            ownerGeneration[slot] = gen;
+        }
+        return owned[slot];
+    }
+
+    public boolean ownsId(String vehicleId) {
+        return !enabled || nodeId.equals(ring.owner(vehicleId));
+    }
+
+    /** Sends the columns of every vehicle this node owns to all peers; called after the shards finish. */
+    public void publishState(long nowNanos) {
+        if (!enabled || links.isEmpty()) return;
+        byte[] message = encode(out -> {
+            out.writeByte(STATE);
+            out.writeUTF(nodeId);
+            String[] names = store.statusNames();
+            out.writeByte(names.length);
+            for (String name : names) out.writeUTF(name);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(64 * 1024);
+            DataOutputStream records = new DataOutputStream(body);
+            int[] count = new int[1];
+            store.forEachLive(0, Integer.MAX_VALUE, slot -> {
+                if (slot >= owned.length || !owns(slot)) return;
+                try {
+                    records.writeUTF(store.idAt(slot));
+                    records.writeDouble(store.latitude(slot));
+                    records.writeDouble(store.longitude(slot));
+                    records.writeDouble(store.battery(slot));
+                    records.writeDouble(store.batteryHealth(slot));
+                    records.writeInt(store.range(slot));
+                    records.writeByte(store.status(slot));
+                    records.writeLong(store.lastUpdateNanos(slot));
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.writeInt(count[0]);
+            body.writeTo(out);
+            recordsSent.addAndGet((long) count[0] * links.size());
+        });
+        if (message.length > maxFrameBytes && !oversizeWarned) {
+            oversizeWarned = true;
+            System.out.println("[ClusterService] State frame of " + message.length + " bytes exceeds app.cluster.max-frame-mb; peers will drop it");
+        }
+        sendAll(message);
+    }
+
+    /** Hands an event frame already broadcast here to the peers, which broadcast it to their own sessions. */
+    public void relayBroadcast(byte[] payload) {
+        if (!enabled || links.isEmpty()) return;
+        broadcastsRelayed.incrementAndGet();
+        sendAll(encode(out -> {
+            out.writeByte(BROADCAST);
+            out.writeInt(payload.length);
+            out.write(payload);
+        }));
+    }
+
+    /** Tells peers about a vehicle this node has just interned, with its initial columns. */
+    public void vehicleAdded(String vehicleId) {
+        if (!enabled || links.isEmpty()) return;
+        Map<String, Object> view = store.view(vehicleId);
+        if (view == null) return;
+        sendAll(encode(out -> {
+            out.writeByte(UPSERT);
+            byte[] json = mapper.writeValueAsBytes(view);
+            out.writeInt(json.length);
+            out.write(json);
+        }));
+    }
+
+    public void vehicleRemoved(String vehicleId) {
+        if (!enabled || links.isEmpty()) return;
+        sendAll(encode(out -> {
+            out.writeByte(REMOVE);
+            out.writeUTF(vehicleId);
+        }));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("nodeId", nodeId);
+        m.put("address", advertise);
+        m.put("ring", ring.nodes());
+        m.put("ringVersion", ringVersion);
+        m.put("rebalances", rebalances.get());
+        int[] mine = new int[1];
+        store.forEachLive(0, Integer.MAX_VALUE, slot -> {
+            if (ownsId(store.idAt(slot))) mine[0]++;
+        });
+        m.put("ownedVehicles", mine[0]);
+        m.put("vehicles", store.size());
+        List<Map<String, Object>> peers = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, PeerLink> e : links.entrySet()) {
+            Map<String, Object> p = new LinkedHashMap<>();
+            p.put("address", e.getKey());
+            String id = nodeAt(e.getKey());
+            p.put("nodeId", id);
+            p.put("connected", e.getValue().connected());
+            Long seen = id != null ? lastSeen.get(id) : null;
+            p.put("lastSeenMsAgo", seen != null ? now - seen : null);
+            p.put("sent", e.getValue().sent());
+            p.put("dropped", e.getValue().dropped());
+            p.put("connectFailures", e.getValue().failures());
+            peers.add(p);
+        }
+        m.put("peers", peers);
+        m.put("recordsSent", recordsSent.get());
+        m.put("recordsApplied", recordsApplied.get());
+        m.put("statusForwarded", statusForwarded.get());
+        m.put("broadcastsRelayed", broadcastsRelayed.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) return;
+        sendAll(encode(out -> {
+            out.writeByte(LEAVE);
+            out.writeUTF(nodeId);
+        }));
+        try {
+            Thread.sleep(Math.min(heartbeatMs, 200));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.shutdownNow();
+        links.values().forEach(PeerLink::close);
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        readers.shutdownNow();
+    }
+
+    // Membership
+
+    private void heartbeat() {
+        sendAll(encode(out -> {
+            out.writeByte(HEARTBEAT);
+            out.writeUTF(nodeId);
+        }));
+        long cutoff = System.currentTimeMillis() - failureTimeoutMs;
+        lastSeen.entrySet().removeIf(e -> e.getValue() < cutoff);
+        updateRing();
+    }
+
+    private synchronized void updateRing() {
+        Set<String> live = new TreeSet<>(lastSeen.keySet());
+        live.add(nodeId);
+        if (live.equals(new TreeSet<>(ring.nodes()))) return;
+        ring = new HashRing(live, virtualNodes);
+        ringVersion++;
+        rebalances.incrementAndGet();
+        System.out.println("[ClusterService] Ring changed: " + live);
+    }
+
+    private void link(String address) {
+        links.computeIfAbsent(address, a -> new PeerLink(a, queueCapacity, heartbeatMs, this::hello));
+    }
+
+    private byte[] hello() {
+        return encode(out -> {
+            out.writeByte(HELLO);
+            out.writeUTF(nodeId);
+            out.writeUTF(advertise);
+            out.writeInt(secret.length);
+            out.write(secret);
+        });
+    }
+
+    private String nodeAt(String address) {
+        for (Map.Entry<String, String> e : addresses.entrySet()) if (e.getValue().equals(address)) return e.getKey();
+        return null;
+    }
+
+    // Inbound
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                readers.execute(() -> read(socket));
+            } catch (SocketException e) {
+                return;
+            } catch (IOException e) {
+                System.out.println("[ClusterService] Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void read(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+            boolean authenticated = false;
+            while (true) {
+                int length = in.readInt();
+                if (length < 1 || length > (authenticated ? maxFrameBytes : MAX_HELLO_BYTES)) throw new IOException("Bad frame length " + length);
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                DataInputStream message = new DataInputStream(new ByteArrayInputStream(frame));
+                if (!authenticated) {
+                    if (message.readByte() != HELLO) throw new IOException("Peer " + socket.getRemoteSocketAddress() + " did not say hello");
+                    hello(message);
+                    authenticated = true;
+                } else {
+                    handle(message);
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Peer went away; its heartbeats stop and it drops out of the ring.
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ClusterService] Dropping peer connection: " + e.getMessage());
+        }
+    }
+
+    private void handle(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case HELLO -> hello(in);
+            case HEARTBEAT -> lastSeen.put(in.readUTF(), System.currentTimeMillis());
+            case STATE -> applyState(in);
+            case STATUS -> store.updateStatus(in.readUTF(), in.readUTF());
+            case UPSERT -> applyUpsert(mapper.readValue(readBytes(in), MAP));
+            case REMOVE -> store.remove(in.readUTF());
+            case BROADCAST -> broadcaster.broadcast(new TextMessage(readBytes(in)));
+            case LEAVE -> {
+                lastSeen.remove(in.readUTF());
+                updateRing();
+            }
+            default -> throw new IOException("Unknown message type");
+        }
+    }
+
+    /** Admits a peer; throws, dropping the connection, unless it presents the cluster secret. */
+    private void hello(DataInputStream in) throws IOException {
+        String id = in.readUTF();
+        String address = in.readUTF();
+        if (!MessageDigest.isEqual(secret, readBytes(in))) throw new IOException("Peer " + id + " at " + address + " presented a wrong cluster secret");
+        addresses.put(id, address);
+        lastSeen.put(id, System.currentTimeMillis());
+        link(address);
+        updateRing();
+    }
+
+    // Frames are fully buffered, so a length beyond what is left is a lie, not a reason to allocate
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) throw new IOException("Bad field length " + length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private void applyState(DataInputStream in) throws IOException {
+        String from = in.readUTF();
+        lastSeen.put(from, System.currentTimeMillis());
+        byte[] codes = new byte[in.readUnsignedByte()];
+        for (int i = 0; i < codes.length; i++) codes[i] = store.statusCode(in.readUTF());
+        int count = in.readInt();
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> unknown = new ArrayList<>();
+        IOException[] failure = new IOException[1];
+        store.readLocked(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    String id = in.readUTF();
+                    double lat = in.readDouble(), lon = in.readDouble();
+                    double battery = in.readDouble(), health = in.readDouble();
+                    int range = in.readInt();
+                    byte status = codes[in.readByte()];
+                    long lastUpdate = in.readLong();
+                    int slot = store.slotOf(id);
+                    if (slot < 0) {
+                        unknown.add(Map.of("id", id, "latitude", lat, "longitude", lon, "batteryLevel", battery,
+                                "batteryHealth", health, "range", range, "status", store.statusName(status)));
+                        continue;
+                    }
+                    // During a ring change both nodes may briefly claim a vehicle; the local owner wins.
+                    if (ownsId(id)) continue;
+                    store.lockSlot(slot);
+                    try {
+                        store.setPosition(slot, lat, lon);
+                        store.setBattery(slot, battery);
+                        store.setBatteryHealth(slot, health);
+                        store.setRange(slot, range);
+                        store.setLastUpdateNanos(slot, lastUpdate);
+                    } finally {
+                        store.unlockSlot(slot);
+                    }
+                    applyStatus(slot, status, now);
+                    recordsApplied.incrementAndGet();
+                }
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        for (Map<String, Object> view : unknown) applyUpsert(view);
+    }
+
+    private void applyStatus(int slot, byte status, long now) {
+        byte[] pending = pendingStatus;
+        long[] until = pendingUntilMs;
+        if (slot < until.length && until[slot] > now) {
+            if (pending[slot] != status) return;
+            until[slot] = 0;
+        }
+        if (store.status(slot) != status) store.setStatus(slot, status);
+    }
+
+    private void applyUpsert(Map<String, Object> view) {
+        String id = Objects.toString(view.get("id"), null);
+        if (id == null || store.slotOf(id) >= 0) return;
+        store.upsert(id, view, number(view, "latitude"), number(view, "longitude"), number(view, "batteryLevel"),
+                (int) number(view, "range"), number(view, "batteryHealth"), Objects.toString(view.get("status"), "available"));
+    }
+
+    // A booking or dispatch on this node changed a vehicle owned elsewhere: hold it here and tell the owner.
+    private void onLocalStatus(int slot, String vehicleId, byte status) {
+        String owner = ring.owner(vehicleId);
+        if (owner == null || owner.equals(nodeId)) return;
+        long[] until = pendingUntilMs;
+        if (slot < until.length) {
+            pendingStatus[slot] = status;
+            until[slot] = System.currentTimeMillis() + failureTimeoutMs;
+        }
+        PeerLink link = links.get(addresses.getOrDefault(owner, ""));
+        if (link == null) return;
+        statusForwarded.incrementAndGet();
+        link.offer(encode(out -> {
+            out.writeByte(STATUS);
+            out.writeUTF(vehicleId);
+            out.writeUTF(store.statusName(status));
+        }));
+    }
+
+    // Encoding
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static byte[] encode(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writer.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void sendAll(byte[] message) {
+        links.values().forEach(link -> link.offer(message));
+    }
+
+    private static double number(Map<String, Object> view, String key) {
+        return view.get(key) instanceof Number n ? n.doubleValue() : 0;
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -0,0 +1,60 @@
+package com.neurofleet.cluster;
+
+import java.util.*;
+
+/**
+ * Immutable consistent-hash ring. Each node is placed at {@code virtualNodes} points; a key belongs to the first
+ * point clockwise from its hash, so adding or removing a node only moves the keys adjacent to its points.
+ */
+public final class HashRing {
+
+    private final long[] points;
+    private final String[] owners;
+    private final List<String> nodes;
+
+    public HashRing(Collection<String> nodeIds, int virtualNodes) {
+        this.nodes = List.copyOf(new TreeSet<>(nodeIds));
+        long[] p = new long[nodes.size() * virtualNodes];
+        String[] o = new String[p.length];
+        Integer[] order = new Integer[p.length];
+        int i = 0;
+        for (String node : nodes) {
+            for (int v = 0; v < virtualNodes; v++, i++) {
+                p[i] = hash(node + "#" + v);
+                o[i] = node;
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, Comparator.comparingLong(k -> p[k]));
+        this.points = new long[p.length];
+        this.owners = new String[p.length];
+        for (int k = 0; k < order.length; k++) {
+            points[k] = p[order[k]];
+            owners[k] = o[order[k]];
+        }
+    }
+
+    /** Node owning {@code key}, or {@code null} on an empty ring. */
+    public String owner(String key) {
+        if (points.length == 0) return null;
+        int i = Arrays.binarySearch(points, hash(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 code units, finished with a SplitMix64 mix to spread short keys. */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+        h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,99 @@
+package com.neurofleet.cluster;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Outbound connection to one peer. Messages are queued without blocking and written by the link's own thread as
+ * length-prefixed frames; the connection is re-dialled after failures, starting with a fresh hello. When the
+ * queue is full the message is dropped: state is re-sent every tick, so the next one supersedes it.
+ */
+final class PeerLink {
+
+    private final String host;
+    private final int port;
+    private final Supplier<byte[]> hello;
+    private final long reconnectMs;
+    private final BlockingQueue<byte[]> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean connected;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    PeerLink(String address, int capacity, long reconnectMs, Supplier<byte[]> hello) {
+        int colon = address.lastIndexOf(':');
+        this.host = address.substring(0, colon);
+        this.port = Integer.parseInt(address.substring(colon + 1));
+        this.hello = hello;
+        this.reconnectMs = reconnectMs;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "cluster-link-" + address);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void offer(byte[] message) {
+        if (!connected || !queue.offer(message)) dropped.incrementAndGet();
+    }
+
+    boolean connected() {
+        return connected;
+    }
+
+    void close() {
+        running = false;
+        writer.interrupt();
+    }
+
+    long sent() { return sent.get(); }
+    long dropped() { return dropped.get(); }
+    long failures() { return failures.get(); }
+
+    private void run() {
+        while (running) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(host, port), (int) reconnectMs);
+                socket.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+                write(out, hello.get());
+                queue.clear();
+                connected = true;
+                while (running) {
+                    byte[] message = queue.poll(reconnectMs, TimeUnit.MILLISECONDS);
+                    if (message == null) continue;
+                    write(out, message);
+                    sent.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            } finally {
+                connected = false;
+            }
+            try {
+                Thread.sleep(reconnectMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, byte[] message) throws IOException {
+        out.writeInt(message.length);
+        out.write(message);
+        out.flush();
+    }
+}
@@ -5,6 +5,7 @@ import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.FirestoreOptions;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.cloud.FirestoreClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.DependsOn;
@@ -14,15 +15,25 @@ public class FirestoreConfig {
 
     @Bean
     @DependsOn("firebaseInitializer")
-    public Firestore firestore() {
+    public Firestore firestore(@Value("${app.firestore.emulator-host:}") String emulatorHost,
+                               @Value("${app.firestore.project-id:neurofleetx-project}") String projectId) {
         // Use Firebase Admin SDK to get Firestore instance
         try {
+            if (!emulatorHost.isBlank()) {
+                // Local emulator for load tests: no credentials, data lives only as long as the emulator runs
+                System.out.println("[FirestoreConfig] Using the Firestore emulator at " + emulatorHost + " for project " + projectId + ".");
+                return FirestoreOptions.newBuilder()
+                        .setProjectId(projectId)
+                        .setEmulatorHost(emulatorHost)
+                        .build()
+                        .getService();
+            }
             if (!FirebaseApp.getApps().isEmpty()) {
                 return FirestoreClient.getFirestore();
             } else {
                 // Fallback: create Firestore with project ID
                 FirestoreOptions options = FirestoreOptions.newBuilder()
-                        .setProjectId("neurofleetx-project")
+                        .setProjectId(projectId)
                         .build();
                 return options.getService();
             }
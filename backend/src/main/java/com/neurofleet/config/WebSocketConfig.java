@@ -1,22 +1,39 @@
 package com.neurofleet.config;
 
+import com.neurofleet.websocket.IngestWebSocketHandler;
 import com.neurofleet.websocket.RawWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.standard.ServletServerContainerFactoryBean;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
     private final RawWebSocketHandler rawWebSocketHandler;
+    private final IngestWebSocketHandler ingestWebSocketHandler;
 
-    public WebSocketConfig(RawWebSocketHandler rawWebSocketHandler) {
+    public WebSocketConfig(RawWebSocketHandler rawWebSocketHandler, IngestWebSocketHandler ingestWebSocketHandler) {
         this.rawWebSocketHandler = rawWebSocketHandler;
+        this.ingestWebSocketHandler = ingestWebSocketHandler;
     }
 
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         registry.addHandler(rawWebSocketHandler, "/").setAllowedOrigins("*");
+        registry.addHandler(ingestWebSocketHandler, "/ws/ingest").setAllowedOrigins("*");
     }
-}
\ No newline at end of file
+
+    /** Ingest batches arrive as single messages, well past the container's 8 KB default. */
+    @Bean
+    public ServletServerContainerFactoryBean createWebSocketContainer(
+            @Value("${app.ingest.max-message-bytes:1048576}") int maxMessageBytes) {
+        ServletServerContainerFactoryBean container = new ServletServerContainerFactoryBean();
+        container.setMaxTextMessageBufferSize(maxMessageBytes);
+        container.setMaxBinaryMessageBufferSize(maxMessageBytes);
+        return container;
+    }
+}
@@ -2,33 +2,48 @@ package com.neurofleet.controller;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.UserRecord;
+import com.neurofleet.security.RateLimiter;
+import com.neurofleet.security.TokenCache;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
 
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
+    private final TokenCache tokens;
+    private final RateLimiter rateLimiter;
+
+    public AuthController(TokenCache tokens, RateLimiter rateLimiter) {
+        this.tokens = tokens;
+        this.rateLimiter = rateLimiter;
+    }
+
     @PostMapping("/register")
-    public ResponseEntity<?> register(@RequestBody Map<String, String> body) throws Exception {
+    public CompletableFuture<ResponseEntity<?>> register(@RequestBody Map<String, String> body) {
         String email = body.get("email");
         String password = body.get("password");
-        if (email == null || password == null) return ResponseEntity.badRequest().body(Map.of("error","Email and password are required."));
+        if (email == null || password == null) return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error","Email and password are required.")));
         UserRecord.CreateRequest request = new UserRecord.CreateRequest()
                 .setEmail(email).setPassword(password);
-        UserRecord userRecord = FirebaseAuth.getInstance().createUser(request);
-        return ResponseEntity.status(201).body(Map.of("message","User registered successfully!","uid", userRecord.getUid()));
+        return toCompletable("auth.createUser", FirebaseAuth.getInstance().createUserAsync(request))
+                .thenApply(userRecord -> ResponseEntity.status(201).body(Map.of("message","User registered successfully!","uid", userRecord.getUid())));
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody Map<String, String> body) throws Exception {
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody Map<String, String> body) {
         String email = body.get("email");
-        if (email == null) return ResponseEntity.badRequest().body(Map.of("error","Email is required."));
-        UserRecord record = FirebaseAuth.getInstance().getUserByEmail(email);
-        String customToken = FirebaseAuth.getInstance().createCustomToken(record.getUid());
-        return ResponseEntity.ok(Map.of("token", customToken));
+        if (email == null) return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error","Email is required.")));
+        FirebaseAuth auth = FirebaseAuth.getInstance();
+        return toCompletable("auth.getUserByEmail", auth.getUserByEmailAsync(email))
+                .thenCompose(record -> toCompletable("auth.createCustomToken", auth.createCustomTokenAsync(record.getUid())))
+                .thenApply(customToken -> ResponseEntity.ok(Map.of("token", customToken)));
     }
 
     @GetMapping("/me")
@@ -39,6 +54,26 @@ public class AuthController {
         return ResponseEntity.ok(Map.of("uid", auth.getName()));
     }
 
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/revoke/{uid}")
+    public CompletableFuture<ResponseEntity<?>> revoke(@PathVariable String uid) {
+        tokens.revoke(uid);
+        return toCompletable("auth.revokeRefreshTokens", FirebaseAuth.getInstance().revokeRefreshTokensAsync(uid))
+                .thenApply(done -> ResponseEntity.ok(Map.of("uid", uid, "message", "Tokens revoked")));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/token-cache/stats")
+    public ResponseEntity<Map<String, Object>> tokenCacheStats() {
+        return ResponseEntity.ok(tokens.getStats());
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/rate-limit/stats")
+    public ResponseEntity<Map<String, Object>> rateLimitStats() {
+        return ResponseEntity.ok(rateLimiter.getStats());
+    }
+
     @GetMapping("/health")
     public ResponseEntity<?> health() {
         return ResponseEntity.ok(Map.of(
@@ -1,144 +1,223 @@
 package com.neurofleet.controller;
 
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
+import com.neurofleet.eventlog.EventLog;
+import com.neurofleet.service.DispatchService;
+import com.neurofleet.service.FirestoreCache;
+import com.neurofleet.service.FirestoreWriteBehind;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
 
 @RestController
 @RequestMapping("/api/bookings")
 public class BookingController {
 
     private final Firestore db;
+    private final DispatchService dispatch;
+    private final FirestoreWriteBehind writes;
+    private final FirestoreCache cache;
+    private final FirestoreListing listing;
+    private final EventLog eventLog;
+    private final EventHistory eventHistory;
 
-    public BookingController(Firestore db) {
+    public BookingController(Firestore db, DispatchService dispatch, FirestoreWriteBehind writes, FirestoreCache cache,
+                             FirestoreListing listing, EventLog eventLog, EventHistory eventHistory) {
         this.db = db;
+        this.dispatch = dispatch;
+        this.writes = writes;
+        this.cache = cache;
+        this.listing = listing;
+        this.eventLog = eventLog;
+        this.eventHistory = eventHistory;
     }
 
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getBookings() throws Exception {
+    public CompletableFuture<ResponseEntity<?>> getBookings(@RequestParam(required = false) Integer limit,
+                                                          @RequestParam(required = false) String startAfter,
+                                                          @RequestParam(required = false) String fields) {
         if (db == null) {
             // Return mock data for development
-            return ResponseEntity.ok(List.of(
+            return CompletableFuture.completedFuture(ResponseEntity.ok(List.of(
                 Map.of("id", "booking-1", "customerEmail", "customer@example.com", "vehicleType", "economy", "status", "confirmed"),
                 Map.of("id", "booking-2", "customerEmail", "customer2@example.com", "vehicleType", "premium", "status", "pending")
-            ));
+            )));
         }
         
-        ApiFuture<QuerySnapshot> future = db.collection("bookings").get();
-        List<QueryDocumentSnapshot> docs = future.get().getDocuments();
-        List<Map<String, Object>> list = new ArrayList<>();
-        for (QueryDocumentSnapshot d : docs) {
-            Map<String, Object> m = d.getData();
-            m.put("id", d.getId());
-            list.add(m);
+        if (FirestoreListing.isPaged(limit, startAfter, fields)) {
+            CollectionReference bookings = db.collection("bookings");
+            return listing.page(bookings, bookings.orderBy(FieldPath.documentId()), limit, startAfter, fields);
         }
-        return ResponseEntity.ok(list);
+        return cache.bookings().list().thenApply(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamBookings(@RequestParam(required = false) String fields) {
+        if (db == null) return ResponseEntity.ok(out -> out.write("[]".getBytes()));
+        return listing.stream(db.collection("bookings").orderBy(FieldPath.documentId()), fields);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getBooking(@PathVariable String id) throws Exception {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getBooking(@PathVariable String id) {
         if (db == null) {
-            return ResponseEntity.ok(Map.of("id", id, "status", "pending"));
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("id", id, "status", "pending")));
         }
         
-        DocumentSnapshot doc = db.collection("bookings").document(id).get().get();
-        if (!doc.exists()) return ResponseEntity.notFound().build();
-        Map<String, Object> m = doc.getData();
-        m.put("id", doc.getId());
-        return ResponseEntity.ok(m);
+        return cache.bookings().get(id).thenApply(m -> m == null ? ResponseEntity.notFound().<Map<String, Object>>build() : ResponseEntity.ok(m));
     }
 
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createBooking(@RequestBody Map<String, Object> body) throws Exception {
+    public ResponseEntity<Map<String, Object>> createBooking(@RequestBody Map<String, Object> body) {
         if (db == null) {
             // Mock response for development
             body.put("id", "booking-" + System.currentTimeMillis());
             body.put("status", "pending");
             body.put("createdAt", new Date());
+            dispatch.submit(body.get("id").toString(), body);
             return ResponseEntity.status(201).body(body);
         }
         
         DocumentReference ref = db.collection("bookings").document();
         body.put("createdAt", new Date());
         body.put("status", "pending");
-        ref.set(body).get();
+        writes.set(ref, body);
         
         // Add to booking history
         appendBookingHistory(ref.getId(), "created", body);
+        dispatch.submit(ref.getId(), body);
         
         return ResponseEntity.status(201).body(withId(ref.getId(), body));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateBooking(@PathVariable String id, @RequestBody Map<String, Object> update) throws Exception {
+    public ResponseEntity<Map<String, Object>> updateBooking(@PathVariable String id, @RequestBody Map<String, Object> update) {
         if (db == null) {
             update.put("id", id);
             return ResponseEntity.ok(update);
         }
         
-        db.collection("bookings").document(id).set(update, SetOptions.merge()).get();
+        writes.merge(db.collection("bookings").document(id), update);
         appendBookingHistory(id, "updated", update);
         return ResponseEntity.ok(withId(id, update));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, String>> deleteBooking(@PathVariable String id) throws Exception {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> deleteBooking(@PathVariable String id) {
         if (db == null) {
-            return ResponseEntity.ok(Map.of("message", "Booking cancelled successfully"));
+            dispatch.release(id);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("message", "Booking cancelled successfully")));
         }
         
-        db.collection("bookings").document(id).delete().get();
-        appendBookingHistory(id, "cancelled", Map.of());
-        return ResponseEntity.ok(Map.of("message", "Booking cancelled successfully"));
+        // The document may be the only record of the assigned vehicle, so read it before it goes
+        return releaseVehicle(id)
+                .thenApply(v -> {
+                    writes.delete(db.collection("bookings").document(id));
+                    appendBookingHistory(id, "cancelled", Map.of());
+                    return ResponseEntity.ok(Map.of("message", "Booking cancelled successfully"));
+                })
+                .exceptionally(e -> ResponseEntity.status(503).body(Map.of("error", failed(id, e))));
+    }
+
+    @GetMapping("/{id}/history")
+    public CompletableFuture<ResponseEntity<?>> getBookingHistory(@PathVariable String id,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(required = false) Long before) {
+        return eventHistory.page(EventLog.Entity.BOOKING, id, "bookingId", limit, before);
+    }
+
+    @GetMapping("/dispatch/stats")
+    public ResponseEntity<Map<String, Object>> getDispatchStats() {
+        return ResponseEntity.ok(dispatch.getStats());
     }
 
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<Map<String, Object>>> getCustomerBookings(@PathVariable String customerId) throws Exception {
+    public CompletableFuture<ResponseEntity<?>> getCustomerBookings(@PathVariable String customerId,
+                                                                  @RequestParam(required = false) Integer limit,
+                                                                  @RequestParam(required = false) String startAfter,
+                                                                  @RequestParam(required = false) String fields) {
         if (db == null) {
-            return ResponseEntity.ok(List.of(
+            return CompletableFuture.completedFuture(ResponseEntity.ok(List.of(
                 Map.of("id", "booking-1", "customerId", customerId, "status", "confirmed"),
                 Map.of("id", "booking-2", "customerId", customerId, "status", "completed")
-            ));
+            )));
         }
         
-        ApiFuture<QuerySnapshot> future = db.collection("bookings")
-                .whereEqualTo("customerId", customerId)
-                .orderBy("createdAt", Query.Direction.DESCENDING)
-                .get();
-        List<QueryDocumentSnapshot> docs = future.get().getDocuments();
-        List<Map<String, Object>> list = new ArrayList<>();
-        for (QueryDocumentSnapshot d : docs) {
-            Map<String, Object> m = d.getData();
-            m.put("id", d.getId());
-            list.add(m);
+        Query query = customerBookings(customerId);
+        if (FirestoreListing.isPaged(limit, startAfter, fields)) {
+            return listing.page(db.collection("bookings"), query, limit, startAfter, fields);
         }
-        return ResponseEntity.ok(list);
+        return toCompletable("bookings.byCustomer", query.get()).thenApply(snapshot -> ResponseEntity.ok(toList(snapshot)));
+    }
+
+    @GetMapping(value = "/customer/{customerId}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamCustomerBookings(@PathVariable String customerId,
+                                                                        @RequestParam(required = false) String fields) {
+        if (db == null) return ResponseEntity.ok(out -> out.write("[]".getBytes()));
+        return listing.stream(customerBookings(customerId), fields, "createdAt");
     }
 
     @PatchMapping("/{id}/status")
-    public ResponseEntity<Map<String, Object>> updateBookingStatus(@PathVariable String id, @RequestBody Map<String, Object> body) throws Exception {
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> updateBookingStatus(@PathVariable String id, @RequestBody Map<String, Object> body) {
         String status = Objects.toString(body.get("status"), "pending");
+        boolean ended = "cancelled".equals(status) || "completed".equals(status);
         
         if (db == null) {
-            return ResponseEntity.ok(Map.of("id", id, "status", status));
+            if (ended) dispatch.release(id);
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("id", id, "status", status)));
         }
         
-        db.collection("bookings").document(id).set(Map.of("status", status, "updatedAt", new Date()), SetOptions.merge()).get();
-        appendBookingHistory(id, "status_changed", Map.of("newStatus", status));
-        return ResponseEntity.ok(Map.of("id", id, "status", status));
+        CompletableFuture<Void> released = ended ? releaseVehicle(id) : CompletableFuture.completedFuture(null);
+        return released
+                .thenApply(v -> {
+                    writes.merge(db.collection("bookings").document(id), Map.of("status", status, "updatedAt", new Date()));
+                    appendBookingHistory(id, "status_changed", Map.of("newStatus", status));
+                    return ResponseEntity.ok(Map.<String, Object>of("id", id, "status", status));
+                })
+                .exceptionally(e -> ResponseEntity.status(503).body(Map.of("error", failed(id, e))));
     }
 
-    private void appendBookingHistory(String id, String type, Map<String, Object> details) throws Exception {
-        if (db == null) return;
-        
-        db.collection("bookings").document(id).collection("history").add(Map.of(
-                "eventType", type,
-                "details", details,
-                "timestamp", new Date()
-        )).get();
+    /**
+     * Frees the booking's vehicle; falls back to the document's vehicleId for assignments made before a restart.
+     * Fails if that lookup fails, so callers leave the booking alone rather than strand its vehicle.
+     */
+    private CompletableFuture<Void> releaseVehicle(String id) {
+        if (dispatch.release(id)) return CompletableFuture.completedFuture(null);
+        return cache.bookings().get(id).thenAccept(booking -> {
+            Object vehicleId = booking == null ? null : booking.get("vehicleId");
+            if (vehicleId != null) dispatch.release(id, vehicleId.toString());
+        });
+    }
+
+    private String failed(String id, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        System.out.println("[BookingController] Could not update booking " + id + ": " + cause.getMessage());
+        return "Could not update the booking; try again.";
+    }
+
+    private void appendBookingHistory(String id, String type, Map<String, Object> details) {
+        eventLog.append(EventLog.Entity.BOOKING, id, type, details);
+    }
+
+    private Query customerBookings(String customerId) {
+        return db.collection("bookings")
+                .whereEqualTo("customerId", customerId)
+                .orderBy("createdAt", Query.Direction.DESCENDING);
+    }
+
+    private List<Map<String, Object>> toList(QuerySnapshot snapshot) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (QueryDocumentSnapshot d : snapshot.getDocuments()) {
+            Map<String, Object> m = d.getData();
+            m.put("id", d.getId());
+            list.add(m);
+        }
+        return list;
     }
 
     private Map<String, Object> withId(String id, Map<String, Object> body) {
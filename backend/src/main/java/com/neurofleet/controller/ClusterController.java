@@ -0,0 +1,26 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.cluster.ClusterService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final ClusterService cluster;
+
+    public ClusterController(ClusterService cluster) {
+        this.cluster = cluster;
+    }
+
+    /** Ring membership, vehicles owned by this node and per-peer link counters. */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(cluster.getStats());
+    }
+}
@@ -0,0 +1,57 @@
+package com.neurofleet.controller;
+
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.neurofleet.eventlog.EventLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
+
+/**
+ * Shared history-endpoint plumbing: newest-first pages from the local {@link EventLog}, with the next
+ * {@code before} cursor in {@code X-Next-Cursor}. Entities with nothing in the log (history written before it
+ * existed) fall back to their Firestore {@code history} subcollection.
+ */
+@Component
+public class EventHistory {
+
+    private final EventLog log;
+    private final Firestore db;
+    private final int maxLimit;
+
+    public EventHistory(EventLog log, Firestore db, @Value("${app.list.max-limit:1000}") int maxLimit) {
+        this.log = log;
+        this.db = db;
+        this.maxLimit = maxLimit;
+    }
+
+    public CompletableFuture<ResponseEntity<?>> page(EventLog.Entity entity, String id, String idField, int limit, Long before) {
+        if (limit < 1 || limit > maxLimit) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + maxLimit + ".")));
+        }
+        if (log.contains(entity, id) || db == null) {
+            EventLog.Page page = log.tail(entity, id, limit, before);
+            List<Map<String, Object>> events = new ArrayList<>(page.events().size());
+            for (EventLog.Event e : page.events()) events.add(e.toMap());
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextBefore() != null) response.header(FirestoreListing.NEXT_CURSOR_HEADER, page.nextBefore().toString());
+            return CompletableFuture.completedFuture(response.body(Map.of(idField, id, "events", events)));
+        }
+        return toCompletable(entity.collection() + ".history", db.collection(entity.collection()).document(id).collection("history")
+                .orderBy("timestamp", Query.Direction.DESCENDING).limit(limit).get()).thenApply(snap -> {
+            List<Map<String, Object>> events = new ArrayList<>();
+            for (QueryDocumentSnapshot d : snap) {
+                Map<String, Object> m = d.getData();
+                m.put("id", d.getId());
+                events.add(m);
+            }
+            return ResponseEntity.ok(Map.of(idField, id, "events", events));
+        });
+    }
+}
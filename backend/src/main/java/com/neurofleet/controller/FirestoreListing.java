@@ -0,0 +1,151 @@
+package com.neurofleet.controller;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import com.neurofleet.service.FirestoreFutures;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
+
+/**
+ * Shared list-endpoint plumbing: cursor pages ({@code limit} + {@code startAfter} document id, next cursor in
+ * {@code X-Next-Cursor}), {@code fields=} projection through Firestore {@code select()}, and a streaming mode
+ * that writes a JSON array chunk by chunk so only one chunk of documents is ever held in memory.
+ */
+@Component
+public class FirestoreListing {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final ObjectMapper mapper;
+    private final int maxLimit;
+    private final int streamChunk;
+
+    public FirestoreListing(ObjectMapper mapper,
+                            @Value("${app.list.max-limit:1000}") int maxLimit,
+                            @Value("${app.list.stream-chunk:500}") int streamChunk) {
+        this.mapper = mapper;
+        this.maxLimit = maxLimit;
+        this.streamChunk = streamChunk;
+    }
+
+    /** True when the request asks for anything beyond the plain full list. */
+    public static boolean isPaged(Integer limit, String startAfter, String fields) {
+        return limit != null || startAfter != null || fields != null;
+    }
+
+    /**
+     * One page of {@code query}, which must already carry its ordering. The cursor is a document id; it is
+     * resolved against {@code collection} so that queries ordered by other fields resume at the right place.
+     */
+    public CompletableFuture<ResponseEntity<?>> page(CollectionReference collection, Query query,
+                                                     Integer limit, String startAfter, String fields) {
+        int pageSize = limit == null ? maxLimit : limit;
+        if (pageSize < 1 || pageSize > maxLimit) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + maxLimit + ".")));
+        }
+        Query projected = project(query, fields);
+        CompletableFuture<Query> positioned = startAfter == null || startAfter.isBlank()
+                ? CompletableFuture.completedFuture(projected)
+                : toCompletable(collection.getId() + ".cursor", collection.document(startAfter).get()).thenApply(cursor -> cursor.exists() ? projected.startAfter(cursor) : null);
+        return positioned.<ResponseEntity<?>>thenCompose(q -> {
+            if (q == null) {
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Map.of("error", "Unknown startAfter cursor.")));
+            }
+            return toCompletable(collection.getId() + ".page", q.limit(pageSize).get()).<ResponseEntity<?>>thenApply(snapshot -> {
+                List<Map<String, Object>> list = new ArrayList<>(snapshot.size());
+                for (QueryDocumentSnapshot d : snapshot.getDocuments()) list.add(withId(d));
+                ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                if (list.size() == pageSize) response.header(NEXT_CURSOR_HEADER, snapshot.getDocuments().get(list.size() - 1).getId());
+                return response.body(list);
+            });
+        });
+    }
+
+    /**
+     * Streams every document of {@code query} as a JSON array, fetching {@code stream-chunk} documents at a time.
+     * Each chunk starts after the last document of the previous one, which only works if that snapshot carries the
+     * values {@code query} is ordered by: {@code orderBy} names those fields (besides the document id), and they are
+     * always selected, then left out of the output unless {@code fields} asked for them.
+     */
+    public ResponseEntity<StreamingResponseBody> stream(Query query, String fields, String... orderBy) {
+        String[] names = fieldNames(fields);
+        Query projected = query;
+        Set<String> hidden = new HashSet<>();
+        if (names.length > 0) {
+            List<String> select = new ArrayList<>(List.of(names));
+            for (String field : orderBy) {
+                if (!select.contains(field)) {
+                    select.add(field);
+                    hidden.add(field);
+                }
+            }
+            projected = query.select(select.toArray(String[]::new));
+        }
+        Query source = projected;
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = mapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+                json.writeStartArray();
+                DocumentSnapshot last = null;
+                while (true) {
+                    Query chunk = source.limit(streamChunk);
+                    if (last != null) chunk = chunk.startAfter(last);
+                    List<QueryDocumentSnapshot> docs = await(chunk.get()).getDocuments();
+                    for (QueryDocumentSnapshot d : docs) {
+                        Map<String, Object> m = withId(d);
+                        m.keySet().removeAll(hidden);
+                        mapper.writeValue(json, m);
+                    }
+                    json.flush();
+                    if (docs.size() < streamChunk) break;
+                    last = docs.get(docs.size() - 1);
+                }
+                json.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static Query project(Query query, String fields) {
+        String[] names = fieldNames(fields);
+        return names.length == 0 ? query : query.select(names);
+    }
+
+    private static String[] fieldNames(String fields) {
+        if (fields == null || fields.isBlank()) return new String[0];
+        return Arrays.stream(fields.split(",")).map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    private static Map<String, Object> withId(DocumentSnapshot d) {
+        Map<String, Object> m = d.getData();
+        m.put("id", d.getId());
+        return m;
+    }
+
+    private static QuerySnapshot await(ApiFuture<QuerySnapshot> future) throws IOException {
+        long start = System.nanoTime();
+        try {
+            QuerySnapshot snapshot = future.get();
+            FirestoreFutures.record("listing.stream", System.nanoTime() - start, true);
+            return snapshot;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming", e);
+        } catch (ExecutionException e) {
+            FirestoreFutures.record("listing.stream", System.nanoTime() - start, false);
+            throw new IOException("Firestore query failed while streaming", e.getCause());
+        }
+    }
+}
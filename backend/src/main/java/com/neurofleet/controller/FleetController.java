@@ -0,0 +1,26 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.service.TelemetryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/fleet")
+public class FleetController {
+
+    private final TelemetryService telemetry;
+
+    public FleetController(TelemetryService telemetry) {
+        this.telemetry = telemetry;
+    }
+
+    /** Status counts, battery histogram, averages and rolling utilization, maintained as telemetry changes. */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(telemetry.getFleetStats());
+    }
+}
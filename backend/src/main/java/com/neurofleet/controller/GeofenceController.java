@@ -0,0 +1,64 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.geofence.GeofenceEngine;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/geofences")
+public class GeofenceController {
+
+    private final GeofenceEngine geofences;
+
+    public GeofenceController(GeofenceEngine geofences) {
+        this.geofences = geofences;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> list() {
+        return ResponseEntity.ok(geofences.list());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(geofences.getStats());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> get(@PathVariable String id) {
+        Map<String, Object> m = geofences.get(id);
+        if (m == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(m);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody Map<String, Object> body) {
+        try {
+            return ResponseEntity.status(201).body(geofences.create(body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable String id, @RequestBody Map<String, Object> body) {
+        if (!geofences.contains(id)) return ResponseEntity.notFound().build();
+        try {
+            return ResponseEntity.ok(geofences.put(id, body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, String>> delete(@PathVariable String id) {
+        if (!geofences.remove(id)) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(Map.of("message", "Geofence deleted successfully"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.ingest.IngestService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/** Batch endpoint for device reports; see {@link IngestService} for the line and binary formats. */
+@RestController
+@RequestMapping("/api/ingest")
+public class IngestController {
+
+    private final IngestService ingest;
+
+    public IngestController(IngestService ingest) {
+        this.ingest = ingest;
+    }
+
+    @PostMapping(consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<Map<String, Object>> lines(@RequestHeader(value = "X-Ingest-Key", required = false) String key,
+                                                     @RequestBody String body) {
+        if (!ingest.authorized(key)) return forbidden();
+        return respond(ingest.ingestLines(body));
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> binary(@RequestHeader(value = "X-Ingest-Key", required = false) String key,
+                                                      @RequestBody byte[] body) {
+        if (!ingest.authorized(key)) return forbidden();
+        return respond(ingest.ingestBinary(ByteBuffer.wrap(body)));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(ingest.getStats());
+    }
+
+    // Accepted reports are applied asynchronously; a batch refused only for lack of ring space should be retried.
+    private static ResponseEntity<Map<String, Object>> respond(IngestService.Result result) {
+        if (result.accepted() == 0 && result.overflow() > 0) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(result.toMap());
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(result.toMap());
+    }
+
+    private static ResponseEntity<Map<String, Object>> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Missing or invalid ingest key."));
+    }
+}
@@ -0,0 +1,49 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.service.MaintenanceEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/maintenance")
+public class MaintenanceController {
+
+    private final MaintenanceEngine engine;
+    private final int maxLimit;
+
+    public MaintenanceController(MaintenanceEngine engine, @Value("${app.list.max-limit:1000}") int maxLimit) {
+        this.engine = engine;
+        this.maxLimit = maxLimit;
+    }
+
+    /** Scored vehicles, riskiest first; {@code status} keeps that level and above (healthy, due, critical). */
+    @GetMapping
+    public ResponseEntity<?> list(@RequestParam(defaultValue = "healthy") String status,
+                                  @RequestParam(defaultValue = "0") double minRisk,
+                                  @RequestParam(defaultValue = "100") int limit) {
+        byte level = switch (status) {
+            case "healthy" -> MaintenanceEngine.HEALTHY;
+            case "due" -> MaintenanceEngine.DUE;
+            case "critical" -> MaintenanceEngine.CRITICAL;
+            default -> -1;
+        };
+        if (level < 0) return ResponseEntity.badRequest().body(Map.of("error", "status must be healthy, due or critical."));
+        if (limit < 1 || limit > maxLimit) return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + maxLimit + "."));
+        return ResponseEntity.ok(engine.list(level, minRisk, limit));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(engine.getStats());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> get(@PathVariable String id) {
+        Map<String, Object> m = engine.view(id);
+        if (m == null) return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(m);
+    }
+}
@@ -1,8 +1,6 @@
 package com.neurofleet.controller;
 
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.DocumentReference;
-import com.google.cloud.firestore.DocumentSnapshot;
 import com.google.cloud.firestore.Firestore;
 import com.google.cloud.firestore.SetOptions;
 import org.springframework.http.ResponseEntity;
@@ -10,6 +8,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
 
 @RestController
 @RequestMapping("/api/profile")
@@ -22,24 +23,22 @@ public class ProfileController {
     }
 
     @GetMapping("/me")
-    public ResponseEntity<?> getMyProfile(Authentication authentication) throws Exception {
-        if (authentication == null || !authentication.isAuthenticated()) return ResponseEntity.status(401).build();
-        if (db == null) return ResponseEntity.ok(Map.of("message", "Firestore not available in development mode"));
+    public CompletableFuture<ResponseEntity<?>> getMyProfile(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        if (db == null) return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("message", "Firestore not available in development mode")));
         
         String uid = authentication.getName();
-        DocumentSnapshot snap = db.collection("users").document(uid).get().get();
-        return ResponseEntity.ok(snap.exists() ? snap.getData() : Map.of());
+        return toCompletable("users.get", db.collection("users").document(uid).get())
+                .thenApply(snap -> ResponseEntity.ok(snap.exists() ? snap.getData() : Map.of()));
     }
 
     @PutMapping("/me")
-    public ResponseEntity<?> upsertMyProfile(Authentication authentication, @RequestBody Map<String, Object> body) throws Exception {
-        if (authentication == null || !authentication.isAuthenticated()) return ResponseEntity.status(401).build();
-        if (db == null) return ResponseEntity.ok(Map.of("message", "Profile update not available in development mode"));
+    public CompletableFuture<ResponseEntity<?>> upsertMyProfile(Authentication authentication, @RequestBody Map<String, Object> body) {
+        if (authentication == null || !authentication.isAuthenticated()) return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        if (db == null) return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of("message", "Profile update not available in development mode")));
         
         String uid = authentication.getName();
         DocumentReference ref = db.collection("users").document(uid);
-        ApiFuture<?> fut = ref.set(body, SetOptions.merge());
-        fut.get();
-        return ResponseEntity.ok(body);
+        return toCompletable("users.merge", ref.set(body, SetOptions.merge())).thenApply(result -> ResponseEntity.ok(body));
     }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.neurofleet.controller;
+
+import com.neurofleet.routing.RoutingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+@RestController
+@RequestMapping("/api/routes")
+public class RouteController {
+
+    private final RoutingService routing;
+    private final int maxMatrixCells;
+
+    public RouteController(RoutingService routing, @Value("${app.routing.max-matrix-cells:10000}") int maxMatrixCells) {
+        this.routing = routing;
+        this.maxMatrixCells = maxMatrixCells;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> route(@RequestBody Map<String, Object> body) {
+        if (!routing.isAvailable()) return unavailable();
+        double[] from = point(body.get("from")), to = point(body.get("to"));
+        if (from == null || to == null) return ResponseEntity.badRequest().body(Map.of("error", "from and to must be {lat, lon} objects."));
+        Map<String, Object> route = routing.route(from[0], from[1], to[0], to[1]);
+        if (route == null) return ResponseEntity.status(404).body(Map.of("error", "No route between the given points."));
+        return ResponseEntity.ok(route);
+    }
+
+    @PostMapping("/matrix")
+    public ResponseEntity<?> matrix(@RequestBody Map<String, Object> body) {
+        if (!routing.isAvailable()) return unavailable();
+        double[][] sources = points(body.get("sources")), targets = points(body.get("targets"));
+        if (sources == null || targets == null) return ResponseEntity.badRequest().body(Map.of("error", "sources and targets must be lists of {lat, lon} objects."));
+        if ((long) sources.length * targets.length > maxMatrixCells) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Matrix larger than " + maxMatrixCells + " cells."));
+        }
+        return ResponseEntity.ok(Map.of("durationsSeconds", routing.matrix(sources, targets)));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(routing.getStats());
+    }
+
+    private static ResponseEntity<?> unavailable() {
+        return ResponseEntity.status(503).body(Map.of("error", "Routing is not configured; set app.routing.graph-path."));
+    }
+
+    private static double[][] points(Object value) {
+        if (!(value instanceof List<?> list) || list.isEmpty()) return null;
+        double[][] out = new double[list.size()][];
+        for (int i = 0; i < out.length; i++) {
+            if ((out[i] = point(list.get(i))) == null) return null;
+        }
+        return out;
+    }
+
+    private static double[] point(Object value) {
+        if (value instanceof Map<?, ?> m && m.get("lat") instanceof Number lat && m.get("lon") instanceof Number lon) {
+            return new double[]{lat.doubleValue(), lon.doubleValue()};
+        }
+        return null;
+    }
+}
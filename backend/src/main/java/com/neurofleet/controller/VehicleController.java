@@ -1,14 +1,25 @@
 package com.neurofleet.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
+import com.neurofleet.eventlog.EventLog;
+import com.neurofleet.eventlog.EventLogReplicator;
+import com.neurofleet.service.FirestoreCache;
+import com.neurofleet.service.FirestoreWriteBehind;
+import com.neurofleet.service.FleetSnapshotService;
 import com.neurofleet.service.TelemetryService;
+import com.neurofleet.timeseries.TelemetryHistoryStore;
+import com.neurofleet.websocket.RawWebSocketHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/vehicles")
@@ -16,63 +27,122 @@ public class VehicleController {
 
     private final Firestore db;
     private final TelemetryService telemetry;
+    private final RawWebSocketHandler broadcaster;
+    private final FirestoreWriteBehind writes;
+    private final FirestoreCache cache;
+    private final FirestoreListing listing;
+    private final TelemetryHistoryStore history;
+    private final EventLog eventLog;
+    private final EventLogReplicator replicator;
+    private final EventHistory eventHistory;
+    private final FleetSnapshotService snapshots;
+    private final double maxRadiusKm;
     private final ObjectMapper mapper = new ObjectMapper();
 
-    public VehicleController(Firestore db, TelemetryService telemetry) {
+    public VehicleController(Firestore db, TelemetryService telemetry, RawWebSocketHandler broadcaster,
+                             FirestoreWriteBehind writes, FirestoreCache cache, FirestoreListing listing,
+                             TelemetryHistoryStore history, EventLog eventLog, EventLogReplicator replicator,
+                             EventHistory eventHistory, FleetSnapshotService snapshots,
+                             @Value("${app.telemetry.max-query-radius-km:50}") double maxRadiusKm) {
         this.db = db;
         this.telemetry = telemetry;
+        this.broadcaster = broadcaster;
+        this.writes = writes;
+        this.cache = cache;
+        this.listing = listing;
+        this.history = history;
+        this.eventLog = eventLog;
+        this.replicator = replicator;
+        this.eventHistory = eventHistory;
+        this.snapshots = snapshots;
+        this.maxRadiusKm = maxRadiusKm;
     }
 
     @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getVehicles() throws Exception {
+    public CompletableFuture<ResponseEntity<?>> getVehicles(@RequestParam(required = false) Integer limit,
+                                                          @RequestParam(required = false) String startAfter,
+                                                          @RequestParam(required = false) String fields) {
         if (db == null) {
             // Return mock data for development
-            return ResponseEntity.ok(List.of(
+            return CompletableFuture.completedFuture(ResponseEntity.ok(List.of(
                 Map.of("id", "dev-vehicle-1", "make", "Tesla", "model", "Model 3", "licensePlate", "DEV-001", "status", "available"),
                 Map.of("id", "dev-vehicle-2", "make", "BMW", "model", "i3", "licensePlate", "DEV-002", "status", "on-trip")
-            ));
+            )));
         }
         
-        ApiFuture<QuerySnapshot> future = db.collection("vehicles").get();
-        List<QueryDocumentSnapshot> docs = future.get().getDocuments();
-        List<Map<String, Object>> list = new ArrayList<>();
-        for (QueryDocumentSnapshot d : docs) {
-            Map<String, Object> m = d.getData();
-            m.put("id", d.getId());
-            list.add(m);
-            if (telemetry != null) telemetry.addOrInitVehicle(d.getId(), m);
+        if (FirestoreListing.isPaged(limit, startAfter, fields)) {
+            CollectionReference vehicles = db.collection("vehicles");
+            return listing.page(vehicles, vehicles.orderBy(FieldPath.documentId()), limit, startAfter, fields);
         }
-        return ResponseEntity.ok(list);
+        return cache.vehicles().list().thenApply(list -> {
+            if (telemetry != null) {
+                for (Map<String, Object> m : list) telemetry.addOrInitVehicle(m.get("id").toString(), m);
+            }
+            return ResponseEntity.ok(list);
+        });
+    }
+
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamVehicles(@RequestParam(required = false) String fields) {
+        if (db == null) return ResponseEntity.ok(out -> out.write("[]".getBytes()));
+        return listing.stream(db.collection("vehicles").orderBy(FieldPath.documentId()), fields);
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getNearbyVehicles(@RequestParam double lat, @RequestParam double lon,
+                                               @RequestParam(defaultValue = "5") double radius,
+                                               @RequestParam(required = false) String status,
+                                               @RequestParam(defaultValue = "10") int k) {
+        if (!validPoint(lat, lon)) return ResponseEntity.badRequest().body(Map.of("error", "lat must be within [-90, 90] and lon within [-180, 180]."));
+        if (!(radius > 0 && radius <= maxRadiusKm) || k <= 0 || k > 1000) {
+            return ResponseEntity.badRequest().body(Map.of("error", "radius must be in (0, " + maxRadiusKm + "] km and k between 1 and 1000."));
+        }
+        return ResponseEntity.ok(telemetry != null ? telemetry.findNearby(lat, lon, radius, status, k) : List.of());
+    }
+
+    @GetMapping("/within")
+    public ResponseEntity<?> getVehiclesWithin(@RequestParam double minLat, @RequestParam double minLon,
+                                               @RequestParam double maxLat, @RequestParam double maxLon,
+                                               @RequestParam(required = false) String status,
+                                               @RequestParam(defaultValue = "1000") int limit) {
+        if (!validPoint(minLat, minLon) || !validPoint(maxLat, maxLon) || minLat > maxLat || minLon > maxLon || limit <= 0) return ResponseEntity.badRequest().body(Map.of("error", "Invalid bounding box or limit."));
+        return ResponseEntity.ok(telemetry != null ? telemetry.findWithin(minLat, minLon, maxLat, maxLon, status, limit) : List.of());
+    }
+
+    // Written so NaN fails too
+    private static boolean validPoint(double lat, double lon) {
+        return Math.abs(lat) <= 90 && Math.abs(lon) <= 180;
+    }
+
+    private static boolean validCoordinate(Object value, double limit) {
+        return value == null || value instanceof Number n && Math.abs(n.doubleValue()) <= limit;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getVehicle(@PathVariable String id) throws Exception {
-        DocumentSnapshot doc = db.collection("vehicles").document(id).get().get();
-        if (!doc.exists()) return ResponseEntity.notFound().build();
-        Map<String, Object> m = doc.getData();
-        m.put("id", doc.getId());
-        return ResponseEntity.ok(m);
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> getVehicle(@PathVariable String id) {
+        return cache.vehicles().get(id).thenApply(m -> m == null ? ResponseEntity.notFound().<Map<String, Object>>build() : ResponseEntity.ok(m));
     }
 
     @GetMapping("/{id}/history")
-    public ResponseEntity<Map<String, Object>> getVehicleHistory(@PathVariable String id) throws Exception {
-        QuerySnapshot snap = db.collection("vehicles").document(id).collection("history")
-                .orderBy("timestamp", Query.Direction.DESCENDING).limit(50).get().get();
-        List<Map<String, Object>> events = new ArrayList<>();
-        for (QueryDocumentSnapshot d : snap) {
-            Map<String, Object> m = d.getData();
-            m.put("id", d.getId());
-            events.add(m);
-        }
-        return ResponseEntity.ok(Map.of("vehicleId", id, "events", events));
+    public CompletableFuture<ResponseEntity<?>> getVehicleHistory(@PathVariable String id,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(required = false) Long before) {
+        return eventHistory.page(EventLog.Entity.VEHICLE, id, "vehicleId", limit, before);
+    }
+
+    @GetMapping("/history/stats")
+    public ResponseEntity<Map<String, Object>> getHistoryStats() {
+        Map<String, Object> m = new LinkedHashMap<>(eventLog.getStats());
+        m.put("replication", replicator.getStats());
+        return ResponseEntity.ok(m);
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createVehicle(@RequestBody Map<String, Object> body) throws Exception {
+    public ResponseEntity<Map<String, Object>> createVehicle(@RequestBody Map<String, Object> body) {
         DocumentReference ref = db.collection("vehicles").document();
         body.put("createdAt", new Date());
-        ref.set(body).get();
+        writes.set(ref, body);
         if (telemetry != null) telemetry.addOrInitVehicle(ref.getId(), body);
         appendHistory(ref.getId(), "created", body);
         return ResponseEntity.status(201).body(withId(ref.getId(), body));
@@ -80,16 +150,23 @@ public class VehicleController {
 
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateVehicle(@PathVariable String id, @RequestBody Map<String, Object> update) throws Exception {
-        db.collection("vehicles").document(id).set(update, SetOptions.merge()).get();
+    public ResponseEntity<Map<String, Object>> updateVehicle(@PathVariable String id, @RequestBody Map<String, Object> update) {
+        if (telemetry != null && update.get("status") != null && !telemetry.isKnownStatus(update.get("status").toString())) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown status: " + update.get("status")));
+        }
+        if (!validCoordinate(update.get("latitude"), 90) || !validCoordinate(update.get("longitude"), 180)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "latitude must be within [-90, 90] and longitude within [-180, 180]."));
+        }
+        writes.merge(db.collection("vehicles").document(id), update);
+        if (telemetry != null) telemetry.updateVehicle(id, update);
         appendHistory(id, "updated", update);
         return ResponseEntity.ok(withId(id, update));
     }
 
     @PreAuthorize("hasRole('ADMIN')")
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, String>> deleteVehicle(@PathVariable String id) throws Exception {
-        db.collection("vehicles").document(id).delete().get();
+    public ResponseEntity<Map<String, String>> deleteVehicle(@PathVariable String id) {
+        writes.delete(db.collection("vehicles").document(id));
         if (telemetry != null) telemetry.removeVehicle(id);
         appendHistory(id, "deleted", Map.of());
         return ResponseEntity.ok(Map.of("message", "Vehicle deleted successfully"));
@@ -102,39 +179,104 @@ public class VehicleController {
         return ResponseEntity.ok(t);
     }
 
+    /**
+     * Telemetry history as parallel arrays. {@code from}/{@code to} take epoch millis or ISO-8601 instants
+     * (default: the last hour); {@code step} takes millis or a suffixed duration such as {@code 30s}, {@code 5m}, {@code 1h}.
+     */
+    @GetMapping("/{id}/telemetry/range")
+    public ResponseEntity<?> getTelemetryRange(@PathVariable String id,
+                                               @RequestParam(required = false) String from,
+                                               @RequestParam(required = false) String to,
+                                               @RequestParam(required = false) String step,
+                                               @RequestParam(required = false) String fields) {
+        if (!history.isEnabled()) {
+            return ResponseEntity.status(503).body(Map.of("error", "Telemetry history is disabled."));
+        }
+        long end, start;
+        Long stepMillis;
+        try {
+            end = to != null ? parseInstant(to) : System.currentTimeMillis();
+            start = from != null ? parseInstant(from) : end - 3_600_000L;
+            stepMillis = step != null ? parseStep(step) : null;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid from/to/step: " + e.getMessage()));
+        }
+        if (start >= end) return ResponseEntity.badRequest().body(Map.of("error", "from must be before to."));
+        if (stepMillis != null && stepMillis <= 0) return ResponseEntity.badRequest().body(Map.of("error", "step must be positive."));
+
+        List<String> columns = fields != null ? Arrays.stream(fields.split(",")).map(String::trim).filter(f -> !f.isEmpty()).toList() : List.of();
+        try {
+            Map<String, Object> result = history.range(id, start, end, stepMillis, columns);
+            if (result == null) return ResponseEntity.notFound().build();
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/telemetry/history/stats")
+    public ResponseEntity<Map<String, Object>> getTelemetryHistoryStats() {
+        return ResponseEntity.ok(history.getStats());
+    }
+
     @GetMapping("/telemetry/all")
     public ResponseEntity<List<Map<String, Object>>> getAllTelemetry() {
         return ResponseEntity.ok(telemetry != null ? telemetry.getAllTelemetry() : List.of());
     }
 
+    @GetMapping("/telemetry/stats")
+    public ResponseEntity<Map<String, Object>> getTelemetryStats() {
+        return ResponseEntity.ok(telemetry != null ? telemetry.getTickStats() : Map.of());
+    }
+
+    /** Snapshot writes plus how the last start was warmed: restored count, preload progress and timings. */
+    @GetMapping("/telemetry/snapshot/stats")
+    public ResponseEntity<Map<String, Object>> getSnapshotStats() {
+        return ResponseEntity.ok(snapshots.getStats());
+    }
+
+    @GetMapping("/telemetry/sessions")
+    public ResponseEntity<Map<String, Object>> getTelemetrySessions() {
+        return ResponseEntity.ok(broadcaster.getSessionStats());
+    }
+
+    @GetMapping("/writes/stats")
+    public ResponseEntity<Map<String, Object>> getWriteStats() {
+        return ResponseEntity.ok(writes.getStats());
+    }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(cache.getStats());
+    }
+
     @PatchMapping("/{id}/status")
     public ResponseEntity<Map<String, Object>> updateStatus(@PathVariable String id, @RequestBody Map<String, Object> body) {
         String status = Objects.toString(body.get("status"), "available");
+        if (telemetry != null && !telemetry.isKnownStatus(status)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown status: " + status));
+        }
         if (telemetry != null) telemetry.updateStatus(id, status);
         return ResponseEntity.ok(Map.of("id", id, "status", status));
     }
 
     @PostMapping("/{id}/driver")
-    public ResponseEntity<Map<String, Object>> assignDriver(@PathVariable String id, @RequestBody Map<String, Object> body) throws Exception {
+    public ResponseEntity<Map<String, Object>> assignDriver(@PathVariable String id, @RequestBody Map<String, Object> body) {
         String driverName = Objects.toString(body.get("driverName"), null);
-        db.collection("vehicles").document(id).set(Map.of("currentDriver", driverName), SetOptions.merge()).get();
+        writes.merge(db.collection("vehicles").document(id), Collections.singletonMap("currentDriver", driverName));
         appendHistory(id, "driver_assigned", Map.of("driverName", driverName));
         return ResponseEntity.ok(Map.of("id", id, "driverName", driverName));
     }
 
     @DeleteMapping("/{id}/driver")
-    public ResponseEntity<Map<String, Object>> removeDriver(@PathVariable String id) throws Exception {
-        db.collection("vehicles").document(id).set(Map.of("currentDriver", null), SetOptions.merge()).get();
+    public ResponseEntity<Map<String, Object>> removeDriver(@PathVariable String id) {
+        writes.merge(db.collection("vehicles").document(id), Collections.singletonMap("currentDriver", null));
         appendHistory(id, "driver_removed", Map.of());
         return ResponseEntity.ok(Map.of("id", id, "message", "Driver removed successfully"));
     }
 
-    private void appendHistory(String id, String type, Map<String, Object> details) throws Exception {
-        db.collection("vehicles").document(id).collection("history").add(Map.of(
-                "eventType", type,
-                "details", details,
-                "timestamp", new Date()
-        )).get();
+    private void appendHistory(String id, String type, Map<String, Object> details) {
+        eventLog.append(EventLog.Entity.VEHICLE, id, type, details);
     }
 
     private Map<String, Object> withId(String id, Map<String, Object> body) {
@@ -142,4 +284,20 @@ public class VehicleController {
         m.put("id", id);
         return m;
     }
-}
\ No newline at end of file
+
+    private static long parseInstant(String value) {
+        return value.chars().allMatch(Character::isDigit) ? Long.parseLong(value) : Instant.parse(value).toEpochMilli();
+    }
+
+    private static long parseStep(String value) {
+        if (value.chars().allMatch(Character::isDigit)) return Long.parseLong(value);
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> amount * 1_000L;
+            case 'm' -> amount * 60_000L;
+            case 'h' -> amount * 3_600_000L;
+            case 'd' -> amount * 86_400_000L;
+            default -> throw new IllegalArgumentException("unknown step unit in " + value);
+        };
+    }
+}
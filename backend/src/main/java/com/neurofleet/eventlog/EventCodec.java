@@ -0,0 +1,94 @@
+package com.neurofleet.eventlog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary record layout:
+ * <pre>
+ *   int   length        bytes after this field; written last, so a torn append reads as end of log
+ *   int   crc32c        of everything after this field
+ *   long  sequence
+ *   long  timestampMillis
+ *   byte  entity        {@link EventLog.Entity} ordinal
+ *   short idLength,     entity id (UTF-8)
+ *   short typeLength,   event type (UTF-8)
+ *   int   detailsLength, details (JSON)
+ * </pre>
+ */
+final class EventCodec {
+
+    static final int FIXED_BYTES = 4 + 4 + 8 + 8 + 1 + 2 + 2 + 4;
+    private static final int SEQUENCE = 8;
+    private static final int TIMESTAMP = 16;
+
+    /** Decoded record; {@code details} is still raw JSON. */
+    record Raw(long sequence, long timestamp, EventLog.Entity entity, String entityId, String eventType, byte[] details, int length) {}
+
+    private EventCodec() {}
+
+    static int size(byte[] id, byte[] type, byte[] details) {
+        return FIXED_BYTES + id.length + type.length + details.length;
+    }
+
+    static void write(ByteBuffer out, int at, long sequence, long timestamp, EventLog.Entity entity,
+                      byte[] id, byte[] type, byte[] details) {
+        int p = at + 8;
+        out.putLong(p, sequence);
+        out.putLong(p + 8, timestamp);
+        out.put(p + 16, (byte) entity.ordinal());
+        p += 17;
+        out.putShort(p, (short) id.length);
+        out.put(p + 2, id);
+        p += 2 + id.length;
+        out.putShort(p, (short) type.length);
+        out.put(p + 2, type);
+        p += 2 + type.length;
+        out.putInt(p, details.length);
+        out.put(p + 4, details);
+        p += 4 + details.length;
+        out.putInt(at + 4, crc(out, at + 8, p - at - 8));
+        out.putInt(at, p - at - 4);
+    }
+
+    static long sequence(ByteBuffer in, int at) {
+        return in.getLong(at + SEQUENCE);
+    }
+
+    static long timestamp(ByteBuffer in, int at) {
+        return in.getLong(at + TIMESTAMP);
+    }
+
+    /** Total size of the record at {@code at} if it is complete and intact, otherwise 0. */
+    static int validLength(ByteBuffer in, int at) {
+        if (at + 8 > in.capacity()) return 0;
+        int length = in.getInt(at);
+        if (length < FIXED_BYTES - 4 || at + 4L + length > in.capacity()) return 0;
+        return crc(in, at + 8, length - 4) == in.getInt(at + 4) ? length + 4 : 0;
+    }
+
+    static Raw read(ByteBuffer in, int at) {
+        int length = in.getInt(at) + 4;
+        long sequence = in.getLong(at + 8);
+        long timestamp = in.getLong(at + 16);
+        EventLog.Entity entity = EventLog.Entity.values()[in.get(at + 24)];
+        int p = at + 25;
+        byte[] id = new byte[in.getShort(p)];
+        in.get(p + 2, id);
+        p += 2 + id.length;
+        byte[] type = new byte[in.getShort(p)];
+        in.get(p + 2, type);
+        p += 2 + type.length;
+        byte[] details = new byte[in.getInt(p)];
+        in.get(p + 4, details);
+        return new Raw(sequence, timestamp, entity, new String(id, StandardCharsets.UTF_8),
+                new String(type, StandardCharsets.UTF_8), details, length);
+    }
+
+    private static int crc(ByteBuffer in, int from, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(in.slice(from, length));
+        return (int) crc.getValue();
+    }
+}
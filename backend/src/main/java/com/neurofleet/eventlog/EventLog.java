@@ -0,0 +1,408 @@
+package com.neurofleet.eventlog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.service.LatencyRecorder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Local append-only history of vehicle and booking events. Records go to memory-mapped segment files in a compact
+ * binary format ({@link EventCodec}); each entity keeps an in-memory list of its record offsets, so a timeline is a
+ * walk back from the tail rather than a Firestore query. Appends return once the record is in the page cache;
+ * segments are fsynced every {@code fsync-ms}, and {@link EventLogReplicator} copies records to the Firestore
+ * {@code history} subcollections in the background. The index is rebuilt by scanning the segments on startup.
+ * <p>
+ * Retention drops whole segments, oldest first, once they are older than {@code retention-hours} or the log is larger
+ * than {@code retention-bytes}, but never the active segment and never one the replicator has not copied yet.
+ */
+@Service
+public class EventLog {
+
+    public enum Entity {
+        VEHICLE("vehicles"),
+        BOOKING("bookings");
+
+        private final String collection;
+
+        Entity(String collection) {
+            this.collection = collection;
+        }
+
+        public String collection() {
+            return collection;
+        }
+    }
+
+    public record Event(long sequence, long offset, long timestamp, Entity entity, String entityId,
+                        String eventType, Map<String, Object> details, String nodeId) {
+
+        /**
+         * Document id used for the event everywhere, including its Firestore copy. Clustered nodes each keep their
+         * own log, so the node id is appended to keep their copies from overwriting each other.
+         */
+        public String id() {
+            return nodeId.isEmpty() ? "e" + sequence : "e" + sequence + "-" + nodeId;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", id());
+            m.put("sequence", sequence);
+            m.put("eventType", eventType);
+            m.put("details", details);
+            m.put("timestamp", new Date(timestamp));
+            return m;
+        }
+    }
+
+    /** Newest-first events and the sequence to pass as {@code before} for the next page, if any. */
+    public record Page(List<Event> events, Long nextBefore) {}
+
+    private static final TypeReference<Map<String, Object>> DETAILS = new TypeReference<>() {};
+
+    private static final class EntityIndex {
+        long[] offsets = new long[4];
+        int size;
+
+        void add(long offset) {
+            if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+            offsets[size++] = offset;
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final String nodeId;
+    private final Path dir;
+    private final int segmentBytes;
+    private final int maxDetailsBytes;
+    private final long retentionMillis;
+    private final long retentionBytes;
+    private final ScheduledExecutorService syncer;
+
+    // Appends, guarded by this.
+    private final ConcurrentSkipListMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    private LogSegment active;
+    private long nextSequence = 1;
+    private final Map<String, EntityIndex> index = new ConcurrentHashMap<>();
+    private volatile long endOffset;
+    private volatile boolean dirty;
+    // Segments ending past this offset are kept. Without Firestore nothing is replicated, so nothing holds them back.
+    private volatile long retainFrom = Long.MAX_VALUE;
+
+    private final AtomicLong appends = new AtomicLong();
+    private final AtomicLong appendedBytes = new AtomicLong();
+    private final AtomicLong tailReads = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final AtomicLong droppedSegments = new AtomicLong();
+    private final LatencyRecorder appendLatency = new LatencyRecorder(4096);
+    private final LatencyRecorder fsyncLatency = new LatencyRecorder(256);
+
+    public EventLog(ObjectMapper mapper,
+                    @Value("${app.eventlog.dir:data/eventlog}") String dir,
+                    @Value("${app.eventlog.segment-bytes:16777216}") int segmentBytes,
+                    @Value("${app.eventlog.max-details-bytes:65536}") int maxDetailsBytes,
+                    @Value("${app.eventlog.fsync-ms:1000}") long fsyncMs,
+                    @Value("${app.eventlog.retention-hours:0}") long retentionHours,
+                    @Value("${app.eventlog.retention-bytes:0}") long retentionBytes,
+                    @Value("${app.cluster.node-id:}") String nodeId) throws IOException {
+        this.mapper = mapper;
+        this.nodeId = nodeId;
+        this.dir = Paths.get(dir);
+        this.maxDetailsBytes = maxDetailsBytes;
+        this.segmentBytes = Math.max(segmentBytes, maxDetailsBytes + 4096);
+        this.retentionMillis = TimeUnit.HOURS.toMillis(retentionHours);
+        this.retentionBytes = retentionBytes;
+        Files.createDirectories(this.dir);
+        recover();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-log-fsync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncer.scheduleWithFixedDelay(this::fsync, fsyncMs, fsyncMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Appends an event stamped now and returns its sequence number. */
+    public long append(Entity entity, String entityId, String eventType, Map<String, Object> details) {
+        long start = System.nanoTime();
+        byte[] id = entityId.getBytes(StandardCharsets.UTF_8);
+        byte[] type = eventType.getBytes(StandardCharsets.UTF_8);
+        byte[] json;
+        try {
+            json = mapper.writeValueAsBytes(details != null ? details : Map.of());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Event details are not serializable: " + e.getOriginalMessage(), e);
+        }
+        if (json.length > maxDetailsBytes || id.length > Short.MAX_VALUE || type.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Event for " + entityId + " is too large to log");
+        }
+        int size = EventCodec.size(id, type, json);
+
+        long sequence;
+        synchronized (this) {
+            if (active.end() + size > active.capacity()) roll();
+            int at = active.end();
+            sequence = nextSequence++;
+            long timestamp = System.currentTimeMillis();
+            EventCodec.write(active.buffer(), at, sequence, timestamp, entity, id, type, json);
+            active.advance(size, timestamp);
+            long offset = active.baseOffset() + at;
+            endOffset = offset + size;
+            index.computeIfAbsent(key(entity, entityId), k -> new EntityIndex()).add(offset);
+            dirty = true;
+        }
+        appends.incrementAndGet();
+        appendedBytes.addAndGet(size);
+        appendLatency.record(System.nanoTime() - start);
+        return sequence;
+    }
+
+    /** Up to {@code limit} events of one entity, newest first, older than sequence {@code before} when given. */
+    public Page tail(Entity entity, String entityId, int limit, Long before) {
+        tailReads.incrementAndGet();
+        long[] offsets;
+        int to;
+        EntityIndex entries = index.get(key(entity, entityId));
+        if (entries == null) return new Page(List.of(), null);
+        synchronized (this) {
+            offsets = entries.offsets;
+            to = entries.size;
+        }
+        if (before != null) to = firstAtOrAfter(offsets, to, before);
+        int from = Math.max(0, to - limit);
+        List<Event> events = new ArrayList<>(to - from);
+        for (int i = to - 1; i >= from; i--) {
+            Event event = read(offsets[i]);
+            if (event == null) break;
+            events.add(event);
+        }
+        return new Page(events, from > 0 && !events.isEmpty() ? events.get(events.size() - 1).sequence() : null);
+    }
+
+    /** Whether anything has been logged for the entity. */
+    public boolean contains(Entity entity, String entityId) {
+        return index.containsKey(key(entity, entityId));
+    }
+
+    /** Offset one past the last complete record. */
+    public long endOffset() {
+        return endOffset;
+    }
+
+    /** Feeds up to {@code max} records starting at {@code offset} to {@code sink}; returns the offset after the last. */
+    public long read(long offset, int max, Consumer<Event> sink) {
+        long end = endOffset;
+        // A checkpoint that could not be saved may point below segments retention has since dropped.
+        long position = Math.max(offset, segments.firstKey());
+        for (int n = 0; n < max && position < end; n++) {
+            LogSegment segment = segments.floorEntry(position).getValue();
+            // Segments are contiguous: a rolled segment's end is the next one's base offset.
+            int at = (int) (position - segment.baseOffset());
+            if (at >= segment.end()) break;
+            EventCodec.Raw raw = EventCodec.read(segment.buffer(), at);
+            sink.accept(toEvent(raw, position));
+            position += raw.length();
+        }
+        return position;
+    }
+
+    /** Called by the replicator: everything below {@code offset} is in Firestore and may be dropped by retention. */
+    public void retainFrom(long offset) {
+        retainFrom = offset;
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    /** Drops expired segments and the index entries that point into them. */
+    @Scheduled(fixedDelayString = "${app.eventlog.retention-sweep-ms:60000}")
+    public void sweep() {
+        if (retentionMillis <= 0 && retentionBytes <= 0) return;
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        List<LogSegment> dropped = new ArrayList<>();
+        synchronized (this) {
+            long bytes = endOffset - segments.firstKey();
+            while (segments.size() > 1) {
+                LogSegment oldest = segments.firstEntry().getValue();
+                long end = segments.higherKey(oldest.baseOffset());
+                boolean expired = retentionMillis > 0 && oldest.maxTimestamp() < cutoff;
+                boolean oversize = retentionBytes > 0 && bytes > retentionBytes;
+                if (end > retainFrom || !(expired || oversize)) break;
+                segments.remove(oldest.baseOffset());
+                dropped.add(oldest);
+                bytes -= end - oldest.baseOffset();
+            }
+            if (!dropped.isEmpty()) prune(segments.firstKey());
+        }
+        for (LogSegment segment : dropped) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                System.out.println("[EventLog] Could not delete " + segment.path() + ": " + e.getMessage());
+            }
+        }
+        if (!dropped.isEmpty()) {
+            droppedSegments.addAndGet(dropped.size());
+            System.out.println("[EventLog] Dropped " + dropped.size() + " segments below offset " + segments.firstKey());
+        }
+    }
+
+    // Called with the lock held. Offsets are copied rather than shifted in place, because tail() reads the array it
+    // picked up under the lock after releasing it.
+    private void prune(long firstOffset) {
+        Iterator<EntityIndex> it = index.values().iterator();
+        while (it.hasNext()) {
+            EntityIndex entries = it.next();
+            int keep = 0;
+            while (keep < entries.size && entries.offsets[keep] < firstOffset) keep++;
+            if (keep == 0) continue;
+            if (keep == entries.size) {
+                it.remove();
+                entries.size = 0;
+            } else {
+                entries.offsets = Arrays.copyOfRange(entries.offsets, keep, keep + Math.max(entries.offsets.length - keep, 4));
+                entries.size -= keep;
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("dir", dir.toAbsolutePath().toString());
+        m.put("segments", segments.size());
+        m.put("startOffset", segments.firstKey());
+        m.put("endOffset", endOffset);
+        m.put("entities", index.size());
+        m.put("appends", appends.get());
+        m.put("appendedBytes", appendedBytes.get());
+        m.put("tailReads", tailReads.get());
+        m.put("fsyncs", fsyncs.get());
+        m.put("droppedSegments", droppedSegments.get());
+        m.put("appendLatency", appendLatency.snapshot());
+        m.put("fsyncLatency", fsyncLatency.snapshot());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        syncer.shutdownNow();
+        synchronized (this) {
+            for (LogSegment segment : segments.values()) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    System.out.println("[EventLog] Could not close " + segment.path() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void fsync() {
+        if (!dirty) return;
+        dirty = false;
+        LogSegment segment;
+        synchronized (this) {
+            segment = active;
+        }
+        long start = System.nanoTime();
+        segment.force();
+        fsyncs.incrementAndGet();
+        fsyncLatency.record(System.nanoTime() - start);
+    }
+
+    // Called with the lock held.
+    private void roll() {
+        active.force();
+        long base = active.baseOffset() + active.end();
+        try {
+            active = LogSegment.create(dir, base, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create event log segment in " + dir, e);
+        }
+        segments.put(base, active);
+    }
+
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        for (Path file : files) {
+            LogSegment segment = LogSegment.open(file);
+            segments.put(segment.baseOffset(), segment);
+            active = segment;
+        }
+        if (active == null) {
+            active = LogSegment.create(dir, 0, segmentBytes);
+            segments.put(0L, active);
+        }
+        long count = 0;
+        for (LogSegment segment : segments.values()) {
+            int at = 0;
+            while (at < segment.end()) {
+                EventCodec.Raw raw = EventCodec.read(segment.buffer(), at);
+                index.computeIfAbsent(key(raw.entity(), raw.entityId()), k -> new EntityIndex()).add(segment.baseOffset() + at);
+                nextSequence = raw.sequence() + 1;
+                at += raw.length();
+                count++;
+            }
+        }
+        endOffset = active.baseOffset() + active.end();
+        if (count > 0) {
+            System.out.println("[EventLog] Recovered " + count + " events for " + index.size() + " entities from " + segments.size() + " segments");
+        }
+    }
+
+    // Null if retention dropped the segment after the caller looked the offset up.
+    private Event read(long offset) {
+        Map.Entry<Long, LogSegment> entry = segments.floorEntry(offset);
+        if (entry == null) return null;
+        LogSegment segment = entry.getValue();
+        return toEvent(EventCodec.read(segment.buffer(), (int) (offset - segment.baseOffset())), offset);
+    }
+
+    private Event toEvent(EventCodec.Raw raw, long offset) {
+        Map<String, Object> details;
+        try {
+            details = mapper.readValue(raw.details(), DETAILS);
+        } catch (IOException e) {
+            details = Map.of();
+        }
+        return new Event(raw.sequence(), offset, raw.timestamp(), raw.entity(), raw.entityId(), raw.eventType(), details, nodeId);
+    }
+
+    // Offsets of one entity are in sequence order; binary search on the sequence stored in each record.
+    private int firstAtOrAfter(long[] offsets, int size, long sequence) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Map.Entry<Long, LogSegment> entry = segments.floorEntry(offsets[mid]);
+            LogSegment segment = entry != null ? entry.getValue() : null;
+            if (segment == null || EventCodec.sequence(segment.buffer(), (int) (offsets[mid] - segment.baseOffset())) < sequence) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static String key(Entity entity, String entityId) {
+        return entity.collection() + "/" + entityId;
+    }
+}
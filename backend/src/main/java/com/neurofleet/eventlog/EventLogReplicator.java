@@ -0,0 +1,119 @@
+package com.neurofleet.eventlog;
+
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.neurofleet.service.FirestoreWriteBehind;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies {@link EventLog} records to {@code <collection>/<id>/history/e<sequence>} through the write-behind
+ * queue, one batch in flight at a time. The replicated offset is checkpointed next to the segments once a batch
+ * commits; after a crash the last batch is simply written again, which is harmless because event document ids
+ * are deterministic. The log's retention never drops a segment past the replicated offset.
+ */
+@Component
+public class EventLogReplicator {
+
+    private static final String CHECKPOINT = "replicated.offset";
+
+    private final EventLog log;
+    private final Firestore db;
+    private final FirestoreWriteBehind writes;
+    private final int batchSize;
+    private final Path checkpoint;
+    private final ScheduledExecutorService replicator;
+
+    private volatile long replicatedOffset;
+    private volatile boolean inFlight;
+    private final AtomicLong replicated = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    public EventLogReplicator(EventLog log, Firestore db, FirestoreWriteBehind writes,
+                              @Value("${app.eventlog.replicate-ms:200}") long replicateMs,
+                              @Value("${app.eventlog.replicate-batch:400}") int batchSize) throws IOException {
+        this.log = log;
+        this.db = db;
+        this.writes = writes;
+        this.batchSize = batchSize;
+        this.checkpoint = log.dir().resolve(CHECKPOINT);
+        this.replicatedOffset = Files.exists(checkpoint) ? Long.parseLong(Files.readString(checkpoint).trim()) : 0;
+        this.replicator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "event-log-replicator");
+            t.setDaemon(true);
+            return t;
+        });
+        if (db != null) {
+            log.retainFrom(replicatedOffset);
+            replicator.scheduleWithFixedDelay(this::replicate, replicateMs, replicateMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", db != null);
+        m.put("replicatedOffset", replicatedOffset);
+        m.put("lagBytes", log.endOffset() - replicatedOffset);
+        m.put("replicatedEvents", replicated.get());
+        m.put("failedBatches", failedBatches.get());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        replicator.shutdownNow();
+    }
+
+    private void replicate() {
+        if (inFlight || replicatedOffset >= log.endOffset()) return;
+        List<CompletableFuture<Void>> batch = new ArrayList<>(batchSize);
+        long next;
+        try {
+            next = log.read(replicatedOffset, batchSize, event -> {
+                DocumentReference ref = db.collection(event.entity().collection()).document(event.entityId())
+                        .collection("history").document(event.id());
+                Map<String, Object> doc = event.toMap();
+                doc.remove("id");
+                batch.add(writes.set(ref, doc));
+            });
+        } catch (RuntimeException e) {
+            // An exception escaping a fixed-delay task would cancel replication for good; the events already
+            // queued have deterministic ids, so the next run simply writes the batch again from the same offset.
+            failedBatches.incrementAndGet();
+            System.out.println("[EventLogReplicator] Could not queue replication batch, retrying from offset " + replicatedOffset + ": " + e.getMessage());
+            return;
+        }
+        inFlight = true;
+        CompletableFuture.allOf(batch.toArray(CompletableFuture[]::new)).whenComplete((done, error) -> {
+            if (error == null) {
+                replicatedOffset = next;
+                replicated.addAndGet(batch.size());
+                saveCheckpoint(next);
+                log.retainFrom(next);
+            } else {
+                failedBatches.incrementAndGet();
+                System.out.println("[EventLogReplicator] Replication batch failed, retrying from offset " + replicatedOffset + ": " + error.getMessage());
+            }
+            inFlight = false;
+        });
+    }
+
+    private void saveCheckpoint(long offset) {
+        try {
+            Path tmp = checkpoint.resolveSibling(CHECKPOINT + ".tmp");
+            Files.writeString(tmp, Long.toString(offset));
+            Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("[EventLogReplicator] Could not save checkpoint: " + e.getMessage());
+        }
+    }
+}
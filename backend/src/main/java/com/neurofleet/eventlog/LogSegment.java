@@ -0,0 +1,97 @@
+package com.neurofleet.eventlog;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One memory-mapped file of the event log, named by the log offset of its first byte. Appends come from
+ * {@link EventLog} under its lock; readers use absolute gets below {@link #end()}, which is published only
+ * after a record is complete.
+ */
+final class LogSegment {
+
+    private final long baseOffset;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private volatile int end;
+    private volatile long maxTimestamp;
+
+    private LogSegment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer map) {
+        this.baseOffset = baseOffset;
+        this.path = path;
+        this.channel = channel;
+        this.map = map;
+    }
+
+    static LogSegment create(Path dir, long baseOffset, int capacity) throws IOException {
+        Path path = dir.resolve(String.format("%020d.log", baseOffset));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(baseOffset, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    /** Maps an existing segment and finds its end: the first record that is missing, torn or fails its checksum. */
+    static LogSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long base = Long.parseLong(name.substring(0, name.length() - ".log".length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        LogSegment segment = new LogSegment(base, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        int at = 0;
+        int length;
+        while ((length = EventCodec.validLength(segment.map, at)) > 0) {
+            segment.maxTimestamp = Math.max(segment.maxTimestamp, EventCodec.timestamp(segment.map, at));
+            at += length;
+        }
+        segment.end = at;
+        return segment;
+    }
+
+    long baseOffset() {
+        return baseOffset;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    MappedByteBuffer buffer() {
+        return map;
+    }
+
+    int end() {
+        return end;
+    }
+
+    int capacity() {
+        return map.capacity();
+    }
+
+    /** Newest record timestamp, 0 while the segment is empty. */
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    void advance(int bytes, long timestamp) {
+        if (timestamp > maxTimestamp) maxTimestamp = timestamp;
+        end += bytes;
+    }
+
+    void force() {
+        map.force();
+    }
+
+    void close() throws IOException {
+        map.force();
+        channel.close();
+    }
+
+    /** Closes and removes the file; readers still holding the mapping can finish with it. */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
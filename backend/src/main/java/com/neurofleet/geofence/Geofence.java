@@ -0,0 +1,141 @@
+package com.neurofleet.geofence;
+
+import java.util.*;
+
+/**
+ * One fence: a polygon ({@code coordinates}, at least three {@code {latitude, longitude}} points) or a circle
+ * ({@code center} and {@code radiusKm}). {@code key} is a process-local number that stays the same across
+ * edits, so vehicles already inside an edited fence are not re-entered.
+ */
+public final class Geofence {
+
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final String id;
+    private final int key;
+    private final String name;
+    private final String type;
+    private final long dwellMs;
+    private final Map<String, Object> document;
+
+    // Polygon vertices; empty for circles.
+    private final double[] lats;
+    private final double[] lons;
+    private final double centerLat;
+    private final double centerLon;
+    private final double radiusKm;
+
+    final double minLat, minLon, maxLat, maxLon;
+
+    private Geofence(String id, int key, String name, String type, long dwellMs, Map<String, Object> document,
+                     double[] lats, double[] lons, double centerLat, double centerLon, double radiusKm) {
+        this.id = id;
+        this.key = key;
+        this.name = name;
+        this.type = type;
+        this.dwellMs = dwellMs;
+        this.document = document;
+        this.lats = lats;
+        this.lons = lons;
+        this.centerLat = centerLat;
+        this.centerLon = centerLon;
+        this.radiusKm = radiusKm;
+        if (lats.length > 0) {
+            double a = Double.MAX_VALUE, b = Double.MAX_VALUE, c = -Double.MAX_VALUE, d = -Double.MAX_VALUE;
+            for (int i = 0; i < lats.length; i++) {
+                a = Math.min(a, lats[i]);
+                b = Math.min(b, lons[i]);
+                c = Math.max(c, lats[i]);
+                d = Math.max(d, lons[i]);
+            }
+            minLat = a;
+            minLon = b;
+            maxLat = c;
+            maxLon = d;
+        } else {
+            double dLat = radiusKm / KM_PER_DEGREE;
+            double dLon = radiusKm / (KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(centerLat))));
+            minLat = centerLat - dLat;
+            maxLat = centerLat + dLat;
+            minLon = centerLon - dLon;
+            maxLon = centerLon + dLon;
+        }
+    }
+
+    /**
+     * Validates a fence document. Throws {@link IllegalArgumentException} with a client-facing message when the
+     * shape is missing or malformed; {@code dwellSeconds} is optional and defaults to {@code defaultDwellMs}.
+     */
+    public static Geofence parse(String id, int key, Map<String, Object> doc, long defaultDwellMs) {
+        String name = Objects.toString(doc.get("name"), id);
+        String type = Objects.toString(doc.get("type"), "custom");
+        long dwellMs = doc.get("dwellSeconds") instanceof Number n ? Math.max(0, n.longValue() * 1000) : defaultDwellMs;
+        Map<String, Object> document = new LinkedHashMap<>(doc);
+        document.remove("id");
+
+        if (doc.get("coordinates") instanceof List<?> points) {
+            if (points.size() < 3) throw new IllegalArgumentException("A polygon geofence needs at least 3 coordinates.");
+            double[] lats = new double[points.size()];
+            double[] lons = new double[points.size()];
+            for (int i = 0; i < points.size(); i++) {
+                if (!(points.get(i) instanceof Map<?, ?> p)) throw new IllegalArgumentException("Coordinates must be {latitude, longitude} objects.");
+                lats[i] = coordinate(p.get("latitude"), 90);
+                lons[i] = coordinate(p.get("longitude"), 180);
+            }
+            return new Geofence(id, key, name, type, dwellMs, document, lats, lons, 0, 0, 0);
+        }
+        if (doc.get("center") instanceof Map<?, ?> center && doc.get("radiusKm") instanceof Number radius) {
+            if (radius.doubleValue() <= 0) throw new IllegalArgumentException("radiusKm must be positive.");
+            return new Geofence(id, key, name, type, dwellMs, document, new double[0], new double[0],
+                    coordinate(center.get("latitude"), 90), coordinate(center.get("longitude"), 180), radius.doubleValue());
+        }
+        throw new IllegalArgumentException("A geofence needs either coordinates or center and radiusKm.");
+    }
+
+    public String id() { return id; }
+    public int key() { return key; }
+    public String name() { return name; }
+    public String type() { return type; }
+    public long dwellMs() { return dwellMs; }
+
+    /** Even-odd ray cast for polygons, equirectangular distance for circles; both after a bounding-box reject. */
+    public boolean contains(double lat, double lon) {
+        if (lat < minLat || lat > maxLat || lon < minLon || lon > maxLon) return false;
+        if (lats.length == 0) {
+            double dLat = (lat - centerLat) * KM_PER_DEGREE;
+            double dLon = (lon - centerLon) * KM_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            return dLat * dLat + dLon * dLon <= radiusKm * radiusKm;
+        }
+        boolean inside = false;
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            if ((lats[i] > lat) != (lats[j] > lat)
+                    && lon < (lons[j] - lons[i]) * (lat - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> m = new LinkedHashMap<>(document);
+        m.put("id", id);
+        m.put("name", name);
+        m.put("type", type);
+        m.put("dwellSeconds", dwellMs / 1000);
+        return m;
+    }
+
+    /** The stored form, without the id. */
+    public Map<String, Object> document() {
+        Map<String, Object> m = toMap();
+        m.remove("id");
+        return m;
+    }
+
+    private static double coordinate(Object value, double bound) {
+        if (!(value instanceof Number n) || Math.abs(n.doubleValue()) > bound || Double.isNaN(n.doubleValue())) {
+            throw new IllegalArgumentException("Coordinates must be numbers within range.");
+        }
+        return n.doubleValue();
+    }
+}
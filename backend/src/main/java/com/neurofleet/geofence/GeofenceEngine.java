@@ -0,0 +1,341 @@
+package com.neurofleet.geofence;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.neurofleet.eventlog.EventLog;
+import com.neurofleet.service.FirestoreWriteBehind;
+import com.neurofleet.service.FleetStateStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import static com.neurofleet.service.FirestoreFutures.toCompletable;
+
+/**
+ * Checks vehicle positions against the fences once per tick. Fences live in the {@code geofences} collection and
+ * are indexed by {@link GeofenceIndex}; each check visits only the fences of the vehicle's cell, and vehicles that
+ * have not moved since the last check skip the geometry entirely. Per vehicle the engine remembers which fences
+ * it is inside and since when, and raises {@code enter}, {@code exit} and {@code dwell} (inside for the fence's
+ * {@code dwellSeconds}; 0 disables) events. The first observation of a vehicle only seeds its state, so a
+ * restart does not replay entries. Events go to the vehicle's event log and back to the tick loop to broadcast.
+ */
+@Service
+public class GeofenceEngine {
+
+    public static final String COLLECTION = "geofences";
+    public static final String ENTER = "enter";
+    public static final String EXIT = "exit";
+    public static final String DWELL = "dwell";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public record Event(String vehicleId, Geofence fence, String kind, long timestamp) {}
+
+    /** Fences one vehicle is inside; only allocated while that is at least one. */
+    private static final class Membership {
+        int[] keys = new int[2];
+        long[] enteredMs = new long[2];
+        long[] dwellMs = new long[2];
+        boolean[] dwelled = new boolean[2];
+        boolean[] seen = new boolean[2];
+        int size;
+        boolean pendingDwell;
+
+        int indexOf(int key) {
+            for (int i = 0; i < size; i++) if (keys[i] == key) return i;
+            return -1;
+        }
+
+        void add(int key, long nowMs, long dwell, boolean alreadyDwelled) {
+            if (size == keys.length) {
+                int n = size * 2;
+                keys = Arrays.copyOf(keys, n);
+                enteredMs = Arrays.copyOf(enteredMs, n);
+                dwellMs = Arrays.copyOf(dwellMs, n);
+                dwelled = Arrays.copyOf(dwelled, n);
+                seen = Arrays.copyOf(seen, n);
+            }
+            keys[size] = key;
+            enteredMs[size] = nowMs;
+            dwellMs[size] = dwell;
+            dwelled[size] = alreadyDwelled || dwell == 0;
+            seen[size] = true;
+            size++;
+        }
+
+        void removeAt(int i) {
+            int last = --size;
+            keys[i] = keys[last];
+            enteredMs[i] = enteredMs[last];
+            dwellMs[i] = dwellMs[last];
+            dwelled[i] = dwelled[last];
+            seen[i] = seen[last];
+        }
+    }
+
+    private final FleetStateStore store;
+    private final EventLog log;
+    private final Firestore db;
+    private final FirestoreWriteBehind writes;
+    private final double cellDegrees;
+    private final int maxCells;
+    private final long defaultDwellMs;
+
+    // Fence definitions, guarded by this; the index is swapped in whole.
+    private final Map<String, Geofence> fences = new LinkedHashMap<>();
+    private int nextKey = 1;
+    private volatile GeofenceIndex index = GeofenceIndex.EMPTY;
+    private GeofenceIndex tickIndex = GeofenceIndex.EMPTY;
+
+    // Per-slot state, written only by the shard that owns the slot during a tick.
+    private int[] generation = new int[0];
+    private int[] checkedVersion = new int[0];
+    private double[] checkedLat = new double[0];
+    private double[] checkedLon = new double[0];
+    private Membership[] inside = new Membership[0];
+
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final LongAdder memberships = new LongAdder();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder geometryChecks = new LongAdder();
+    private final LongAdder entered = new LongAdder();
+    private final LongAdder exited = new LongAdder();
+    private final LongAdder dwelled = new LongAdder();
+
+    public GeofenceEngine(FleetStateStore store, EventLog log, Firestore db, FirestoreWriteBehind writes,
+                          @Value("${app.geofence.cell-degrees:0.01}") double cellDegrees,
+                          @Value("${app.geofence.max-cells-per-fence:4096}") int maxCells,
+                          @Value("${app.geofence.dwell-seconds:300}") long dwellSeconds) {
+        this.store = store;
+        this.log = log;
+        this.db = db;
+        this.writes = writes;
+        this.cellDegrees = cellDegrees;
+        this.maxCells = maxCells;
+        this.defaultDwellMs = dwellSeconds * 1000;
+        if (db != null) load();
+    }
+
+    public synchronized List<Map<String, Object>> list() {
+        List<Map<String, Object>> out = new ArrayList<>(fences.size());
+        for (Geofence f : fences.values()) out.add(f.toMap());
+        return out;
+    }
+
+    public synchronized Map<String, Object> get(String id) {
+        Geofence f = fences.get(id);
+        return f != null ? f.toMap() : null;
+    }
+
+    /** Creates a fence under a new id; throws {@link IllegalArgumentException} if the document is invalid. */
+    public Map<String, Object> create(Map<String, Object> doc) {
+        String id = db != null ? db.collection(COLLECTION).document().getId() : UUID.randomUUID().toString();
+        return put(id, doc);
+    }
+
+    /** Replaces the fence; vehicles inside it stay inside unless the new shape excludes them. */
+    public synchronized Map<String, Object> put(String id, Map<String, Object> doc) {
+        Geofence existing = fences.get(id);
+        Geofence fence = Geofence.parse(id, existing != null ? existing.key() : nextKey++, doc, defaultDwellMs);
+        fences.put(id, fence);
+        rebuild();
+        if (db != null) writes.set(db.collection(COLLECTION).document(id), fence.document());
+        return fence.toMap();
+    }
+
+    /** Drops the fence; vehicles inside it are released without exit events. */
+    public synchronized boolean remove(String id) {
+        if (fences.remove(id) == null) return false;
+        rebuild();
+        if (db != null) writes.delete(db.collection(COLLECTION).document(id));
+        return true;
+    }
+
+    public synchronized boolean contains(String id) {
+        return fences.containsKey(id);
+    }
+
+    /** Called by the tick thread before the shards run. */
+    public void beginTick(int capacity) {
+        if (capacity > generation.length) {
+            int size = Math.max(capacity, generation.length * 2);
+            generation = Arrays.copyOf(generation, size);
+            checkedVersion = Arrays.copyOf(checkedVersion, size);
+            checkedLat = Arrays.copyOf(checkedLat, size);
+            checkedLon = Arrays.copyOf(checkedLon, size);
+            inside = Arrays.copyOf(inside, size);
+        }
+        tickIndex = index;
+    }
+
+    /** Brings the slot's fence membership up to date. Shards call this concurrently on disjoint slots. */
+    public void check(int slot, long nowMs) {
+        checks.increment();
+        GeofenceIndex idx = tickIndex;
+        int gen = store.generation(slot);
+        boolean fresh = generation[slot] != gen;
+        if (fresh) {
+            generation[slot] = gen;
+            if (inside[slot] != null) memberships.add(-inside[slot].size);
+            inside[slot] = null;
+        }
+        double lat = store.latitude(slot);
+        double lon = store.longitude(slot);
+        Membership m = inside[slot];
+        if (!fresh && lat == checkedLat[slot] && lon == checkedLon[slot] && checkedVersion[slot] == idx.version()) {
+            if (m != null && m.pendingDwell) dwell(slot, m, idx, nowMs);
+            return;
+        }
+        geometryChecks.increment();
+        checkedLat[slot] = lat;
+        checkedLon[slot] = lon;
+        checkedVersion[slot] = idx.version();
+
+        if (m != null) Arrays.fill(m.seen, 0, m.size, false);
+        m = visit(idx.candidates(lat, lon), slot, m, lat, lon, nowMs, fresh);
+        m = visit(idx.oversized(), slot, m, lat, lon, nowMs, fresh);
+        if (m != null) {
+            for (int i = m.size - 1; i >= 0; i--) {
+                if (m.seen[i]) continue;
+                Geofence fence = idx.byKey(m.keys[i]);
+                if (fence != null) emit(slot, fence, EXIT, nowMs);
+                m.removeAt(i);
+                memberships.decrement();
+            }
+            if (m.size == 0) m = null;
+            else dwell(slot, m, idx, nowMs);
+        }
+        inside[slot] = m;
+    }
+
+    /** Hands back this tick's events for {@code owned} vehicles after appending them to their event logs; the rest are dropped. */
+    public List<Event> endTick(Predicate<String> owned) {
+        if (events.isEmpty()) return List.of();
+        List<Event> out = new ArrayList<>();
+        for (Event e; (e = events.poll()) != null; ) {
+            if (!owned.test(e.vehicleId())) continue;
+            out.add(e);
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("geofenceId", e.fence().id());
+            details.put("name", e.fence().name());
+            details.put("type", e.fence().type());
+            log.append(EventLog.Entity.VEHICLE, e.vehicleId(), "geofence_" + e.kind(), details);
+        }
+        return out;
+    }
+
+    public Map<String, Object> getStats() {
+        GeofenceIndex idx = index;
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("fences", idx.size());
+        m.put("indexVersion", idx.version());
+        m.put("indexedCells", idx.cellCount());
+        m.put("oversizedFences", idx.oversizedCount());
+        m.put("memberships", memberships.sum());
+        m.put("checks", checks.sum());
+        m.put("geometryChecks", geometryChecks.sum());
+        m.put("entered", entered.sum());
+        m.put("exited", exited.sum());
+        m.put("dwelled", dwelled.sum());
+        return m;
+    }
+
+    /** One {@code geofence_events} frame for all events of a tick. */
+    public static byte[] encodeEvents(List<Event> events) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128 + events.size() * 128);
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "geofence_events");
+            gen.writeNumberField("timestamp", System.currentTimeMillis());
+            gen.writeArrayFieldStart("events");
+            for (Event e : events) {
+                gen.writeStartObject();
+                gen.writeStringField("vehicleId", e.vehicleId());
+                gen.writeStringField("event", e.kind());
+                gen.writeStringField("geofenceId", e.fence().id());
+                gen.writeStringField("name", e.fence().name());
+                gen.writeStringField("geofenceType", e.fence().type());
+                gen.writeNumberField("timestamp", e.timestamp());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private Membership visit(Geofence[] candidates, int slot, Membership m, double lat, double lon, long nowMs, boolean fresh) {
+        for (Geofence fence : candidates) {
+            if (!fence.contains(lat, lon)) continue;
+            if (m == null) m = new Membership();
+            int i = m.indexOf(fence.key());
+            if (i >= 0) {
+                m.seen[i] = true;
+                continue;
+            }
+            m.add(fence.key(), nowMs, fence.dwellMs(), fresh);
+            memberships.increment();
+            if (!fresh) emit(slot, fence, ENTER, nowMs);
+        }
+        return m;
+    }
+
+    private void dwell(int slot, Membership m, GeofenceIndex idx, long nowMs) {
+        boolean pending = false;
+        for (int i = 0; i < m.size; i++) {
+            if (m.dwelled[i]) continue;
+            if (nowMs - m.enteredMs[i] < m.dwellMs[i]) {
+                pending = true;
+                continue;
+            }
+            m.dwelled[i] = true;
+            Geofence fence = idx.byKey(m.keys[i]);
+            if (fence != null) emit(slot, fence, DWELL, nowMs);
+        }
+        m.pendingDwell = pending;
+    }
+
+    private void emit(int slot, Geofence fence, String kind, long nowMs) {
+        switch (kind) {
+            case ENTER -> entered.increment();
+            case EXIT -> exited.increment();
+            default -> dwelled.increment();
+        }
+        events.add(new Event(store.idAt(slot), fence, kind, nowMs));
+    }
+
+    // Called with the lock held.
+    private void rebuild() {
+        index = new GeofenceIndex(new ArrayList<>(fences.values()), cellDegrees, maxCells, index.version() + 1);
+    }
+
+    private void load() {
+        toCompletable("geofences.list", db.collection(COLLECTION).get()).thenAccept(snap -> {
+            synchronized (this) {
+                for (QueryDocumentSnapshot d : snap) {
+                    if (fences.containsKey(d.getId())) continue;
+                    try {
+                        fences.put(d.getId(), Geofence.parse(d.getId(), nextKey++, d.getData(), defaultDwellMs));
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("[GeofenceEngine] Skipping geofence " + d.getId() + ": " + e.getMessage());
+                    }
+                }
+                rebuild();
+                System.out.println("[GeofenceEngine] Loaded " + fences.size() + " geofences");
+            }
+        }).exceptionally(e -> {
+            System.out.println("[GeofenceEngine] Could not load geofences: " + e.getMessage());
+            return null;
+        });
+    }
+}
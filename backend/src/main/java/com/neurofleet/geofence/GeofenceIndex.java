@@ -0,0 +1,79 @@
+package com.neurofleet.geofence;
+
+import java.util.*;
+
+/**
+ * Immutable uniform grid over fence bounding boxes, rebuilt whenever a fence changes; readers grab the current
+ * instance and never lock. Each cell lists the fences whose box overlaps it, so a point test only visits the
+ * fences of one cell. Fences spanning more than {@code maxCells} cells are kept in a short list tested
+ * everywhere instead of bloating the grid.
+ */
+final class GeofenceIndex {
+
+    private static final Geofence[] NONE = new Geofence[0];
+    static final GeofenceIndex EMPTY = new GeofenceIndex(List.of(), 0.01, 1, 0);
+
+    private final double cellDegrees;
+    private final int version;
+    private final Map<Long, Geofence[]> cells = new HashMap<>();
+    private final Geofence[] oversized;
+    private final Map<Integer, Geofence> byKey = new HashMap<>();
+
+    GeofenceIndex(Collection<Geofence> fences, double cellDegrees, int maxCells, int version) {
+        this.cellDegrees = cellDegrees;
+        this.version = version;
+        Map<Long, List<Geofence>> building = new HashMap<>();
+        List<Geofence> large = new ArrayList<>();
+        for (Geofence f : fences) {
+            byKey.put(f.key(), f);
+            long r0 = cell(f.minLat), r1 = cell(f.maxLat), c0 = cell(f.minLon), c1 = cell(f.maxLon);
+            if ((r1 - r0 + 1) * (c1 - c0 + 1) > maxCells) {
+                large.add(f);
+                continue;
+            }
+            for (long r = r0; r <= r1; r++) {
+                for (long c = c0; c <= c1; c++) building.computeIfAbsent(key(r, c), k -> new ArrayList<>()).add(f);
+            }
+        }
+        building.forEach((k, list) -> cells.put(k, list.toArray(NONE)));
+        this.oversized = large.toArray(NONE);
+    }
+
+    int version() {
+        return version;
+    }
+
+    int size() {
+        return byKey.size();
+    }
+
+    int cellCount() {
+        return cells.size();
+    }
+
+    int oversizedCount() {
+        return oversized.length;
+    }
+
+    Geofence byKey(int key) {
+        return byKey.get(key);
+    }
+
+    /** Fences whose box overlaps the point's cell; callers must also test {@link #oversized()}. */
+    Geofence[] candidates(double lat, double lon) {
+        Geofence[] candidates = cells.get(key(cell(lat), cell(lon)));
+        return candidates != null ? candidates : NONE;
+    }
+
+    Geofence[] oversized() {
+        return oversized;
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) ^ (col & 0xffffffffL);
+    }
+}
@@ -0,0 +1,99 @@
+package com.neurofleet.ingest;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated ring of device reports drained by a single consumer thread. Any number of producers claim a
+ * sequence with a CAS on {@link #claim}, fill the entry's columns in place and publish it; the consumer takes
+ * the longest published run as one batch and frees it with a single release store. Nothing is allocated per
+ * report, and a full ring rejects instead of blocking the producer.
+ */
+final class IngestRing {
+
+    private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle CONSUMED;
+
+    static {
+        try {
+            CONSUMED = MethodHandles.lookup().findVarHandle(IngestRing.class, "consumed", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final long[] published;
+    @SuppressWarnings("unused")
+    private volatile long consumed;
+
+    // Entry columns, written by the claiming producer before it publishes.
+    final int[] slot;
+    final int[] generation;
+    final double[] latitude;
+    final double[] longitude;
+    final float[] battery;
+    final byte[] status;
+    final long[] timestampNanos;
+    final long[] enqueuedNanos;
+
+    IngestRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.published = new long[size];
+        Arrays.fill(published, -1);
+        this.slot = new int[size];
+        this.generation = new int[size];
+        this.latitude = new double[size];
+        this.longitude = new double[size];
+        this.battery = new float[size];
+        this.status = new byte[size];
+        this.timestampNanos = new long[size];
+        this.enqueuedNanos = new long[size];
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int index(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    /** Claims the next free entry, or returns -1 when the consumer is a whole ring behind. */
+    long claim() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - (long) CONSUMED.getAcquire(this) > mask) return -1;
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        return sequence;
+    }
+
+    void publish(long sequence) {
+        PUBLISHED.setRelease(published, index(sequence), sequence);
+    }
+
+    /** Entries claimed but not yet consumed, including ones still being filled. */
+    long depth() {
+        return claimed.get() - (long) CONSUMED.getAcquire(this);
+    }
+
+    interface BatchHandler {
+        void apply(IngestRing ring, long from, long to);
+    }
+
+    /** Hands the published run starting at the consumer's position, at most {@code max} long, to the handler. */
+    int drain(int max, BatchHandler handler) {
+        long from = (long) CONSUMED.getOpaque(this);
+        long to = from;
+        while (to - from < max && (long) PUBLISHED.getAcquire(published, index(to)) == to) to++;
+        if (to == from) return 0;
+        handler.apply(this, from, to);
+        CONSUMED.setRelease(this, to);
+        return (int) (to - from);
+    }
+}
@@ -0,0 +1,377 @@
+package com.neurofleet.ingest;
+
+import com.neurofleet.cluster.ClusterService;
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.service.LatencyRecorder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Device telemetry ingestion. Reports are resolved to a store slot on the caller's thread and claimed into the
+ * ring of the slot's shard; each shard has one consumer thread that applies whole batches to the store under a
+ * single read lock, so a vehicle is only ever written by one ingest thread, and holds each slot while writing it so
+ * the simulation cannot move it at the same time. Vehicles that reported within {@code app.ingest.stale-ms} are left
+ * alone by the simulation. Device timestamps in the future are taken as now.
+ * <p>
+ * Two wire formats are accepted, both carrying any number of reports:
+ * <ul>
+ *   <li>lines: {@code id,lat,lon[,battery[,status[,timestampMs]]]}, with empty fields left unchanged;</li>
+ *   <li>binary, big-endian per report: {@code u8 idLength, id, f64 lat, f64 lon, f32 battery (NaN = unchanged),
+ *   u8 statusLength, status, i64 timestampMs (0 = now)}.</li>
+ * </ul>
+ */
+@Service
+public class IngestService {
+
+    /** Per-request outcome counts. */
+    public static final class Result {
+        int accepted;
+        int unknown;
+        int notOwned;
+        int malformed;
+        int overflow;
+
+        public int accepted() {
+            return accepted;
+        }
+
+        public int overflow() {
+            return overflow;
+        }
+
+        public boolean refused() {
+            return unknown + notOwned + malformed + overflow > 0;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("accepted", accepted);
+            m.put("unknown", unknown);
+            m.put("notOwned", notOwned);
+            m.put("malformed", malformed);
+            m.put("overflow", overflow);
+            return m;
+        }
+    }
+
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final FleetStateStore store;
+    private final ClusterService cluster;
+    private final IngestRing[] rings;
+    private final Thread[] consumers;
+    private final int batchSize;
+    private final long idleParkNanos;
+    private final long staleMs;
+    private final byte[] key;
+    private volatile boolean running = true;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder notOwned = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong outOfOrder = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final LatencyRecorder batchLatency = new LatencyRecorder(4096);
+
+    public IngestService(FleetStateStore store, ClusterService cluster,
+                         @Value("${app.ingest.shards:4}") int shards,
+                         @Value("${app.ingest.ring-capacity:65536}") int ringCapacity,
+                         @Value("${app.ingest.batch-size:1024}") int batchSize,
+                         @Value("${app.ingest.idle-park-us:100}") long idleParkUs,
+                         @Value("${app.ingest.stale-ms:15000}") long staleMs,
+                         @Value("${app.ingest.key:}") String key) {
+        this.store = store;
+        this.cluster = cluster;
+        this.batchSize = Math.max(1, batchSize);
+        this.idleParkNanos = idleParkUs * 1000;
+        this.staleMs = staleMs;
+        this.key = key.getBytes(StandardCharsets.UTF_8);
+        this.rings = new IngestRing[Math.max(1, shards)];
+        this.consumers = new Thread[rings.length];
+        for (int i = 0; i < rings.length; i++) {
+            IngestRing ring = rings[i] = new IngestRing(ringCapacity);
+            consumers[i] = new Thread(() -> consume(ring), "ingest-" + i);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Thread t : consumers) LockSupport.unpark(t);
+    }
+
+    /** Devices present the shared {@code app.ingest.key}; with no key configured, ingestion is closed. */
+    public boolean authorized(String presented) {
+        return key.length > 0 && presented != null && MessageDigest.isEqual(key, presented.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Whether a device reported the vehicle recently enough that the simulation should not move it. */
+    public boolean isReporting(int slot, long nowMs) {
+        return nowMs - store.reportedMs(slot) < staleMs;
+    }
+
+    /** Parses newline-separated reports; blank lines and lines starting with {@code #} are skipped. */
+    public Result ingestLines(CharSequence body) {
+        Result result = new Result();
+        long receivedNanos = nowNanos();
+        int length = body.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && body.charAt(end) != '\n') end++;
+            int last = end;
+            if (last > start && body.charAt(last - 1) == '\r') last--;
+            if (last > start && body.charAt(start) != '#') parseLine(body, start, last, receivedNanos, result);
+            start = end + 1;
+        }
+        record(result);
+        return result;
+    }
+
+    /** Parses back-to-back binary reports; a truncated trailing report counts as malformed. */
+    public Result ingestBinary(ByteBuffer buffer) {
+        Result result = new Result();
+        long receivedNanos = nowNanos();
+        byte[] text = new byte[255];
+        while (buffer.hasRemaining()) {
+            try {
+                int idLength = buffer.get() & 0xff;
+                buffer.get(text, 0, idLength);
+                String id = new String(text, 0, idLength, StandardCharsets.UTF_8);
+                double lat = buffer.getDouble();
+                double lon = buffer.getDouble();
+                float battery = buffer.getFloat();
+                int statusLength = buffer.get() & 0xff;
+                buffer.get(text, 0, statusLength);
+                byte status = statusLength == 0 ? -1 : statusCode(new String(text, 0, statusLength, StandardCharsets.UTF_8));
+                long timestampMs = buffer.getLong();
+                try {
+                    offer(id, lat, lon, battery, status, timestampMs == 0 ? receivedNanos : timestampNanos(timestampMs, receivedNanos), result);
+                } catch (NumberFormatException e) {
+                    result.malformed++;
+                }
+            } catch (BufferUnderflowException e) {
+                result.malformed++;
+                break;
+            }
+        }
+        record(result);
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("accepted", accepted.sum());
+        m.put("applied", applied.get());
+        m.put("unknown", unknown.sum());
+        m.put("notOwned", notOwned.sum());
+        m.put("malformed", malformed.sum());
+        m.put("overflow", overflow.sum());
+        m.put("outOfOrder", outOfOrder.get());
+        long b = batches.get();
+        m.put("batches", b);
+        m.put("meanBatchSize", b == 0 ? 0.0 : (double) applied.get() / b);
+        long[] depth = new long[rings.length];
+        for (int i = 0; i < rings.length; i++) depth[i] = rings[i].depth();
+        m.put("shards", rings.length);
+        m.put("ringCapacity", rings[0].capacity());
+        m.put("ringDepth", depth);
+        // Time from the oldest report of a batch being queued to the batch being applied.
+        m.put("batchLatency", batchLatency.snapshot());
+        return m;
+    }
+
+    private void parseLine(CharSequence line, int start, int end, long receivedNanos, Result result) {
+        try {
+            int[] bounds = new int[7];
+            int fields = 0;
+            bounds[0] = start;
+            for (int i = start; i < end && fields < 5; i++) {
+                if (line.charAt(i) == ',') bounds[++fields] = i + 1;
+            }
+            bounds[fields + 1] = end + 1;
+            if (fields < 2) {
+                result.malformed++;
+                return;
+            }
+            String id = field(line, bounds, 0).toString().trim();
+            double lat = number(line, bounds[1], bounds[2] - 1);
+            double lon = number(line, bounds[2], bounds[3] - 1);
+            float battery = fields >= 3 && !blank(line, bounds, 3) ? (float) number(line, bounds[3], bounds[4] - 1) : Float.NaN;
+            byte status = fields >= 4 && !blank(line, bounds, 4) ? statusCode(field(line, bounds, 4).toString().trim()) : -1;
+            long timestampNanos = fields >= 5 && !blank(line, bounds, 5)
+                    ? timestampNanos(Long.parseLong(field(line, bounds, 5).toString().trim()), receivedNanos) : receivedNanos;
+            offer(id, lat, lon, battery, status, timestampNanos, result);
+        } catch (NumberFormatException e) {
+            result.malformed++;
+        }
+    }
+
+    // A device clock running ahead must not stamp the vehicle past every later report, so future times become now.
+    private static long timestampNanos(long timestampMs, long receivedNanos) {
+        if (timestampMs < 0 || timestampMs > Long.MAX_VALUE / 1_000_000L) throw new NumberFormatException("Timestamp out of range: " + timestampMs);
+        return Math.min(timestampMs * 1_000_000L, receivedNanos);
+    }
+
+    private static CharSequence field(CharSequence line, int[] bounds, int i) {
+        return line.subSequence(bounds[i], bounds[i + 1] - 1);
+    }
+
+    /**
+     * Plain decimals with at most 15 significant digits, which covers coordinates and battery levels, are exact as
+     * a long and a power of ten, so one division rounds correctly; anything else goes to {@link Double#parseDouble}.
+     */
+    static double number(CharSequence text, int from, int to) {
+        while (from < to && text.charAt(from) == ' ') from++;
+        while (to > from && text.charAt(to - 1) == ' ') to--;
+        int i = from;
+        boolean negative = i < to && text.charAt(i) == '-';
+        if (negative || i < to && text.charAt(i) == '+') i++;
+        long mantissa = 0;
+        int read = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                read++;
+                if (mantissa != 0) digits++;
+                if (scale >= 0) scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < to || read == 0 || digits > 15 || scale > 22) return Double.parseDouble(text.subSequence(from, to).toString());
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private static boolean blank(CharSequence line, int[] bounds, int i) {
+        for (int c = bounds[i]; c < bounds[i + 1] - 1; c++) if (!Character.isWhitespace(line.charAt(c))) return false;
+        return true;
+    }
+
+    // Only statuses the store already knows; a device must not be able to intern arbitrary strings.
+    private byte statusCode(String name) {
+        String[] names = store.statusNames();
+        for (int i = 0; i < names.length; i++) if (names[i].equals(name)) return (byte) i;
+        return -2;
+    }
+
+    private void offer(String id, double lat, double lon, float battery, byte status, long timestampNanos, Result result) {
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180) || battery < 0 || battery > 100 || status == -2) {
+            result.malformed++;
+            return;
+        }
+        int slot = store.slotOf(id);
+        if (slot < 0) {
+            result.unknown++;
+            return;
+        }
+        // With clustering on, the owner simulates and relays each vehicle, so reports must go to the owner.
+        if (!cluster.ownsId(id)) {
+            result.notOwned++;
+            return;
+        }
+        IngestRing ring = rings[slot % rings.length];
+        long sequence = ring.claim();
+        if (sequence < 0) {
+            result.overflow++;
+            return;
+        }
+        int i = ring.index(sequence);
+        ring.slot[i] = slot;
+        ring.generation[i] = store.generation(slot);
+        ring.latitude[i] = lat;
+        ring.longitude[i] = lon;
+        ring.battery[i] = battery;
+        ring.status[i] = status;
+        ring.timestampNanos[i] = timestampNanos;
+        ring.enqueuedNanos[i] = System.nanoTime();
+        ring.publish(sequence);
+        result.accepted++;
+    }
+
+    private void record(Result result) {
+        accepted.add(result.accepted);
+        unknown.add(result.unknown);
+        notOwned.add(result.notOwned);
+        malformed.add(result.malformed);
+        overflow.add(result.overflow);
+    }
+
+    private void consume(IngestRing ring) {
+        int idle = 0;
+        while (running) {
+            if (ring.drain(batchSize, this::apply) > 0) {
+                idle = 0;
+            } else if (++idle < 64) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(idleParkNanos);
+            }
+        }
+    }
+
+    private void apply(IngestRing ring, long from, long to) {
+        long nowMs = System.currentTimeMillis();
+        int[] stale = new int[1];
+        store.readLocked(() -> {
+            for (long seq = from; seq < to; seq++) {
+                int i = ring.index(seq);
+                int slot = ring.slot[i];
+                // The vehicle was removed, or its slot reused, after the report was queued.
+                if (store.idAt(slot) == null || store.generation(slot) != ring.generation[i]) continue;
+                store.lockSlot(slot);
+                try {
+                    if (ring.timestampNanos[i] < store.lastUpdateNanos(slot) && store.reportedMs(slot) != 0) {
+                        stale[0]++;
+                        continue;
+                    }
+                    // Set first: a tick shard waiting on this slot sees it reporting once it gets the slot.
+                    store.setReportedMs(slot, nowMs);
+                    store.setPosition(slot, ring.latitude[i], ring.longitude[i]);
+                    if (!Float.isNaN(ring.battery[i])) store.setBattery(slot, ring.battery[i]);
+                    byte status = ring.status[i];
+                    if (status >= 0 && store.status(slot) != status) store.setStatus(slot, status);
+                    store.setLastUpdateNanos(slot, ring.timestampNanos[i]);
+                } finally {
+                    store.unlockSlot(slot);
+                }
+            }
+        });
+        batches.incrementAndGet();
+        applied.addAndGet(to - from - stale[0]);
+        outOfOrder.addAndGet(stale[0]);
+        batchLatency.record(System.nanoTime() - ring.enqueuedNanos[ring.index(from)]);
+    }
+
+    private static long nowNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+}
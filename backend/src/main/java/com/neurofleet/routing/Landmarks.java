@@ -0,0 +1,70 @@
+package com.neurofleet.routing;
+
+import java.util.Arrays;
+
+/**
+ * ALT lower bounds: exact travel times to and from a few landmarks spread around the graph edge. By the
+ * triangle inequality, {@code max(d(L,t) - d(L,v), d(v,L) - d(t,L))} never overestimates d(v,t), and with
+ * landmarks "behind" the target it is far tighter than straight-line distance at top speed.
+ */
+final class Landmarks {
+
+    private static final int UNREACHABLE = RouteSearch.UNREACHABLE;
+
+    private final int count;
+    private final int[][] from; // from[l][v] = d(landmark l, v)
+    private final int[][] to;   // to[l][v]   = d(v, landmark l)
+
+    Landmarks(RoadGraph graph, RouteSearch search, int count) {
+        int n = graph.nodeCount();
+        this.count = Math.min(count, n);
+        this.from = new int[this.count][];
+        this.to = new int[this.count][];
+        if (this.count == 0) return;
+
+        // Farthest-point selection: each new landmark maximises its distance to those already chosen.
+        int[] nearestLandmark = new int[n];
+        Arrays.fill(nearestLandmark, Integer.MAX_VALUE);
+        int[] seed = new int[n];
+        search.fullSearch(0, false, seed);
+        int next = farthest(seed);
+        for (int l = 0; l < this.count; l++) {
+            from[l] = new int[n];
+            to[l] = new int[n];
+            search.fullSearch(next, false, from[l]);
+            search.fullSearch(next, true, to[l]);
+            for (int v = 0; v < n; v++) nearestLandmark[v] = Math.min(nearestLandmark[v], from[l][v]);
+            next = farthest(nearestLandmark);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    long memoryBytes() {
+        return 8L * count * (count == 0 ? 0 : from[0].length);
+    }
+
+    /** Lower bound on the travel time from {@code node} to {@code target}, in ms. */
+    int lowerBound(int node, int target) {
+        long best = 0;
+        for (int l = 0; l < count; l++) {
+            int lv = from[l][node], lt = from[l][target];
+            if (lv != UNREACHABLE && lt != UNREACHABLE) best = Math.max(best, (long) lt - lv);
+            int vl = to[l][node], tl = to[l][target];
+            if (vl != UNREACHABLE && tl != UNREACHABLE) best = Math.max(best, (long) vl - tl);
+        }
+        return (int) best;
+    }
+
+    private static int farthest(int[] distances) {
+        int best = 0;
+        for (int v = 1; v < distances.length; v++) {
+            int d = distances[v] == UNREACHABLE ? -1 : distances[v];
+            int b = distances[best] == UNREACHABLE ? -1 : distances[best];
+            if (d > b) best = v;
+        }
+        return best;
+    }
+}
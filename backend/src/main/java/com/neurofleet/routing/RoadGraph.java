@@ -0,0 +1,133 @@
+package com.neurofleet.routing;
+
+import com.neurofleet.service.GeoGridIndex;
+
+import java.util.Arrays;
+
+/**
+ * Directed road graph in compressed sparse row form. Node coordinates are stored as fixed-point
+ * micro-degrees; each edge carries its travel time and length. A transposed copy of the adjacency
+ * is kept so many-to-one searches (vehicles converging on one pickup) can run backwards.
+ */
+public final class RoadGraph implements GeoGridIndex.LatLon {
+
+    private final int nodeCount;
+    private final int[] latE6;
+    private final int[] lonE6;
+    private final int[] firstOut;
+    private final int[] outTarget;
+    private final int[] outTimeMs;
+    private final int[] outLengthM;
+    private final int[] firstIn;
+    private final int[] inSource;
+    private final int[] inTimeMs;
+    private final double maxSpeedMps;
+
+    private RoadGraph(int nodeCount, int[] latE6, int[] lonE6, int[] from, int[] to, int[] timeMs, int[] lengthM, int edgeCount) {
+        this.nodeCount = nodeCount;
+        this.latE6 = latE6;
+        this.lonE6 = lonE6;
+
+        firstOut = new int[nodeCount + 1];
+        outTarget = new int[edgeCount];
+        outTimeMs = new int[edgeCount];
+        outLengthM = new int[edgeCount];
+        int[] outOrder = countingSort(from, edgeCount, firstOut);
+        for (int i = 0; i < edgeCount; i++) {
+            int e = outOrder[i];
+            outTarget[i] = to[e];
+            outTimeMs[i] = timeMs[e];
+            outLengthM[i] = lengthM[e];
+        }
+
+        firstIn = new int[nodeCount + 1];
+        inSource = new int[edgeCount];
+        inTimeMs = new int[edgeCount];
+        int[] inOrder = countingSort(to, edgeCount, firstIn);
+        for (int i = 0; i < edgeCount; i++) {
+            int e = inOrder[i];
+            inSource[i] = from[e];
+            inTimeMs[i] = timeMs[e];
+        }
+
+        double fastest = 1;
+        for (int e = 0; e < edgeCount; e++) {
+            if (timeMs[e] > 0) fastest = Math.max(fastest, lengthM[e] * 1000.0 / timeMs[e]);
+        }
+        this.maxSpeedMps = fastest;
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public int edgeCount() { return outTarget.length; }
+    @Override
+    public double latitude(int node) { return latE6[node] / 1e6; }
+    @Override
+    public double longitude(int node) { return lonE6[node] / 1e6; }
+    /** Fastest speed on any edge; keeps the A* travel-time heuristic admissible. */
+    public double maxSpeedMps() { return maxSpeedMps; }
+
+    int firstOut(int node) { return firstOut[node]; }
+    int endOut(int node) { return firstOut[node + 1]; }
+    int outTarget(int edge) { return outTarget[edge]; }
+    int outTimeMs(int edge) { return outTimeMs[edge]; }
+    int outLengthM(int edge) { return outLengthM[edge]; }
+    int firstIn(int node) { return firstIn[node]; }
+    int endIn(int node) { return firstIn[node + 1]; }
+    int inSource(int edge) { return inSource[edge]; }
+    int inTimeMs(int edge) { return inTimeMs[edge]; }
+
+    /** Heap bytes held by the primitive arrays, excluding object headers. */
+    public long memoryBytes() {
+        return 4L * (latE6.length + lonE6.length + firstOut.length + outTarget.length + outTimeMs.length
+                + outLengthM.length + firstIn.length + inSource.length + inTimeMs.length);
+    }
+
+    private int[] countingSort(int[] keys, int edgeCount, int[] offsets) {
+        for (int e = 0; e < edgeCount; e++) offsets[keys[e] + 1]++;
+        for (int n = 0; n < nodeCount; n++) offsets[n + 1] += offsets[n];
+        int[] cursor = Arrays.copyOf(offsets, nodeCount);
+        int[] order = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) order[cursor[keys[e]]++] = e;
+        return order;
+    }
+
+    /** Accumulates nodes and edges in growable primitive arrays, then freezes them into CSR form. */
+    public static final class Builder {
+        private int nodes;
+        private int[] latE6 = new int[1024];
+        private int[] lonE6 = new int[1024];
+        private int edges;
+        private int[] from = new int[4096];
+        private int[] to = new int[4096];
+        private int[] timeMs = new int[4096];
+        private int[] lengthM = new int[4096];
+
+        public int addNode(double lat, double lon) {
+            if (nodes == latE6.length) {
+                latE6 = Arrays.copyOf(latE6, nodes * 2);
+                lonE6 = Arrays.copyOf(lonE6, nodes * 2);
+            }
+            latE6[nodes] = (int) Math.round(lat * 1e6);
+            lonE6[nodes] = (int) Math.round(lon * 1e6);
+            return nodes++;
+        }
+
+        public void addEdge(int fromNode, int toNode, int lengthMeters, int travelTimeMs) {
+            if (edges == from.length) {
+                from = Arrays.copyOf(from, edges * 2);
+                to = Arrays.copyOf(to, edges * 2);
+                timeMs = Arrays.copyOf(timeMs, edges * 2);
+                lengthM = Arrays.copyOf(lengthM, edges * 2);
+            }
+            from[edges] = fromNode;
+            to[edges] = toNode;
+            lengthM[edges] = lengthMeters;
+            timeMs[edges] = travelTimeMs;
+            edges++;
+        }
+
+        public RoadGraph build() {
+            return new RoadGraph(nodes, Arrays.copyOf(latE6, nodes), Arrays.copyOf(lonE6, nodes), from, to, timeMs, lengthM, edges);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.neurofleet.routing;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a road network from a CSV edge list, one road segment per line:
+ * <pre>from_id,from_lat,from_lon,to_id,to_lat,to_lon,length_m,speed_kmh[,oneway]</pre>
+ * Node ids are arbitrary (e.g. OSM node ids) and are renumbered densely. Segments are two-way unless
+ * {@code oneway} is {@code 1}, {@code yes} or {@code true}. Blank lines, {@code #} comments and a header row are skipped.
+ */
+public final class RoadGraphLoader {
+
+    private RoadGraphLoader() {}
+
+    public static RoadGraph loadCsv(Path path) throws IOException {
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        Map<Long, Integer> nodes = new HashMap<>();
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                if (lineNumber == 1 && !isNumber(f[0])) continue;
+                if (f.length < 8) throw new IOException("Line " + lineNumber + ": expected at least 8 columns");
+                try {
+                    int from = node(builder, nodes, Long.parseLong(f[0].trim()), Double.parseDouble(f[1]), Double.parseDouble(f[2]));
+                    int to = node(builder, nodes, Long.parseLong(f[3].trim()), Double.parseDouble(f[4]), Double.parseDouble(f[5]));
+                    double lengthM = Double.parseDouble(f[6]);
+                    double speedKmh = Double.parseDouble(f[7]);
+                    if (speedKmh <= 0) continue;
+                    int timeMs = (int) Math.round(lengthM / (speedKmh / 3.6) * 1000);
+                    builder.addEdge(from, to, (int) Math.round(lengthM), timeMs);
+                    if (f.length < 9 || !isOneWay(f[8])) builder.addEdge(to, from, (int) Math.round(lengthM), timeMs);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static int node(RoadGraph.Builder builder, Map<Long, Integer> nodes, long id, double lat, double lon) {
+        Integer index = nodes.get(id);
+        if (index == null) {
+            index = builder.addNode(lat, lon);
+            nodes.put(id, index);
+        }
+        return index;
+    }
+
+    private static boolean isOneWay(String value) {
+        String v = value.trim();
+        return v.equals("1") || v.equalsIgnoreCase("yes") || v.equalsIgnoreCase("true");
+    }
+
+    private static boolean isNumber(String value) {
+        try {
+            Long.parseLong(value.trim());
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.neurofleet.routing;
+
+/** A shortest path by travel time; {@code nodes} runs from source to target inclusive. */
+public record Route(int travelTimeMs, int lengthMeters, int settledNodes, int[] nodes) {}
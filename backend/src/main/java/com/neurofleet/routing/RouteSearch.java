@@ -0,0 +1,235 @@
+package com.neurofleet.routing;
+
+import com.neurofleet.service.GeoGridIndex;
+
+import java.util.Arrays;
+
+/**
+ * Reusable search state over one {@link RoadGraph}. Distance and parent arrays are sized once and
+ * invalidated by bumping a stamp instead of clearing, so a query only touches the nodes it settles.
+ * Not thread-safe; {@link RoutingService} keeps one instance per thread.
+ */
+final class RouteSearch {
+
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final RoadGraph graph;
+    private final Landmarks landmarks;
+    private final int[] dist;
+    private final int[] parentEdge;
+    private final int[] stamp;
+    private final boolean[] settled;
+    private final int[] targetStamp;
+    private int currentStamp;
+    private int settledCount;
+
+    private int[] heapNodes = new int[256];
+    private double[] heapKeys = new double[256];
+    private int heapSize;
+
+    RouteSearch(RoadGraph graph, Landmarks landmarks) {
+        this.graph = graph;
+        this.landmarks = landmarks;
+        int n = graph.nodeCount();
+        dist = new int[n];
+        parentEdge = new int[n];
+        stamp = new int[n];
+        settled = new boolean[n];
+        targetStamp = new int[n];
+    }
+
+    /** Nodes settled by the last query; a measure of search effort. */
+    int settledCount() {
+        return settledCount;
+    }
+
+    /**
+     * A* from {@code source} to {@code target} by travel time. The heuristic is the larger of great-circle distance
+     * at the graph's top speed and the landmark bound; neither overestimates, so the first time the target is
+     * settled its time is optimal.
+     */
+    Route shortestPath(int source, int target) {
+        reset();
+        double targetLat = graph.latitude(target), targetLon = graph.longitude(target);
+        double msPerKm = 1_000_000.0 / graph.maxSpeedMps();
+        visit(source, 0, -1);
+        push(source, heuristic(source, target, targetLat, targetLon, msPerKm));
+        while (heapSize > 0) {
+            int node = pop();
+            if (settled[node]) continue;
+            settled[node] = true;
+            settledCount++;
+            if (node == target) return trace(source, target);
+            int base = dist[node];
+            for (int e = graph.firstOut(node), end = graph.endOut(node); e < end; e++) {
+                int next = graph.outTarget(e);
+                int candidate = base + graph.outTimeMs(e);
+                if (candidate < distance(next)) {
+                    visit(next, candidate, e);
+                    push(next, candidate + heuristic(next, target, targetLat, targetLon, msPerKm));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Plain Dijkstra from {@code origin} until every node in {@code nodes} is settled or {@code cutoffMs} is passed.
+     * Forward searches give origin-to-node times; {@code reverse} walks incoming edges and gives node-to-origin times.
+     */
+    void oneToMany(int origin, int[] nodes, boolean reverse, int cutoffMs, int[] outTimeMs) {
+        reset();
+        int remaining = 0;
+        for (int node : nodes) {
+            if (node >= 0 && targetStamp[node] != currentStamp) {
+                targetStamp[node] = currentStamp;
+                remaining++;
+            }
+        }
+        if (remaining > 0) dijkstra(origin, reverse, cutoffMs, remaining);
+        for (int i = 0; i < nodes.length; i++) outTimeMs[i] = settledTime(nodes[i], cutoffMs);
+    }
+
+    /** Travel times from (or, reversed, to) {@code origin} for every node; used to build landmark tables. */
+    void fullSearch(int origin, boolean reverse, int[] outTimeMs) {
+        reset();
+        dijkstra(origin, reverse, UNREACHABLE, -1);
+        for (int node = 0; node < outTimeMs.length; node++) outTimeMs[node] = settledTime(node, UNREACHABLE);
+    }
+
+    /** Settles nodes in time order until {@code remaining} targets are found (never, when negative) or the cutoff. */
+    private void dijkstra(int origin, boolean reverse, int cutoffMs, int remaining) {
+        visit(origin, 0, -1);
+        push(origin, 0);
+        while (heapSize > 0 && remaining != 0) {
+            int node = pop();
+            if (settled[node]) continue;
+            settled[node] = true;
+            settledCount++;
+            int base = dist[node];
+            if (base > cutoffMs) break;
+            if (remaining > 0 && targetStamp[node] == currentStamp) remaining--;
+            if (reverse) {
+                for (int e = graph.firstIn(node), end = graph.endIn(node); e < end; e++) {
+                    relax(graph.inSource(e), base + graph.inTimeMs(e));
+                }
+            } else {
+                for (int e = graph.firstOut(node), end = graph.endOut(node); e < end; e++) {
+                    relax(graph.outTarget(e), base + graph.outTimeMs(e));
+                }
+            }
+        }
+    }
+
+    private int settledTime(int node, int cutoffMs) {
+        return node >= 0 && stamp[node] == currentStamp && settled[node] && dist[node] <= cutoffMs ? dist[node] : UNREACHABLE;
+    }
+
+    private void relax(int next, int candidate) {
+        if (candidate < distance(next)) {
+            visit(next, candidate, -1);
+            push(next, candidate);
+        }
+    }
+
+    private Route trace(int source, int target) {
+        int hops = 0;
+        int lengthM = 0;
+        for (int node = target; node != source; ) {
+            int e = parentEdge[node];
+            lengthM += graph.outLengthM(e);
+            node = sourceOf(e);
+            hops++;
+        }
+        int[] path = new int[hops + 1];
+        int node = target;
+        for (int i = hops; i > 0; i--) {
+            path[i] = node;
+            node = sourceOf(parentEdge[node]);
+        }
+        path[0] = source;
+        return new Route(dist[target], lengthM, settledCount, path);
+    }
+
+    /** Tail of a forward edge: the CSR block it falls in. */
+    private int sourceOf(int edge) {
+        int lo = 0, hi = graph.nodeCount() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (graph.firstOut(mid) <= edge) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    private double heuristic(int node, int target, double targetLat, double targetLon, double msPerKm) {
+        double geometric = GeoGridIndex.haversineKm(graph.latitude(node), graph.longitude(node), targetLat, targetLon) * msPerKm;
+        return landmarks == null ? geometric : Math.max(geometric, landmarks.lowerBound(node, target));
+    }
+
+    private void reset() {
+        heapSize = 0;
+        settledCount = 0;
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            Arrays.fill(targetStamp, 0);
+            currentStamp = 1;
+        }
+    }
+
+    private int distance(int node) {
+        return stamp[node] == currentStamp ? dist[node] : UNREACHABLE;
+    }
+
+    private void visit(int node, int distance, int edge) {
+        touch(node);
+        dist[node] = distance;
+        parentEdge[node] = edge;
+    }
+
+    private void touch(int node) {
+        if (stamp[node] != currentStamp) {
+            stamp[node] = currentStamp;
+            dist[node] = UNREACHABLE;
+            settled[node] = false;
+            parentEdge[node] = -1;
+        }
+    }
+
+    // Binary min-heap with lazy deletion: stale entries are skipped when popped.
+    private void push(int node, double key) {
+        if (heapSize == heapNodes.length) {
+            heapNodes = Arrays.copyOf(heapNodes, heapSize * 2);
+            heapKeys = Arrays.copyOf(heapKeys, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapKeys[parent] <= key) break;
+            heapNodes[i] = heapNodes[parent];
+            heapKeys[i] = heapKeys[parent];
+            i = parent;
+        }
+        heapNodes[i] = node;
+        heapKeys[i] = key;
+    }
+
+    private int pop() {
+        int top = heapNodes[0];
+        int lastNode = heapNodes[--heapSize];
+        double lastKey = heapKeys[heapSize];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heapKeys[child + 1] < heapKeys[child]) child++;
+            if (heapKeys[child] >= lastKey) break;
+            heapNodes[i] = heapNodes[child];
+            heapKeys[i] = heapKeys[child];
+            i = child;
+        }
+        heapNodes[i] = lastNode;
+        heapKeys[i] = lastKey;
+        return top;
+    }
+}
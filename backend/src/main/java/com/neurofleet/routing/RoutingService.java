@@ -0,0 +1,217 @@
+package com.neurofleet.routing;
+
+import com.neurofleet.service.GeoGridIndex;
+import com.neurofleet.service.LatencyRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Travel-time routing over the road graph at {@code app.routing.graph-path}. Points are snapped to the nearest
+ * graph node through a grid index; point-to-point queries run A* guided by ALT landmark bounds. Searches borrow preallocated {@link RouteSearch} state from a small pool sized
+ * to the CPU count, which bounds both concurrency and the per-search memory held. Without a graph the service
+ * reports itself unavailable and callers fall back to straight-line distance.
+ */
+@Service
+public class RoutingService {
+
+    private final RoadGraph graph;
+    private final GeoGridIndex nodeIndex;
+    private final Landmarks landmarks;
+    private final double snapRadiusKm;
+    private final BlockingQueue<RouteSearch> searches;
+    private final int poolSize;
+    private final String source;
+    private final long loadMillis;
+
+    private final AtomicLong routeQueries = new AtomicLong();
+    private final AtomicLong matrixQueries = new AtomicLong();
+    private final AtomicLong unreachable = new AtomicLong();
+    private final LatencyRecorder routeLatency = new LatencyRecorder(4096);
+    private final LatencyRecorder matrixLatency = new LatencyRecorder(1024);
+
+    @Autowired
+    public RoutingService(@Value("${app.routing.graph-path:}") String graphPath,
+                          @Value("${app.routing.snap-radius-km:1}") double snapRadiusKm,
+                          @Value("${app.routing.landmarks:8}") int landmarkCount) {
+        this(load(graphPath), graphPath, snapRadiusKm, landmarkCount);
+    }
+
+    /** Builds the service over an already loaded graph; used by tooling that generates graphs in memory. */
+    public RoutingService(RoadGraph graph, String source, double snapRadiusKm, int landmarkCount) {
+        long start = System.nanoTime();
+        this.graph = graph;
+        this.source = source;
+        this.snapRadiusKm = snapRadiusKm;
+        this.poolSize = Runtime.getRuntime().availableProcessors();
+        this.searches = new ArrayBlockingQueue<>(poolSize);
+        if (graph != null) {
+            nodeIndex = new GeoGridIndex(0.01);
+            nodeIndex.ensureCapacity(graph.nodeCount());
+            for (int n = 0; n < graph.nodeCount(); n++) nodeIndex.update(n, graph.latitude(n), graph.longitude(n));
+            landmarks = landmarkCount > 0 ? new Landmarks(graph, new RouteSearch(graph, null), landmarkCount) : null;
+            for (int i = 0; i < poolSize; i++) searches.add(new RouteSearch(graph, landmarks));
+        } else {
+            nodeIndex = null;
+            landmarks = null;
+        }
+        this.loadMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    public boolean isAvailable() {
+        return graph != null;
+    }
+
+    /** Fastest route between two points, or {@code null} when either point is off the graph or no path exists. */
+    public Map<String, Object> route(double fromLat, double fromLon, double toLat, double toLon) {
+        if (graph == null) return null;
+        int from = snap(fromLat, fromLon), to = snap(toLat, toLon);
+        if (from < 0 || to < 0) return null;
+        long start = System.nanoTime();
+        Route route = withSearch(search -> search.shortestPath(from, to));
+        routeLatency.record(System.nanoTime() - start);
+        routeQueries.incrementAndGet();
+        if (route == null) {
+            unreachable.incrementAndGet();
+            return null;
+        }
+        List<double[]> path = new ArrayList<>(route.nodes().length);
+        for (int node : route.nodes()) path.add(new double[]{graph.latitude(node), graph.longitude(node)});
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("travelTimeSeconds", route.travelTimeMs() / 1000.0);
+        m.put("distanceKm", route.lengthMeters() / 1000.0);
+        m.put("settledNodes", route.settledNodes());
+        m.put("path", path);
+        return m;
+    }
+
+    /**
+     * Travel times in seconds from every source to every target; {@code null} where a point cannot be snapped
+     * or a target is unreachable. Runs one forward search per source that stops once all targets are settled.
+     */
+    public List<List<Double>> matrix(double[][] sources, double[][] targets) {
+        if (graph == null) return null;
+        long start = System.nanoTime();
+        int[] targetNodes = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) targetNodes[i] = snap(targets[i][0], targets[i][1]);
+        List<List<Double>> rows = new ArrayList<>(sources.length);
+        int[] times = new int[targets.length];
+        for (double[] s : sources) {
+            int origin = snap(s[0], s[1]);
+            List<Double> row = new ArrayList<>(targets.length);
+            if (origin < 0) {
+                for (int i = 0; i < targets.length; i++) row.add(null);
+            } else {
+                withSearch(search -> {
+                    search.oneToMany(origin, targetNodes, false, RouteSearch.UNREACHABLE, times);
+                    return null;
+                });
+                for (int t : times) row.add(t == RouteSearch.UNREACHABLE ? null : t / 1000.0);
+            }
+            rows.add(row);
+        }
+        matrixLatency.record(System.nanoTime() - start);
+        matrixQueries.incrementAndGet();
+        return rows;
+    }
+
+    /**
+     * Driving time in seconds from each point to one destination, {@code NaN} where unknown. One backward search
+     * from the destination over incoming edges answers every origin, which suits many vehicles converging on a pickup.
+     */
+    public double[] etaSecondsTo(double[] fromLat, double[] fromLon, double toLat, double toLon, double maxSeconds) {
+        double[] eta = new double[fromLat.length];
+        Arrays.fill(eta, Double.NaN);
+        if (graph == null) return eta;
+        int destination = snap(toLat, toLon);
+        if (destination < 0) return eta;
+        int[] origins = new int[fromLat.length];
+        for (int i = 0; i < origins.length; i++) origins[i] = snap(fromLat[i], fromLon[i]);
+        int[] times = new int[origins.length];
+        int cutoff = (int) Math.min(Integer.MAX_VALUE - 1L, (long) (maxSeconds * 1000));
+        withSearch(search -> {
+            search.oneToMany(destination, origins, true, cutoff, times);
+            return null;
+        });
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] != RouteSearch.UNREACHABLE) eta[i] = times[i] / 1000.0;
+        }
+        return eta;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("available", graph != null);
+        m.put("source", source);
+        if (graph != null) {
+            m.put("nodes", graph.nodeCount());
+            m.put("edges", graph.edgeCount());
+            m.put("graphBytes", graph.memoryBytes());
+            m.put("searchStateBytes", 17L * graph.nodeCount() * poolSize); // dist, parent, stamps, settled per search
+            m.put("landmarks", landmarks == null ? 0 : landmarks.count());
+            m.put("landmarkBytes", landmarks == null ? 0 : landmarks.memoryBytes());
+            m.put("maxSpeedKmh", graph.maxSpeedMps() * 3.6);
+            m.put("preprocessMs", loadMillis);
+        }
+        m.put("routeQueries", routeQueries.get());
+        m.put("matrixQueries", matrixQueries.get());
+        m.put("unreachable", unreachable.get());
+        m.put("routeLatency", routeLatency.snapshot());
+        m.put("matrixLatency", matrixLatency.snapshot());
+        return m;
+    }
+
+    private int snap(double lat, double lon) {
+        int[] nearest = {-1};
+        nodeIndex.nearest(lat, lon, snapRadiusKm, 1, node -> true, graph, (node, distance) -> nearest[0] = node);
+        return nearest[0];
+    }
+
+    private interface SearchTask<T> {
+        T run(RouteSearch search);
+    }
+
+    private <T> T withSearch(SearchTask<T> task) {
+        RouteSearch search;
+        try {
+            search = searches.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a route search", e);
+        }
+        try {
+            return task.run(search);
+        } finally {
+            searches.add(search);
+        }
+    }
+
+    private static RoadGraph load(String graphPath) {
+        if (graphPath == null || graphPath.isBlank()) {
+            System.out.println("[RoutingService] No road graph configured (app.routing.graph-path); routing disabled.");
+            return null;
+        }
+        Path path = Path.of(graphPath);
+        if (!Files.isReadable(path)) {
+            System.out.println("[RoutingService] Road graph not found at " + path + "; routing disabled.");
+            return null;
+        }
+        try {
+            long start = System.nanoTime();
+            RoadGraph graph = RoadGraphLoader.loadCsv(path);
+            System.out.println("[RoutingService] Loaded " + graph.nodeCount() + " nodes, " + graph.edgeCount() + " edges ("
+                    + graph.memoryBytes() / 1024 + " KiB) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return graph;
+        } catch (Exception e) {
+            System.out.println("[RoutingService] Failed to load road graph: " + e.getMessage());
+            return null;
+        }
+    }
+}
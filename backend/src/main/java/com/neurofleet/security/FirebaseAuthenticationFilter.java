@@ -1,39 +1,57 @@
 package com.neurofleet.security;
 
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseToken;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class FirebaseAuthenticationFilter extends OncePerRequestFilter {
 
+    private final TokenCache tokens;
+    private final Timer accepted;
+    private final Timer rejected;
+
+    public FirebaseAuthenticationFilter(TokenCache tokens, MeterRegistry registry) {
+        this.tokens = tokens;
+        this.accepted = verificationTimer(registry, "success");
+        this.rejected = verificationTimer(registry, "rejected");
+    }
+
+    private static Timer verificationTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("auth.token.verification")
+                .description("Bearer token checks, including token cache hits")
+                .tags("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String header = request.getHeader("Authorization");
         if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
             String token = header.substring(7);
+            long start = System.nanoTime();
             try {
-                FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
-                String role = decoded.getClaims().get("role") != null ? decoded.getClaims().get("role").toString() : null;
-                SimpleGrantedAuthority authority = role != null ? new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()) : null;
-                Authentication auth = new UsernamePasswordAuthenticationToken(decoded.getUid(), null,
-                        authority != null ? Collections.singletonList(authority) : Collections.emptyList());
+                Authentication auth = tokens.authenticate(token);
+                accepted.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 SecurityContextHolder.getContext().setAuthentication(auth);
             } catch (Exception e) {
+                rejected.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 return;
             }
@@ -0,0 +1,22 @@
+package com.neurofleet.security;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseToken;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+public class FirebaseTokenVerifier implements TokenVerifier {
+
+    @Override
+    public VerifiedToken verify(String token) throws Exception {
+        FirebaseToken decoded = FirebaseAuth.getInstance().verifyIdToken(token);
+        Map<String, Object> claims = decoded.getClaims();
+        return new VerifiedToken(decoded.getUid(), claims, seconds(claims.get("iat")), seconds(claims.get("exp")));
+    }
+
+    private static long seconds(Object claim) {
+        return claim instanceof Number n ? n.longValue() : 0;
+    }
+}
@@ -0,0 +1,102 @@
+package com.neurofleet.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Verifies RS256 JWTs against a local public key instead of Firebase, so load tests and benchmarks can mint their
+ * own ID tokens. Only active with the {@code loadtest} profile and {@code app.auth.local-public-key} pointing at a PEM
+ * or DER X.509 public key; it then replaces {@link FirebaseTokenVerifier}. Tokens must carry the configured
+ * {@code iss} and {@code aud}, so a key minted for one environment is not accepted by another.
+ */
+@Component
+@Primary
+@Profile("loadtest")
+@ConditionalOnProperty(name = "app.auth.local-public-key")
+public class LocalKeyTokenVerifier implements TokenVerifier {
+
+    private static final Base64.Decoder URL = Base64.getUrlDecoder();
+
+    private final PublicKey key;
+    private final String issuer;
+    private final String audience;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Autowired
+    public LocalKeyTokenVerifier(@Value("${app.auth.local-public-key}") String keyPath,
+                                 @Value("${app.auth.local-issuer:}") String issuer,
+                                 @Value("${app.auth.local-audience:}") String audience) throws IOException, GeneralSecurityException {
+        this(readKey(keyPath), issuer, audience);
+        System.out.println("[LocalKeyTokenVerifier] Verifying ID tokens with the local key " + keyPath + " instead of Firebase.");
+    }
+
+    public LocalKeyTokenVerifier(PublicKey key, String issuer, String audience) {
+        if (issuer.isBlank() || audience.isBlank()) {
+            throw new IllegalStateException("app.auth.local-issuer and app.auth.local-audience must be set with app.auth.local-public-key");
+        }
+        this.key = key;
+        this.issuer = issuer;
+        this.audience = audience;
+    }
+
+    @Override
+    public VerifiedToken verify(String token) throws Exception {
+        int first = token.indexOf('.');
+        int second = token.indexOf('.', first + 1);
+        if (first < 0 || second < 0) throw new BadCredentialsException("Malformed token");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> header = mapper.readValue(URL.decode(token.substring(0, first)), Map.class);
+        if (!"RS256".equals(header.get("alg"))) throw new BadCredentialsException("Unsupported token algorithm");
+
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(key);
+        signature.update(token.substring(0, second).getBytes(StandardCharsets.US_ASCII));
+        if (!signature.verify(URL.decode(token.substring(second + 1)))) throw new BadCredentialsException("Invalid token signature");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> claims = mapper.readValue(URL.decode(token.substring(first + 1, second)), Map.class);
+        long issuedAt = seconds(claims.get("iat"));
+        long expiresAt = seconds(claims.get("exp"));
+        if (expiresAt <= System.currentTimeMillis() / 1000) throw new BadCredentialsException("Token has expired");
+        if (!issuer.equals(claims.get("iss"))) throw new BadCredentialsException("Unexpected token issuer");
+        Object aud = claims.get("aud");
+        if (!(audience.equals(aud) || aud instanceof Collection<?> list && list.contains(audience))) {
+            throw new BadCredentialsException("Unexpected token audience");
+        }
+        Object uid = claims.get("sub");
+        if (uid == null) throw new BadCredentialsException("Token has no subject");
+        return new VerifiedToken(uid.toString(), claims, issuedAt, expiresAt);
+    }
+
+    private static PublicKey readKey(String path) throws IOException, GeneralSecurityException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        if (text.contains("-----BEGIN PUBLIC KEY-----")) {
+            bytes = Base64.getMimeDecoder().decode(text.replaceAll("-----[A-Z ]+-----", ""));
+        }
+        return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(bytes));
+    }
+
+    private static long seconds(Object claim) {
+        return claim instanceof Number n ? n.longValue() : 0;
+    }
+}
@@ -0,0 +1,94 @@
+package com.neurofleet.security;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Applies {@link RateLimiter} to {@code /api/**} after authentication, so signed-in callers are limited by UID and
+ * anonymous ones by address. Refusals are 429 with Retry-After. Device ingestion has its own backpressure and is
+ * left alone. A bulkhead permit is held until an async request completes, not just until its controller returns.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter limiter;
+
+    public RateLimitFilter(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return !limiter.isEnabled() || !path.startsWith("/api/") || path.startsWith("/api/ingest");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        String key = auth != null && !(auth instanceof AnonymousAuthenticationToken) ? "uid:" + auth.getName() : "ip:" + request.getRemoteAddr();
+        long waitNanos = limiter.acquire(key);
+        if (waitNanos > 0) {
+            reject(response, waitNanos, "Too many requests");
+            return;
+        }
+        RateLimiter.Bulkhead bulkhead = limiter.bulkhead(request.getMethod(), request.getRequestURI());
+        if (bulkhead == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (!bulkhead.tryAcquire()) {
+            reject(response, 1_000_000_000L, "Too many concurrent requests for " + bulkhead.route());
+            return;
+        }
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Release(bulkhead));
+                async = true;
+            }
+        } finally {
+            if (!async) bulkhead.release();
+        }
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_TOO_MANY_REQUESTS);
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+        response.setContentType("application/json");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    /** onComplete follows every async outcome, including timeouts and errors, so it is the one place to release. */
+    private record Release(RateLimiter.Bulkhead bulkhead) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            bulkhead.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
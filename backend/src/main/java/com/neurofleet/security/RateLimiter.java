@@ -0,0 +1,201 @@
+package com.neurofleet.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the REST API: a request rate limit per caller and concurrency limits on expensive routes.
+ * <p>
+ * The rate limit is a token bucket in GCRA form: each caller has one "theoretical arrival time", which every
+ * admitted request pushes one interval (1/rate) further out, and a request is refused if that would put it more than
+ * {@code burst} intervals ahead of now. Admitting a request is a map lookup and a compare-and-set. A bucket whose
+ * arrival time has passed is full again, so the sweep can drop it without losing anything; new callers beyond
+ * max-keys share one overflow bucket until it does.
+ * <p>
+ * Bulkheads ({@code METHOD pattern=limit}, Ant-style patterns) cap the requests in flight on a route; a request that
+ * finds its route full is refused immediately instead of waiting on a container thread.
+ */
+@Component
+public class RateLimiter {
+
+    /** A concurrency limit for the requests matching one route. */
+    public static final class Bulkhead {
+        private final String method;
+        private final String pattern;
+        private final int limit;
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+        Bulkhead(String method, String pattern, int limit) {
+            this.method = method;
+            this.pattern = pattern;
+            this.limit = limit;
+        }
+
+        public boolean tryAcquire() {
+            while (true) {
+                int n = active.get();
+                if (n >= limit) {
+                    rejected.incrementAndGet();
+                    return false;
+                }
+                if (active.compareAndSet(n, n + 1)) return true;
+            }
+        }
+
+        public void release() {
+            active.decrementAndGet();
+        }
+
+        public String route() {
+            return method + " " + pattern;
+        }
+    }
+
+    private static final long EVICTION_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final double ratePerSecond;
+    private final int burst;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int maxKeys;
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+    private final List<Bulkhead> bulkheads = new ArrayList<>();
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong limited = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+
+    public RateLimiter(@Value("${app.ratelimit.enabled:true}") boolean enabled,
+                       @Value("${app.ratelimit.rate-per-sec:50}") double ratePerSecond,
+                       @Value("${app.ratelimit.burst:100}") int burst,
+                       @Value("${app.ratelimit.max-keys:100000}") int maxKeys,
+                       @Value("${app.ratelimit.bulkheads:}") String bulkheads,
+                       MeterRegistry registry) {
+        if (ratePerSecond <= 0 || burst < 1) throw new IllegalStateException("app.ratelimit.rate-per-sec and burst must be positive");
+        this.enabled = enabled;
+        this.ratePerSecond = ratePerSecond;
+        this.burst = burst;
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.toleranceNanos = intervalNanos * burst;
+        this.maxKeys = maxKeys;
+        for (String spec : bulkheads.split(",")) {
+            if (!spec.isBlank()) this.bulkheads.add(parse(spec.trim()));
+        }
+
+        Gauge.builder("ratelimit.keys", buckets, Map::size).description("Callers with rate limit state").register(registry);
+        FunctionCounter.builder("ratelimit.requests", admitted, AtomicLong::get)
+                .description("Requests checked against the per-caller rate limit").tags("outcome", "admitted").register(registry);
+        FunctionCounter.builder("ratelimit.requests", limited, AtomicLong::get)
+                .description("Requests checked against the per-caller rate limit").tags("outcome", "limited").register(registry);
+        FunctionCounter.builder("ratelimit.overflow", overflowed, AtomicLong::get)
+                .description("Requests charged to the shared bucket because max-keys callers were tracked").register(registry);
+        for (Bulkhead b : this.bulkheads) {
+            Gauge.builder("ratelimit.bulkhead.active", b.active, AtomicInteger::get)
+                    .description("Requests in flight on a concurrency-limited route").tags("route", b.route()).register(registry);
+            FunctionCounter.builder("ratelimit.bulkhead.rejected", b.rejected, AtomicLong::get)
+                    .description("Requests refused because their route was at its concurrency limit").tags("route", b.route()).register(registry);
+        }
+        if (enabled) {
+            System.out.println("[RateLimiter] " + ratePerSecond + " requests/s per caller, burst " + burst + ", bulkheads "
+                    + this.bulkheads.stream().map(b -> b.route() + "=" + b.limit).toList());
+        }
+    }
+
+    private static Bulkhead parse(String spec) {
+        int space = spec.indexOf(' ');
+        int eq = spec.lastIndexOf('=');
+        if (space < 0 || eq < space) throw new IllegalStateException("app.ratelimit.bulkheads entries look like 'GET /api/vehicles=8', got '" + spec + "'");
+        return new Bulkhead(spec.substring(0, space).toUpperCase(), spec.substring(space + 1, eq).trim(),
+                Integer.parseInt(spec.substring(eq + 1).trim()));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** 0 if the caller may go ahead, otherwise how many nanoseconds until it may. */
+    public long acquire(String key) {
+        if (!enabled) return 0;
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(key, now);
+        while (true) {
+            long arrival = bucket.get();
+            long ahead = Math.max(arrival - now, 0) + intervalNanos;
+            if (ahead > toleranceNanos) {
+                limited.incrementAndGet();
+                return ahead - toleranceNanos;
+            }
+            if (bucket.compareAndSet(arrival, now + ahead)) {
+                admitted.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucket(String key, long now) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) return bucket;
+        if (buckets.size() >= maxKeys) {
+            // Scanning for full buckets is O(keys); at most one caller does it per second.
+            long last = lastEviction.get();
+            if (now - last > EVICTION_BACKOFF_NANOS && lastEviction.compareAndSet(last, now)) evictFull(now);
+            if (buckets.size() >= maxKeys) {
+                overflowed.incrementAndGet();
+                return overflow;
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /** The bulkhead guarding this request's route, or null if the route has none. */
+    public Bulkhead bulkhead(String method, String path) {
+        if (!enabled) return null;
+        for (Bulkhead b : bulkheads) {
+            if (b.method.equals(method) && matcher.match(b.pattern, path)) return b;
+        }
+        return null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.ratelimit.sweep-ms:60000}")
+    public void sweep() {
+        evictFull(System.nanoTime());
+    }
+
+    private void evictFull(long now) {
+        buckets.values().removeIf(arrival -> arrival.get() - now <= 0);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("ratePerSecond", ratePerSecond);
+        s.put("burst", burst);
+        s.put("keys", buckets.size());
+        s.put("maxKeys", maxKeys);
+        s.put("admitted", admitted.get());
+        s.put("limited", limited.get());
+        s.put("overflowed", overflowed.get());
+        Map<String, Object> routes = new LinkedHashMap<>();
+        for (Bulkhead b : bulkheads) {
+            routes.put(b.route(), Map.of("limit", b.limit, "active", b.active.get(), "rejected", b.rejected.get()));
+        }
+        s.put("bulkheads", routes);
+        return s;
+    }
+}
@@ -1,22 +1,38 @@
 package com.neurofleet.security;
 
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.authorization.AuthorityAuthorizationManager;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
 @Configuration
 @EnableMethodSecurity
 public class SecurityConfig {
 
     private final FirebaseAuthenticationFilter firebaseAuthenticationFilter;
+    private final RateLimitFilter rateLimitFilter;
+    private final byte[] scrapeToken;
 
-    public SecurityConfig(FirebaseAuthenticationFilter firebaseAuthenticationFilter) {
+    public SecurityConfig(FirebaseAuthenticationFilter firebaseAuthenticationFilter, RateLimitFilter rateLimitFilter,
+                          @Value("${app.metrics.scrape-token:}") String scrapeToken) {
         this.firebaseAuthenticationFilter = firebaseAuthenticationFilter;
+        this.rateLimitFilter = rateLimitFilter;
+        this.scrapeToken = scrapeToken.getBytes(StandardCharsets.UTF_8);
     }
 
     @Bean
@@ -26,11 +42,39 @@ public class SecurityConfig {
             .csrf(csrf -> csrf.disable())
             .sessionManagement(sm -> sm.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Async controllers complete on an ASYNC re-dispatch; the original request was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/", "/api/auth/**").permitAll()
                 .requestMatchers("/ws/**").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
+                .requestMatchers("/actuator/prometheus").access(scrapeAccess())
+                // Devices authenticate with the ingest key, checked by the endpoint itself
+                .requestMatchers(HttpMethod.POST, "/api/ingest").permitAll()
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(firebaseAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(firebaseAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            .addFilterAfter(rateLimitFilter, FirebaseAuthenticationFilter.class);
         return http.build();
     }
+
+    /** Admins, or a scraper presenting {@code app.metrics.scrape-token} in {@code X-Scrape-Token}; unset, only admins. */
+    private AuthorizationManager<RequestAuthorizationContext> scrapeAccess() {
+        AuthorizationManager<RequestAuthorizationContext> admin = AuthorityAuthorizationManager.hasRole("ADMIN");
+        return (authentication, context) -> {
+            String presented = context.getRequest().getHeader("X-Scrape-Token");
+            if (scrapeToken.length > 0 && presented != null
+                    && MessageDigest.isEqual(scrapeToken, presented.getBytes(StandardCharsets.UTF_8))) {
+                return new AuthorizationDecision(true);
+            }
+            return admin.check(authentication, context);
+        };
+    }
+
+    // The limiter needs the authenticated caller, so it must only run inside the security chain, never ahead of it
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter filter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
 }
\ No newline at end of file
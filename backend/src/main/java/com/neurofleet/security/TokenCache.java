@@ -0,0 +1,146 @@
+package com.neurofleet.security;
+
+import com.neurofleet.service.LatencyRecorder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches verified ID tokens so a dashboard polling with the same token pays for signature verification once.
+ * Entries are keyed by the token's SHA-256 (the raw token is never stored), hold a ready-built
+ * {@link Authentication}, and expire at the token's {@code exp}. Revoking a user purges its entries and rejects
+ * any of its tokens issued before the revocation, cached or not.
+ */
+@Component
+public class TokenCache {
+
+    private record Entry(Authentication authentication, String uid, long issuedAt, long expiresAtMillis) {}
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final TokenVerifier verifier;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> revokedAt = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong rejectedRevoked = new AtomicLong();
+    private final LatencyRecorder verifyLatency = new LatencyRecorder(1024);
+
+    public TokenCache(TokenVerifier verifier,
+                      @Value("${app.auth.token-cache.enabled:true}") boolean enabled,
+                      @Value("${app.auth.token-cache.max-entries:10000}") int maxEntries) {
+        this.verifier = verifier;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+    }
+
+    /** The authentication for {@code token}, verifying it only on a cache miss. */
+    public Authentication authenticate(String token) throws Exception {
+        long now = System.currentTimeMillis();
+        String key = enabled ? hash(token) : null;
+        Entry entry = key != null ? entries.get(key) : null;
+        if (entry != null) {
+            if (now < entry.expiresAtMillis()) {
+                checkNotRevoked(entry.uid(), entry.issuedAt());
+                hits.incrementAndGet();
+                return entry.authentication();
+            }
+            if (entries.remove(key, entry)) expirations.incrementAndGet();
+        }
+        misses.incrementAndGet();
+
+        long start = System.nanoTime();
+        TokenVerifier.VerifiedToken verified = verifier.verify(token);
+        verifyLatency.record(System.nanoTime() - start);
+        checkNotRevoked(verified.uid(), verified.issuedAt());
+
+        Object role = verified.claims().get("role");
+        List<SimpleGrantedAuthority> authorities = role != null
+                ? List.of(new SimpleGrantedAuthority("ROLE_" + role.toString().toUpperCase()))
+                : List.of();
+        Authentication auth = new UsernamePasswordAuthenticationToken(verified.uid(), null, authorities);
+
+        long expiresAtMillis = verified.expiresAt() * 1000;
+        if (key != null && expiresAtMillis > now) {
+            if (entries.size() >= maxEntries) evictExpired(now);
+            if (entries.size() < maxEntries) entries.put(key, new Entry(auth, verified.uid(), verified.issuedAt(), expiresAtMillis));
+        }
+        return auth;
+    }
+
+    /** Revocation hook: drops the user's cached tokens and rejects any of theirs issued up to now. */
+    public void revoke(String uid) {
+        revokedAt.put(uid, System.currentTimeMillis() / 1000);
+        entries.values().removeIf(e -> e.uid().equals(uid));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    // ID tokens live an hour, so older revocation markers can no longer match anything.
+    @Scheduled(fixedDelayString = "${app.auth.token-cache.sweep-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        evictExpired(now);
+        revokedAt.values().removeIf(at -> at < now / 1000 - 3600);
+    }
+
+    public Map<String, Object> getStats() {
+        long h = hits.get(), m = misses.get();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("enabled", enabled);
+        s.put("entries", entries.size());
+        s.put("maxEntries", maxEntries);
+        s.put("hits", h);
+        s.put("misses", m);
+        s.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        s.put("expirations", expirations.get());
+        s.put("revokedUsers", revokedAt.size());
+        s.put("rejectedRevoked", rejectedRevoked.get());
+        s.put("verifyLatency", verifyLatency.snapshot());
+        return s;
+    }
+
+    private void checkNotRevoked(String uid, long issuedAt) {
+        Long revoked = revokedAt.get(uid);
+        if (revoked != null && issuedAt <= revoked) {
+            rejectedRevoked.incrementAndGet();
+            throw new BadCredentialsException("Token has been revoked");
+        }
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(e -> {
+            boolean expired = e.expiresAtMillis() <= now;
+            if (expired) expirations.incrementAndGet();
+            return expired;
+        });
+    }
+
+    private static String hash(String token) {
+        byte[] digest = SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(digest);
+    }
+}
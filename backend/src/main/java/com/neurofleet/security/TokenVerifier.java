@@ -0,0 +1,12 @@
+package com.neurofleet.security;
+
+import java.util.Map;
+
+/** Checks an ID token's signature and claims. Firebase in production; a local key pair in benchmarks. */
+public interface TokenVerifier {
+
+    /** Decoded token; {@code issuedAt} and {@code expiresAt} are epoch seconds. */
+    record VerifiedToken(String uid, Map<String, Object> claims, long issuedAt, long expiresAt) {}
+
+    VerifiedToken verify(String token) throws Exception;
+}
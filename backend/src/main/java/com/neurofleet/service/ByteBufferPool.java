@@ -0,0 +1,46 @@
+package com.neurofleet.service;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reusable scratch buffers for frame encoding, so a tick does not allocate and grow fresh arrays for every group.
+ * Buffers larger than {@code maxBufferBytes} or beyond {@code maxPooled} are left to the collector.
+ */
+public class ByteBufferPool {
+
+    private final Queue<ByteBuffer> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+    private final int maxPooled;
+    private final int maxBufferBytes;
+
+    public ByteBufferPool(int maxPooled, int maxBufferBytes) {
+        this.maxPooled = maxPooled;
+        this.maxBufferBytes = maxBufferBytes;
+    }
+
+    /** A cleared buffer of at least {@code minBytes}. */
+    public ByteBuffer acquire(int minBytes) {
+        acquired.incrementAndGet();
+        for (ByteBuffer b; (b = free.poll()) != null; ) {
+            pooled.decrementAndGet();
+            if (b.capacity() >= minBytes) return b.clear();
+        }
+        allocated.incrementAndGet();
+        return ByteBuffer.allocate(Math.max(minBytes, 4096));
+    }
+
+    public void release(ByteBuffer buffer) {
+        if (buffer.capacity() > maxBufferBytes || pooled.get() >= maxPooled) return;
+        pooled.incrementAndGet();
+        free.offer(buffer);
+    }
+
+    public long acquired() { return acquired.get(); }
+    public long allocated() { return allocated.get(); }
+}
@@ -0,0 +1,257 @@
+package com.neurofleet.service;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Local cache of one top-level Firestore collection. While a snapshot listener is attached and the collection
+ * fits in {@code maxEntries}, every document is mirrored and reads never leave the process; the list view is an
+ * immutable snapshot rebuilt only after a change. Otherwise reads go through an LRU of documents plus one cached
+ * list, both expiring after {@code ttlMs}, with concurrent misses sharing one Firestore call.
+ * Local writes (reported by {@link FirestoreWriteBehind}) are applied to the mirror or evict read-through entries.
+ */
+public class CollectionCache implements FirestoreWriteBehind.WriteObserver {
+
+    private record Entry<T>(T value, long loadedNanos) {}
+
+    private final String collection;
+    private final Firestore db;
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    // Mirror, guarded by this.
+    private ListenerRegistration registration;
+    private final Map<String, Map<String, Object>> mirror = new HashMap<>();
+    private boolean synced;
+    private List<Map<String, Object>> listView;
+    private volatile long lastEventNanos;
+
+    // Read-through, guarded by this.
+    private final LinkedHashMap<String, Entry<Map<String, Object>>> entries;
+    private Entry<List<Map<String, Object>>> listEntry;
+    private long generation;
+    private final Map<String, CompletableFuture<Map<String, Object>>> inflight = new ConcurrentHashMap<>();
+    private CompletableFuture<List<Map<String, Object>>> inflightList;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong listenerEvents = new AtomicLong();
+    private final AtomicLong servedAgeNanos = new AtomicLong();
+    private final LongAccumulator maxServedAgeNanos = new LongAccumulator(Math::max, 0);
+
+    public CollectionCache(String collection, Firestore db, int maxEntries, long ttlMs) {
+        this.collection = collection;
+        this.db = db;
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<Map<String, Object>>> eldest) {
+                if (size() <= CollectionCache.this.maxEntries) return false;
+                evictions.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    /** Attaches the snapshot listener that keeps the mirror in sync. */
+    public synchronized void listen() {
+        if (registration != null) return;
+        registration = db.collection(collection).addSnapshotListener(this::onSnapshot);
+    }
+
+    public synchronized void close() {
+        if (registration != null) registration.remove();
+        registration = null;
+        synced = false;
+        mirror.clear();
+        listView = null;
+    }
+
+    /** All documents, each with its {@code id}; the list and maps are immutable. */
+    public CompletableFuture<List<Map<String, Object>>> list() {
+        long gen;
+        synchronized (this) {
+            if (synced) {
+                hits.incrementAndGet();
+                if (listView == null) listView = List.copyOf(mirror.values());
+                return CompletableFuture.completedFuture(listView);
+            }
+            if (listEntry != null && fresh(listEntry)) return CompletableFuture.completedFuture(served(listEntry).value());
+            misses.incrementAndGet();
+            if (inflightList != null) return inflightList;
+            gen = generation;
+            inflightList = FirestoreFutures.toCompletable(collection + ".list", db.collection(collection).get()).thenApply(snapshot -> {
+                List<Map<String, Object>> list = new ArrayList<>(snapshot.size());
+                for (QueryDocumentSnapshot d : snapshot.getDocuments()) list.add(document(d));
+                return Collections.unmodifiableList(list);
+            });
+        }
+        CompletableFuture<List<Map<String, Object>>> load = inflightList;
+        load.whenComplete((list, error) -> {
+            synchronized (this) {
+                if (inflightList == load) inflightList = null;
+                if (list != null && generation == gen) listEntry = new Entry<>(list, System.nanoTime());
+            }
+        });
+        return load;
+    }
+
+    /** One document with its {@code id}, or {@code null} when it does not exist. */
+    public CompletableFuture<Map<String, Object>> get(String id) {
+        long gen;
+        synchronized (this) {
+            if (synced) {
+                hits.incrementAndGet();
+                return CompletableFuture.completedFuture(mirror.get(id));
+            }
+            Entry<Map<String, Object>> entry = entries.get(id);
+            if (entry != null && fresh(entry)) return CompletableFuture.completedFuture(served(entry).value());
+            misses.incrementAndGet();
+            gen = generation;
+        }
+        CompletableFuture<Map<String, Object>> load = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> shared = inflight.putIfAbsent(id, load);
+        if (shared != null) return shared;
+        FirestoreFutures.toCompletable(collection + ".get", db.collection(collection).document(id).get()).whenComplete((doc, error) -> {
+            inflight.remove(id, load);
+            if (error != null) {
+                load.completeExceptionally(error);
+                return;
+            }
+            Map<String, Object> value = doc.exists() ? document(doc) : null;
+            synchronized (this) {
+                if (generation == gen) entries.put(id, new Entry<>(value, System.nanoTime()));
+            }
+            load.complete(value);
+        });
+        return load;
+    }
+
+    @Override
+    public void queued(DocumentReference ref, FirestoreWriteBehind.Kind kind, Map<String, Object> data) {
+        String id = topLevelId(ref);
+        if (id == null) return;
+        synchronized (this) {
+            if (synced) {
+                // Optimistic: the listener replaces this with the committed document once the write lands.
+                Map<String, Object> current = mirror.get(id);
+                if (kind == FirestoreWriteBehind.Kind.DELETE) {
+                    mirror.remove(id);
+                } else {
+                    Map<String, Object> next = new HashMap<>();
+                    if (kind == FirestoreWriteBehind.Kind.MERGE && current != null) next.putAll(current);
+                    for (Map.Entry<String, Object> field : data.entrySet()) {
+                        Object value = field.getValue();
+                        next.put(field.getKey(), value instanceof Date date ? Timestamp.of(date) : value);
+                    }
+                    next.put("id", id);
+                    mirror.put(id, Collections.unmodifiableMap(next));
+                }
+                listView = null;
+            } else {
+                evict(id);
+            }
+        }
+    }
+
+    @Override
+    public void failed(DocumentReference ref) {
+        String id = topLevelId(ref);
+        if (id == null) return;
+        synchronized (this) {
+            evict(id);
+            if (!synced) return;
+        }
+        // Undo the optimistic write by reloading what Firestore actually holds.
+        FirestoreFutures.toCompletable(collection + ".refresh", ref.get()).thenAccept(doc -> {
+            synchronized (this) {
+                if (!synced) return;
+                if (doc.exists()) mirror.put(id, document(doc));
+                else mirror.remove(id);
+                listView = null;
+            }
+        });
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        long h = hits.get(), m = misses.get();
+        Map<String, Object> s = new LinkedHashMap<>();
+        s.put("mode", synced ? "listener" : "read-through");
+        s.put("entries", synced ? mirror.size() : entries.size());
+        s.put("hits", h);
+        s.put("misses", m);
+        s.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        s.put("evictions", evictions.get());
+        s.put("invalidations", invalidations.get());
+        s.put("listenerEvents", listenerEvents.get());
+        s.put("sinceLastListenerEventMs", synced ? (System.nanoTime() - lastEventNanos) / 1e6 : null);
+        s.put("avgServedAgeMs", h == 0 ? 0.0 : servedAgeNanos.get() / 1e6 / h);
+        s.put("maxServedAgeMs", maxServedAgeNanos.get() / 1e6);
+        return s;
+    }
+
+    private void onSnapshot(QuerySnapshot snapshot, FirestoreException error) {
+        synchronized (this) {
+            if (error != null) {
+                System.out.println("[CollectionCache] Listener on " + collection + " failed, falling back to read-through: " + error.getMessage());
+                close();
+                return;
+            }
+            listenerEvents.incrementAndGet();
+            for (DocumentChange change : snapshot.getDocumentChanges()) {
+                QueryDocumentSnapshot doc = change.getDocument();
+                if (change.getType() == DocumentChange.Type.REMOVED) mirror.remove(doc.getId());
+                else mirror.put(doc.getId(), document(doc));
+            }
+            if (mirror.size() > maxEntries) {
+                System.out.println("[CollectionCache] " + collection + " has " + mirror.size() + " documents, over the "
+                        + maxEntries + " entry limit; detaching listener and falling back to read-through");
+                close();
+                return;
+            }
+            synced = true;
+            listView = null;
+            lastEventNanos = System.nanoTime();
+        }
+    }
+
+    // Called with the lock held.
+    private void evict(String id) {
+        entries.remove(id);
+        listEntry = null;
+        generation++;
+        invalidations.incrementAndGet();
+    }
+
+    private boolean fresh(Entry<?> entry) {
+        return System.nanoTime() - entry.loadedNanos() < ttlNanos;
+    }
+
+    private <T> Entry<T> served(Entry<T> entry) {
+        hits.incrementAndGet();
+        long age = System.nanoTime() - entry.loadedNanos();
+        servedAgeNanos.addAndGet(age);
+        maxServedAgeNanos.accumulate(age);
+        return entry;
+    }
+
+    private String topLevelId(DocumentReference ref) {
+        String[] parts = ref.getPath().split("/");
+        return parts.length == 2 && parts[0].equals(collection) ? parts[1] : null;
+    }
+
+    private static Map<String, Object> document(DocumentSnapshot doc) {
+        Map<String, Object> m = new HashMap<>(doc.getData());
+        m.put("id", doc.getId());
+        return Collections.unmodifiableMap(m);
+    }
+}
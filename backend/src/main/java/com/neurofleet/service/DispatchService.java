@@ -0,0 +1,310 @@
+package com.neurofleet.service;
+
+import com.google.cloud.firestore.Firestore;
+import com.neurofleet.eventlog.EventLog;
+import com.neurofleet.routing.RoutingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Matches pending bookings to available vehicles. Bookings are collected over a short window and
+ * solved together: candidate vehicles come from the spatial index (available, enough range), every
+ * booking/vehicle pair is costed by road ETA when a road graph is loaded (straight-line distance otherwise),
+ * and pairs are taken cheapest-first (global greedy).
+ * A vehicle is claimed with a CAS on its live status before the booking and vehicle documents are
+ * updated through the write-behind queue; a write that finally fails releases the vehicle and requeues the booking.
+ * Completing, cancelling or deleting an assigned booking {@link #release releases} its vehicle back to available.
+ */
+@Service
+public class DispatchService {
+
+    private static final double DEFAULT_LATITUDE = 28.6139;
+    private static final double DEFAULT_LONGITUDE = 77.2090;
+    private static final double TYPE_MISMATCH_PENALTY = 5.0; // km, or minutes when costing by ETA
+
+    public record PendingBooking(String id, double latitude, double longitude, double requiredRangeKm,
+                                 String vehicleType, long enqueuedNanos) {}
+
+    public record Assignment(String bookingId, String vehicleId, int slot, double distanceKm, double etaSeconds, long waitNanos) {}
+
+    private record Candidate(int booking, int slot, String vehicleId, double distanceKm, double etaSeconds, double cost) {}
+
+    private final FleetStateStore store;
+    private final Firestore db;
+    private final RoutingService routing;
+    private final FirestoreWriteBehind writeBehind;
+    private final EventLog eventLog;
+    private final double maxRadiusKm;
+    private final int candidatesPerBooking;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final boolean strictVehicleType;
+
+    private final Queue<PendingBooking> pending = new ConcurrentLinkedQueue<>();
+    private final Set<String> pendingIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> cancelled = ConcurrentHashMap.newKeySet();
+    private final Map<String, Assignment> active = new ConcurrentHashMap<>();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong assigned = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong persistFailures = new AtomicLong();
+    private final LatencyRecorder assignmentLatency = new LatencyRecorder(8192);
+    private volatile int lastBatchSize;
+    private volatile long lastSolveNanos;
+
+    public DispatchService(FleetStateStore store, Firestore db, RoutingService routing, FirestoreWriteBehind writeBehind, EventLog eventLog,
+                           @Value("${app.dispatch.max-radius-km:15}") double maxRadiusKm,
+                           @Value("${app.dispatch.candidates-per-booking:8}") int candidatesPerBooking,
+                           @Value("${app.dispatch.max-batch:5000}") int maxBatch,
+                           @Value("${app.dispatch.max-wait-ms:120000}") long maxWaitMs,
+                           @Value("${app.dispatch.strict-vehicle-type:false}") boolean strictVehicleType) {
+        this.store = store;
+        this.db = db;
+        this.routing = routing;
+        this.writeBehind = writeBehind;
+        this.eventLog = eventLog;
+        this.maxRadiusKm = maxRadiusKm;
+        this.candidatesPerBooking = candidatesPerBooking;
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWaitMs * 1_000_000L;
+        this.strictVehicleType = strictVehicleType;
+    }
+
+    /**
+     * Queues a new booking. Uses {@code pickupLatitude}/{@code pickupLongitude} when present (the city centre
+     * otherwise) and requires {@code estimatedDistance} km of range plus a 20% reserve.
+     */
+    public void submit(String bookingId, Map<String, Object> booking) {
+        double distance = number(booking.get("estimatedDistance"), 0);
+        pending.add(new PendingBooking(bookingId,
+                number(booking.get("pickupLatitude"), DEFAULT_LATITUDE),
+                number(booking.get("pickupLongitude"), DEFAULT_LONGITUDE),
+                distance * 1.2,
+                Objects.toString(booking.get("vehicleType"), ""),
+                System.nanoTime()));
+        pendingIds.add(bookingId);
+        submitted.incrementAndGet();
+    }
+
+    /** Drops a booking that is still waiting; bookings already assigned are left to the status endpoints. */
+    public void cancel(String bookingId) {
+        if (pendingIds.contains(bookingId)) cancelled.add(bookingId);
+    }
+
+    /**
+     * Ends a booking: drops it if still waiting, and if it was assigned returns its vehicle from on-trip to
+     * available. Returns false when this node holds no assignment for it (e.g. it was made before a restart).
+     */
+    public boolean release(String bookingId) {
+        cancel(bookingId);
+        Assignment a = active.remove(bookingId);
+        if (a == null) return false;
+        free(bookingId, a.vehicleId());
+        return true;
+    }
+
+    /** As {@link #release(String)}, for an assignment only known from the booking document naming {@code vehicleId}. */
+    public void release(String bookingId, String vehicleId) {
+        if (release(bookingId)) return;
+        // The vehicle has since been given another booking; it is not this one's to free
+        for (Assignment a : active.values()) if (a.vehicleId().equals(vehicleId)) return;
+        free(bookingId, vehicleId);
+    }
+
+    private void free(String bookingId, String vehicleId) {
+        int slot = store.slotOf(vehicleId);
+        if (slot < 0 || !store.claim(slot, vehicleId, FleetStateStore.STATUS_ON_TRIP, FleetStateStore.STATUS_AVAILABLE)) return;
+        released.incrementAndGet();
+        eventLog.append(EventLog.Entity.VEHICLE, vehicleId, "booking_released", Map.of("bookingId", bookingId));
+        if (db == null) return;
+        Map<String, Object> vehicle = new HashMap<>();
+        vehicle.put("status", "available");
+        vehicle.put("currentBookingId", null);
+        // Also reached from solve() on the scheduler thread, so it must not wait for queue room.
+        try {
+            writeBehind.tryMerge(db.collection("vehicles").document(vehicleId), vehicle);
+        } catch (IllegalStateException e) {
+            System.out.println("[DispatchService] Vehicle " + vehicleId + " released but not persisted: " + e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.dispatch.window-ms:500}")
+    public void dispatchWindow() {
+        List<PendingBooking> batch = new ArrayList<>();
+        PendingBooking next;
+        while (batch.size() < maxBatch && (next = pending.poll()) != null) {
+            if (cancelled.remove(next.id())) pendingIds.remove(next.id());
+            else batch.add(next);
+        }
+        if (batch.isEmpty()) return;
+
+        long start = System.nanoTime();
+        List<Assignment> assignments = solve(batch);
+        lastSolveNanos = System.nanoTime() - start;
+        lastBatchSize = batch.size();
+
+        Set<String> matched = new HashSet<>();
+        for (Assignment a : assignments) matched.add(a.bookingId());
+        for (PendingBooking b : batch) {
+            if (matched.contains(b.id())) {
+                pendingIds.remove(b.id());
+            } else if (start - b.enqueuedNanos() > maxWaitNanos) {
+                pendingIds.remove(b.id());
+                expired.incrementAndGet();
+            } else {
+                pending.add(b);
+            }
+        }
+        persist(assignments, batch);
+    }
+
+    /** Assigns as many bookings in the batch as possible; claimed vehicles are already marked on-trip. */
+    public List<Assignment> solve(List<PendingBooking> batch) {
+        List<Candidate> candidates = new ArrayList<>(batch.size() * candidatesPerBooking);
+        boolean byEta = routing != null && routing.isAvailable();
+        int[] slots = new int[candidatesPerBooking];
+        double[] distances = new double[candidatesPerBooking];
+        String[] ids = new String[candidatesPerBooking];
+        boolean[] typeOk = new boolean[candidatesPerBooking];
+        for (int i = 0; i < batch.size(); i++) {
+            PendingBooking booking = batch.get(i);
+            int[] found = {0};
+            // Hits arrive under the store's read lock, so the id and attributes read here belong to the same vehicle
+            store.nearestSlots(booking.latitude(), booking.longitude(), maxRadiusKm, candidatesPerBooking,
+                    slot -> store.status(slot) == FleetStateStore.STATUS_AVAILABLE
+                            && store.range(slot) >= booking.requiredRangeKm()
+                            && (!strictVehicleType || typeMatches(booking, slot)),
+                    (slot, distance) -> {
+                        String id = store.idAt(slot);
+                        if (id == null) return;
+                        slots[found[0]] = slot;
+                        ids[found[0]] = id;
+                        typeOk[found[0]] = typeMatches(booking, slot);
+                        distances[found[0]++] = distance;
+                    });
+            double[] eta = byEta ? etaSeconds(booking, slots, found[0]) : null;
+            for (int c = 0; c < found[0]; c++) {
+                int slot = slots[c];
+                double penalty = typeOk[c] ? 0 : TYPE_MISMATCH_PENALTY;
+                double etaSeconds = eta != null ? eta[c] : Double.NaN;
+                if (eta != null && Double.isNaN(etaSeconds)) continue; // no road path within the radius
+                double cost = (eta != null ? etaSeconds / 60 : distances[c]) + penalty;
+                candidates.add(new Candidate(i, slot, ids[c], distances[c], etaSeconds, cost));
+            }
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::cost));
+
+        boolean[] done = new boolean[batch.size()];
+        Set<Integer> usedSlots = new HashSet<>();
+        List<Assignment> assignments = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Candidate c : candidates) {
+            if (done[c.booking()] || !usedSlots.add(c.slot())) continue;
+            PendingBooking booking = batch.get(c.booking());
+            if (cancelled.contains(booking.id())) {
+                done[c.booking()] = true;
+                continue;
+            }
+            if (!store.claim(c.slot(), c.vehicleId(), FleetStateStore.STATUS_AVAILABLE, FleetStateStore.STATUS_ON_TRIP)) continue;
+            done[c.booking()] = true;
+            long wait = now - booking.enqueuedNanos();
+            Assignment assignment = new Assignment(booking.id(), c.vehicleId(), c.slot(), c.distanceKm(), c.etaSeconds(), wait);
+            active.put(booking.id(), assignment);
+            // A cancel that landed between the check above and the put found nothing to release; do it now
+            if (cancelled.contains(booking.id())) {
+                release(booking.id());
+                continue;
+            }
+            assignments.add(assignment);
+            assignmentLatency.record(wait);
+            assigned.incrementAndGet();
+        }
+        return assignments;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("submitted", submitted.get());
+        m.put("assigned", assigned.get());
+        m.put("pending", pending.size());
+        m.put("expired", expired.get());
+        m.put("active", active.size());
+        m.put("released", released.get());
+        m.put("persistFailures", persistFailures.get());
+        m.put("lastBatchSize", lastBatchSize);
+        m.put("lastSolveMs", lastSolveNanos / 1e6);
+        m.put("assignmentLatency", assignmentLatency.snapshot());
+        return m;
+    }
+
+    // Through the write-behind queue rather than a batch of our own: writes to one document coalesce there in order,
+    // so the merge folds into a still-queued create of the booking instead of being replaced by it.
+    private void persist(List<Assignment> assignments, List<PendingBooking> batch) {
+        if (db == null || assignments.isEmpty()) return;
+        Map<String, PendingBooking> byId = new HashMap<>();
+        for (PendingBooking b : batch) byId.put(b.id(), b);
+
+        Date now = new Date();
+        for (Assignment a : assignments) {
+            Map<String, Object> booking = new HashMap<>(Map.of("status", "assigned", "vehicleId", a.vehicleId(), "assignedAt", now));
+            if (!Double.isNaN(a.etaSeconds())) booking.put("pickupEtaSeconds", a.etaSeconds());
+            Map<String, Object> vehicle = Map.of("status", "on-trip", "currentBookingId", a.bookingId());
+            CompletableFuture<Void> written;
+            try {
+                // Never waits for queue room: this runs on a scheduler thread, and a full queue just requeues the booking.
+                written = CompletableFuture.allOf(
+                        writeBehind.tryMerge(db.collection("bookings").document(a.bookingId()), booking),
+                        writeBehind.tryMerge(db.collection("vehicles").document(a.vehicleId()), vehicle));
+            } catch (IllegalStateException e) {
+                written = CompletableFuture.failedFuture(e);
+            }
+            written.whenComplete((done, error) -> {
+                if (error == null) {
+                    eventLog.append(EventLog.Entity.BOOKING, a.bookingId(), "assigned", Map.of("vehicleId", a.vehicleId()));
+                    eventLog.append(EventLog.Entity.VEHICLE, a.vehicleId(), "booking_assigned", Map.of("bookingId", a.bookingId()));
+                    return;
+                }
+                persistFailures.incrementAndGet();
+                System.out.println("[DispatchService] Failed to persist assignment of " + a.bookingId() + ": " + error.getMessage());
+                active.remove(a.bookingId(), a);
+                store.claim(a.slot(), a.vehicleId(), FleetStateStore.STATUS_ON_TRIP, FleetStateStore.STATUS_AVAILABLE);
+                pendingIds.add(a.bookingId());
+                pending.add(byId.get(a.bookingId()));
+            });
+        }
+    }
+
+    /** Road travel time from each candidate to the pickup, capped at what the search radius allows at 30 km/h. */
+    private double[] etaSeconds(PendingBooking booking, int[] slots, int count) {
+        double[] lat = new double[count], lon = new double[count];
+        for (int c = 0; c < count; c++) {
+            lat[c] = store.latitude(slots[c]);
+            lon[c] = store.longitude(slots[c]);
+        }
+        return routing.etaSecondsTo(lat, lon, booking.latitude(), booking.longitude(), maxRadiusKm / 30.0 * 3600);
+    }
+
+    private boolean typeMatches(PendingBooking booking, int slot) {
+        if (booking.vehicleType().isEmpty()) return true;
+        Object type = store.attributes(slot).get("vehicleType");
+        return type == null || booking.vehicleType().equalsIgnoreCase(type.toString());
+    }
+
+    private static double number(Object value, double fallback) {
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof String s && !s.isBlank()) {
+            try {
+                return Double.parseDouble(s);
+            } catch (NumberFormatException ignored) {}
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,57 @@
+package com.neurofleet.service;
+
+import com.google.cloud.firestore.Firestore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** Read caches for the collections the dashboards poll. Null caches in development mode (no Firestore). */
+@Service
+public class FirestoreCache {
+
+    private final CollectionCache vehicles;
+    private final CollectionCache bookings;
+
+    public FirestoreCache(Firestore db, FirestoreWriteBehind writes,
+                          @Value("${app.cache.listen:true}") boolean listen,
+                          @Value("${app.cache.max-entries:50000}") int maxEntries,
+                          @Value("${app.cache.ttl-ms:30000}") long ttlMs) {
+        if (db == null) {
+            vehicles = null;
+            bookings = null;
+            return;
+        }
+        vehicles = new CollectionCache("vehicles", db, maxEntries, ttlMs);
+        bookings = new CollectionCache("bookings", db, maxEntries, ttlMs);
+        writes.addObserver(vehicles);
+        writes.addObserver(bookings);
+        if (listen) {
+            vehicles.listen();
+            bookings.listen();
+        }
+    }
+
+    public CollectionCache vehicles() {
+        return vehicles;
+    }
+
+    public CollectionCache bookings() {
+        return bookings;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        if (vehicles != null) m.put("vehicles", vehicles.getStats());
+        if (bookings != null) m.put("bookings", bookings.getStats());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (vehicles != null) vehicles.close();
+        if (bookings != null) bookings.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.neurofleet.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bridges Google {@link ApiFuture}s (Firestore, Firebase Auth) to {@link CompletableFuture} so controllers
+ * can compose them and hand the result to Spring MVC's async support instead of parking a request thread
+ * in {@code get()}. Completion runs on the client library's callback thread; keep continuations short.
+ * <p>
+ * Every call is timed into {@code firestore.requests}, tagged with the caller's operation name and outcome, on
+ * the global registry that Spring Boot's Prometheus registry joins.
+ */
+public final class FirestoreFutures {
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    private FirestoreFutures() {}
+
+    public static <T> CompletableFuture<T> toCompletable(String operation, ApiFuture<T> future) {
+        long start = System.nanoTime();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                record(operation, System.nanoTime() - start, true);
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                record(operation, System.nanoTime() - start, false);
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /** Records a call made some other way (a blocking {@code get()}, a batch commit). */
+    public static void record(String operation, long nanos, boolean success) {
+        String outcome = success ? "success" : "error";
+        TIMERS.computeIfAbsent(operation + '\0' + outcome, k -> Timer.builder("firestore.requests")
+                .description("Firestore and Firebase Admin calls, from issue to completion")
+                .tags("operation", operation, "outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(Metrics.globalRegistry)).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
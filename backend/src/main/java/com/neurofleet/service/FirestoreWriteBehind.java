@@ -0,0 +1,330 @@
+package com.neurofleet.service;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind queue in front of Firestore. Callers enqueue sets, merges, deletes and appends and
+ * return immediately; a single flusher commits everything queued as {@link WriteBatch}es, either every
+ * {@code flush-interval-ms} or as soon as a full batch is waiting. Writes to the same document coalesce
+ * while queued (later merges fold into earlier ones, a set or delete supersedes them), so a burst of status
+ * changes costs one write. Each call returns a future completed when its write commits, for callers that
+ * need to know. Every write is appended to a {@link WriteJournal} before the call returns and replayed on the next
+ * start if it had not committed. A write still failing after {@code MAX_ATTEMPTS} is dead-lettered and counted in
+ * {@code firestore.writebehind.failed}. With {@code journal-dir} empty the queue is memory only.
+ */
+@Service
+public class FirestoreWriteBehind {
+
+    private static final int FIRESTORE_BATCH_LIMIT = 500;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public enum Kind { SET, MERGE, DELETE }
+
+    /** Sees each write as it is queued and again if it is finally dropped; used to keep read caches coherent. */
+    public interface WriteObserver {
+        void queued(DocumentReference ref, Kind kind, Map<String, Object> data);
+        void failed(DocumentReference ref);
+    }
+
+    private static final class Op {
+        final DocumentReference ref;
+        Kind kind;
+        Map<String, Object> data;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+        final long enqueuedNanos = System.nanoTime();
+        int attempts;
+
+        Op(DocumentReference ref, Kind kind, Map<String, Object> data) {
+            this.ref = ref;
+            this.kind = kind;
+            this.data = data;
+        }
+
+        /** Folds a later write to the same document into this one. Merges combine top-level fields. */
+        void absorb(Kind nextKind, Map<String, Object> nextData) {
+            if (nextKind == Kind.MERGE && kind != Kind.DELETE) {
+                data.putAll(nextData);
+            } else {
+                kind = nextKind == Kind.MERGE ? Kind.SET : nextKind;
+                data = nextData;
+            }
+        }
+    }
+
+    private final Firestore db;
+    private final int batchSize;
+    private final int maxPending;
+    private final long enqueueTimeoutMs;
+    private final ScheduledExecutorService flusher;
+    private final WriteJournal journal;
+
+    private final List<WriteObserver> observers = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private LinkedHashMap<String, Op> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong committedWrites = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong failedWrites = new AtomicLong();
+    private final LatencyRecorder flushLatency = new LatencyRecorder(1024);
+    private final LatencyRecorder queueLatency = new LatencyRecorder(8192);
+    private volatile int lastFlushWrites;
+
+    public FirestoreWriteBehind(Firestore db,
+                                @Value("${app.firestore.write-behind.flush-interval-ms:100}") long flushIntervalMs,
+                                @Value("${app.firestore.write-behind.batch-size:400}") int batchSize,
+                                @Value("${app.firestore.write-behind.max-pending:50000}") int maxPending,
+                                @Value("${app.firestore.write-behind.enqueue-timeout-ms:5000}") long enqueueTimeoutMs,
+                                @Value("${app.firestore.write-behind.journal-dir:data/writes}") String journalDir,
+                                MeterRegistry registry) throws IOException {
+        this.db = db;
+        this.batchSize = Math.max(1, Math.min(batchSize, FIRESTORE_BATCH_LIMIT));
+        this.maxPending = maxPending;
+        this.enqueueTimeoutMs = enqueueTimeoutMs;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "firestore-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        this.journal = db != null && !journalDir.isBlank() ? new WriteJournal(Paths.get(journalDir)) : null;
+        if (journal != null) recover();
+        FunctionCounter.builder("firestore.writebehind.failed", failedWrites, AtomicLong::get)
+                .description("Queued Firestore writes dropped after their last attempt and dead-lettered").register(registry);
+        if (db != null) flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Requeues what the last run left behind, rewrites it to a fresh file and drops the old ones.
+    private void recover() throws IOException {
+        List<WriteJournal.Entry> entries = journal.recover();
+        for (WriteJournal.Entry e : entries) {
+            Op op = pending.get(e.path());
+            if (op != null) op.absorb(e.kind(), e.data());
+            else pending.put(e.path(), new Op(db.document(e.path()), e.kind(), e.data()));
+        }
+        for (Op op : pending.values()) journal.append(op.ref.getPath(), op.kind, op.data);
+        journal.deleteThrough(journal.generation() - 1);
+        if (!entries.isEmpty()) {
+            System.out.println("[FirestoreWriteBehind] Replaying " + pending.size() + " writes left queued by the last run");
+        }
+    }
+
+    public void addObserver(WriteObserver observer) {
+        observers.add(observer);
+    }
+
+    /** Reports a write committed outside this queue (e.g. an atomic batch) so observers stay coherent. */
+    public void observe(DocumentReference ref, Kind kind, Map<String, Object> data) {
+        for (WriteObserver observer : observers) observer.queued(ref, kind, data);
+    }
+
+    public void observeFailure(DocumentReference ref) {
+        for (WriteObserver observer : observers) observer.failed(ref);
+    }
+
+    /** Replaces the document. */
+    public CompletableFuture<Void> set(DocumentReference ref, Map<String, Object> data) {
+        return enqueue(ref, Kind.SET, new HashMap<>(data), true);
+    }
+
+    /** Equivalent of {@code set(data, SetOptions.merge())}. */
+    public CompletableFuture<Void> merge(DocumentReference ref, Map<String, Object> data) {
+        return enqueue(ref, Kind.MERGE, new HashMap<>(data), true);
+    }
+
+    /** Like {@link #merge}, but throws IllegalStateException at once when the queue is full instead of waiting. */
+    public CompletableFuture<Void> tryMerge(DocumentReference ref, Map<String, Object> data) {
+        return enqueue(ref, Kind.MERGE, new HashMap<>(data), false);
+    }
+
+    public CompletableFuture<Void> delete(DocumentReference ref) {
+        return enqueue(ref, Kind.DELETE, null, true);
+    }
+
+    /** Adds a document with a generated id to {@code collection}, e.g. a history event. */
+    public CompletableFuture<Void> append(CollectionReference collection, Map<String, Object> data) {
+        return enqueue(collection.document(), Kind.SET, new HashMap<>(data), true);
+    }
+
+    private CompletableFuture<Void> enqueue(DocumentReference ref, Kind kind, Map<String, Object> data, boolean wait) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (db == null) {
+            done.complete(null);
+            return done;
+        }
+        String path = ref.getPath();
+        boolean flushNow;
+        synchronized (lock) {
+            Op op = pending.get(path);
+            if (op == null) awaitCapacity(wait);
+            if (journal != null) journal.append(path, kind, data);
+            if (op != null) {
+                op.absorb(kind, data);
+                coalesced.incrementAndGet();
+            } else {
+                op = new Op(ref, kind, data);
+                pending.put(path, op);
+            }
+            op.waiters.add(done);
+            flushNow = pending.size() >= batchSize && !flushScheduled;
+            if (flushNow) flushScheduled = true;
+        }
+        enqueued.incrementAndGet();
+        for (WriteObserver observer : observers) observer.queued(ref, kind, data == null ? null : Collections.unmodifiableMap(data));
+        if (flushNow) flusher.execute(this::flush);
+        return done;
+    }
+
+    // Called with the lock held; applies backpressure when Firestore falls behind instead of growing without bound.
+    private void awaitCapacity(boolean wait) {
+        long deadline = System.nanoTime() + (wait ? TimeUnit.MILLISECONDS.toNanos(enqueueTimeoutMs) : 0);
+        while (pending.size() >= maxPending) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) throw new IllegalStateException("Firestore write queue is full (" + maxPending + " pending)");
+            try {
+                lock.wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for Firestore write queue", e);
+            }
+        }
+    }
+
+    /** Commits everything queued so far; runs on the flusher thread. */
+    void flush() {
+        List<Op> ops;
+        long journaled;
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) return;
+            ops = new ArrayList<>(pending.values());
+            pending = new LinkedHashMap<>();
+            // Everything in the closed file is in ops; failures are appended to the new one before it is deleted.
+            journaled = journal != null ? journal.rotate() : -1;
+            lock.notifyAll();
+        }
+        long start = System.nanoTime();
+        List<Map.Entry<List<Op>, ApiFuture<List<WriteResult>>>> commits = new ArrayList<>();
+        for (int from = 0; from < ops.size(); from += batchSize) {
+            List<Op> chunk = ops.subList(from, Math.min(ops.size(), from + batchSize));
+            WriteBatch batch = db.batch();
+            for (Op op : chunk) {
+                switch (op.kind) {
+                    case SET -> batch.set(op.ref, op.data);
+                    case MERGE -> batch.set(op.ref, op.data, SetOptions.merge());
+                    case DELETE -> batch.delete(op.ref);
+                }
+            }
+            commits.add(Map.entry(chunk, batch.commit()));
+        }
+        for (Map.Entry<List<Op>, ApiFuture<List<WriteResult>>> commit : commits) {
+            try {
+                commit.getValue().get();
+                long now = System.nanoTime();
+                FirestoreFutures.record("batch.commit", now - start, true);
+                for (Op op : commit.getKey()) {
+                    queueLatency.record(now - op.enqueuedNanos);
+                    for (CompletableFuture<Void> waiter : op.waiters) waiter.complete(null);
+                }
+                committedWrites.addAndGet(commit.getKey().size());
+                batches.incrementAndGet();
+            } catch (Exception e) {
+                FirestoreFutures.record("batch.commit", System.nanoTime() - start, false);
+                Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+                System.out.println("[FirestoreWriteBehind] Batch of " + commit.getKey().size() + " writes failed: " + cause.getMessage());
+                requeue(commit.getKey(), cause);
+            }
+        }
+        if (journal != null) journal.deleteThrough(journaled);
+        lastFlushWrites = ops.size();
+        flushLatency.record(System.nanoTime() - start);
+    }
+
+    // Failed ops go back in front of anything queued since, so later writes to the same document still win.
+    private void requeue(List<Op> failed, Throwable cause) {
+        List<Op> dropped = new ArrayList<>();
+        synchronized (lock) {
+            LinkedHashMap<String, Op> merged = new LinkedHashMap<>();
+            List<Op> retried = new ArrayList<>();
+            for (Op op : failed) {
+                if (++op.attempts >= MAX_ATTEMPTS) {
+                    dropped.add(op);
+                    continue;
+                }
+                retries.incrementAndGet();
+                merged.put(op.ref.getPath(), op);
+                retried.add(op);
+            }
+            for (Map.Entry<String, Op> later : pending.entrySet()) {
+                Op earlier = merged.get(later.getKey());
+                if (earlier == null) {
+                    merged.put(later.getKey(), later.getValue());
+                } else {
+                    earlier.absorb(later.getValue().kind, later.getValue().data);
+                    earlier.waiters.addAll(later.getValue().waiters);
+                }
+            }
+            pending = merged;
+            // Appended after any later writes to the same document, already folded in, so a replay ends the same.
+            if (journal != null) {
+                for (Op op : retried) journal.append(op.ref.getPath(), op.kind, op.data);
+            }
+        }
+        for (Op op : dropped) {
+            failedWrites.incrementAndGet();
+            System.out.println("[FirestoreWriteBehind] Giving up on " + op.kind + " of " + op.ref.getPath() + " after " + MAX_ATTEMPTS + " attempts");
+            if (journal != null) journal.deadLetter(op.ref.getPath(), op.kind, op.data, cause);
+            for (WriteObserver observer : observers) observer.failed(op.ref);
+            for (CompletableFuture<Void> waiter : op.waiters) waiter.completeExceptionally(cause);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        int depth;
+        long oldest = 0;
+        synchronized (lock) {
+            depth = pending.size();
+            if (depth > 0) oldest = System.nanoTime() - pending.values().iterator().next().enqueuedNanos;
+        }
+        m.put("queueDepth", depth);
+        m.put("oldestPendingMs", oldest / 1e6);
+        m.put("enqueued", enqueued.get());
+        m.put("coalesced", coalesced.get());
+        m.put("committedWrites", committedWrites.get());
+        m.put("batches", batches.get());
+        m.put("retries", retries.get());
+        m.put("failedWrites", failedWrites.get());
+        m.put("journaled", journal != null);
+        m.put("lastFlushWrites", lastFlushWrites);
+        m.put("flushLatency", flushLatency.snapshot());
+        m.put("queueToCommitLatency", queueLatency.snapshot());
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (db != null) flush();
+        if (journal != null) journal.close();
+    }
+}
@@ -0,0 +1,158 @@
+package com.neurofleet.service;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fleet-wide summaries maintained by {@link FleetStateStore} as columns change, so dashboards read them in constant
+ * time instead of aggregating every vehicle. Counters are striped {@link LongAdder}s; battery and health sums are
+ * kept in thousandths so adding and later subtracting the same value cancels exactly. Utilization (share of the
+ * fleet on a trip) is sampled once per tick into per-minute buckets covering the last hour.
+ */
+public class FleetAggregates {
+
+    public static final int BATTERY_BUCKETS = 10;
+    private static final double SCALE = 1000;
+    private static final int MINUTES = 60;
+    private static final int[] WINDOWS = {1, 5, 15, 60};
+    private static final String[] WINDOW_NAMES = {"1m", "5m", "15m", "1h"};
+
+    private final LongAdder vehicles = new LongAdder();
+    private final LongAdder[] byStatus = adders(Byte.MAX_VALUE);
+    private final LongAdder[] batteryHistogram = adders(BATTERY_BUCKETS);
+    private final LongAdder batteryMilli = new LongAdder();
+    private final LongAdder healthMilli = new LongAdder();
+    private final LongAdder rangeKm = new LongAdder();
+
+    // Utilization buckets, guarded by this.
+    private final long[] bucketMinute = new long[MINUTES];
+    private final long[] busySamples = new long[MINUTES];
+    private final long[] totalSamples = new long[MINUTES];
+
+    void add(byte status, double battery, double health, int range) {
+        vehicles.increment();
+        byStatus[status].increment();
+        batteryHistogram[bucket(battery)].increment();
+        batteryMilli.add(fixed(battery));
+        healthMilli.add(fixed(health));
+        rangeKm.add(range);
+    }
+
+    void subtract(byte status, double battery, double health, int range) {
+        vehicles.decrement();
+        byStatus[status].decrement();
+        batteryHistogram[bucket(battery)].decrement();
+        batteryMilli.add(-fixed(battery));
+        healthMilli.add(-fixed(health));
+        rangeKm.add(-range);
+    }
+
+    void statusChanged(byte from, byte to) {
+        if (from == to) return;
+        byStatus[from].decrement();
+        byStatus[to].increment();
+    }
+
+    void batteryChanged(double from, double to) {
+        int a = bucket(from), b = bucket(to);
+        if (a != b) {
+            batteryHistogram[a].decrement();
+            batteryHistogram[b].increment();
+        }
+        long delta = fixed(to) - fixed(from);
+        if (delta != 0) batteryMilli.add(delta);
+    }
+
+    void healthChanged(double from, double to) {
+        long delta = fixed(to) - fixed(from);
+        if (delta != 0) healthMilli.add(delta);
+    }
+
+    void rangeChanged(int from, int to) {
+        if (from != to) rangeKm.add(to - from);
+    }
+
+    public long count(byte status) {
+        return byStatus[status].sum();
+    }
+
+    /** Adds the current on-trip share to the minute bucket for {@code nowMillis}; called once per tick. */
+    public synchronized void sampleUtilization(long nowMillis) {
+        long minute = nowMillis / 60_000;
+        int i = (int) (minute % MINUTES);
+        if (bucketMinute[i] != minute) {
+            bucketMinute[i] = minute;
+            busySamples[i] = 0;
+            totalSamples[i] = 0;
+        }
+        busySamples[i] += byStatus[FleetStateStore.STATUS_ON_TRIP].sum();
+        totalSamples[i] += vehicles.sum();
+    }
+
+    /** Summary for the stats endpoint and the periodic {@code fleet_summary} frame. */
+    public Map<String, Object> snapshot(String[] statusNames, long nowMillis) {
+        long total = vehicles.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("vehicles", total);
+
+        Map<String, Object> statuses = new LinkedHashMap<>();
+        for (int code = 0; code < statusNames.length; code++) statuses.put(statusNames[code], byStatus[code].sum());
+        m.put("byStatus", statuses);
+
+        Map<String, Object> battery = new LinkedHashMap<>();
+        battery.put("average", average(batteryMilli.sum() / SCALE, total));
+        List<Map<String, Object>> histogram = new ArrayList<>(BATTERY_BUCKETS);
+        int width = 100 / BATTERY_BUCKETS;
+        for (int b = 0; b < BATTERY_BUCKETS; b++) {
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            bucket.put("from", b * width);
+            bucket.put("to", (b + 1) * width);
+            bucket.put("count", batteryHistogram[b].sum());
+            histogram.add(bucket);
+        }
+        battery.put("histogram", histogram);
+        m.put("battery", battery);
+        m.put("averageBatteryHealth", average(healthMilli.sum() / SCALE, total));
+        m.put("averageRangeKm", average(rangeKm.sum(), total));
+
+        Map<String, Object> utilization = new LinkedHashMap<>();
+        utilization.put("current", total == 0 ? null : round((double) byStatus[FleetStateStore.STATUS_ON_TRIP].sum() / total));
+        long minute = nowMillis / 60_000;
+        synchronized (this) {
+            for (int w = 0; w < WINDOWS.length; w++) {
+                long busy = 0, samples = 0;
+                for (int i = 0; i < MINUTES; i++) {
+                    if (bucketMinute[i] > minute - WINDOWS[w] && bucketMinute[i] <= minute) {
+                        busy += busySamples[i];
+                        samples += totalSamples[i];
+                    }
+                }
+                utilization.put(WINDOW_NAMES[w], samples == 0 ? null : round((double) busy / samples));
+            }
+        }
+        m.put("utilization", utilization);
+        return m;
+    }
+
+    private static int bucket(double battery) {
+        return Math.max(0, Math.min(BATTERY_BUCKETS - 1, (int) (battery * BATTERY_BUCKETS / 100)));
+    }
+
+    private static long fixed(double value) {
+        return Math.round(value * SCALE);
+    }
+
+    private static Double average(double sum, long count) {
+        return count == 0 ? null : Math.round(sum / count * 10) / 10.0;
+    }
+
+    private static double round(double share) {
+        return Math.round(share * 1000) / 1000.0;
+    }
+
+    private static LongAdder[] adders(int n) {
+        LongAdder[] a = new LongAdder[n];
+        for (int i = 0; i < n; i++) a[i] = new LongAdder();
+        return a;
+    }
+}
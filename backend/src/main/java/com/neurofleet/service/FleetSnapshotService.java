@@ -0,0 +1,388 @@
+package com.neurofleet.service;
+
+import com.google.cloud.firestore.*;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Warm restart for the live fleet. Every {@code app.snapshot.interval-ms}, and on shutdown, the store's columns
+ * and attributes are written to one binary file (temp file, fsync, atomic rename). At startup the file is mapped
+ * and restored before the first tick, so telemetry resumes with the last known positions and batteries instead
+ * of random ones. Firestore is then read in parallel partitions, page by page, to add vehicles the snapshot
+ * missed, refresh attributes, and drop restored vehicles that were deleted meanwhile.
+ * <p>
+ * Layout, big-endian: {@code "NFS1", i32 version, i64 createdAtMs, u8 statuses, (u16 length, name)*, i32 count},
+ * then per vehicle {@code u16 idLength, id, f64 lat, f64 lon, f64 battery, f64 health, i32 range, u8 status,
+ * i64 lastUpdateNanos, i32 attributesLength, attributes}, then a CRC32 of everything before it.
+ */
+@Service
+public class FleetSnapshotService {
+
+    private static final int MAGIC = 0x4e465331; // "NFS1"
+    private static final int VERSION = 1;
+
+    private final FleetStateStore store;
+    private final TelemetryService telemetry;
+    private final Firestore db;
+    private final Path file;
+    private final boolean enabled;
+    private final int preloadThreads;
+    private final int pageSize;
+    private final ExecutorService preloadPool;
+
+    // Encoded attributes per slot, reused while the slot still holds the same (immutable) attribute map.
+    private Object[] encodedFor = new Object[0];
+    private byte[][] encoded = new byte[0][];
+
+    private final Map<String, Object> warmStart = new ConcurrentHashMap<>();
+    private volatile long lastWriteMs;
+    private volatile long lastWriteBytes;
+    private volatile double lastWriteDurationMs;
+    private final AtomicInteger writes = new AtomicInteger();
+
+    public FleetSnapshotService(FleetStateStore store, TelemetryService telemetry, Firestore db,
+                                @Value("${app.snapshot.enabled:true}") boolean enabled,
+                                @Value("${app.snapshot.dir:data/snapshot}") String dir,
+                                @Value("${app.snapshot.preload-threads:8}") int preloadThreads,
+                                @Value("${app.snapshot.preload-page-size:1000}") int pageSize) {
+        this.store = store;
+        this.telemetry = telemetry;
+        this.db = db;
+        this.enabled = enabled;
+        this.file = Paths.get(dir, "fleet.snap");
+        this.preloadThreads = Math.max(1, preloadThreads);
+        this.pageSize = pageSize;
+        this.preloadPool = Executors.newFixedThreadPool(this.preloadThreads, r -> {
+            Thread t = new Thread(r, "fleet-preload");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Runs before the scheduler starts, so the first tick already has the restored fleet. */
+    @PostConstruct
+    public void warmStart() {
+        Set<String> restored = Set.of();
+        if (enabled && Files.exists(file)) {
+            long start = System.nanoTime();
+            try {
+                restored = load();
+                warmStart.put("snapshotVehicles", restored.size());
+                System.out.println("[FleetSnapshotService] Restored " + restored.size() + " vehicles from " + file + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + "ms");
+            } catch (IOException | RuntimeException e) {
+                warmStart.put("snapshotError", String.valueOf(e.getMessage()));
+                System.out.println("[FleetSnapshotService] Ignoring unreadable snapshot " + file + ": " + e.getMessage());
+            }
+            warmStart.put("snapshotLoadMs", (System.nanoTime() - start) / 1e6);
+        }
+        if (db == null) return;
+        Set<String> fromSnapshot = restored;
+        CompletableFuture.runAsync(() -> preload(fromSnapshot), preloadPool);
+    }
+
+    @Scheduled(fixedDelayString = "${app.snapshot.interval-ms:30000}", initialDelayString = "${app.snapshot.interval-ms:30000}")
+    public void scheduledWrite() {
+        if (!enabled) return;
+        try {
+            write();
+        } catch (IOException e) {
+            System.out.println("[FleetSnapshotService] Snapshot write failed: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        preloadPool.shutdownNow();
+        scheduledWrite();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("file", file.toString());
+        m.put("writes", writes.get());
+        m.put("lastWriteMs", lastWriteMs);
+        m.put("lastWriteBytes", lastWriteBytes);
+        m.put("lastWriteDurationMs", lastWriteDurationMs);
+        m.put("warmStart", new TreeMap<>(warmStart));
+        return m;
+    }
+
+    // Writing
+
+    synchronized void write() throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(1024, store.size() * 160));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        String[] names = store.statusNames();
+        out.writeByte(names.length);
+        for (String name : names) writeShortString(out, name);
+        int countAt = out.size();
+        out.writeInt(0);
+        int[] count = new int[1];
+        store.readLocked(() -> {
+            int highWater = store.highWater();
+            if (encoded.length < highWater) {
+                encoded = Arrays.copyOf(encoded, highWater);
+                encodedFor = Arrays.copyOf(encodedFor, highWater);
+            }
+            try {
+                for (int slot = 0; slot < highWater; slot++) {
+                    String id = store.idAt(slot);
+                    if (id == null) continue;
+                    writeShortString(out, id);
+                    out.writeDouble(store.latitude(slot));
+                    out.writeDouble(store.longitude(slot));
+                    out.writeDouble(store.battery(slot));
+                    out.writeDouble(store.batteryHealth(slot));
+                    out.writeInt(store.range(slot));
+                    out.writeByte(store.status(slot));
+                    out.writeLong(store.lastUpdateNanos(slot));
+                    Map<String, Object> attrs = store.attributes(slot);
+                    if (encodedFor[slot] != attrs) {
+                        encoded[slot] = encodeAttributes(attrs);
+                        encodedFor[slot] = attrs;
+                    }
+                    out.writeInt(encoded[slot].length);
+                    out.write(encoded[slot]);
+                    count[0]++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        byte[] body = bytes.toByteArray();
+        ByteBuffer.wrap(body).putInt(countAt, count[0]);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer trailer = ByteBuffer.allocate(4).putInt((int) crc.getValue()).flip();
+            ByteBuffer[] parts = {ByteBuffer.wrap(body), trailer};
+            while (parts[1].hasRemaining()) channel.write(parts);
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writes.incrementAndGet();
+        lastWriteMs = System.currentTimeMillis();
+        lastWriteBytes = body.length + 4L;
+        lastWriteDurationMs = (System.nanoTime() - start) / 1e6;
+    }
+
+    // Attribute values keep their JSON-visible shape; anything exotic (e.g. Firestore timestamps) becomes its string.
+    private static byte[] encodeAttributes(Map<String, Object> attrs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeValue(out, attrs);
+        return bytes.toByteArray();
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+        } else if (value instanceof String s) {
+            out.writeByte(1);
+            writeString(out, s);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(2);
+            out.writeBoolean(b);
+        } else if (value instanceof Integer || value instanceof Long) {
+            out.writeByte(3);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            out.writeByte(4);
+            out.writeDouble(n.doubleValue());
+        } else if (value instanceof Date d) {
+            out.writeByte(5);
+            out.writeLong(d.getTime());
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(6);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                writeString(out, String.valueOf(e.getKey()));
+                writeValue(out, e.getValue());
+            }
+        } else if (value instanceof Collection<?> items) {
+            out.writeByte(7);
+            out.writeInt(items.size());
+            for (Object item : items) writeValue(out, item);
+        } else {
+            out.writeByte(1);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static void writeShortString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(utf8.length);
+        out.write(utf8);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    // Loading
+
+    private Set<String> load() throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (map.capacity() < 4) throw new IOException("truncated");
+        CRC32 crc = new CRC32();
+        crc.update(map.duplicate().limit(map.capacity() - 4));
+        if ((int) crc.getValue() != map.getInt(map.capacity() - 4)) throw new IOException("checksum mismatch");
+        ByteBuffer in = map.duplicate().limit(map.capacity() - 4);
+        if (in.getInt() != MAGIC) throw new IOException("not a fleet snapshot");
+        if (in.getInt() != VERSION) throw new IOException("unsupported snapshot version");
+        long createdAt = in.getLong();
+        String[] names = new String[in.get() & 0xff];
+        for (int i = 0; i < names.length; i++) names[i] = readShortString(in);
+        int count = in.getInt();
+        Set<String> ids = new HashSet<>(count * 2);
+        long[] lastUpdate = new long[count];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            String id = readShortString(in);
+            double lat = in.getDouble(), lon = in.getDouble(), battery = in.getDouble(), health = in.getDouble();
+            int range = in.getInt();
+            int code = in.get() & 0xff;
+            // A status interned while the snapshot was being written may be missing from its table.
+            String status = code < names.length ? names[code] : "available";
+            lastUpdate[i] = in.getLong();
+            int attrsLength = in.getInt();
+            ByteBuffer attrs = in.slice().limit(attrsLength);
+            in.position(in.position() + attrsLength);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> base = (Map<String, Object>) readValue(attrs);
+            slots[i] = store.upsert(id, base, lat, lon, battery, range, health, status);
+            ids.add(id);
+        }
+        store.readLocked(() -> {
+            for (int i = 0; i < count; i++) store.setLastUpdateNanos(slots[i], lastUpdate[i]);
+        });
+        warmStart.put("snapshotAgeMs", System.currentTimeMillis() - createdAt);
+        return ids;
+    }
+
+    private static String readShortString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getShort() & 0xffff];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static Object readValue(ByteBuffer in) {
+        switch (in.get()) {
+            case 0: return null;
+            case 1: return readString(in);
+            case 2: return in.get() != 0;
+            case 3: return in.getLong();
+            case 4: return in.getDouble();
+            case 5: return new Date(in.getLong());
+            case 6: {
+                int size = in.getInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) map.put(readString(in), readValue(in));
+                return map;
+            }
+            case 7: {
+                int size = in.getInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) list.add(readValue(in));
+                return list;
+            }
+            default: throw new IllegalStateException("Bad attribute tag");
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] utf8 = new byte[in.getInt()];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Firestore preload
+
+    private void preload(Set<String> restored) {
+        long start = System.nanoTime();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        AtomicInteger added = new AtomicInteger();
+        try {
+            List<QueryPartition> partitions = db.collectionGroup("vehicles").getPartitions(preloadThreads * 4L).get();
+            List<CompletableFuture<Void>> tasks = new ArrayList<>(partitions.size());
+            for (QueryPartition partition : partitions) {
+                tasks.add(CompletableFuture.runAsync(() -> loadPartition(partition.createQuery(), seen, added), preloadPool));
+            }
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+            // Only a complete pass may conclude that a restored vehicle was deleted.
+            int removed = 0;
+            for (String id : restored) {
+                if (!seen.contains(id)) {
+                    telemetry.removeVehicle(id);
+                    removed++;
+                }
+            }
+            warmStart.put("preloadPartitions", partitions.size());
+            warmStart.put("preloadDocuments", seen.size());
+            warmStart.put("preloadAdded", added.get());
+            warmStart.put("preloadRemoved", removed);
+            System.out.println("[FleetSnapshotService] Preloaded " + seen.size() + " vehicles (" + added.get() + " new, "
+                    + removed + " removed) in " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CompletionException e) {
+            warmStart.put("preloadError", String.valueOf(e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+            System.out.println("[FleetSnapshotService] Firestore preload failed after " + seen.size() + " vehicles: " + e.getMessage());
+        } finally {
+            warmStart.put("preloadMs", (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    private void loadPartition(Query query, Set<String> seen, AtomicInteger added) {
+        try {
+            QueryDocumentSnapshot last = null;
+            while (true) {
+                Query page = (last == null ? query : query.startAfter(last)).limit(pageSize);
+                List<QueryDocumentSnapshot> docs = FirestoreFutures.toCompletable("vehicles.preload", page.get()).get().getDocuments();
+                for (QueryDocumentSnapshot doc : docs) {
+                    Map<String, Object> data = new HashMap<>(doc.getData());
+                    data.put("id", doc.getId());
+                    if (store.slotOf(doc.getId()) < 0) added.incrementAndGet();
+                    telemetry.addOrInitVehicle(doc.getId(), data);
+                    seen.add(doc.getId());
+                }
+                if (docs.size() < pageSize) return;
+                last = docs.get(docs.size() - 1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
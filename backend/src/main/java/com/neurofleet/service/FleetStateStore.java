@@ -0,0 +1,482 @@
+package com.neurofleet.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Live fleet state kept as struct-of-arrays columns indexed by an interned vehicle slot.
+ * Structural changes (add/remove/grow) take the write lock; per-slot reads and the tick
+ * loop run under the read lock, so shards touching disjoint slots never contend. Every column write also
+ * updates {@link FleetAggregates}, so fleet-wide summaries never need a scan.
+ */
+@Component
+public class FleetStateStore implements GeoGridIndex.LatLon {
+
+    public static final byte STATUS_AVAILABLE = 0;
+    public static final byte STATUS_ON_TRIP = 1;
+    public static final byte STATUS_CHARGING = 2;
+
+    /** Notified when a booking or dispatch changes a vehicle's status, but not by the simulation's own writes. */
+    public interface StatusListener {
+        void statusChanged(int slot, String id, byte code);
+    }
+
+    private static final VarHandle STATUS_CELL = MethodHandles.arrayElementVarHandle(byte[].class);
+    private static final VarHandle DOUBLE_CELL = MethodHandles.arrayElementVarHandle(double[].class);
+    private static final VarHandle INT_CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private static final Set<String> COLUMN_FIELDS = Set.of(
+            "id", "status", "batteryLevel", "range", "batteryHealth", "latitude", "longitude", "lastUpdate");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final GeoGridIndex grid;
+    private final FleetAggregates aggregates = new FleetAggregates();
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+
+    // Status strings interned to byte codes; the first three match the constants above.
+    private final Map<String, Byte> statusCodes = new ConcurrentHashMap<>();
+    private volatile String[] statusNames = new String[0];
+
+    private volatile StatusListener statusListener;
+    private volatile int highWater;
+    private String[] ids;
+    private Map<String, Object>[] attributes;
+    private double[] latitude;
+    private double[] longitude;
+    private double[] battery;
+    private double[] batteryHealth;
+    private int[] range;
+    private byte[] status;
+    private long[] lastUpdateNanos;
+    // Wall-clock ms of the latest device report, 0 if none; grown with the other columns under the write lock.
+    private long[] reportedMs;
+    // 1 while a tick shard, ingest consumer or cluster update is writing the slot; see lockSlot.
+    private int[] writer;
+    private int[] generation;
+
+    public FleetStateStore(@Value("${app.telemetry.grid-cell-degrees:0.005}") double gridCellDegrees) {
+        this.grid = new GeoGridIndex(gridCellDegrees);
+        allocate(1024);
+        statusCode("available");
+        statusCode("on-trip");
+        statusCode("charging");
+    }
+
+    /** Interns the vehicle and overwrites its static attributes and any column values present in {@code base}. */
+    public int upsert(String id, Map<String, Object> base,
+                      double lat, double lon, double batteryLevel, int rangeKm, double health, String statusName) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slots.get(id);
+            int slot = existing != null ? existing : claimSlot(id);
+            if (existing != null) aggregates.subtract(status[slot], battery[slot], batteryHealth[slot], range[slot]);
+            Map<String, Object> attrs = new HashMap<>();
+            for (Map.Entry<String, Object> e : base.entrySet()) {
+                if (!COLUMN_FIELDS.contains(e.getKey())) attrs.put(e.getKey(), e.getValue());
+            }
+            attributes[slot] = Collections.unmodifiableMap(attrs);
+            latitude[slot] = lat;
+            longitude[slot] = lon;
+            battery[slot] = batteryLevel;
+            range[slot] = rangeKm;
+            batteryHealth[slot] = health;
+            status[slot] = statusCode(statusName);
+            generation[slot]++;
+            grid.update(slot, lat, lon);
+            aggregates.add(status[slot], batteryLevel, health, rangeKm);
+            return slot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Applies an admin update to a known vehicle: column values present in {@code update} replace the live ones and
+     * the other fields merge into its attributes. False if the vehicle is not live.
+     */
+    public boolean merge(String id, Map<String, Object> update) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return false;
+            Map<String, Object> attrs = new HashMap<>(attributes[slot]);
+            for (Map.Entry<String, Object> e : update.entrySet()) {
+                if (!COLUMN_FIELDS.contains(e.getKey())) attrs.put(e.getKey(), e.getValue());
+            }
+            attributes[slot] = Collections.unmodifiableMap(attrs);
+            byte previous = status[slot];
+            aggregates.subtract(previous, battery[slot], batteryHealth[slot], range[slot]);
+            latitude[slot] = number(update.get("latitude"), latitude[slot]);
+            longitude[slot] = number(update.get("longitude"), longitude[slot]);
+            battery[slot] = number(update.get("batteryLevel"), battery[slot]);
+            range[slot] = (int) number(update.get("range"), range[slot]);
+            batteryHealth[slot] = number(update.get("batteryHealth"), batteryHealth[slot]);
+            if (update.get("status") != null) status[slot] = statusCode(update.get("status").toString());
+            generation[slot]++;
+            grid.update(slot, latitude[slot], longitude[slot]);
+            aggregates.add(status[slot], battery[slot], batteryHealth[slot], range[slot]);
+            StatusListener listener = statusListener;
+            if (listener != null && status[slot] != previous) listener.statusChanged(slot, id, status[slot]);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Replaces the static attributes of a known vehicle, leaving its live columns alone; false if unknown. */
+    public boolean refreshAttributes(String id, Map<String, Object> base) {
+        Map<String, Object> attrs = new HashMap<>();
+        for (Map.Entry<String, Object> e : base.entrySet()) {
+            if (!COLUMN_FIELDS.contains(e.getKey())) attrs.put(e.getKey(), e.getValue());
+        }
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return false;
+            attributes[slot] = Collections.unmodifiableMap(attrs);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot == null) return false;
+            aggregates.subtract(status[slot], battery[slot], batteryHealth[slot], range[slot]);
+            grid.remove(slot);
+            ids[slot] = null;
+            attributes[slot] = null;
+            lastUpdateNanos[slot] = 0;
+            reportedMs[slot] = 0;
+            generation[slot]++;
+            freeSlots.push(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int slotOf(String id) {
+        Integer slot = slots.get(id);
+        return slot != null ? slot : -1;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /** Exclusive upper bound of slots that have ever been assigned. */
+    public int highWater() {
+        return highWater;
+    }
+
+    /**
+     * Runs {@code action} for every live slot in {@code [from, to)} under the read lock.
+     * Column accessors are only valid inside the callback or another locked section.
+     */
+    public void forEachLive(int from, int to, IntConsumer action) {
+        lock.readLock().lock();
+        try {
+            int end = Math.min(to, highWater);
+            for (int slot = from; slot < end; slot++) {
+                if (ids[slot] != null) action.accept(slot);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Runs {@code action} under the read lock so it can walk slots, including dead ones, via the accessors. */
+    public void readLocked(Runnable action) {
+        lock.readLock().lock();
+        try {
+            action.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String idAt(int slot) { return ids[slot]; }
+    public Map<String, Object> attributes(int slot) { return attributes[slot]; }
+    public double latitude(int slot) { return latitude[slot]; }
+    public double longitude(int slot) { return longitude[slot]; }
+    public double battery(int slot) { return battery[slot]; }
+    public double batteryHealth(int slot) { return batteryHealth[slot]; }
+    public int range(int slot) { return range[slot]; }
+    public byte status(int slot) { return status[slot]; }
+    public long lastUpdateNanos(int slot) { return lastUpdateNanos[slot]; }
+    public long reportedMs(int slot) { return reportedMs[slot]; }
+    /** Bumped whenever the slot is (re)initialised or freed, so consumers can tell a fresh record from an update. */
+    public int generation(int slot) { return generation[slot]; }
+
+    /**
+     * Makes the caller the slot's only writer until {@link #unlockSlot}. The tick, the ingest consumers and cluster
+     * updates each move vehicles from their own threads, and the grid's move is not safe for two writers on one slot.
+     * Holders keep a slot for a single update, so waiting is a spin. Call with the read lock held.
+     */
+    public void lockSlot(int slot) {
+        while (!INT_CELL.compareAndSet(writer, slot, 0, 1)) Thread.onSpinWait();
+    }
+
+    public void unlockSlot(int slot) {
+        INT_CELL.setRelease(writer, slot, 0);
+    }
+
+    /** Moves the vehicle and keeps the spatial index in step; the caller must hold the slot (see {@link #lockSlot}). */
+    public void setPosition(int slot, double lat, double lon) {
+        latitude[slot] = lat;
+        longitude[slot] = lon;
+        grid.update(slot, lat, lon);
+    }
+
+    // The column setters swap like setStatus, so the aggregates always see the value actually replaced even when an
+    // admin write races the simulation.
+    public void setBattery(int slot, double value) {
+        aggregates.batteryChanged((double) DOUBLE_CELL.getAndSet(battery, slot, value), value);
+    }
+
+    public void setBatteryHealth(int slot, double value) {
+        aggregates.healthChanged((double) DOUBLE_CELL.getAndSet(batteryHealth, slot, value), value);
+    }
+
+    public void setRange(int slot, int value) {
+        aggregates.rangeChanged((int) INT_CELL.getAndSet(range, slot, value), value);
+    }
+
+    /** Swaps atomically so a status counted by the aggregates is never lost to a concurrent {@link #updateStatus}. */
+    public void setStatus(int slot, byte code) {
+        aggregates.statusChanged((byte) STATUS_CELL.getAndSet(status, slot, code), code);
+    }
+
+    public void setLastUpdateNanos(int slot, long epochNanos) { lastUpdateNanos[slot] = epochNanos; }
+    public void setReportedMs(int slot, long epochMs) { reportedMs[slot] = epochMs; }
+
+    public boolean updateStatus(String id, String statusName) {
+        byte code = statusCode(statusName);
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return false;
+            setStatus(slot, code);
+            StatusListener listener = statusListener;
+            if (listener != null) listener.statusChanged(slot, id, code);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Atomically moves the vehicle from status {@code from} to {@code to} if it is still {@code expectedId}.
+     * Used by dispatch so two bookings can never claim the same vehicle.
+     */
+    public boolean claim(int slot, String expectedId, byte from, byte to) {
+        lock.readLock().lock();
+        try {
+            if (slot >= highWater || !expectedId.equals(ids[slot]) || !STATUS_CELL.compareAndSet(status, slot, from, to)) return false;
+            aggregates.statusChanged(from, to);
+            StatusListener listener = statusListener;
+            if (listener != null) listener.statusChanged(slot, expectedId, to);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setStatusListener(StatusListener listener) {
+        this.statusListener = listener;
+    }
+
+    public byte statusCode(String name) {
+        Byte code = statusCodes.get(name);
+        if (code != null) return code;
+        synchronized (statusCodes) {
+            code = statusCodes.get(name);
+            if (code != null) return code;
+            String[] names = statusNames;
+            if (names.length == Byte.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct vehicle statuses");
+            }
+            String[] grown = Arrays.copyOf(names, names.length + 1);
+            grown[names.length] = name;
+            statusNames = grown;
+            code = (byte) names.length;
+            statusCodes.put(name, code);
+            return code;
+        }
+    }
+
+    public String statusName(byte code) {
+        return statusNames[code];
+    }
+
+    /** Interned status names indexed by code; the array is replaced, never modified, when a status is added. */
+    public String[] statusNames() {
+        return statusNames;
+    }
+
+    public FleetAggregates aggregates() {
+        return aggregates;
+    }
+
+    /** Fleet-wide counts, battery histogram, averages and utilization; constant time regardless of fleet size. */
+    public Map<String, Object> fleetStats(long nowMillis) {
+        return aggregates.snapshot(statusNames, nowMillis);
+    }
+
+    /** Materialises the legacy map view of one vehicle; {@code null} if unknown. */
+    public Map<String, Object> view(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            return slot != null ? viewOf(slot) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Map<String, Object>> viewAll() {
+        List<Map<String, Object>> list = new ArrayList<>(slots.size());
+        forEachLive(0, Integer.MAX_VALUE, slot -> list.add(viewOf(slot)));
+        return list;
+    }
+
+    /** Up to {@code k} vehicles within {@code radiusKm}, nearest first, each view carrying {@code distanceKm}. */
+    public List<Map<String, Object>> nearby(double lat, double lon, double radiusKm, String statusName, int k) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntPredicate filter = statusFilter(statusName);
+            if (filter == null) return list;
+            grid.nearest(lat, lon, radiusKm, k, filter, this, (slot, distance) -> {
+                Map<String, Object> v = viewOf(slot);
+                v.put("distanceKm", distance);
+                list.add(v);
+            });
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Slot-level nearest search for callers that need columns rather than map views. */
+    public void nearestSlots(double lat, double lon, double radiusKm, int k, IntPredicate filter, GeoGridIndex.HitConsumer out) {
+        lock.readLock().lock();
+        try {
+            grid.nearest(lat, lon, radiusKm, k, slot -> ids[slot] != null && filter.test(slot), this, out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Up to {@code limit} vehicles inside the box; scans the columns instead when the box spans more cells than vehicles. */
+    public List<Map<String, Object>> within(double minLat, double minLon, double maxLat, double maxLon,
+                                            String statusName, int limit) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntPredicate filter = statusFilter(statusName);
+            if (filter == null) return list;
+            if (grid.cellsCovering(minLat, minLon, maxLat, maxLon) <= highWater) {
+                grid.within(minLat, minLon, maxLat, maxLon, limit, filter, this, (slot, distance) -> list.add(viewOf(slot)));
+                return list;
+            }
+            for (int slot = 0; slot < highWater && list.size() < limit; slot++) {
+                if (ids[slot] == null || !filter.test(slot)) continue;
+                double lat = latitude[slot], lon = longitude[slot];
+                if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) list.add(viewOf(slot));
+            }
+            return list;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Predicate over slots for an optional status; {@code null} when the status has never been seen. */
+    private IntPredicate statusFilter(String statusName) {
+        if (statusName == null || statusName.isBlank()) return slot -> true;
+        Byte code = statusCodes.get(statusName);
+        if (code == null) return null;
+        byte wanted = code;
+        return slot -> status[slot] == wanted;
+    }
+
+    private Map<String, Object> viewOf(int slot) {
+        Map<String, Object> v = new HashMap<>(attributes[slot]);
+        v.put("id", ids[slot]);
+        v.put("status", statusNames[status[slot]]);
+        v.put("batteryLevel", battery[slot]);
+        v.put("range", range[slot]);
+        v.put("batteryHealth", batteryHealth[slot]);
+        v.put("latitude", latitude[slot]);
+        v.put("longitude", longitude[slot]);
+        long nanos = lastUpdateNanos[slot];
+        if (nanos != 0) v.put("lastUpdate", Instant.ofEpochSecond(0, nanos).toString());
+        return v;
+    }
+
+    private int claimSlot(String id) {
+        Integer reused = freeSlots.poll();
+        int slot;
+        if (reused != null) {
+            slot = reused;
+        } else {
+            slot = highWater;
+            if (slot == ids.length) grow(ids.length * 2);
+            highWater = slot + 1;
+        }
+        ids[slot] = id;
+        slots.put(id, slot);
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        grid.ensureCapacity(capacity);
+        ids = new String[capacity];
+        attributes = new Map[capacity];
+        latitude = new double[capacity];
+        longitude = new double[capacity];
+        battery = new double[capacity];
+        batteryHealth = new double[capacity];
+        range = new int[capacity];
+        status = new byte[capacity];
+        lastUpdateNanos = new long[capacity];
+        reportedMs = new long[capacity];
+        writer = new int[capacity];
+        generation = new int[capacity];
+    }
+
+    private void grow(int capacity) {
+        grid.ensureCapacity(capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        attributes = Arrays.copyOf(attributes, capacity);
+        latitude = Arrays.copyOf(latitude, capacity);
+        longitude = Arrays.copyOf(longitude, capacity);
+        battery = Arrays.copyOf(battery, capacity);
+        batteryHealth = Arrays.copyOf(batteryHealth, capacity);
+        range = Arrays.copyOf(range, capacity);
+        status = Arrays.copyOf(status, capacity);
+        lastUpdateNanos = Arrays.copyOf(lastUpdateNanos, capacity);
+        reportedMs = Arrays.copyOf(reportedMs, capacity);
+        writer = Arrays.copyOf(writer, capacity);
+        generation = Arrays.copyOf(generation, capacity);
+    }
+
+    private static double number(Object value, double fallback) {
+        return value instanceof Number n ? n.doubleValue() : fallback;
+    }
+}
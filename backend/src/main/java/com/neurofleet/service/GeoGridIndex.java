@@ -0,0 +1,220 @@
+package com.neurofleet.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform lat/lon grid over vehicle slots. Each cell holds a compact int array of slots; a slot remembers
+ * its cell and position so moves and removals are O(1) swap-removes. Cells are locked individually, so
+ * tick shards moving different vehicles rarely contend. Queries walk only the cells they overlap.
+ */
+public class GeoGridIndex {
+
+    static final double KM_PER_DEGREE = 111.32;
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private static final class Cell {
+        int[] slots = new int[8];
+        int size;
+    }
+
+    /** Receives query hits in ascending distance order (nearest) or grid order (bbox). */
+    public interface HitConsumer {
+        void accept(int slot, double distanceKm);
+    }
+
+    private final double cellDegrees;
+    private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+    private long[] cellOf = new long[0];
+    private int[] positionInCell = new int[0];
+
+    public GeoGridIndex(double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+    }
+
+    /** Must be called under the owner's exclusive lock before slots up to {@code capacity} are used. */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= cellOf.length) return;
+        int old = cellOf.length;
+        cellOf = Arrays.copyOf(cellOf, capacity);
+        positionInCell = Arrays.copyOf(positionInCell, capacity);
+        Arrays.fill(cellOf, old, capacity, NO_CELL);
+    }
+
+    /** Places or moves the slot; a no-op when it stays within its current cell. */
+    public void update(int slot, double lat, double lon) {
+        long key = key(cell(lat), cell(lon));
+        long current = cellOf[slot];
+        if (current == key) return;
+        if (current != NO_CELL) remove(slot);
+        Cell target = cells.computeIfAbsent(key, k -> new Cell());
+        synchronized (target) {
+            if (target.size == target.slots.length) target.slots = Arrays.copyOf(target.slots, target.size * 2);
+            positionInCell[slot] = target.size;
+            target.slots[target.size++] = slot;
+            cellOf[slot] = key;
+        }
+    }
+
+    public void remove(int slot) {
+        long key = cellOf[slot];
+        if (key == NO_CELL) return;
+        Cell cell = cells.get(key);
+        synchronized (cell) {
+            int pos = positionInCell[slot];
+            int last = cell.slots[--cell.size];
+            cell.slots[pos] = last;
+            positionInCell[last] = pos;
+            cellOf[slot] = NO_CELL;
+        }
+    }
+
+    /**
+     * k-nearest slots within {@code radiusKm} accepted by {@code filter}. Searches rings of cells outward
+     * from the query point and stops once no unvisited cell can beat the current k-th distance.
+     */
+    public void nearest(double lat, double lon, double radiusKm, int k, IntPredicate filter,
+                        LatLon positions, HitConsumer out) {
+        if (k <= 0) return;
+        int[] heapSlots = new int[k];
+        double[] heapDist = new double[k];
+        int size = 0;
+
+        long centerLat = cell(lat), centerLon = cell(lon);
+        double cellKm = cellDegrees * KM_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(Math.abs(lat) + cellDegrees)));
+        // Past half the globe's worth of rings every cell has been visited; this also bounds absurd radii
+        int maxRing = (int) Math.min(Math.ceil(radiusKm / cellKm) + 1, Math.ceil(180 / cellDegrees));
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double unvisitedBound = Math.max(0, ring - 1) * cellKm;
+            if (unvisitedBound > radiusKm) break;
+            if (size == k && heapDist[0] <= unvisitedBound) break;
+            for (long la = centerLat - ring; la <= centerLat + ring; la++) {
+                boolean edgeRow = la == centerLat - ring || la == centerLat + ring;
+                long step = edgeRow ? 1 : 2L * ring;
+                for (long lo = centerLon - ring; lo <= centerLon + ring; lo += Math.max(1, step)) {
+                    Cell cell = cells.get(key(la, lo));
+                    if (cell == null) continue;
+                    synchronized (cell) {
+                        for (int i = 0; i < cell.size; i++) {
+                            int slot = cell.slots[i];
+                            if (!filter.test(slot)) continue;
+                            double d = haversineKm(lat, lon, positions.latitude(slot), positions.longitude(slot));
+                            if (d > radiusKm) continue;
+                            if (size < k) {
+                                heapSlots[size] = slot;
+                                heapDist[size] = d;
+                                siftUp(heapSlots, heapDist, size++);
+                            } else if (d < heapDist[0]) {
+                                heapSlots[0] = slot;
+                                heapDist[0] = d;
+                                siftDown(heapSlots, heapDist, size);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        // Drain the max-heap back to front to emit nearest first.
+        int[] orderedSlots = new int[size];
+        double[] orderedDist = new double[size];
+        for (int n = size; n > 0; n--) {
+            orderedSlots[n - 1] = heapSlots[0];
+            orderedDist[n - 1] = heapDist[0];
+            heapSlots[0] = heapSlots[n - 1];
+            heapDist[0] = heapDist[n - 1];
+            siftDown(heapSlots, heapDist, n - 1);
+        }
+        for (int i = 0; i < size; i++) out.accept(orderedSlots[i], orderedDist[i]);
+    }
+
+    /** Slots inside the box accepted by {@code filter}, up to {@code limit}. */
+    public void within(double minLat, double minLon, double maxLat, double maxLon, int limit, IntPredicate filter,
+                       LatLon positions, HitConsumer out) {
+        int found = 0;
+        long laStart = cell(clamp(minLat, 90)), laEnd = cell(clamp(maxLat, 90));
+        long loStart = cell(clamp(minLon, 180)), loEnd = cell(clamp(maxLon, 180));
+        for (long la = laStart; la <= laEnd; la++) {
+            for (long lo = loStart; lo <= loEnd; lo++) {
+                Cell cell = cells.get(key(la, lo));
+                if (cell == null) continue;
+                synchronized (cell) {
+                    for (int i = 0; i < cell.size; i++) {
+                        int slot = cell.slots[i];
+                        double sLat = positions.latitude(slot), sLon = positions.longitude(slot);
+                        if (sLat < minLat || sLat > maxLat || sLon < minLon || sLon > maxLon || !filter.test(slot)) continue;
+                        out.accept(slot, Double.NaN);
+                        if (++found >= limit) return;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Cells a bbox query would visit; callers use it to fall back to a scan for continent-sized boxes. */
+    public long cellsCovering(double minLat, double minLon, double maxLat, double maxLon) {
+        long lat = cell(clamp(maxLat, 90)) - cell(clamp(minLat, 90)) + 1;
+        long lon = cell(clamp(maxLon, 180)) - cell(clamp(minLon, 180)) + 1;
+        if (lat <= 0 || lon <= 0) return 0;
+        try {
+            return Math.multiplyExact(lat, lon);
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** Bounds a coordinate to the globe so cell numbers stay small; no vehicle lies outside it. */
+    private static double clamp(double degrees, double limit) {
+        return Math.max(-limit, Math.min(limit, degrees));
+    }
+
+    /** Column accessors used to read positions during a query. */
+    public interface LatLon {
+        double latitude(int slot);
+        double longitude(int slot);
+    }
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6371.0 * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(long latCell, long lonCell) {
+        return (latCell << 32) ^ (lonCell & 0xffffffffL);
+    }
+
+    private static void siftUp(int[] slots, double[] dist, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (dist[parent] >= dist[i]) break;
+            swap(slots, dist, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] slots, double[] dist, int size) {
+        int i = 0;
+        while (true) {
+            int left = 2 * i + 1, largest = i;
+            if (left < size && dist[left] > dist[largest]) largest = left;
+            if (left + 1 < size && dist[left + 1] > dist[largest]) largest = left + 1;
+            if (largest == i) return;
+            swap(slots, dist, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(int[] slots, double[] dist, int a, int b) {
+        int s = slots[a]; slots[a] = slots[b]; slots[b] = s;
+        double d = dist[a]; dist[a] = dist[b]; dist[b] = d;
+    }
+}
@@ -0,0 +1,51 @@
+package com.neurofleet.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the most recent latency samples in a fixed ring and reports count, mean and percentiles over them.
+ * Recording is a single array store; percentiles are computed on read.
+ */
+public class LatencyRecorder {
+
+    private final long[] samples;
+    private final AtomicLong count = new AtomicLong();
+
+    public LatencyRecorder(int window) {
+        this.samples = new long[window];
+    }
+
+    public void record(long nanos) {
+        long n = count.getAndIncrement();
+        samples[(int) (n % samples.length)] = nanos;
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /** Count plus mean/p50/p95/p99/max in milliseconds over the current window. */
+    public Map<String, Object> snapshot() {
+        long n = count.get();
+        int size = (int) Math.min(n, samples.length);
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", n);
+        m.put("meanMs", size == 0 ? 0.0 : Arrays.stream(sorted).average().orElse(0) / 1e6);
+        m.put("p50Ms", percentile(sorted, 0.50));
+        m.put("p95Ms", percentile(sorted, 0.95));
+        m.put("p99Ms", percentile(sorted, 0.99));
+        m.put("maxMs", size == 0 ? 0.0 : sorted[size - 1] / 1e6);
+        return m;
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
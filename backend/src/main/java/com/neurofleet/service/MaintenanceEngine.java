@@ -0,0 +1,324 @@
+package com.neurofleet.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Online maintenance scoring, fed by the tick loop one slot at a time. Per vehicle it keeps a fixed set of
+ * exponentially weighted statistics in struct-of-arrays columns (no allocation per update):
+ * <ul>
+ *   <li>battery drain per hour under load (on trip): mean and variance;</li>
+ *   <li>battery health and its decline per day;</li>
+ *   <li>range per battery percent, fast and slow averages, to spot efficiency loss.</li>
+ * </ul>
+ * Risk is a weighted blend of health against the service threshold, drain against the fleet average and
+ * efficiency against the vehicle's own baseline. Time to service extrapolates the health trend to the
+ * threshold. Level changes are queued as alerts for the tick loop to broadcast.
+ */
+@Service
+public class MaintenanceEngine {
+
+    public static final byte HEALTHY = 0;
+    public static final byte DUE = 1;
+    public static final byte CRITICAL = 2;
+    private static final String[] LEVEL_NAMES = {"healthy", "due", "critical"};
+
+    private static final double HEALTH_WEIGHT = 0.6;
+    private static final double DRAIN_WEIGHT = 0.25;
+    private static final double EFFICIENCY_WEIGHT = 0.15;
+    private static final double HYSTERESIS = 0.05;
+    private static final double NANOS_PER_HOUR = 3.6e12;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public record Alert(String vehicleId, byte level, byte previousLevel, double risk, double hoursToService) {}
+
+    private final FleetStateStore store;
+    private final double serviceHealth;
+    private final double dueRisk;
+    private final double criticalRisk;
+    private final double dueHours;
+    private final double criticalHours;
+    private final double fastHalfLifeHours;
+    private final double slowHalfLifeHours;
+
+    // Replaced last when growing and volatile, so a reader sizing its scan by it sees the other grown columns.
+    private volatile int[] generation = new int[0];
+    private int[] samples = new int[0];
+    private long[] lastNanos = new long[0];
+    private double[] lastBattery = new double[0];
+    private double[] lastHealth = new double[0];
+    private double[] drainMean = new double[0];
+    private double[] drainVar = new double[0];
+    private double[] healthMean = new double[0];
+    private double[] healthDecline = new double[0];
+    private double[] efficiency = new double[0];
+    private double[] efficiencyBaseline = new double[0];
+    private double[] risk = new double[0];
+    private double[] hoursToService = new double[0];
+    private byte[] level = new byte[0];
+
+    // Per-tick smoothing factors and the fleet drain average from the previous tick.
+    private volatile double alphaFast;
+    private volatile double alphaSlow;
+    private volatile double fleetDrain = Double.NaN;
+    private final DoubleAdder drainSum = new DoubleAdder();
+    private final LongAdder drainCount = new LongAdder();
+    private final Queue<Alert> alerts = new ConcurrentLinkedQueue<>();
+    private final LongAdder alertsRaised = new LongAdder();
+
+    public MaintenanceEngine(FleetStateStore store,
+                             @Value("${app.maintenance.service-health:70}") double serviceHealth,
+                             @Value("${app.maintenance.due-risk:0.5}") double dueRisk,
+                             @Value("${app.maintenance.critical-risk:0.8}") double criticalRisk,
+                             @Value("${app.maintenance.due-hours:168}") double dueHours,
+                             @Value("${app.maintenance.critical-hours:24}") double criticalHours,
+                             @Value("${app.maintenance.fast-half-life-hours:1}") double fastHalfLifeHours,
+                             @Value("${app.maintenance.slow-half-life-hours:72}") double slowHalfLifeHours) {
+        this.store = store;
+        this.serviceHealth = serviceHealth;
+        this.dueRisk = dueRisk;
+        this.criticalRisk = criticalRisk;
+        this.dueHours = dueHours;
+        this.criticalHours = criticalHours;
+        this.fastHalfLifeHours = fastHalfLifeHours;
+        this.slowHalfLifeHours = slowHalfLifeHours;
+    }
+
+    /** Called by the tick thread before the shards run: sizes the columns and fixes this tick's smoothing. */
+    public void beginTick(int capacity, long tickIntervalNanos) {
+        ensureCapacity(capacity);
+        double dtHours = tickIntervalNanos / NANOS_PER_HOUR;
+        alphaFast = 1 - Math.pow(0.5, dtHours / fastHalfLifeHours);
+        alphaSlow = 1 - Math.pow(0.5, dtHours / slowHalfLifeHours);
+        drainSum.reset();
+        drainCount.reset();
+    }
+
+    /** Folds the slot's current state into its statistics. Shards call this concurrently on disjoint slots. */
+    public void update(int slot, long nowNanos) {
+        double battery = store.battery(slot);
+        double health = store.batteryHealth(slot);
+        int gen = store.generation(slot);
+        if (generation[slot] != gen || samples[slot] == 0) {
+            reset(slot, gen, nowNanos, battery, health);
+            return;
+        }
+        double dtHours = (nowNanos - lastNanos[slot]) / NANOS_PER_HOUR;
+        if (dtHours <= 0) return;
+        double a = alphaFast;
+
+        if (store.status(slot) == FleetStateStore.STATUS_ON_TRIP && battery <= lastBattery[slot]) {
+            double rate = (lastBattery[slot] - battery) / dtHours;
+            if (samples[slot] == 1 || drainMean[slot] == 0) {
+                drainMean[slot] = rate;
+            } else {
+                double diff = rate - drainMean[slot];
+                double increment = a * diff;
+                drainMean[slot] += increment;
+                drainVar[slot] = (1 - a) * (drainVar[slot] + diff * increment);
+            }
+            drainSum.add(drainMean[slot]);
+            drainCount.increment();
+        }
+
+        healthMean[slot] += a * (health - healthMean[slot]);
+        double declinePerDay = (lastHealth[slot] - health) / dtHours * 24;
+        healthDecline[slot] += alphaSlow * (declinePerDay - healthDecline[slot]);
+
+        if (battery > 5) {
+            double e = store.range(slot) / battery;
+            efficiency[slot] += a * (e - efficiency[slot]);
+            efficiencyBaseline[slot] += alphaSlow * (e - efficiencyBaseline[slot]);
+        }
+
+        lastNanos[slot] = nowNanos;
+        lastBattery[slot] = battery;
+        lastHealth[slot] = health;
+        samples[slot]++;
+        score(slot, true);
+    }
+
+    /** Publishes the fleet drain average for the next tick and hands back the alerts raised during this one. */
+    public List<Alert> endTick() {
+        long n = drainCount.sum();
+        if (n > 0) fleetDrain = drainSum.sum() / n;
+        if (alerts.isEmpty()) return List.of();
+        List<Alert> out = new ArrayList<>();
+        for (Alert alert; (alert = alerts.poll()) != null; ) out.add(alert);
+        return out;
+    }
+
+    /** Scored view of one vehicle, or {@code null} if unknown. */
+    public Map<String, Object> view(String id) {
+        int slot = store.slotOf(id);
+        int[] gens = generation;
+        if (slot < 0 || slot >= gens.length || gens[slot] != store.generation(slot) || samples[slot] == 0) return null;
+        return viewOf(slot, id);
+    }
+
+    /** Vehicles at or above {@code minLevel} and {@code minRisk}, riskiest first. */
+    public List<Map<String, Object>> list(byte minLevel, double minRisk, int limit) {
+        List<Integer> matches = new ArrayList<>();
+        int[] gens = generation;
+        store.forEachLive(0, gens.length, slot -> {
+            if (samples[slot] > 0 && gens[slot] == store.generation(slot) && level[slot] >= minLevel && risk[slot] >= minRisk) {
+                matches.add(slot);
+            }
+        });
+        double[] r = risk;
+        matches.sort((x, y) -> Double.compare(r[y], r[x]));
+        List<Map<String, Object>> out = new ArrayList<>(Math.min(limit, matches.size()));
+        for (int i = 0; i < matches.size() && out.size() < limit; i++) {
+            int slot = matches.get(i);
+            String id = store.idAt(slot);
+            if (id != null) out.add(viewOf(slot, id));
+        }
+        return out;
+    }
+
+    public Map<String, Object> getStats() {
+        int[] counts = new int[LEVEL_NAMES.length];
+        int[] gens = generation;
+        store.forEachLive(0, gens.length, slot -> {
+            if (samples[slot] > 0 && gens[slot] == store.generation(slot)) counts[level[slot]]++;
+        });
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) m.put(LEVEL_NAMES[i], counts[i]);
+        m.put("fleetDrainPerHour", Double.isNaN(fleetDrain) ? null : fleetDrain);
+        m.put("alertsRaised", alertsRaised.sum());
+        m.put("serviceHealth", serviceHealth);
+        return m;
+    }
+
+    // A vehicle's first score only sets its level; alerts are for changes after that.
+    private void score(int slot, boolean notify) {
+        double healthRisk = clamp((100 - healthMean[slot]) / (100 - serviceHealth));
+        double fleet = fleetDrain;
+        double drainRisk = 0;
+        if (fleet > 0 && drainMean[slot] > 0) {
+            // Upper band of this vehicle's drain against the fleet: 1 once it reaches three times the average.
+            double upper = drainMean[slot] + 2 * Math.sqrt(drainVar[slot]);
+            drainRisk = clamp((upper / fleet - 1) / 2);
+        }
+        double efficiencyRisk = efficiencyBaseline[slot] > 0
+                ? clamp((efficiencyBaseline[slot] - efficiency[slot]) / efficiencyBaseline[slot] / 0.2) : 0;
+        double r = clamp(HEALTH_WEIGHT * healthRisk + DRAIN_WEIGHT * drainRisk + EFFICIENCY_WEIGHT * efficiencyRisk);
+
+        double hours;
+        if (healthMean[slot] <= serviceHealth) hours = 0;
+        else if (healthDecline[slot] > 1e-6) hours = (healthMean[slot] - serviceHealth) / healthDecline[slot] * 24;
+        else hours = Double.POSITIVE_INFINITY;
+
+        byte previous = level[slot];
+        byte next = r >= criticalRisk || hours <= criticalHours ? CRITICAL : r >= dueRisk || hours <= dueHours ? DUE : HEALTHY;
+        // Only step down once clearly below the current level's threshold, so a vehicle on the edge does not flap.
+        if (next < previous && (r > (previous == CRITICAL ? criticalRisk : dueRisk) - HYSTERESIS
+                || hours <= (previous == CRITICAL ? criticalHours : dueHours) * 1.1)) {
+            next = previous;
+        }
+        risk[slot] = r;
+        hoursToService[slot] = hours;
+        level[slot] = next;
+        if (notify && next != previous) {
+            alerts.add(new Alert(store.idAt(slot), next, previous, r, hours));
+            alertsRaised.increment();
+        }
+    }
+
+    private void reset(int slot, int gen, long nowNanos, double battery, double health) {
+        generation[slot] = gen;
+        samples[slot] = 1;
+        lastNanos[slot] = nowNanos;
+        lastBattery[slot] = battery;
+        lastHealth[slot] = health;
+        drainMean[slot] = 0;
+        drainVar[slot] = 0;
+        healthMean[slot] = health;
+        healthDecline[slot] = 0;
+        double e = battery > 5 ? store.range(slot) / battery : 0;
+        efficiency[slot] = e;
+        efficiencyBaseline[slot] = e;
+        risk[slot] = 0;
+        hoursToService[slot] = Double.POSITIVE_INFINITY;
+        level[slot] = HEALTHY;
+        score(slot, false);
+    }
+
+    private Map<String, Object> viewOf(int slot, String id) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("id", id);
+        m.put("maintenanceStatus", LEVEL_NAMES[level[slot]]);
+        m.put("riskScore", Math.round(risk[slot] * 1000) / 1000.0);
+        m.put("overallHealth", Math.round(healthMean[slot]));
+        m.put("predictedServiceHours", Double.isInfinite(hoursToService[slot]) ? null : Math.round(hoursToService[slot] * 10) / 10.0);
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("batteryHealth", healthMean[slot]);
+        metrics.put("healthDeclinePerDay", healthDecline[slot]);
+        metrics.put("drainPerHour", drainMean[slot]);
+        metrics.put("drainStdDev", Math.sqrt(drainVar[slot]));
+        metrics.put("rangePerPercent", efficiency[slot]);
+        metrics.put("rangePerPercentBaseline", efficiencyBaseline[slot]);
+        metrics.put("samples", samples[slot]);
+        m.put("metrics", metrics);
+        return m;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= generation.length) return;
+        int size = Math.max(capacity, generation.length * 2);
+        samples = Arrays.copyOf(samples, size);
+        lastNanos = Arrays.copyOf(lastNanos, size);
+        lastBattery = Arrays.copyOf(lastBattery, size);
+        lastHealth = Arrays.copyOf(lastHealth, size);
+        drainMean = Arrays.copyOf(drainMean, size);
+        drainVar = Arrays.copyOf(drainVar, size);
+        healthMean = Arrays.copyOf(healthMean, size);
+        healthDecline = Arrays.copyOf(healthDecline, size);
+        efficiency = Arrays.copyOf(efficiency, size);
+        efficiencyBaseline = Arrays.copyOf(efficiencyBaseline, size);
+        risk = Arrays.copyOf(risk, size);
+        hoursToService = Arrays.copyOf(hoursToService, size);
+        level = Arrays.copyOf(level, size);
+        generation = Arrays.copyOf(generation, size);
+    }
+
+    /** One {@code maintenance_alerts} frame for all level changes of a tick. */
+    public static byte[] encodeAlerts(List<Alert> alerts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128 + alerts.size() * 128);
+        try (JsonGenerator gen = JSON.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "maintenance_alerts");
+            gen.writeNumberField("timestamp", System.currentTimeMillis());
+            gen.writeArrayFieldStart("alerts");
+            for (Alert a : alerts) {
+                gen.writeStartObject();
+                gen.writeStringField("vehicleId", a.vehicleId());
+                gen.writeStringField("maintenanceStatus", LEVEL_NAMES[a.level()]);
+                gen.writeStringField("previousStatus", LEVEL_NAMES[a.previousLevel()]);
+                gen.writeNumberField("riskScore", Math.round(a.risk() * 1000) / 1000.0);
+                if (Double.isInfinite(a.hoursToService())) gen.writeNullField("predictedServiceHours");
+                else gen.writeNumberField("predictedServiceHours", Math.round(a.hoursToService() * 10) / 10.0);
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static double clamp(double v) {
+        return v < 0 ? 0 : v > 1 ? 1 : v;
+    }
+}
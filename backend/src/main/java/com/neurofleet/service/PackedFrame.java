@@ -0,0 +1,115 @@
+package com.neurofleet.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One {@code neurofleet.bin.v1} telemetry frame. Big-endian throughout:
+ * <pre>
+ * header   u8 version=1, u8 type (1 snapshot, 2 delta), u16 statusCount, i64 seq, i64 epochMillis,
+ *          i32 removedCount, i32 idCount, i32 vehicleCount
+ * statuses statusCount x (u8 length, UTF-8 name); index = status code
+ * removed  removedCount x i32 slot, to be dropped before the rest is applied
+ * ids      idCount x (i32 slot, u16 length, UTF-8 vehicle id) for slots the client has not seen bound
+ * vehicles vehicleCount x 28 bytes: i32 slot, i32 lat*1e7, i32 lon*1e7, u16 battery*100, u16 health*100,
+ *          u16 rangeKm, u8 status, u8 flags (bit 0: slot bound in this frame), i64 lastUpdate epochMillis
+ * </pre>
+ * Vehicles are addressed by slot; static attributes (make, model...) stay on the REST API.
+ */
+final class PackedFrame {
+
+    static final byte VERSION = 1;
+    static final byte SNAPSHOT = 1;
+    static final byte DELTA = 2;
+    static final int HEADER_BYTES = 32;
+    static final int RECORD_BYTES = 28;
+    private static final double COORDINATE_SCALE = 1e7;
+
+    private final ByteBufferPool pool;
+    private final byte type;
+    private final long seq;
+    private final long epochMillis;
+    private ByteBuffer records;
+    private int vehicles;
+    private int[] removed = new int[0];
+    private int removedCount;
+    private final List<String> ids = new ArrayList<>();
+    private int[] idSlots = new int[0];
+
+    PackedFrame(ByteBufferPool pool, byte type, long seq, long epochMillis, int expectedVehicles) {
+        this.pool = pool;
+        this.type = type;
+        this.seq = seq;
+        this.epochMillis = epochMillis;
+        this.records = pool.acquire(Math.max(1, expectedVehicles) * RECORD_BYTES);
+    }
+
+    /** Appends the slot's current columns; {@code bound} also ships its id. */
+    void vehicle(FleetStateStore store, int slot, boolean bound) {
+        if (records.remaining() < RECORD_BYTES) {
+            ByteBuffer bigger = pool.acquire(records.capacity() * 2);
+            bigger.put(records.flip());
+            pool.release(records);
+            records = bigger;
+        }
+        records.putInt(slot);
+        records.putInt((int) Math.round(store.latitude(slot) * COORDINATE_SCALE));
+        records.putInt((int) Math.round(store.longitude(slot) * COORDINATE_SCALE));
+        records.putChar(unsigned16(store.battery(slot) * 100));
+        records.putChar(unsigned16(store.batteryHealth(slot) * 100));
+        records.putChar(unsigned16(store.range(slot)));
+        records.put(store.status(slot));
+        records.put((byte) (bound ? 1 : 0));
+        records.putLong(store.lastUpdateNanos(slot) / 1_000_000);
+        vehicles++;
+        if (bound) {
+            if (ids.size() == idSlots.length) idSlots = Arrays.copyOf(idSlots, Math.max(8, idSlots.length * 2));
+            idSlots[ids.size()] = slot;
+            ids.add(store.idAt(slot));
+        }
+    }
+
+    void removed(int slot) {
+        if (removedCount == removed.length) removed = Arrays.copyOf(removed, Math.max(8, removedCount * 2));
+        removed[removedCount++] = slot;
+    }
+
+    int vehicles() { return vehicles; }
+    int removedCount() { return removedCount; }
+
+    /** Assembles the frame and returns the scratch buffer to the pool; the frame cannot be used afterwards. */
+    byte[] finish(String[] statusNames) {
+        byte[][] names = new byte[statusNames.length][];
+        int size = HEADER_BYTES + removedCount * 4 + records.position();
+        for (int i = 0; i < names.length; i++) {
+            names[i] = truncate(statusNames[i].getBytes(StandardCharsets.UTF_8), 255);
+            size += 1 + names[i].length;
+        }
+        byte[][] idBytes = new byte[ids.size()][];
+        for (int i = 0; i < idBytes.length; i++) {
+            idBytes[i] = truncate(ids.get(i).getBytes(StandardCharsets.UTF_8), 65535);
+            size += 6 + idBytes[i].length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(VERSION).put(type).putChar((char) names.length).putLong(seq).putLong(epochMillis)
+                .putInt(removedCount).putInt(idBytes.length).putInt(vehicles);
+        for (byte[] name : names) out.put((byte) name.length).put(name);
+        for (int i = 0; i < removedCount; i++) out.putInt(removed[i]);
+        for (int i = 0; i < idBytes.length; i++) out.putInt(idSlots[i]).putChar((char) idBytes[i].length).put(idBytes[i]);
+        out.put(records.flip());
+        pool.release(records);
+        records = null;
+        return out.array();
+    }
+
+    private static char unsigned16(double value) {
+        return (char) Math.max(0, Math.min(65535, Math.round(value)));
+    }
+
+    private static byte[] truncate(byte[] bytes, int max) {
+        return bytes.length <= max ? bytes : Arrays.copyOf(bytes, max);
+    }
+}
@@ -0,0 +1,411 @@
+package com.neurofleet.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.neurofleet.websocket.SubscriptionIndex;
+import com.neurofleet.websocket.TelemetrySubscription;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Builds one frame per tick and subscription group holding only the vehicles that changed since the previous
+ * frame: JSON with just the changed fields, or a {@link PackedFrame} of fixed-size records for binary groups.
+ * Keeps a shadow copy of what was last sent per slot; not thread-safe, driven by the tick thread only.
+ * Snapshot frames read the live columns and leave the shadow untouched, so they are safe to build concurrently.
+ */
+public class TelemetryFrameEncoder {
+
+    private static final int LATITUDE = 1;
+    private static final int LONGITUDE = 1 << 1;
+    private static final int BATTERY = 1 << 2;
+    private static final int RANGE = 1 << 3;
+    private static final int HEALTH = 1 << 4;
+    private static final int STATUS = 1 << 5;
+
+    private final FleetStateStore store;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ByteBufferPool buffers = new ByteBufferPool(64, 8 * 1024 * 1024);
+
+    private String[] sentId = new String[0];
+    private int[] sentGeneration = new int[0];
+    private double[] sentLat = new double[0];
+    private double[] sentLon = new double[0];
+    private double[] sentBattery = new double[0];
+    private double[] sentHealth = new double[0];
+    private int[] sentRange = new int[0];
+    private byte[] sentStatus = new byte[0];
+
+    private long sequence;
+    private long visit;
+    private int lastFrameVehicles;
+    private int lastFrameBytes;
+    private int lastBinaryFrameBytes;
+
+    public TelemetryFrameEncoder(FleetStateStore store) {
+        this.store = store;
+    }
+
+    /** A frame under construction for one subscription group. */
+    private interface GroupFrame {
+        void full(int slot);
+
+        void fields(int slot, int mask);
+
+        void removed(int slot, String id);
+
+        int vehicles();
+
+        boolean isEmpty();
+
+        WebSocketMessage<?> finish() throws IOException;
+    }
+
+    private final class JsonFrame implements GroupFrame {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+        final JsonGenerator gen;
+        final List<String> removed = new ArrayList<>();
+        int count;
+
+        JsonFrame(long nowNanos) throws IOException {
+            gen = jsonFactory.createGenerator(buffer);
+            writeHeader(gen, "fleet_delta", sequence, nowNanos);
+            gen.writeArrayFieldStart("vehicles");
+        }
+
+        public void full(int slot) {
+            writeFull(gen, slot);
+            count++;
+        }
+
+        public void fields(int slot, int mask) {
+            writeFields(gen, slot, mask);
+            count++;
+        }
+
+        public void removed(int slot, String id) {
+            removed.add(id);
+        }
+
+        public int vehicles() {
+            return count;
+        }
+
+        public boolean isEmpty() {
+            return count == 0 && removed.isEmpty();
+        }
+
+        public WebSocketMessage<?> finish() throws IOException {
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("removed");
+            for (String id : removed) gen.writeString(id);
+            gen.writeEndArray();
+            gen.writeEndObject();
+            gen.close();
+            return new TextMessage(buffer.toByteArray());
+        }
+    }
+
+    private final class BinaryFrame implements GroupFrame {
+        final PackedFrame packed;
+
+        BinaryFrame(long nowNanos) {
+            packed = new PackedFrame(buffers, PackedFrame.DELTA, sequence, nowNanos / 1_000_000, 256);
+        }
+
+        public void full(int slot) {
+            packed.vehicle(store, slot, true);
+        }
+
+        public void fields(int slot, int mask) {
+            packed.vehicle(store, slot, false);
+        }
+
+        public void removed(int slot, String id) {
+            packed.removed(slot);
+        }
+
+        public int vehicles() {
+            return packed.vehicles();
+        }
+
+        public boolean isEmpty() {
+            return packed.vehicles() == 0 && packed.removedCount() == 0;
+        }
+
+        public WebSocketMessage<?> finish() {
+            return new BinaryMessage(packed.finish(store.statusNames()));
+        }
+    }
+
+    /**
+     * Diffs the store against what was last sent and queues one frame per subscription group that saw
+     * a change. Runs under the index lock so subscription changes cannot interleave with a tick's frames.
+     */
+    public void publishDelta(long nowNanos, SubscriptionIndex subscriptions) {
+        sequence++;
+        Map<SubscriptionIndex.Group, GroupFrame> frames = new HashMap<>();
+        subscriptions.withView(view -> {
+            try {
+                store.readLocked(() -> diff(view, frames, nowNanos));
+                int vehicles = 0;
+                int bytes = 0;
+                int binaryBytes = 0;
+                for (Map.Entry<SubscriptionIndex.Group, GroupFrame> e : frames.entrySet()) {
+                    GroupFrame frame = e.getValue();
+                    boolean empty = frame.isEmpty();
+                    WebSocketMessage<?> message = frame.finish();
+                    if (empty) continue;
+                    vehicles += frame.vehicles();
+                    bytes += message.getPayloadLength();
+                    if (message instanceof BinaryMessage) binaryBytes += message.getPayloadLength();
+                    e.getKey().send(message);
+                }
+                lastFrameVehicles = vehicles;
+                lastFrameBytes = bytes;
+                lastBinaryFrameBytes = binaryBytes;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /** Full-state frame in the subscription's format, for clients that connect or (re)subscribe. */
+    public WebSocketMessage<?> snapshot(TelemetrySubscription subscription) {
+        return subscription.format() == TelemetrySubscription.Format.BINARY
+                ? new BinaryMessage(encodePackedSnapshot(subscription))
+                : new TextMessage(encodeSnapshot(subscription));
+    }
+
+    /** Encodes every live vehicle matching {@code subscription} in full as JSON. */
+    public byte[] encodeSnapshot(TelemetrySubscription subscription) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            writeHeader(gen, "fleet_snapshot", sequence, nowEpochNanos());
+            gen.writeArrayFieldStart("vehicles");
+            store.readLocked(() -> {
+                for (int slot = 0, end = store.highWater(); slot < end; slot++) {
+                    String id = store.idAt(slot);
+                    if (id != null && subscription.matches(id, store.statusName(store.status(slot)),
+                            store.latitude(slot), store.longitude(slot))) {
+                        writeFull(gen, slot);
+                    }
+                }
+            });
+            gen.writeEndArray();
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /** Every live vehicle matching {@code subscription} as a packed snapshot, each slot bound to its id. */
+    public byte[] encodePackedSnapshot(TelemetrySubscription subscription) {
+        PackedFrame[] frame = new PackedFrame[1];
+        store.readLocked(() -> {
+            frame[0] = new PackedFrame(buffers, PackedFrame.SNAPSHOT, sequence, System.currentTimeMillis(), store.size());
+            for (int slot = 0, end = store.highWater(); slot < end; slot++) {
+                String id = store.idAt(slot);
+                if (id != null && subscription.matches(id, store.statusName(store.status(slot)),
+                        store.latitude(slot), store.longitude(slot))) {
+                    frame[0].vehicle(store, slot, true);
+                }
+            }
+        });
+        return frame[0].finish(store.statusNames());
+    }
+
+    public int lastFrameVehicles() { return lastFrameVehicles; }
+    public int lastFrameBytes() { return lastFrameBytes; }
+    public int lastBinaryFrameBytes() { return lastBinaryFrameBytes; }
+
+    private void diff(SubscriptionIndex.View view, Map<SubscriptionIndex.Group, GroupFrame> frames, long nowNanos) {
+        int end = store.highWater();
+        ensureCapacity(end);
+        for (int slot = 0; slot < sentId.length; slot++) {
+            String id = slot < end ? store.idAt(slot) : null;
+            String previous = sentId[slot];
+            boolean sameVehicle = previous != null && previous.equals(id);
+            if (previous != null && !sameVehicle) {
+                routeRemoval(view, frames, nowNanos, slot, previous);
+            }
+            if (id == null) {
+                sentId[slot] = null;
+                continue;
+            }
+            boolean full = !sameVehicle || sentGeneration[slot] != store.generation(slot);
+            int mask = full ? -1 : changedFields(slot);
+            if (mask == 0) continue;
+            route(view, frames, nowNanos, slot, id, sameVehicle, full, mask);
+            remember(slot, id);
+        }
+    }
+
+    private void route(SubscriptionIndex.View view, Map<SubscriptionIndex.Group, GroupFrame> frames, long nowNanos,
+                       int slot, String id, boolean hasPrevious, boolean full, int mask) {
+        String status = store.statusName(store.status(slot));
+        double lat = store.latitude(slot);
+        double lon = store.longitude(slot);
+        String prevStatus = hasPrevious ? store.statusName(sentStatus[slot]) : null;
+        double prevLat = sentLat[slot];
+        double prevLon = sentLon[slot];
+        long mark = ++visit;
+        Consumer<SubscriptionIndex.Group> visitor = group -> {
+            if (group.visitMark == mark) return;
+            group.visitMark = mark;
+            TelemetrySubscription sub = group.subscription();
+            boolean was = hasPrevious && sub.matches(id, prevStatus, prevLat, prevLon);
+            boolean is = sub.matches(id, status, lat, lon);
+            if (!was && !is) return;
+            GroupFrame frame = frame(frames, group, nowNanos);
+            if (is) {
+                if (full || !was) frame.full(slot);
+                else frame.fields(slot, mask);
+            } else {
+                frame.removed(slot, id);
+            }
+        };
+        view.candidates(id, status, lat, lon, visitor);
+        if (hasPrevious) view.candidates(id, prevStatus, prevLat, prevLon, visitor);
+    }
+
+    private void routeRemoval(SubscriptionIndex.View view, Map<SubscriptionIndex.Group, GroupFrame> frames,
+                              long nowNanos, int slot, String id) {
+        String status = store.statusName(sentStatus[slot]);
+        double lat = sentLat[slot];
+        double lon = sentLon[slot];
+        long mark = ++visit;
+        view.candidates(id, status, lat, lon, group -> {
+            if (group.visitMark == mark) return;
+            group.visitMark = mark;
+            if (group.subscription().matches(id, status, lat, lon)) frame(frames, group, nowNanos).removed(slot, id);
+        });
+    }
+
+    private GroupFrame frame(Map<SubscriptionIndex.Group, GroupFrame> frames, SubscriptionIndex.Group group, long nowNanos) {
+        return frames.computeIfAbsent(group, g -> {
+            if (g.subscription().format() == TelemetrySubscription.Format.BINARY) return new BinaryFrame(nowNanos);
+            try {
+                return new JsonFrame(nowNanos);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private int changedFields(int slot) {
+        int mask = 0;
+        if (store.latitude(slot) != sentLat[slot]) mask |= LATITUDE;
+        if (store.longitude(slot) != sentLon[slot]) mask |= LONGITUDE;
+        if (store.battery(slot) != sentBattery[slot]) mask |= BATTERY;
+        if (store.range(slot) != sentRange[slot]) mask |= RANGE;
+        if (store.batteryHealth(slot) != sentHealth[slot]) mask |= HEALTH;
+        if (store.status(slot) != sentStatus[slot]) mask |= STATUS;
+        return mask;
+    }
+
+    private void writeFields(JsonGenerator gen, int slot, int mask) {
+        try {
+            gen.writeStartObject();
+            gen.writeStringField("id", store.idAt(slot));
+            if ((mask & LATITUDE) != 0) gen.writeNumberField("latitude", store.latitude(slot));
+            if ((mask & LONGITUDE) != 0) gen.writeNumberField("longitude", store.longitude(slot));
+            if ((mask & BATTERY) != 0) gen.writeNumberField("batteryLevel", store.battery(slot));
+            if ((mask & RANGE) != 0) gen.writeNumberField("range", store.range(slot));
+            if ((mask & HEALTH) != 0) gen.writeNumberField("batteryHealth", store.batteryHealth(slot));
+            if ((mask & STATUS) != 0) gen.writeStringField("status", store.statusName(store.status(slot)));
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeFull(JsonGenerator gen, int slot) {
+        try {
+            gen.writeStartObject();
+            for (Map.Entry<String, Object> e : store.attributes(slot).entrySet()) {
+                gen.writeFieldName(e.getKey());
+                writeValue(gen, e.getValue());
+            }
+            gen.writeStringField("id", store.idAt(slot));
+            gen.writeStringField("status", store.statusName(store.status(slot)));
+            gen.writeNumberField("batteryLevel", store.battery(slot));
+            gen.writeNumberField("range", store.range(slot));
+            gen.writeNumberField("batteryHealth", store.batteryHealth(slot));
+            gen.writeNumberField("latitude", store.latitude(slot));
+            gen.writeNumberField("longitude", store.longitude(slot));
+            long nanos = store.lastUpdateNanos(slot);
+            if (nanos != 0) gen.writeStringField("lastUpdate", Instant.ofEpochSecond(0, nanos).toString());
+            gen.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void remember(int slot, String id) {
+        sentId[slot] = id;
+        sentGeneration[slot] = store.generation(slot);
+        sentLat[slot] = store.latitude(slot);
+        sentLon[slot] = store.longitude(slot);
+        sentBattery[slot] = store.battery(slot);
+        sentHealth[slot] = store.batteryHealth(slot);
+        sentRange[slot] = store.range(slot);
+        sentStatus[slot] = store.status(slot);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= sentId.length) return;
+        int size = Math.max(capacity, sentId.length * 2);
+        sentId = Arrays.copyOf(sentId, size);
+        sentGeneration = Arrays.copyOf(sentGeneration, size);
+        sentLat = Arrays.copyOf(sentLat, size);
+        sentLon = Arrays.copyOf(sentLon, size);
+        sentBattery = Arrays.copyOf(sentBattery, size);
+        sentHealth = Arrays.copyOf(sentHealth, size);
+        sentRange = Arrays.copyOf(sentRange, size);
+        sentStatus = Arrays.copyOf(sentStatus, size);
+    }
+
+    private static void writeHeader(JsonGenerator gen, String type, long seq, long nowNanos) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", type);
+        gen.writeNumberField("seq", seq);
+        gen.writeStringField("ts", Instant.ofEpochSecond(0, nowNanos).toString());
+    }
+
+    private static void writeValue(JsonGenerator gen, Object value) throws IOException {
+        if (value == null) gen.writeNull();
+        else if (value instanceof String s) gen.writeString(s);
+        else if (value instanceof Boolean b) gen.writeBoolean(b);
+        else if (value instanceof Integer || value instanceof Long) gen.writeNumber(((Number) value).longValue());
+        else if (value instanceof Number n) gen.writeNumber(n.doubleValue());
+        else if (value instanceof Date d) gen.writeString(d.toInstant().toString());
+        else if (value instanceof Map<?, ?> map) {
+            gen.writeStartObject();
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                gen.writeFieldName(String.valueOf(e.getKey()));
+                writeValue(gen, e.getValue());
+            }
+            gen.writeEndObject();
+        } else if (value instanceof Collection<?> items) {
+            gen.writeStartArray();
+            for (Object item : items) writeValue(gen, item);
+            gen.writeEndArray();
+        } else {
+            gen.writeString(value.toString());
+        }
+    }
+
+    private static long nowEpochNanos() {
+        Instant now = Instant.now();
+        return now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+}
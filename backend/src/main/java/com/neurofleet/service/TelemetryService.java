@@ -2,83 +2,315 @@ package com.neurofleet.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.cluster.ClusterService;
+import com.neurofleet.geofence.GeofenceEngine;
+import com.neurofleet.ingest.IngestService;
+import com.neurofleet.timeseries.TelemetryHistoryStore;
 import com.neurofleet.websocket.RawWebSocketHandler;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @EnableScheduling
 public class TelemetryService {
 
-    private final Map<String, Map<String, Object>> vehicles = new ConcurrentHashMap<>();
+    // Simulated trips: vehicles drive at this speed along a heading that turns about one radian a minute.
+    private static final double TRIP_SPEED_KMH = 30;
+    private static final double GOLDEN_ANGLE = 2.399963;
+
+    private final FleetStateStore store;
     private final RawWebSocketHandler broadcaster;
-    private final ObjectMapper mapper = new ObjectMapper();
+    private final TelemetryHistoryStore history;
+    private final MaintenanceEngine maintenance;
+    private final GeofenceEngine geofences;
+    private final ClusterService cluster;
+    private final IngestService ingest;
+    private final TelemetryFrameEncoder encoder;
+    private final ObjectMapper mapper;
+    private final TickMetrics tickMetrics = new TickMetrics();
+    private final Timer tickTimer;
+    private final Timer publishTimer;
+    private final DistributionSummary vehicleCost;
+    private final ForkJoinPool tickPool;
+    private final int shards;
+    private final long tickIntervalNanos;
+    private final long summaryIntervalMs;
+    private long expectedTickNanos;
+    private long nextSummaryMs;
 
-    public TelemetryService(RawWebSocketHandler broadcaster) {
+    public TelemetryService(FleetStateStore store, RawWebSocketHandler broadcaster, TelemetryHistoryStore history,
+                            MaintenanceEngine maintenance, GeofenceEngine geofences, ClusterService cluster, IngestService ingest,
+                            ObjectMapper mapper,
+                            @Value("${app.telemetry.tick-interval-ms:5000}") long tickIntervalMs,
+                            @Value("${app.fleet.summary-interval-ms:10000}") long summaryIntervalMs,
+                            @Value("${app.telemetry.shards:64}") int shards,
+                            @Value("${app.telemetry.parallelism:0}") int parallelism,
+                            MeterRegistry registry) {
+        this.store = store;
         this.broadcaster = broadcaster;
+        this.history = history;
+        this.maintenance = maintenance;
+        this.geofences = geofences;
+        this.cluster = cluster;
+        this.ingest = ingest;
+        this.encoder = new TelemetryFrameEncoder(store);
+        this.mapper = mapper;
+        this.tickIntervalNanos = tickIntervalMs * 1_000_000L;
+        this.summaryIntervalMs = summaryIntervalMs;
+        this.shards = Math.max(1, shards);
+        this.tickPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        broadcaster.setSnapshotSource(encoder::snapshot);
+        this.tickTimer = Timer.builder("telemetry.tick")
+                .description("Whole tick: simulation, events, state relay, delta frames and summaries")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMillis(Math.max(1000, tickIntervalMs * 2)))
+                .register(registry);
+        this.publishTimer = Timer.builder("telemetry.publish")
+                .description("Encoding the tick's delta frames and queueing them on every subscribed session")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(10_000))
+                .maximumExpectedValue(Duration.ofMillis(Math.max(1000, tickIntervalMs)))
+                .register(registry);
+        this.vehicleCost = DistributionSummary.builder("telemetry.tick.vehicle.cost")
+                .description("Tick duration divided by the number of live vehicles")
+                .baseUnit("nanoseconds")
+                .register(registry);
+        Gauge.builder("telemetry.vehicles", store, FleetStateStore::size).description("Live vehicles").register(registry);
+        FunctionCounter.builder("telemetry.tick.overruns", tickMetrics, TickMetrics::overruns)
+                .description("Ticks that took longer than the interval").register(registry);
+        FunctionCounter.builder("telemetry.tick.skipped", tickMetrics, TickMetrics::skipped)
+                .description("Ticks dropped because the loop was a full interval behind").register(registry);
         // Lazy init; load from Firestore via VehicleService if needed.
     }
 
+    @PreDestroy
+    public void shutdown() {
+        tickPool.shutdownNow();
+    }
+
+    /**
+     * Starts simulating a vehicle read from Firestore. One that is already live (restored from a snapshot, or
+     * listed before) keeps its columns, which are newer than the stored document; only its attributes refresh.
+     * Admin edits go through {@link #updateVehicle} instead.
+     */
     public void addOrInitVehicle(String id, Map<String, Object> base) {
-        Map<String, Object> v = new HashMap<>(base);
-        v.putIfAbsent("id", id);
-        v.putIfAbsent("status", "available");
-        v.putIfAbsent("batteryLevel", new Random().nextInt(100));
-        v.putIfAbsent("range", 100 + new Random().nextInt(200));
-        v.putIfAbsent("batteryHealth", 70 + new Random().nextInt(30));
-        v.putIfAbsent("latitude", 28.6139 + (Math.random() * 0.2 - 0.1));
-        v.putIfAbsent("longitude", 77.2090 + (Math.random() * 0.2 - 0.1));
-        vehicles.put(id, v);
+        if (store.refreshAttributes(id, base)) return;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.upsert(id, base,
+                number(base, "latitude", 28.6139 + (random.nextDouble() * 0.2 - 0.1)),
+                number(base, "longitude", 77.2090 + (random.nextDouble() * 0.2 - 0.1)),
+                number(base, "batteryLevel", random.nextInt(100)),
+                (int) number(base, "range", 100 + random.nextInt(200)),
+                number(base, "batteryHealth", 70 + random.nextInt(30)),
+                Objects.toString(base.get("status"), "available"));
+        cluster.vehicleAdded(id);
+    }
+
+    /** Applies an admin update, column fields included, to a live vehicle; false if it is not live here. */
+    public boolean updateVehicle(String id, Map<String, Object> update) {
+        return store.merge(id, update);
     }
 
     public void removeVehicle(String id) {
-        vehicles.remove(id);
+        if (store.remove(id)) cluster.vehicleRemoved(id);
     }
 
     public Map<String, Object> getTelemetry(String id) {
-        return vehicles.get(id);
+        return store.view(id);
     }
 
     public List<Map<String, Object>> getAllTelemetry() {
-        return new ArrayList<>(vehicles.values());
+        return store.viewAll();
+    }
+
+    public List<Map<String, Object>> findNearby(double lat, double lon, double radiusKm, String status, int k) {
+        return store.nearby(lat, lon, radiusKm, status, k);
+    }
+
+    public List<Map<String, Object>> findWithin(double minLat, double minLon, double maxLat, double maxLon, String status, int limit) {
+        return store.within(minLat, minLon, maxLat, maxLon, status, limit);
     }
 
     public void updateStatus(String id, String status) {
-        Map<String, Object> v = vehicles.get(id);
-        if (v != null) v.put("status", status);
-    }
-
-    @Scheduled(fixedDelay = 5000)
-    public void tick() throws JsonProcessingException {
-        for (Map.Entry<String, Map<String, Object>> e : vehicles.entrySet()) {
-            Map<String, Object> v = e.getValue();
-            String status = (String) v.getOrDefault("status", "available");
-            double battery = ((Number) v.getOrDefault("batteryLevel", 50)).doubleValue();
-            double range = ((Number) v.getOrDefault("range", 200)).doubleValue();
-
-            if ("on-trip".equals(status)) {
-                battery = Math.max(0, battery - 0.5);
-                range = Math.max(0, range - 1.5);
-            } else if ("charging".equals(status)) {
-                battery = Math.min(100, battery + 0.7);
-                range = Math.min(500, battery * 3);
-                if (battery >= 99) v.put("status", "available");
-            } else {
-                battery = Math.max(0, battery - 0.05);
+        store.updateStatus(id, status);
+    }
+
+    /** Whether the store already has a code for the status; callers must not intern arbitrary strings. */
+    public boolean isKnownStatus(String status) {
+        for (String name : store.statusNames()) if (name.equals(status)) return true;
+        return false;
+    }
+
+    public Map<String, Object> getFleetStats() {
+        return store.fleetStats(System.currentTimeMillis());
+    }
+
+    public Map<String, Object> getTickStats() {
+        Map<String, Object> stats = tickMetrics.snapshot();
+        stats.put("intervalMs", tickIntervalNanos / 1_000_000);
+        stats.put("shards", shards);
+        stats.put("parallelism", tickPool.getParallelism());
+        stats.put("lastFrameVehicles", encoder.lastFrameVehicles());
+        stats.put("lastFrameBytes", encoder.lastFrameBytes());
+        stats.put("lastBinaryFrameBytes", encoder.lastBinaryFrameBytes());
+        return stats;
+    }
+
+    /**
+     * Runs at a fixed rate. If a pass overruns, the scheduler fires the missed runs back to back;
+     * any run that starts a full interval late is dropped so the loop resynchronises instead of bursting.
+     */
+    @Scheduled(fixedRateString = "${app.telemetry.tick-interval-ms:5000}")
+    public void tick() throws Exception {
+        long start = System.nanoTime();
+        if (expectedTickNanos == 0) expectedTickNanos = start;
+        long lag = Math.max(0, start - expectedTickNanos);
+        expectedTickNanos += tickIntervalNanos;
+        if (lag >= tickIntervalNanos) {
+            tickMetrics.recordSkipped(lag);
+            return;
+        }
+
+        Instant now = Instant.now();
+        long nowNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+        simulateShards(nowNanos);
+        // Every node scores and fences the whole fleet, but only a vehicle's owner announces its events.
+        List<MaintenanceEngine.Alert> alerts = maintenance.endTick();
+        if (cluster.isEnabled()) alerts = alerts.stream().filter(a -> cluster.ownsId(a.vehicleId())).toList();
+        if (!alerts.isEmpty()) publishEvents(MaintenanceEngine.encodeAlerts(alerts));
+        List<GeofenceEngine.Event> fenceEvents = geofences.endTick(cluster::ownsId);
+        if (!fenceEvents.isEmpty()) publishEvents(GeofenceEngine.encodeEvents(fenceEvents));
+        cluster.publishState(nowNanos);
+
+        long publishStart = System.nanoTime();
+        encoder.publishDelta(nowNanos, broadcaster.subscriptions());
+        publishTimer.record(System.nanoTime() - publishStart, TimeUnit.NANOSECONDS);
+        long nowMs = now.toEpochMilli();
+        store.aggregates().sampleUtilization(nowMs);
+        if (summaryIntervalMs > 0 && nowMs >= nextSummaryMs) {
+            publishFleetSummary(nowMs);
+            nextSummaryMs = nowMs + summaryIntervalMs;
+        }
+
+        if (store.size() > 0) tickMetrics.recordFirstBroadcast(nowMs - ManagementFactory.getRuntimeMXBean().getStartTime());
+
+        long duration = System.nanoTime() - start;
+        int vehicles = store.size();
+        tickMetrics.recordTick(duration, lag, vehicles, duration > tickIntervalNanos);
+        tickTimer.record(duration, TimeUnit.NANOSECONDS);
+        if (vehicles > 0) vehicleCost.record((double) duration / vehicles);
+        if (duration > tickIntervalNanos) {
+            System.out.println("[TelemetryService] Tick overran interval: " + duration / 1_000_000 + "ms > " + tickIntervalNanos / 1_000_000 + "ms");
+        }
+    }
+
+    private void publishEvents(byte[] frame) {
+        broadcaster.broadcast(new TextMessage(frame));
+        cluster.relayBroadcast(frame);
+    }
+
+    private void publishFleetSummary(long nowMs) {
+        Map<String, Object> frame = new LinkedHashMap<>();
+        frame.put("type", "fleet_summary");
+        frame.put("timestamp", nowMs);
+        frame.putAll(store.fleetStats(nowMs));
+        try {
+            broadcaster.broadcast(new TextMessage(mapper.writeValueAsBytes(frame)));
+        } catch (JsonProcessingException e) {
+            System.out.println("[TelemetryService] Could not encode fleet summary: " + e.getMessage());
+        }
+    }
+
+    private void simulateShards(long nowNanos) throws InterruptedException, ExecutionException {
+        int highWater = store.highWater();
+        int shardSize = Math.max(1, (highWater + shards - 1) / shards);
+        maintenance.beginTick(highWater, tickIntervalNanos);
+        geofences.beginTick(highWater);
+        cluster.beginTick(highWater);
+        List<Callable<Void>> tasks = new ArrayList<>(shards);
+        for (int from = 0; from < highWater; from += shardSize) {
+            int start = from;
+            int end = Math.min(highWater, from + shardSize);
+            tasks.add(() -> {
+                store.forEachLive(start, end, slot -> simulate(slot, nowNanos));
+                return null;
+            });
+        }
+        for (Future<Void> f : tickPool.invokeAll(tasks)) {
+            f.get();
+        }
+    }
+
+    private void simulate(int slot, long nowNanos) {
+        // Vehicles with a live device feed are moved by their reports, not by the simulation. The slot is held so an
+        // ingest consumer applying the first report cannot move it at the same time; the check is repeated under it.
+        if (cluster.owns(slot) && !ingest.isReporting(slot, nowNanos / 1_000_000)) {
+            store.lockSlot(slot);
+            try {
+                if (!ingest.isReporting(slot, nowNanos / 1_000_000)) advance(slot, nowNanos);
+            } finally {
+                store.unlockSlot(slot);
             }
+        }
+        history.record(slot, nowNanos / 1_000_000);
+        maintenance.update(slot, nowNanos);
+        geofences.check(slot, nowNanos / 1_000_000);
+    }
 
-            v.put("batteryLevel", battery);
-            v.put("range", (int) range);
-            v.put("lastUpdate", Instant.now().toString());
+    private void advance(int slot, long nowNanos) {
+        byte status = store.status(slot);
+        double battery = store.battery(slot);
+        double range = store.range(slot);
 
-            Map<String, Object> payload = new HashMap<>(v);
-            payload.put("type", "vehicle_update");
-            broadcaster.broadcast(mapper.writeValueAsString(payload));
+        if (status == FleetStateStore.STATUS_ON_TRIP) {
+            battery = Math.max(0, battery - 0.5);
+            range = Math.max(0, range - 1.5);
+            drive(slot, nowNanos);
+        } else if (status == FleetStateStore.STATUS_CHARGING) {
+            battery = Math.min(100, battery + 0.7);
+            range = Math.min(500, battery * 3);
+            if (battery >= 99) store.setStatus(slot, FleetStateStore.STATUS_AVAILABLE);
+        } else {
+            battery = Math.max(0, battery - 0.05);
         }
+
+        store.setBattery(slot, battery);
+        store.setRange(slot, (int) range);
+        store.setLastUpdateNanos(slot, nowNanos);
+    }
+
+    private void drive(int slot, long nowNanos) {
+        double km = TRIP_SPEED_KMH * tickIntervalNanos / 3.6e12;
+        double heading = slot * GOLDEN_ANGLE + nowNanos / 60e9;
+        double lat = store.latitude(slot);
+        store.setPosition(slot,
+                lat + km * Math.cos(heading) / 111.32,
+                store.longitude(slot) + km * Math.sin(heading) / (111.32 * Math.cos(Math.toRadians(lat))));
+    }
+
+    private static double number(Map<String, Object> base, String key, double fallback) {
+        Object value = base.get(key);
+        return value instanceof Number n ? n.doubleValue() : fallback;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.neurofleet.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Counters for the telemetry tick loop. Written by the scheduler thread, read by the stats endpoint.
+ */
+public class TickMetrics {
+
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong totalDurationNanos = new AtomicLong();
+    private final LongAccumulator maxDurationNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastDurationNanos;
+    private volatile long lastLagNanos;
+    private volatile int lastVehicleCount;
+    private volatile long firstBroadcastMs = -1;
+
+    public void recordTick(long durationNanos, long lagNanos, int vehicles, boolean overrun) {
+        ticks.incrementAndGet();
+        totalDurationNanos.addAndGet(durationNanos);
+        maxDurationNanos.accumulate(durationNanos);
+        maxLagNanos.accumulate(lagNanos);
+        lastDurationNanos = durationNanos;
+        lastLagNanos = lagNanos;
+        lastVehicleCount = vehicles;
+        if (overrun) overruns.incrementAndGet();
+    }
+
+    /** Milliseconds from JVM start to the first tick that had vehicles to publish; only the first call counts. */
+    public void recordFirstBroadcast(long sinceStartMs) {
+        if (firstBroadcastMs < 0) firstBroadcastMs = sinceStartMs;
+    }
+
+    public void recordSkipped(long lagNanos) {
+        skipped.incrementAndGet();
+        maxLagNanos.accumulate(lagNanos);
+        lastLagNanos = lagNanos;
+    }
+
+    public long ticks() { return ticks.get(); }
+    public long overruns() { return overruns.get(); }
+    public long skipped() { return skipped.get(); }
+    public long lastDurationNanos() { return lastDurationNanos; }
+    public long lastLagNanos() { return lastLagNanos; }
+
+    public Map<String, Object> snapshot() {
+        long count = ticks.get();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("ticks", count);
+        m.put("overruns", overruns.get());
+        m.put("skipped", skipped.get());
+        m.put("vehicles", lastVehicleCount);
+        m.put("lastDurationMs", lastDurationNanos / 1e6);
+        m.put("avgDurationMs", count == 0 ? 0.0 : totalDurationNanos.get() / 1e6 / count);
+        m.put("maxDurationMs", maxDurationNanos.get() / 1e6);
+        m.put("lastLagMs", lastLagNanos / 1e6);
+        m.put("maxLagMs", maxLagNanos.get() / 1e6);
+        m.put("firstBroadcastMs", firstBroadcastMs);
+        return m;
+    }
+}
@@ -0,0 +1,243 @@
+package com.neurofleet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only files behind {@link FirestoreWriteBehind}, so a queued write survives a restart. Every write is appended
+ * before its caller is answered; like the event log, a record is durable once it is in the page cache. Each flush
+ * starts a new file, and the previous one is deleted once everything it held has committed or been appended again.
+ * Writes that finally fail go to {@code dead-letter.jsonl} in the same directory.
+ * <p>
+ * Record: {@code int length, int crc32c, utf path, byte kind, value data}, where values are tagged so dates and
+ * timestamps come back as themselves rather than as numbers. Recovery stops at the first torn record of a file.
+ */
+final class WriteJournal {
+
+    record Entry(String path, FirestoreWriteBehind.Kind kind, Map<String, Object> data) {}
+
+    private static final String SUFFIX = ".journal";
+    private static final String DEAD_LETTER = "dead-letter.jsonl";
+    private static final byte NULL = 0, STRING = 1, LONG = 2, DOUBLE = 3, BOOLEAN = 4, DATE = 5, TIMESTAMP = 6, MAP = 7, LIST = 8;
+
+    private final Path dir;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private FileChannel current;
+    private long generation;
+
+    WriteJournal(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /** Every entry left by the last run, oldest first; call once, before the first append. */
+    List<Entry> recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        List<Entry> entries = new ArrayList<>();
+        for (Path file : files) {
+            generation = Math.max(generation, generationOf(file));
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    byte[] record;
+                    try {
+                        int length = in.readInt();
+                        int crc = in.readInt();
+                        if (length < 0 || length > in.available()) break;
+                        record = in.readNBytes(length);
+                        if (crc(record) != crc) break;
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    entries.add(decode(record));
+                }
+            }
+        }
+        open(generation + 1);
+        return entries;
+    }
+
+    /** Called with the write-behind lock held. */
+    void append(String path, FirestoreWriteBehind.Kind kind, Map<String, Object> data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(path);
+            out.writeByte(kind.ordinal());
+            writeValue(out, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] record = bytes.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocate(8 + record.length);
+        buffer.putInt(record.length).putInt(crc(record)).put(record).flip();
+        try {
+            while (buffer.hasRemaining()) current.write(buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not journal write to " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /** Starts a new file for later appends; returns the generation of the one closed. Called with the lock held. */
+    long rotate() {
+        long closed = generation;
+        try {
+            current.close();
+            open(closed + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not rotate write journal in " + dir, e);
+        }
+        return closed;
+    }
+
+    /** Removes the files up to and including {@code through}, whose writes have all committed or been re-appended. */
+    void deleteThrough(long through) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (generationOf(file) <= through) Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.out.println("[WriteJournal] Could not delete old journal files: " + e.getMessage());
+        }
+    }
+
+    /** Records a write that will not be retried, so it can be inspected and replayed by hand. */
+    synchronized void deadLetter(String path, FirestoreWriteBehind.Kind kind, Map<String, Object> data, Throwable cause) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("failedAt", new Date().toInstant().toString());
+        m.put("path", path);
+        m.put("kind", kind.name());
+        m.put("data", data);
+        m.put("error", String.valueOf(cause.getMessage()));
+        try {
+            Files.write(dir.resolve(DEAD_LETTER), (mapper.writeValueAsString(m) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.out.println("[WriteJournal] Could not record dead letter for " + path + ": " + e.getMessage());
+        }
+    }
+
+    void close() {
+        try {
+            if (current != null) current.close();
+        } catch (IOException e) {
+            System.out.println("[WriteJournal] Could not close journal: " + e.getMessage());
+        }
+    }
+
+    private void open(long next) throws IOException {
+        generation = next;
+        current = FileChannel.open(dir.resolve(String.format("%020d%s", next, SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static int crc(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Entry decode(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String path = in.readUTF();
+        FirestoreWriteBehind.Kind kind = FirestoreWriteBehind.Kind.values()[in.readByte()];
+        return new Entry(path, kind, (Map<String, Object>) readValue(in));
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            byte[] utf = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf.length);
+            out.write(utf);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Number n) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(n.doubleValue());
+        } else if (value instanceof Boolean b) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean(b);
+        } else if (value instanceof Date d) {
+            out.writeByte(DATE);
+            out.writeLong(d.getTime());
+        } else if (value instanceof Timestamp t) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(t.getSeconds());
+            out.writeInt(t.getNanos());
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                writeValue(out, e.getKey().toString());
+                writeValue(out, e.getValue());
+            }
+        } else if (value instanceof Collection<?> list) {
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object item : list) writeValue(out, item);
+        } else {
+            throw new IllegalArgumentException("Cannot queue a Firestore value of type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        switch (in.readByte()) {
+            case NULL:
+                return null;
+            case STRING:
+                return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case DATE:
+                return new Date(in.readLong());
+            case TIMESTAMP:
+                return Timestamp.ofTimeSecondsAndNanos(in.readLong(), in.readInt());
+            case MAP: {
+                int size = in.readInt();
+                Map<String, Object> map = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) map.put((String) readValue(in), readValue(in));
+                return map;
+            }
+            case LIST: {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) list.add(readValue(in));
+                return list;
+            }
+            default:
+                throw new IOException("Unknown value tag in write journal");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.neurofleet.timeseries;
+
+import java.nio.ByteBuffer;
+
+/** Reads a {@link BitWriter} stream in place from a (possibly memory-mapped) buffer using absolute gets. */
+final class BitReader {
+
+    private final ByteBuffer buffer;
+    private final int base;
+    private int position;
+
+    BitReader(ByteBuffer buffer, int base) {
+        this.buffer = buffer;
+        this.base = base;
+    }
+
+    long read(int n) {
+        int used = position & 63;
+        int avail = 64 - used;
+        long word = buffer.getLong(base + (position >>> 6) * 8);
+        position += n;
+        if (n <= avail) return (word << used) >>> (64 - n);
+        long high = word & ((1L << avail) - 1);
+        long next = buffer.getLong(base + ((position - 1) >>> 6) * 8);
+        int rest = n - avail;
+        return (high << rest) | (next >>> (64 - rest));
+    }
+
+    boolean readBit() {
+        return read(1) != 0;
+    }
+}
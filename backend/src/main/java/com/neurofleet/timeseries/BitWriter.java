@@ -0,0 +1,42 @@
+package com.neurofleet.timeseries;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Append-only MSB-first bit stream backed by a growable {@code long[]}. */
+final class BitWriter {
+
+    private long[] words = new long[2];
+    private int bits;
+
+    /** Writes the low {@code n} bits of {@code value}, most significant first; {@code n} in 1..64. */
+    void write(long value, int n) {
+        if (n < 64) value &= (1L << n) - 1;
+        int word = bits >>> 6;
+        int free = 64 - (bits & 63);
+        if (word + 1 >= words.length) words = Arrays.copyOf(words, words.length * 2);
+        if (n <= free) {
+            words[word] |= value << (free - n);
+        } else {
+            words[word] |= value >>> (n - free);
+            words[word + 1] |= value << (64 - (n - free));
+        }
+        bits += n;
+    }
+
+    void writeBit(boolean bit) {
+        write(bit ? 1 : 0, 1);
+    }
+
+    int bitLength() {
+        return bits;
+    }
+
+    int wordCount() {
+        return (bits + 63) >>> 6;
+    }
+
+    void writeTo(ByteBuffer out) {
+        for (int i = 0, n = wordCount(); i < n; i++) out.putLong(words[i]);
+    }
+}
@@ -0,0 +1,136 @@
+package com.neurofleet.timeseries;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped append-only file of sealed chunks for one tier. Each record is
+ * {@code int length, short idLength, id, chunk}; the length is written last so a torn record reads as the end
+ * of the file. Chunks handed out are slices of the mapping, so sealed history lives in the page cache rather
+ * than on the heap.
+ */
+final class ChunkSegment {
+
+    interface RecordSink {
+        void accept(String vehicleId, ByteBuffer chunk);
+    }
+
+    private final Path path;
+    private final Tier tier;
+    private final long createdMillis;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private int position;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    private ChunkSegment(Path path, Tier tier, long createdMillis, FileChannel channel, MappedByteBuffer map) {
+        this.path = path;
+        this.tier = tier;
+        this.createdMillis = createdMillis;
+        this.channel = channel;
+        this.map = map;
+    }
+
+    static ChunkSegment create(Path dir, Tier tier, long createdMillis, int capacity) throws IOException {
+        Path path = dir.resolve(tier.label() + "-" + createdMillis + ".seg");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new ChunkSegment(path, tier, createdMillis, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+    }
+
+    /** Maps an existing segment; call {@link #replay} to read it back. It takes no further appends. */
+    static ChunkSegment open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        Tier tier = Tier.fromLabel(name.substring(0, dash));
+        long created = Long.parseLong(name.substring(dash + 1, name.length() - ".seg".length()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ChunkSegment segment = new ChunkSegment(path, tier, created, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        segment.position = segment.map.capacity();
+        return segment;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    Tier tier() {
+        return tier;
+    }
+
+    long createdMillis() {
+        return createdMillis;
+    }
+
+    long maxTimestamp() {
+        return maxTimestamp;
+    }
+
+    int capacity() {
+        return map.capacity();
+    }
+
+    synchronized int used() {
+        return position;
+    }
+
+    /** Appends a sealed chunk and returns the mapped slice holding it, or {@code null} when the segment is full. */
+    synchronized ByteBuffer append(String vehicleId, byte[] chunk, long lastTimestamp) {
+        byte[] id = vehicleId.getBytes(StandardCharsets.UTF_8);
+        int length = 2 + id.length + chunk.length;
+        if (position + 4 + length > map.capacity()) return null;
+        int start = position + 4;
+        map.putShort(start, (short) id.length);
+        map.put(start + 2, id);
+        map.put(start + 2 + id.length, chunk);
+        map.putInt(position, length);
+        position = start + length;
+        if (lastTimestamp > maxTimestamp) maxTimestamp = lastTimestamp;
+        return map.slice(start + 2 + id.length, chunk.length);
+    }
+
+    void force() {
+        map.force();
+    }
+
+    /**
+     * Closes the channel and deletes the file. The JDK offers no way to unmap eagerly; slices still held by an
+     * in-flight query stay readable until the mapping is collected.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /** Feeds every intact record to {@code sink} and returns how many there were. */
+    int replay(RecordSink sink) {
+        int records = 0;
+        int at = 0;
+        int capacity = map.capacity();
+        while (at + 4 <= capacity) {
+            int length = map.getInt(at);
+            if (length <= 2 || at + 4 + length > capacity) break;
+            int idLength = map.getShort(at + 4);
+            if (idLength < 0 || 2 + idLength >= length) break;
+            byte[] id = new byte[idLength];
+            map.get(at + 6, id);
+            ByteBuffer chunk = map.slice(at + 6 + idLength, length - 2 - idLength);
+            long last = GorillaChunk.lastTimestamp(chunk);
+            if (last > maxTimestamp) maxTimestamp = last;
+            sink.accept(new String(id, StandardCharsets.UTF_8), chunk);
+            records++;
+            at += 4 + length;
+        }
+        return records;
+    }
+}
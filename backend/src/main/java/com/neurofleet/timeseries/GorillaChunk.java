@@ -0,0 +1,217 @@
+package com.neurofleet.timeseries;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Columnar chunk of one series: a timestamp stream and one stream per value column, compressed as in
+ * Facebook's Gorilla. Timestamps store the delta-of-delta in variable-width buckets (a steady tick costs one
+ * bit); values store the XOR with the previous value, reusing the previous leading/trailing-zero window when
+ * it fits. Each column is its own bit stream, so a scan decodes only the columns it asks for.
+ *
+ * <p>Layout: {@code int count, long firstTs, long lastTs, int streams, int[streams] bitLength}, then each
+ * stream's words.
+ */
+final class GorillaChunk {
+
+    private static final int COUNT = 0;
+    private static final int FIRST_TS = 4;
+    private static final int LAST_TS = 12;
+    private static final int STREAMS = 20;
+    private static final int BIT_LENGTHS = 24;
+
+    interface PointSink {
+        /** {@code values} is reused between calls; only the requested columns are filled in. */
+        void accept(long timestamp, double[] values);
+    }
+
+    private GorillaChunk() {}
+
+    static int count(ByteBuffer chunk) {
+        return chunk.getInt(COUNT);
+    }
+
+    static long firstTimestamp(ByteBuffer chunk) {
+        return chunk.getLong(FIRST_TS);
+    }
+
+    static long lastTimestamp(ByteBuffer chunk) {
+        return chunk.getLong(LAST_TS);
+    }
+
+    /**
+     * Feeds every point with {@code from <= timestamp < to} to {@code sink}, stopping once past {@code to}.
+     * Columns with {@code wanted[c] == false} are never decoded.
+     */
+    static void scan(ByteBuffer chunk, boolean[] wanted, long from, long to, PointSink sink) {
+        int count = chunk.getInt(COUNT);
+        int streams = chunk.getInt(STREAMS);
+        int columns = streams - 1;
+        int offset = BIT_LENGTHS + 4 * streams;
+        int[] starts = new int[streams];
+        for (int s = 0; s < streams; s++) {
+            starts[s] = offset;
+            offset += ((chunk.getInt(BIT_LENGTHS + 4 * s) + 63) >>> 6) * 8;
+        }
+
+        BitReader times = new BitReader(chunk, starts[0]);
+        BitReader[] readers = new BitReader[columns];
+        long[] previous = new long[columns];
+        int[] leading = new int[columns];
+        int[] trailing = new int[columns];
+        for (int c = 0; c < columns; c++) {
+            if (wanted[c]) readers[c] = new BitReader(chunk, starts[c + 1]);
+        }
+
+        double[] values = new double[columns];
+        long ts = 0;
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                ts = times.read(64);
+            } else {
+                delta += readDeltaOfDelta(times);
+                ts += delta;
+            }
+            for (int c = 0; c < columns; c++) {
+                BitReader r = readers[c];
+                if (r == null) continue;
+                if (i == 0) {
+                    previous[c] = r.read(64);
+                } else if (r.readBit()) {
+                    if (r.readBit()) {
+                        leading[c] = (int) r.read(5);
+                        int significant = (int) r.read(6) + 1;
+                        trailing[c] = 64 - leading[c] - significant;
+                    }
+                    int significant = 64 - leading[c] - trailing[c];
+                    previous[c] ^= r.read(significant) << trailing[c];
+                }
+                values[c] = Double.longBitsToDouble(previous[c]);
+            }
+            if (ts >= to) return;
+            if (ts >= from) sink.accept(ts, values);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (!in.readBit()) return 0;
+        if (!in.readBit()) return in.read(7) - 63;
+        if (!in.readBit()) return in.read(9) - 255;
+        if (!in.readBit()) return in.read(12) - 2047;
+        return in.read(64);
+    }
+
+    /** Incremental encoder for the open chunk of a series. Not thread-safe. */
+    static final class Encoder {
+
+        private final BitWriter times = new BitWriter();
+        private final BitWriter[] values;
+        private final long[] previous;
+        private final int[] leading;
+        private final int[] trailing;
+        private int count;
+        private long firstTs;
+        private long lastTs;
+        private long lastDelta;
+
+        Encoder(int columns) {
+            values = new BitWriter[columns];
+            for (int c = 0; c < columns; c++) values[c] = new BitWriter();
+            previous = new long[columns];
+            leading = new int[columns];
+            trailing = new int[columns];
+        }
+
+        /** Appends one point; timestamps must be strictly increasing. */
+        void append(long timestamp, double[] point) {
+            if (count == 0) {
+                firstTs = timestamp;
+                times.write(timestamp, 64);
+            } else {
+                long delta = timestamp - lastTs;
+                writeDeltaOfDelta(delta - lastDelta);
+                lastDelta = delta;
+            }
+            lastTs = timestamp;
+            for (int c = 0; c < values.length; c++) {
+                long bits = Double.doubleToRawLongBits(point[c]);
+                if (count == 0) {
+                    values[c].write(bits, 64);
+                    leading[c] = -1;
+                } else {
+                    writeXor(c, bits ^ previous[c]);
+                }
+                previous[c] = bits;
+            }
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        long firstTimestamp() {
+            return firstTs;
+        }
+
+        long lastTimestamp() {
+            return lastTs;
+        }
+
+        int sizeBytes() {
+            int size = BIT_LENGTHS + 4 * (values.length + 1) + times.wordCount() * 8;
+            for (BitWriter v : values) size += v.wordCount() * 8;
+            return size;
+        }
+
+        byte[] toBytes() {
+            ByteBuffer out = ByteBuffer.allocate(sizeBytes());
+            out.putInt(count).putLong(firstTs).putLong(lastTs).putInt(values.length + 1);
+            out.putInt(times.bitLength());
+            for (BitWriter v : values) out.putInt(v.bitLength());
+            times.writeTo(out);
+            for (BitWriter v : values) v.writeTo(out);
+            return out.array();
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0) {
+                times.write(0b0, 1);
+            } else if (dod >= -63 && dod <= 64) {
+                times.write(0b10, 2);
+                times.write(dod + 63, 7);
+            } else if (dod >= -255 && dod <= 256) {
+                times.write(0b110, 3);
+                times.write(dod + 255, 9);
+            } else if (dod >= -2047 && dod <= 2048) {
+                times.write(0b1110, 4);
+                times.write(dod + 2047, 12);
+            } else {
+                times.write(0b1111, 4);
+                times.write(dod, 64);
+            }
+        }
+
+        private void writeXor(int c, long xor) {
+            BitWriter out = values[c];
+            if (xor == 0) {
+                out.write(0b0, 1);
+                return;
+            }
+            int lead = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trail = Long.numberOfTrailingZeros(xor);
+            if (leading[c] >= 0 && lead >= leading[c] && trail >= trailing[c]) {
+                out.write(0b10, 2);
+                out.write(xor >>> trailing[c], 64 - leading[c] - trailing[c]);
+            } else {
+                int significant = 64 - lead - trail;
+                out.write(0b11, 2);
+                out.write(lead, 5);
+                out.write(significant - 1, 6);
+                out.write(xor >>> trail, significant);
+                leading[c] = lead;
+                trailing[c] = trail;
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.neurofleet.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * Collects scanned points into parallel arrays, optionally re-bucketing them to a fixed step with the same
+ * rollup rules as the stored tiers (mean battery and range, last position and status). Stops accepting once
+ * {@code maxPoints} output points exist.
+ */
+final class RangeCollector implements GorillaChunk.PointSink {
+
+    final long step;
+    final boolean[] wanted;
+    final double[][] columns;
+    long[] timestamps = new long[64];
+    int size;
+    long scanned;
+    boolean truncated;
+
+    private final boolean[] mean;
+    private final int maxPoints;
+    private long bucketStart;
+    private int bucketCount;
+    private final double[] bucket;
+
+    RangeCollector(boolean[] wanted, boolean[] mean, long step, int maxPoints) {
+        this.wanted = wanted;
+        this.mean = mean;
+        this.step = step;
+        this.maxPoints = maxPoints;
+        this.columns = new double[wanted.length][64];
+        this.bucket = new double[wanted.length];
+    }
+
+    @Override
+    public void accept(long timestamp, double[] values) {
+        if (truncated) return;
+        scanned++;
+        if (step <= 0) {
+            add(timestamp, values);
+            return;
+        }
+        long start = timestamp - Math.floorMod(timestamp, step);
+        if (bucketCount > 0 && start != bucketStart) flushBucket();
+        if (truncated) return;
+        if (bucketCount == 0) {
+            bucketStart = start;
+            Arrays.fill(bucket, 0);
+        }
+        for (int c = 0; c < values.length; c++) {
+            if (wanted[c]) bucket[c] = mean[c] ? bucket[c] + values[c] : values[c];
+        }
+        bucketCount++;
+    }
+
+    void finish() {
+        if (bucketCount > 0 && !truncated) flushBucket();
+    }
+
+    private void flushBucket() {
+        for (int c = 0; c < bucket.length; c++) {
+            if (mean[c]) bucket[c] /= bucketCount;
+        }
+        add(bucketStart, bucket);
+        bucketCount = 0;
+    }
+
+    private void add(long timestamp, double[] values) {
+        if (size == maxPoints) {
+            truncated = true;
+            return;
+        }
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            for (int c = 0; c < columns.length; c++) {
+                if (wanted[c]) columns[c] = Arrays.copyOf(columns[c], size * 2);
+            }
+        }
+        timestamps[size] = timestamp;
+        for (int c = 0; c < columns.length; c++) {
+            if (wanted[c]) columns[c][size] = values[c];
+        }
+        size++;
+    }
+}
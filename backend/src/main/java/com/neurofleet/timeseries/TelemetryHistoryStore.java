@@ -0,0 +1,300 @@
+package com.neurofleet.timeseries;
+
+import com.neurofleet.service.FleetStateStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded per-vehicle telemetry history. Every tick appends one point per vehicle to its raw series and folds
+ * it into 1-minute and 1-hour rollups (mean battery and range, last position and status). Points are encoded
+ * into Gorilla-compressed columnar chunks; a chunk is sealed after {@code chunk-points} points and, when
+ * {@code app.timeseries.dir} is set, appended to a memory-mapped segment file per tier. Segments roll by size
+ * and age, so retention drops whole files, and they are replayed on startup.
+ */
+@Service
+public class TelemetryHistoryStore {
+
+    public static final List<String> COLUMNS = List.of("latitude", "longitude", "batteryLevel", "range", "status");
+    private static final boolean[] MEAN = {false, false, true, true, false};
+    private static final int STATUS = 4;
+
+    private final FleetStateStore fleet;
+    private final boolean enabled;
+    private final Path dir;
+    private final int chunkPoints;
+    private final int segmentBytes;
+    private final int maxPoints;
+    private final long[] retentionMillis = new long[Tier.values().length];
+    private final Map<String, VehicleSeries> series = new ConcurrentHashMap<>();
+
+    // Segments per tier, oldest first; the last one takes appends. Guarded by segments.
+    private final List<List<ChunkSegment>> segments = new ArrayList<>();
+
+    private final AtomicLong pointsIngested = new AtomicLong();
+    private final AtomicLong outOfOrder = new AtomicLong();
+    private final AtomicLong chunksSealed = new AtomicLong();
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong pointsScanned = new AtomicLong();
+    private final AtomicLong scanNanos = new AtomicLong();
+
+    public TelemetryHistoryStore(FleetStateStore fleet,
+                                 @Value("${app.timeseries.enabled:true}") boolean enabled,
+                                 @Value("${app.timeseries.dir:}") String dir,
+                                 @Value("${app.timeseries.chunk-points:120}") int chunkPoints,
+                                 @Value("${app.timeseries.segment-bytes:67108864}") int segmentBytes,
+                                 @Value("${app.timeseries.max-points:10000}") int maxPoints,
+                                 @Value("${app.timeseries.retention.raw-hours:24}") long rawHours,
+                                 @Value("${app.timeseries.retention.minute-days:30}") long minuteDays,
+                                 @Value("${app.timeseries.retention.hour-days:365}") long hourDays) throws IOException {
+        this.fleet = fleet;
+        this.enabled = enabled;
+        this.dir = dir == null || dir.isBlank() ? null : Paths.get(dir);
+        this.chunkPoints = Math.max(2, chunkPoints);
+        this.segmentBytes = segmentBytes;
+        this.maxPoints = maxPoints;
+        retentionMillis[Tier.RAW.ordinal()] = rawHours * 3_600_000L;
+        retentionMillis[Tier.MINUTE.ordinal()] = minuteDays * 86_400_000L;
+        retentionMillis[Tier.HOUR.ordinal()] = hourDays * 86_400_000L;
+        for (int t = 0; t < Tier.values().length; t++) segments.add(new ArrayList<>());
+        if (enabled && this.dir != null) {
+            Files.createDirectories(this.dir);
+            replay();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Appends the current state of {@code slot}; called from the tick shards, so one slot is never raced. */
+    public void record(int slot, long timestampMillis) {
+        if (!enabled) return;
+        String id = fleet.idAt(slot);
+        VehicleSeries s = series.computeIfAbsent(id, key -> new VehicleSeries(key, MEAN));
+        double[] point = {
+                fleet.latitude(slot), fleet.longitude(slot), fleet.battery(slot), fleet.range(slot), fleet.status(slot)};
+        if (s.append(timestampMillis, point, chunkPoints, this::seal)) pointsIngested.incrementAndGet();
+        else outOfOrder.incrementAndGet();
+    }
+
+    /** Whether any history exists for {@code vehicleId}. */
+    public boolean contains(String vehicleId) {
+        return series.containsKey(vehicleId);
+    }
+
+    /**
+     * Points of {@code vehicleId} in {@code [from, to)} as parallel arrays. Reads the coarsest tier no wider than
+     * {@code stepMillis} that still retains {@code from} (the finest retaining tier when no step is given), then
+     * re-buckets to {@code stepMillis} with the same rollup rules. Returns {@code null} for an unknown vehicle.
+     */
+    public Map<String, Object> range(String vehicleId, long from, long to, Long stepMillis, Collection<String> fields) {
+        VehicleSeries s = series.get(vehicleId);
+        if (s == null) return null;
+        if (stepMillis != null && (to - from) / stepMillis > maxPoints) {
+            throw new IllegalArgumentException("Range would return more than " + maxPoints + " points; use a larger step.");
+        }
+        Tier tier = pickTier(from, stepMillis, System.currentTimeMillis());
+        boolean[] wanted = new boolean[COLUMNS.size()];
+        for (int c = 0; c < wanted.length; c++) {
+            wanted[c] = fields == null || fields.isEmpty() || fields.contains(COLUMNS.get(c));
+        }
+
+        long start = System.nanoTime();
+        RangeCollector out = new RangeCollector(wanted, MEAN, stepMillis != null && stepMillis > tier.resolutionMillis() ? stepMillis : 0, maxPoints);
+        for (ByteBuffer chunk : s.chunks(tier, from, to)) {
+            GorillaChunk.scan(chunk, wanted, from, to, out);
+            if (out.truncated) break;
+        }
+        out.finish();
+        queries.incrementAndGet();
+        pointsScanned.addAndGet(out.scanned);
+        scanNanos.addAndGet(System.nanoTime() - start);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("vehicleId", vehicleId);
+        result.put("tier", tier.label());
+        result.put("from", from);
+        result.put("to", to);
+        result.put("step", out.step > 0 ? out.step : tier.resolutionMillis());
+        result.put("count", out.size);
+        result.put("truncated", out.truncated);
+        result.put("timestamps", Arrays.copyOf(out.timestamps, out.size));
+        for (int c = 0; c < wanted.length; c++) {
+            if (!wanted[c]) continue;
+            double[] column = Arrays.copyOf(out.columns[c], out.size);
+            if (c == STATUS) {
+                String[] names = new String[out.size];
+                for (int i = 0; i < names.length; i++) names[i] = statusName(column[i]);
+                result.put(COLUMNS.get(c), names);
+            } else {
+                result.put(COLUMNS.get(c), column);
+            }
+        }
+        return result;
+    }
+
+    /** Applies retention: drops expired chunks, forgets empty series and deletes segments past every cutoff. */
+    @Scheduled(fixedDelayString = "${app.timeseries.sweep-ms:60000}")
+    public void sweep() {
+        if (!enabled) return;
+        long now = System.currentTimeMillis();
+        long[] cutoff = new long[retentionMillis.length];
+        for (int t = 0; t < cutoff.length; t++) cutoff[t] = now - retentionMillis[t];
+        series.values().removeIf(s -> s.expire(cutoff));
+        synchronized (segments) {
+            for (Tier tier : Tier.values()) {
+                List<ChunkSegment> list = segments.get(tier.ordinal());
+                while (list.size() > 1 && list.get(0).maxTimestamp() < cutoff[tier.ordinal()]) {
+                    ChunkSegment expired = list.remove(0);
+                    try {
+                        expired.delete();
+                    } catch (IOException e) {
+                        System.out.println("[TelemetryHistoryStore] Could not delete " + expired.path() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        int tiers = Tier.values().length;
+        long[] chunks = new long[tiers], points = new long[tiers], bytes = new long[tiers];
+        for (VehicleSeries s : series.values()) s.addStats(chunks, points, bytes);
+
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("enabled", enabled);
+        m.put("storage", dir != null ? dir.toAbsolutePath().toString() : "heap");
+        m.put("vehicles", series.size());
+        m.put("pointsIngested", pointsIngested.get());
+        m.put("outOfOrderDropped", outOfOrder.get());
+        m.put("chunksSealed", chunksSealed.get());
+        Map<String, Object> perTier = new LinkedHashMap<>();
+        for (Tier tier : Tier.values()) {
+            int t = tier.ordinal();
+            Map<String, Object> tm = new LinkedHashMap<>();
+            tm.put("retentionHours", retentionMillis[t] / 3_600_000);
+            tm.put("chunks", chunks[t]);
+            tm.put("points", points[t]);
+            tm.put("bytes", bytes[t]);
+            // An uncompressed point is an 8-byte timestamp plus one double per column.
+            tm.put("bytesPerPoint", points[t] == 0 ? 0.0 : (double) bytes[t] / points[t]);
+            tm.put("compressionRatio", bytes[t] == 0 ? 0.0 : (double) points[t] * 8 * (COLUMNS.size() + 1) / bytes[t]);
+            perTier.put(tier.label(), tm);
+        }
+        m.put("tiers", perTier);
+        synchronized (segments) {
+            int count = 0;
+            long mapped = 0;
+            for (List<ChunkSegment> list : segments) {
+                count += list.size();
+                for (ChunkSegment seg : list) mapped += seg.capacity();
+            }
+            m.put("segments", count);
+            m.put("mappedBytes", mapped);
+        }
+        long q = queries.get();
+        m.put("queries", q);
+        m.put("pointsScanned", pointsScanned.get());
+        m.put("avgQueryMs", q == 0 ? 0.0 : scanNanos.get() / 1e6 / q);
+        return m;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) return;
+        for (VehicleSeries s : series.values()) s.sealOpen(this::seal);
+        synchronized (segments) {
+            for (List<ChunkSegment> list : segments) {
+                for (ChunkSegment seg : list) {
+                    try {
+                        seg.close();
+                    } catch (IOException e) {
+                        System.out.println("[TelemetryHistoryStore] Could not close " + seg.path() + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    // Codes beyond the built-in three are interned per process, so history replayed from disk may outlive them.
+    private String statusName(double code) {
+        try {
+            return fleet.statusName((byte) code);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return "unknown";
+        }
+    }
+
+    private Tier pickTier(long from, Long stepMillis, long now) {
+        Tier finest = null;
+        Tier coarsestWithinStep = null;
+        for (Tier tier : Tier.values()) {
+            if (from < now - retentionMillis[tier.ordinal()]) continue;
+            if (finest == null) finest = tier;
+            if (stepMillis != null && tier.resolutionMillis() <= stepMillis) coarsestWithinStep = tier;
+        }
+        if (coarsestWithinStep != null) return coarsestWithinStep;
+        return finest != null ? finest : Tier.HOUR;
+    }
+
+    private VehicleSeries.Sealed seal(String vehicleId, Tier tier, GorillaChunk.Encoder chunk) {
+        byte[] bytes = chunk.toBytes();
+        chunksSealed.incrementAndGet();
+        if (dir == null) {
+            return new VehicleSeries.Sealed(ByteBuffer.wrap(bytes), chunk.firstTimestamp(), chunk.lastTimestamp(), chunk.count(), null);
+        }
+        synchronized (segments) {
+            List<ChunkSegment> list = segments.get(tier.ordinal());
+            ChunkSegment current = list.isEmpty() ? null : list.get(list.size() - 1);
+            // Roll by age too, so retention can release a tier's history a sixteenth at a time.
+            long now = System.currentTimeMillis();
+            boolean stale = current != null && now - current.createdMillis() > retentionMillis[tier.ordinal()] / 16;
+            ByteBuffer slice = current == null || stale ? null : current.append(vehicleId, bytes, chunk.lastTimestamp());
+            if (slice == null) {
+                try {
+                    long created = current == null ? now : Math.max(now, current.createdMillis() + 1);
+                    current = ChunkSegment.create(dir, tier, created, Math.max(segmentBytes, bytes.length + 1024));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not create telemetry segment in " + dir, e);
+                }
+                list.add(current);
+                slice = current.append(vehicleId, bytes, chunk.lastTimestamp());
+            }
+            return new VehicleSeries.Sealed(slice, chunk.firstTimestamp(), chunk.lastTimestamp(), chunk.count(), current);
+        }
+    }
+
+    private void replay() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.seg")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(p -> p.getFileName().toString()));
+        long chunks = 0;
+        for (Path file : files) {
+            ChunkSegment segment = ChunkSegment.open(file);
+            chunks += segment.replay((vehicleId, chunk) -> series.computeIfAbsent(vehicleId, key -> new VehicleSeries(key, MEAN))
+                    .restore(segment.tier(), new VehicleSeries.Sealed(chunk, GorillaChunk.firstTimestamp(chunk),
+                            GorillaChunk.lastTimestamp(chunk), GorillaChunk.count(chunk), segment)));
+            segments.get(segment.tier().ordinal()).add(segment);
+        }
+        for (List<ChunkSegment> list : segments) list.sort(Comparator.comparingLong(ChunkSegment::createdMillis));
+        series.values().forEach(VehicleSeries::sortSealed);
+        if (!files.isEmpty()) {
+            System.out.println("[TelemetryHistoryStore] Replayed " + chunks + " chunks for " + series.size() + " vehicles from " + files.size() + " segments");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.neurofleet.timeseries;
+
+/** Retention tiers: raw ticks, then 1-minute and 1-hour rollups. */
+public enum Tier {
+    RAW("raw", 0),
+    MINUTE("1m", 60_000),
+    HOUR("1h", 3_600_000);
+
+    private final String label;
+    private final long resolutionMillis;
+
+    Tier(String label, long resolutionMillis) {
+        this.label = label;
+        this.resolutionMillis = resolutionMillis;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /** Bucket width; 0 for raw. */
+    public long resolutionMillis() {
+        return resolutionMillis;
+    }
+
+    static Tier fromLabel(String label) {
+        for (Tier t : values()) {
+            if (t.label.equals(label)) return t;
+        }
+        throw new IllegalArgumentException("Unknown tier " + label);
+    }
+}
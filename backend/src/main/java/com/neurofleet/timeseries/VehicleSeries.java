@@ -0,0 +1,150 @@
+package com.neurofleet.timeseries;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All tiers of one vehicle's history: sealed chunks in time order, the open chunk being encoded, and the
+ * rollup bucket currently accumulating for each downsampled tier. Guarded by this.
+ */
+final class VehicleSeries {
+
+    record Sealed(ByteBuffer chunk, long firstTimestamp, long lastTimestamp, int count, ChunkSegment segment) {}
+
+    interface Sealer {
+        Sealed seal(String vehicleId, Tier tier, GorillaChunk.Encoder chunk);
+    }
+
+    private static final int TIERS = Tier.values().length;
+
+    final String id;
+    private final boolean[] mean;
+    private final List<Sealed>[] sealed;
+    private final GorillaChunk.Encoder[] open = new GorillaChunk.Encoder[TIERS];
+    private final long[] bucketStart = new long[TIERS];
+    private final int[] bucketCount = new int[TIERS];
+    private final double[][] bucket;
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    @SuppressWarnings("unchecked")
+    VehicleSeries(String id, boolean[] mean) {
+        this.id = id;
+        this.mean = mean;
+        this.sealed = new List[TIERS];
+        this.bucket = new double[TIERS][mean.length];
+        for (int t = 0; t < TIERS; t++) sealed[t] = new ArrayList<>();
+    }
+
+    /** Records one raw point and folds it into the rollups; out-of-order points are dropped. */
+    synchronized boolean append(long timestamp, double[] point, int chunkPoints, Sealer sealer) {
+        if (timestamp <= lastTimestamp) return false;
+        lastTimestamp = timestamp;
+        write(Tier.RAW, timestamp, point, chunkPoints, sealer);
+        for (Tier tier : Tier.values()) {
+            if (tier == Tier.RAW) continue;
+            int t = tier.ordinal();
+            long start = timestamp - Math.floorMod(timestamp, tier.resolutionMillis());
+            if (bucketCount[t] > 0 && start != bucketStart[t]) {
+                write(tier, bucketStart[t], rollup(t), chunkPoints, sealer);
+                bucketCount[t] = 0;
+            }
+            if (bucketCount[t] == 0) {
+                bucketStart[t] = start;
+                Arrays.fill(bucket[t], 0);
+            }
+            for (int c = 0; c < point.length; c++) {
+                bucket[t][c] = mean[c] ? bucket[t][c] + point[c] : point[c];
+            }
+            bucketCount[t]++;
+        }
+        return true;
+    }
+
+    /** Re-attaches a chunk found on disk at startup; callers sort with {@link #sortSealed()} afterwards. */
+    synchronized void restore(Tier tier, Sealed chunk) {
+        sealed[tier.ordinal()].add(chunk);
+        lastTimestamp = Math.max(lastTimestamp, chunk.lastTimestamp());
+    }
+
+    synchronized void sortSealed() {
+        for (List<Sealed> list : sealed) list.sort((a, b) -> Long.compare(a.firstTimestamp(), b.firstTimestamp()));
+    }
+
+    /**
+     * Chunks of {@code tier} overlapping {@code [from, to)} in time order, the open chunk serialized at the end,
+     * plus the still-accumulating rollup bucket (if any) as a one-point chunk.
+     */
+    synchronized List<ByteBuffer> chunks(Tier tier, long from, long to) {
+        int t = tier.ordinal();
+        List<ByteBuffer> out = new ArrayList<>();
+        for (Sealed s : sealed[t]) {
+            if (s.lastTimestamp() >= from && s.firstTimestamp() < to) out.add(s.chunk());
+        }
+        GorillaChunk.Encoder current = open[t];
+        if (current != null && current.lastTimestamp() >= from && current.firstTimestamp() < to) {
+            out.add(ByteBuffer.wrap(current.toBytes()));
+        }
+        if (tier != Tier.RAW && bucketCount[t] > 0 && bucketStart[t] >= from && bucketStart[t] < to) {
+            GorillaChunk.Encoder partial = new GorillaChunk.Encoder(mean.length);
+            partial.append(bucketStart[t], rollup(t));
+            out.add(ByteBuffer.wrap(partial.toBytes()));
+        }
+        return out;
+    }
+
+    /** Seals every open chunk, e.g. before shutdown. Accumulating rollup buckets are left alone. */
+    synchronized void sealOpen(Sealer sealer) {
+        for (Tier tier : Tier.values()) {
+            int t = tier.ordinal();
+            if (open[t] != null && open[t].count() > 0) sealed[t].add(sealer.seal(id, tier, open[t]));
+            open[t] = null;
+        }
+    }
+
+    /** Drops sealed chunks that end before each tier's cutoff; returns true once nothing is left. */
+    synchronized boolean expire(long[] cutoff) {
+        boolean empty = true;
+        for (int t = 0; t < TIERS; t++) {
+            List<Sealed> list = sealed[t];
+            int drop = 0;
+            while (drop < list.size() && list.get(drop).lastTimestamp() < cutoff[t]) drop++;
+            if (drop > 0) list.subList(0, drop).clear();
+            if (open[t] != null && open[t].lastTimestamp() < cutoff[t]) open[t] = null;
+            if (!list.isEmpty() || open[t] != null || bucketCount[t] > 0) empty = false;
+        }
+        return empty;
+    }
+
+    synchronized void addStats(long[] chunks, long[] points, long[] bytes) {
+        for (int t = 0; t < TIERS; t++) {
+            for (Sealed s : sealed[t]) {
+                chunks[t]++;
+                points[t] += s.count();
+                bytes[t] += s.chunk().capacity();
+            }
+            if (open[t] != null) {
+                points[t] += open[t].count();
+                bytes[t] += open[t].sizeBytes();
+            }
+        }
+    }
+
+    private void write(Tier tier, long timestamp, double[] point, int chunkPoints, Sealer sealer) {
+        int t = tier.ordinal();
+        GorillaChunk.Encoder chunk = open[t];
+        if (chunk == null) chunk = open[t] = new GorillaChunk.Encoder(point.length);
+        chunk.append(timestamp, point);
+        if (chunk.count() >= chunkPoints) {
+            sealed[t].add(sealer.seal(id, tier, chunk));
+            open[t] = null;
+        }
+    }
+
+    private double[] rollup(int t) {
+        double[] out = new double[mean.length];
+        for (int c = 0; c < out.length; c++) out[c] = mean[c] ? bucket[t][c] / bucketCount[t] : bucket[t][c];
+        return out;
+    }
+}
@@ -0,0 +1,62 @@
+package com.neurofleet.websocket;
+
+import com.neurofleet.ingest.IngestService;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming device ingestion at {@code /ws/ingest}: text messages carry line-format reports and binary messages
+ * the packed format. The ingest key comes from the {@code X-Ingest-Key} header or a {@code key} query parameter.
+ * Nothing is sent back unless some reports in a message were refused, in which case the counts are.
+ */
+@Component
+public class IngestWebSocketHandler extends AbstractWebSocketHandler {
+
+    private final IngestService ingest;
+
+    public IngestWebSocketHandler(IngestService ingest) {
+        this.ingest = ingest;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        String key = session.getHandshakeHeaders().getFirst("X-Ingest-Key");
+        if (key == null) key = queryKey(session.getUri());
+        if (!ingest.authorized(key)) session.close(CloseStatus.POLICY_VIOLATION.withReason("Missing or invalid ingest key"));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws IOException {
+        reply(session, ingest.ingestLines(message.getPayload()));
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        reply(session, ingest.ingestBinary(message.getPayload()));
+    }
+
+    private static void reply(WebSocketSession session, IngestService.Result result) throws IOException {
+        if (!result.refused()) return;
+        StringBuilder json = new StringBuilder("{\"type\":\"ingest_result\"");
+        result.toMap().forEach((k, v) -> json.append(",\"").append(k).append("\":").append(v));
+        session.sendMessage(new TextMessage(json.append('}')));
+    }
+
+    private static String queryKey(URI uri) {
+        String query = uri != null ? uri.getRawQuery() : null;
+        if (query == null) return null;
+        for (String param : query.split("&")) {
+            if (param.startsWith("key=")) return URLDecoder.decode(param.substring(4), StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+}
@@ -1,38 +1,185 @@
 package com.neurofleet.websocket;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
-import java.util.Set;
+import java.net.URI;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
+/**
+ * Telemetry endpoint. Sessions get JSON frames unless they negotiate the packed binary encoding, either with
+ * the {@value #BINARY_PROTOCOL} subprotocol or {@code ?format=binary}; control messages and event broadcasts
+ * stay JSON text either way.
+ */
 @Component
-public class RawWebSocketHandler extends TextWebSocketHandler {
-    private final Set<WebSocketSession> sessions = ConcurrentHashMap.newKeySet();
+public class RawWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    public static final String BINARY_PROTOCOL = "neurofleet.bin.v1";
+    public static final String JSON_PROTOCOL = "neurofleet.json.v1";
+
+    private final Map<String, SessionSender> senders = new ConcurrentHashMap<>();
+    private final SubscriptionIndex subscriptions = new SubscriptionIndex();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService sendExecutor;
+    private final int queueCapacity;
+    private final SessionSender.OverflowPolicy overflowPolicy;
+    private final long sendTimeLimitNanos;
+    private final Timer broadcastTimer;
+    private volatile Function<TelemetrySubscription, WebSocketMessage<?>> snapshotSource;
+
+    public RawWebSocketHandler(@Value("${app.websocket.send-queue-capacity:32}") int queueCapacity,
+                               @Value("${app.websocket.overflow-policy:coalesce}") String overflowPolicy,
+                               @Value("${app.websocket.send-time-limit-ms:10000}") long sendTimeLimitMs,
+                               MeterRegistry registry) {
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = SessionSender.OverflowPolicy.parse(overflowPolicy);
+        this.sendTimeLimitNanos = sendTimeLimitMs * 1_000_000L;
+        this.broadcastTimer = Timer.builder("websocket.broadcast")
+                .description("Time to queue one event frame on every session")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(1000))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+        Gauge.builder("websocket.sessions", senders, Map::size).description("Open telemetry sessions").register(registry);
+        AtomicInteger threads = new AtomicInteger();
+        this.sendExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "ws-sender-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sendExecutor.shutdownNow();
+    }
+
+    /** Registers the producer of the full-state frame sent to a client when it connects or changes subscription. */
+    public void setSnapshotSource(Function<TelemetrySubscription, WebSocketMessage<?>> snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    /** Session groups keyed by subscription; telemetry frames are routed through these, not {@link #broadcast}. */
+    public SubscriptionIndex subscriptions() {
+        return subscriptions;
+    }
+
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BINARY_PROTOCOL, JSON_PROTOCOL);
+    }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
-        sessions.add(session);
+        SessionSender sender = new SessionSender(session, sendExecutor, queueCapacity, overflowPolicy,
+                sendTimeLimitNanos, this::snapshot);
+        // Queue the snapshot before the session becomes visible to broadcasts so it is always delivered first.
+        subscribe(sender, TelemetrySubscription.ALL.withFormat(format(session)));
+        senders.put(session.getId(), sender);
     }
 
+    /**
+     * Accepts {@code {"type":"subscribe", "vehicleIds":[...], "statuses":[...], "bbox":{...}}} and
+     * {@code {"type":"unsubscribe"}}; anything else is ignored.
+     */
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
-        // Echo or ignore; not required for notifications
+        SessionSender sender = senders.get(session.getId());
+        if (sender == null) return;
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> body = mapper.readValue(message.getPayload(), Map.class);
+            Object type = body.get("type");
+            TelemetrySubscription.Format format = sender.subscription().format();
+            if ("subscribe".equals(type)) {
+                subscribe(sender, TelemetrySubscription.fromMessage(body).withFormat(format));
+            } else if ("unsubscribe".equals(type)) {
+                subscribe(sender, TelemetrySubscription.ALL.withFormat(format));
+            }
+        } catch (Exception e) {
+            sender.offer(new TextMessage("{\"type\":\"error\",\"message\":\"Invalid subscription\"}"));
+        }
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        sessions.remove(session);
+        SessionSender sender = senders.remove(session.getId());
+        if (sender == null) return;
+        subscriptions.remove(sender);
+        sender.close(status);
     }
 
-    public void broadcast(String payload) {
-        sessions.forEach(sess -> {
-            try {
-                if (sess.isOpen()) sess.sendMessage(new TextMessage(payload));
-            } catch (Exception ignored) {}
+    private static TelemetrySubscription.Format format(WebSocketSession session) {
+        if (BINARY_PROTOCOL.equals(session.getAcceptedProtocol())) return TelemetrySubscription.Format.BINARY;
+        URI uri = session.getUri();
+        String query = uri != null ? uri.getQuery() : null;
+        if (query != null && Arrays.asList(query.split("&")).contains("format=binary")) return TelemetrySubscription.Format.BINARY;
+        return TelemetrySubscription.Format.JSON;
+    }
+
+    private void subscribe(SessionSender sender, TelemetrySubscription subscription) {
+        // The snapshot is queued under the index lock, so it lands between the old group's frames and the new one's.
+        subscriptions.subscribe(sender, subscription, () -> {
+            sender.setSubscription(subscription);
+            WebSocketMessage<?> snapshot = snapshot(subscription);
+            if (snapshot != null) sender.offer(snapshot);
         });
     }
-}
\ No newline at end of file
+
+    private WebSocketMessage<?> snapshot(TelemetrySubscription subscription) {
+        Function<TelemetrySubscription, WebSocketMessage<?>> source = snapshotSource;
+        return source != null ? source.apply(subscription) : null;
+    }
+
+    public void broadcast(String payload) {
+        broadcast(new TextMessage(payload));
+    }
+
+    /** Queues the same message instance on every session; never blocks on a slow client. */
+    public void broadcast(WebSocketMessage<?> message) {
+        long start = System.nanoTime();
+        senders.values().forEach(sender -> sender.offer(message));
+        broadcastTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    public Map<String, Object> getSessionStats() {
+        List<Map<String, Object>> perSession = new ArrayList<>();
+        long queued = 0;
+        long dropped = 0;
+        for (SessionSender sender : senders.values()) {
+            Map<String, Object> s = sender.stats();
+            queued += (int) s.get("queueDepth");
+            dropped += (long) s.get("dropped");
+            perSession.add(s);
+        }
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sessions", senders.size());
+        m.put("binarySessions", senders.values().stream()
+                .filter(s -> s.subscription().format() == TelemetrySubscription.Format.BINARY).count());
+        m.put("subscriptionGroups", subscriptions.groupCount());
+        m.put("queueCapacity", queueCapacity);
+        m.put("overflowPolicy", overflowPolicy.name());
+        m.put("queued", queued);
+        m.put("dropped", dropped);
+        m.put("perSession", perSession);
+        return m;
+    }
+}
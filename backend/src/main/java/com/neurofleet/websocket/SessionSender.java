@@ -0,0 +1,210 @@
+package com.neurofleet.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Function;
+
+/**
+ * Bounded outbound queue for one WebSocket session. Producers never block: messages are queued and
+ * drained one at a time on the shared sender executor, so a stalled client only ever holds its own thread.
+ * Closing goes through the executor too: closing a session whose send is stalled blocks until that send times out,
+ * and producers call in from the tick with the store locked.
+ */
+class SessionSender {
+
+    enum OverflowPolicy {
+        /** Discard the oldest queued message to make room. */
+        DROP_OLDEST,
+        /**
+         * Replace everything queued with a fresh snapshot, which already holds the latest state of every vehicle.
+         * The snapshot is built by the sender thread when it next drains, never by the producer.
+         */
+        COALESCE,
+        /** Close the session; the client is expected to reconnect and receive a new snapshot. */
+        DISCONNECT;
+
+        static OverflowPolicy parse(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final long sendTimeLimitNanos;
+    private final Function<TelemetrySubscription, WebSocketMessage<?>> snapshotSource;
+    private volatile TelemetrySubscription subscription = TelemetrySubscription.ALL;
+
+    private final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+    private boolean draining;
+    private boolean closed;
+    private boolean needsSnapshot;
+    private volatile long sendStartedNanos;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalSendNanos = new AtomicLong();
+    private final LongAccumulator maxSendNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastSendNanos;
+
+    SessionSender(WebSocketSession session, Executor executor, int capacity, OverflowPolicy policy,
+                  long sendTimeLimitNanos, Function<TelemetrySubscription, WebSocketMessage<?>> snapshotSource) {
+        this.session = session;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+        this.policy = policy;
+        this.sendTimeLimitNanos = sendTimeLimitNanos;
+        this.snapshotSource = snapshotSource;
+    }
+
+    TelemetrySubscription subscription() {
+        return subscription;
+    }
+
+    void setSubscription(TelemetrySubscription subscription) {
+        this.subscription = subscription;
+    }
+
+    void offer(WebSocketMessage<?> message) {
+        long started = sendStartedNanos;
+        if (started != 0 && System.nanoTime() - started > sendTimeLimitNanos) {
+            close(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send time limit exceeded"));
+            return;
+        }
+        synchronized (this) {
+            if (closed) return;
+            if (queue.size() >= capacity) {
+                switch (policy) {
+                    case DROP_OLDEST -> {
+                        queue.poll();
+                        dropped.incrementAndGet();
+                    }
+                    case COALESCE -> {
+                        dropped.addAndGet(queue.size() + 1);
+                        queue.clear();
+                        needsSnapshot = true;
+                        message = null;
+                    }
+                    case DISCONNECT -> {
+                        dropped.addAndGet(queue.size() + 1);
+                        queue.clear();
+                        closed = true;
+                    }
+                }
+            }
+            if (!closed) {
+                if (message != null) queue.add(message);
+                if (!draining) {
+                    draining = true;
+                    executor.execute(this::drain);
+                }
+                return;
+            }
+        }
+        closeSession(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send queue overflow"));
+    }
+
+    void close(CloseStatus status) {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.clear();
+        }
+        closeSession(status);
+    }
+
+    private void drain() {
+        while (true) {
+            WebSocketMessage<?> next;
+            TelemetrySubscription snapshotFor = null;
+            synchronized (this) {
+                if (needsSnapshot && !closed) {
+                    // Whatever queued since the overflow is older than the snapshot about to be built
+                    needsSnapshot = false;
+                    dropped.addAndGet(queue.size());
+                    queue.clear();
+                    snapshotFor = subscription;
+                }
+                next = closed || snapshotFor != null ? null : queue.poll();
+                if (next == null && snapshotFor == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            if (snapshotFor != null) {
+                // Built here, outside the lock, so producers and the tick never pay for a slow client's snapshot
+                try {
+                    next = snapshotSource.apply(snapshotFor);
+                } catch (RuntimeException e) {
+                    System.out.println("[SessionSender] Could not build snapshot for " + session.getId() + ": " + e.getMessage());
+                    synchronized (this) {
+                        draining = false;
+                    }
+                    close(CloseStatus.SERVER_ERROR.withReason("Snapshot failed"));
+                    return;
+                }
+                if (next == null) continue;
+            }
+            long start = System.nanoTime();
+            sendStartedNanos = start;
+            try {
+                if (session.isOpen()) session.sendMessage(next);
+                sent.incrementAndGet();
+            } catch (Exception e) {
+                dropped.incrementAndGet();
+            } finally {
+                sendStartedNanos = 0;
+            }
+            long elapsed = System.nanoTime() - start;
+            lastSendNanos = elapsed;
+            totalSendNanos.addAndGet(elapsed);
+            maxSendNanos.accumulate(elapsed);
+        }
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            executor.execute(() -> closeNow(status));
+        } catch (RejectedExecutionException e) {
+            closeNow(status);
+        }
+    }
+
+    private void closeNow(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception ignored) {}
+    }
+
+    synchronized int queueDepth() {
+        return queue.size();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    Map<String, Object> stats() {
+        long count = sent.get();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("sessionId", session.getId());
+        m.put("queueDepth", queueDepth());
+        m.put("sent", count);
+        m.put("dropped", dropped.get());
+        m.put("lastSendMs", lastSendNanos / 1e6);
+        m.put("avgSendMs", count == 0 ? 0.0 : totalSendNanos.get() / 1e6 / count);
+        m.put("maxSendMs", maxSendNanos.get() / 1e6);
+        return m;
+    }
+}
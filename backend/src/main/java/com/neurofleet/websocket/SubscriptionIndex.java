@@ -0,0 +1,174 @@
+package com.neurofleet.websocket;
+
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Groups sessions by identical subscription and indexes the groups by their most selective criterion
+ * (vehicle id, then viewport cell, then status), so routing an update costs a few map lookups
+ * instead of a scan over every session. The index is rebuilt on (rare) subscription changes.
+ */
+public class SubscriptionIndex {
+
+    static final double CELL_DEGREES = 0.1;
+    private static final int MAX_CELLS_PER_BBOX = 1024;
+
+    /** Sessions sharing one subscription; frames are encoded once per group. */
+    public static final class Group {
+        private final TelemetrySubscription subscription;
+        private final Set<SessionSender> senders = ConcurrentHashMap.newKeySet();
+        /** Scratch field for the frame encoder to de-duplicate candidate visits; only touched under the index lock. */
+        public long visitMark;
+
+        Group(TelemetrySubscription subscription) {
+            this.subscription = subscription;
+        }
+
+        public TelemetrySubscription subscription() {
+            return subscription;
+        }
+
+        public void send(WebSocketMessage<?> message) {
+            senders.forEach(sender -> sender.offer(message));
+        }
+    }
+
+    /** Read-only view handed to the frame encoder while it holds the index lock. */
+    public interface View {
+        /** Visits every group whose indexed criterion matches; callers must still check {@link TelemetrySubscription#matches}. */
+        void candidates(String id, String status, double lat, double lon, Consumer<Group> visitor);
+
+        Collection<Group> groups();
+    }
+
+    private final Map<TelemetrySubscription, Group> groups = new HashMap<>();
+    private final Map<SessionSender, Group> membership = new HashMap<>();
+    private final Map<String, List<Group>> byVehicle = new HashMap<>();
+    private final Map<Long, List<Group>> byCell = new HashMap<>();
+    private final Map<String, List<Group>> byStatus = new HashMap<>();
+    private final List<Group> unindexed = new ArrayList<>();
+
+    private final View view = new View() {
+        @Override
+        public void candidates(String id, String status, double lat, double lon, Consumer<Group> visitor) {
+            unindexed.forEach(visitor);
+            visit(byVehicle.get(id), visitor);
+            visit(byStatus.get(status), visitor);
+            if (!byCell.isEmpty()) visit(byCell.get(cellKey(cell(lat), cell(lon))), visitor);
+        }
+
+        @Override
+        public Collection<Group> groups() {
+            return groups.values();
+        }
+    };
+
+    /** Moves the sender into the group for {@code subscription}, then runs {@code afterMove} under the same lock. */
+    public synchronized void subscribe(SessionSender sender, TelemetrySubscription subscription, Runnable afterMove) {
+        detach(sender);
+        Group group = groups.get(subscription);
+        if (group == null) {
+            group = new Group(subscription);
+            groups.put(subscription, group);
+            indexGroup(group);
+        }
+        group.senders.add(sender);
+        membership.put(sender, group);
+        if (afterMove != null) afterMove.run();
+    }
+
+    public synchronized void remove(SessionSender sender) {
+        detach(sender);
+    }
+
+    /** Runs {@code action} with exclusive access to the groups; subscription changes wait until it returns. */
+    public synchronized void withView(Consumer<View> action) {
+        action.accept(view);
+    }
+
+    public synchronized int groupCount() {
+        return groups.size();
+    }
+
+    private void detach(SessionSender sender) {
+        Group group = membership.remove(sender);
+        if (group == null) return;
+        group.senders.remove(sender);
+        if (group.senders.isEmpty()) {
+            groups.remove(group.subscription);
+            unindexGroup(group);
+        }
+    }
+
+    private void indexGroup(Group group) {
+        forEachKey(group, new IndexAction() {
+            public void vehicle(String id) { byVehicle.computeIfAbsent(id, k -> new ArrayList<>()).add(group); }
+            public void cell(long key) { byCell.computeIfAbsent(key, k -> new ArrayList<>()).add(group); }
+            public void status(String status) { byStatus.computeIfAbsent(status, k -> new ArrayList<>()).add(group); }
+            public void unindexed() { unindexed.add(group); }
+        });
+    }
+
+    private void unindexGroup(Group group) {
+        forEachKey(group, new IndexAction() {
+            public void vehicle(String id) { removeFrom(byVehicle, id, group); }
+            public void cell(long key) { removeFrom(byCell, key, group); }
+            public void status(String status) { removeFrom(byStatus, status, group); }
+            public void unindexed() { unindexed.remove(group); }
+        });
+    }
+
+    private interface IndexAction {
+        void vehicle(String id);
+        void cell(long key);
+        void status(String status);
+        void unindexed();
+    }
+
+    private static void forEachKey(Group group, IndexAction action) {
+        TelemetrySubscription sub = group.subscription;
+        if (sub.vehicleIds() != null) {
+            sub.vehicleIds().forEach(action::vehicle);
+            return;
+        }
+        double[] bbox = sub.bbox();
+        if (bbox != null) {
+            long minLat = cell(bbox[0]), minLon = cell(bbox[1]), maxLat = cell(bbox[2]), maxLon = cell(bbox[3]);
+            // Spans are compared one at a time so no product can overflow, whatever the coordinates
+            long latCells = maxLat - minLat + 1, lonCells = maxLon - minLon + 1;
+            if (latCells > 0 && lonCells > 0 && latCells <= MAX_CELLS_PER_BBOX && lonCells <= MAX_CELLS_PER_BBOX / latCells) {
+                for (long la = minLat; la <= maxLat; la++) {
+                    for (long lo = minLon; lo <= maxLon; lo++) action.cell(cellKey(la, lo));
+                }
+                return;
+            }
+        }
+        if (sub.statuses() != null) {
+            sub.statuses().forEach(action::status);
+            return;
+        }
+        action.unindexed();
+    }
+
+    private static <K> void removeFrom(Map<K, List<Group>> index, K key, Group group) {
+        List<Group> list = index.get(key);
+        if (list == null) return;
+        list.remove(group);
+        if (list.isEmpty()) index.remove(key);
+    }
+
+    private static void visit(List<Group> list, Consumer<Group> visitor) {
+        if (list != null) list.forEach(visitor);
+    }
+
+    static long cell(double degrees) {
+        return (long) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    static long cellKey(long latCell, long lonCell) {
+        return (latCell << 32) ^ (lonCell & 0xffffffffL);
+    }
+}
@@ -0,0 +1,97 @@
+package com.neurofleet.websocket;
+
+import java.util.*;
+
+/**
+ * Immutable telemetry filter requested by a client, plus the wire format its session negotiated. Every criterion
+ * that is set must match; a subscription with no criteria receives the whole fleet. Value-equal subscriptions
+ * (format included) share one frame.
+ */
+public final class TelemetrySubscription {
+
+    /** How telemetry frames are encoded for the session; fixed at connect time. */
+    public enum Format { JSON, BINARY }
+
+    public static final TelemetrySubscription ALL = new TelemetrySubscription(null, null, null);
+
+    private final Set<String> vehicleIds;
+    private final Set<String> statuses;
+    private final double[] bbox; // minLat, minLon, maxLat, maxLon
+    private final Format format;
+
+    public TelemetrySubscription(Set<String> vehicleIds, Set<String> statuses, double[] bbox) {
+        this(vehicleIds, statuses, bbox, Format.JSON);
+    }
+
+    private TelemetrySubscription(Set<String> vehicleIds, Set<String> statuses, double[] bbox, Format format) {
+        this.vehicleIds = vehicleIds == null || vehicleIds.isEmpty() ? null : Set.copyOf(vehicleIds);
+        this.statuses = statuses == null || statuses.isEmpty() ? null : Set.copyOf(statuses);
+        if (bbox != null) checkBbox(bbox);
+        this.bbox = bbox == null ? null : bbox.clone();
+        this.format = format;
+    }
+
+    public TelemetrySubscription withFormat(Format format) {
+        return format == this.format ? this : new TelemetrySubscription(vehicleIds, statuses, bbox, format);
+    }
+
+    /**
+     * Parses the body of a {@code subscribe} message:
+     * {@code {"vehicleIds": [...], "statuses": [...], "bbox": {"minLat", "minLon", "maxLat", "maxLon"}}}.
+     */
+    public static TelemetrySubscription fromMessage(Map<String, Object> message) {
+        double[] bbox = null;
+        if (message.get("bbox") instanceof Map<?, ?> b) {
+            bbox = new double[] {
+                    coordinate(b, "minLat"), coordinate(b, "minLon"), coordinate(b, "maxLat"), coordinate(b, "maxLon")
+            };
+        }
+        return new TelemetrySubscription(strings(message.get("vehicleIds")), strings(message.get("statuses")), bbox);
+    }
+
+    public boolean matches(String id, String status, double lat, double lon) {
+        if (vehicleIds != null && !vehicleIds.contains(id)) return false;
+        if (statuses != null && !statuses.contains(status)) return false;
+        return bbox == null || (lat >= bbox[0] && lat <= bbox[2] && lon >= bbox[1] && lon <= bbox[3]);
+    }
+
+    public Set<String> vehicleIds() { return vehicleIds; }
+    public Set<String> statuses() { return statuses; }
+    public double[] bbox() { return bbox == null ? null : bbox.clone(); }
+    public Format format() { return format; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TelemetrySubscription other)) return false;
+        return Objects.equals(vehicleIds, other.vehicleIds) && Objects.equals(statuses, other.statuses)
+                && Arrays.equals(bbox, other.bbox) && format == other.format;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(vehicleIds, statuses, Arrays.hashCode(bbox), format);
+    }
+
+    private static Set<String> strings(Object value) {
+        if (!(value instanceof Collection<?> items)) return null;
+        Set<String> set = new HashSet<>();
+        for (Object item : items) if (item != null) set.add(item.toString());
+        return set;
+    }
+
+    private static void checkBbox(double[] bbox) {
+        if (bbox.length != 4) throw new IllegalArgumentException("bbox needs minLat, minLon, maxLat, maxLon");
+        for (int i = 0; i < 4; i++) {
+            double limit = i % 2 == 0 ? 90 : 180;
+            // NaN fails this comparison too
+            if (!(Math.abs(bbox[i]) <= limit)) throw new IllegalArgumentException("bbox latitudes must be within [-90, 90] and longitudes within [-180, 180]");
+        }
+        if (bbox[0] > bbox[2] || bbox[1] > bbox[3]) throw new IllegalArgumentException("bbox min must not exceed max");
+    }
+
+    private static double coordinate(Map<?, ?> bbox, String key) {
+        if (!(bbox.get(key) instanceof Number n)) throw new IllegalArgumentException("bbox." + key + " is required");
+        return n.doubleValue();
+    }
+}
@@ -0,0 +1,205 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator for the device ingestion endpoints. Runs straight from source, with no build step:
+ * <pre>
+ *   java tools/IngestLoadGenerator.java --url http://localhost:3001 --key secret --ids-file ids.txt \
+ *        --rate 200000 --seconds 30 --connections 8 --batch 1000 --format binary --transport http
+ * </pre>
+ * Each connection sends batches of reports for vehicles drawn round-robin from the id list (or
+ * {@code --prefix}/{@code --vehicles} generated ids), paced to its share of {@code --rate}. Every second it prints
+ * the achieved rate and, over HTTP, the server's accepted and refused counts plus request latency.
+ */
+public class IngestLoadGenerator {
+
+    private static final Pattern COUNT = Pattern.compile("\"(accepted|unknown|notOwned|malformed|overflow)\":(\\d+)");
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        new IngestLoadGenerator().run(opts);
+    }
+
+    private void run(Map<String, String> opts) throws Exception {
+        String url = opts.getOrDefault("url", "http://localhost:3001");
+        String key = opts.getOrDefault("key", "");
+        int rate = Integer.parseInt(opts.getOrDefault("rate", "200000"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "30"));
+        int connections = Integer.parseInt(opts.getOrDefault("connections", "8"));
+        int batch = Integer.parseInt(opts.getOrDefault("batch", "1000"));
+        boolean binary = !"lines".equals(opts.getOrDefault("format", "binary"));
+        boolean websocket = "ws".equals(opts.getOrDefault("transport", "http"));
+        List<String> ids = opts.containsKey("ids-file")
+                ? Files.readAllLines(Path.of(opts.get("ids-file"))).stream().map(String::trim).filter(s -> !s.isEmpty()).toList()
+                : generatedIds(opts.getOrDefault("prefix", "v"), Integer.parseInt(opts.getOrDefault("vehicles", "10000")));
+
+        System.out.printf("Sending %,d reports/s for %ds to %s over %d %s connection(s), %d per batch, %s format, %,d vehicles%n",
+                rate, seconds, url, connections, websocket ? "WebSocket" : "HTTP", batch, binary ? "binary" : "line", ids.size());
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        double batchesPerSecond = (double) rate / batch / connections;
+        ExecutorService workers = Executors.newFixedThreadPool(connections);
+        for (int c = 0; c < connections; c++) {
+            int offset = c;
+            workers.execute(() -> {
+                try {
+                    Sender sender = websocket ? webSocket(client, url, key, binary) : http(client, url, key, binary);
+                    drive(sender, ids, offset, connections, batch, binary, batchesPerSecond, end);
+                } catch (Exception e) {
+                    errors.increment();
+                    System.out.println("Connection failed: " + e);
+                }
+            });
+        }
+        long last = 0;
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            long total = sent.sum();
+            System.out.printf("t=%3ds sent %,9d/s  accepted %,d  refused %,d  errors %,d  %s%n",
+                    s, total - last, accepted.sum(), refused.sum(), errors.sum(), latencySummary());
+            last = total;
+        }
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        System.out.printf("Done: %,d reports in %ds (%,d/s), accepted %,d, refused %,d, errors %,d%n",
+                sent.sum(), seconds, sent.sum() / seconds, accepted.sum(), refused.sum(), errors.sum());
+        System.exit(0);
+    }
+
+    private interface Sender {
+        void send(byte[] body) throws Exception;
+    }
+
+    private void drive(Sender sender, List<String> ids, int offset, int stride, int batch, boolean binary,
+                       double batchesPerSecond, long end) throws Exception {
+        long intervalNanos = (long) (1e9 / batchesPerSecond);
+        long next = System.nanoTime();
+        int cursor = offset;
+        Random random = new Random(offset);
+        double[] lat = new double[ids.size()];
+        double[] lon = new double[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            lat[i] = 28.6139 + random.nextDouble() * 0.2 - 0.1;
+            lon[i] = 77.2090 + random.nextDouble() * 0.2 - 0.1;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(batch * 300);
+        StringBuilder lines = new StringBuilder(batch * 48);
+        while (System.nanoTime() < end) {
+            buffer.clear();
+            lines.setLength(0);
+            for (int n = 0; n < batch; n++) {
+                int v = cursor % ids.size();
+                cursor += stride;
+                lat[v] += (random.nextDouble() - 0.5) * 1e-4;
+                lon[v] += (random.nextDouble() - 0.5) * 1e-4;
+                float battery = 20 + random.nextInt(80);
+                if (binary) {
+                    byte[] id = ids.get(v).getBytes(StandardCharsets.UTF_8);
+                    buffer.put((byte) id.length).put(id).putDouble(lat[v]).putDouble(lon[v]).putFloat(battery).put((byte) 0).putLong(0);
+                } else {
+                    lines.append(ids.get(v)).append(',').append(lat[v]).append(',').append(lon[v]).append(',').append(battery).append('\n');
+                }
+            }
+            byte[] body = binary ? Arrays.copyOf(buffer.array(), buffer.position()) : lines.toString().getBytes(StandardCharsets.UTF_8);
+            sender.send(body);
+            sent.add(batch);
+            next += intervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+            else if (-wait > 1_000_000_000L) next = System.nanoTime(); // fell a second behind: stop trying to catch up
+        }
+    }
+
+    private Sender http(HttpClient client, String url, String key, boolean binary) {
+        URI uri = URI.create(url + "/api/ingest");
+        String type = binary ? "application/octet-stream" : "text/plain";
+        return body -> {
+            long start = System.nanoTime();
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri)
+                    .header("Content-Type", type).header("X-Ingest-Key", key)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build(), HttpResponse.BodyHandlers.ofString());
+            latencies.add(System.nanoTime() - start);
+            if (response.statusCode() != 202 && response.statusCode() != 503) {
+                errors.increment();
+                return;
+            }
+            tally(response.body());
+        };
+    }
+
+    private Sender webSocket(HttpClient client, String url, String key, boolean binary) throws Exception {
+        URI uri = URI.create(url.replaceFirst("^http", "ws") + "/ws/ingest");
+        WebSocket socket = client.newWebSocketBuilder().header("X-Ingest-Key", key).buildAsync(uri, new WebSocket.Listener() {
+            private final StringBuilder partial = new StringBuilder();
+
+            @Override
+            public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+                partial.append(data);
+                if (last) {
+                    tally(partial.toString());
+                    partial.setLength(0);
+                }
+                ws.request(1);
+                return null;
+            }
+
+            @Override
+            public CompletionStage<?> onClose(WebSocket ws, int status, String reason) {
+                System.out.println("WebSocket closed: " + status + " " + reason);
+                errors.increment();
+                return null;
+            }
+        }).get(10, TimeUnit.SECONDS);
+        return body -> {
+            long start = System.nanoTime();
+            // One message at a time: the JDK client rejects a send while the previous one is outstanding.
+            if (binary) socket.sendBinary(ByteBuffer.wrap(body), true).get();
+            else socket.sendText(new String(body, StandardCharsets.UTF_8), true).get();
+            latencies.add(System.nanoTime() - start);
+        };
+    }
+
+    // Over WebSocket only refusals are reported back, so accepted there is sent minus refused.
+    private void tally(String json) {
+        Matcher m = COUNT.matcher(json);
+        while (m.find()) {
+            long n = Long.parseLong(m.group(2));
+            if (m.group(1).equals("accepted")) accepted.add(n);
+            else refused.add(n);
+        }
+    }
+
+    private String latencySummary() {
+        List<Long> window = new ArrayList<>();
+        for (Long l; (l = latencies.poll()) != null; ) window.add(l);
+        if (window.isEmpty()) return "";
+        Collections.sort(window);
+        return String.format("latency p50 %.2fms p99 %.2fms max %.2fms", window.get(window.size() / 2) / 1e6,
+                window.get((int) (window.size() * 0.99)) / 1e6, window.get(window.size() - 1) / 1e6);
+    }
+
+    private static List<String> generatedIds(String prefix, int count) {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) ids.add(prefix + i);
+        return ids;
+    }
+}
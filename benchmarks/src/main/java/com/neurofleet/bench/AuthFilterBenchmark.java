@@ -0,0 +1,56 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.security.FirebaseAuthenticationFilter;
+import com.neurofleet.security.LocalKeyTokenVerifier;
+import com.neurofleet.security.TokenCache;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One authenticated request through {@link FirebaseAuthenticationFilter}, with and without the token cache.
+ * Tokens are RS256 and checked by {@link LocalKeyTokenVerifier}, which costs the same signature check as Firebase
+ * minus the key fetch. {@code users} clients each present their own token, round-robin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class AuthFilterBenchmark {
+
+    @Param({"true", "false"})
+    boolean cache;
+
+    @Param({"1", "1000"})
+    int users;
+
+    private FirebaseAuthenticationFilter filter;
+    private String[] headers;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        LocalTokens tokens = LocalTokens.generate();
+        filter = new FirebaseAuthenticationFilter(new TokenCache(new LocalKeyTokenVerifier(tokens.publicKey(), LocalTokens.ISSUER, LocalTokens.AUDIENCE), cache, 10000),
+                new CompositeMeterRegistry());
+        headers = new String[users];
+        for (int i = 0; i < users; i++) headers[i] = "Bearer " + tokens.mint("user-" + i, i == 0 ? "admin" : null, 3600);
+    }
+
+    @Benchmark
+    public int request() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/vehicles/nearby");
+        request.addHeader("Authorization", headers[next++ % users]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        SecurityContextHolder.clearContext();
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,85 @@
+package com.neurofleet.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The "before" number for {@link TickBenchmark}: the tick as the service first shipped it, copied here because that
+ * code is gone from the backend. Every vehicle is a {@code HashMap} in a {@code ConcurrentHashMap}; each tick updates
+ * battery and range through boxed values, serialises the whole map and sends it to every session as its own frame.
+ * It only simulates, so compare it with {@code TickBenchmark} at {@code metrics=none}, which also runs history,
+ * maintenance, geofences and the summary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BaselineTickBenchmark {
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    @Param({"0", "100"})
+    int sessions;
+
+    private final Map<String, Map<String, Object>> fleet = new ConcurrentHashMap<>();
+    private final Set<WebSocketSession> subscribers = ConcurrentHashMap.newKeySet();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < vehicles; i++) {
+            Map<String, Object> v = FleetFixture.attributes(i, random);
+            v.put("id", FleetFixture.vehicleId(i));
+            fleet.put(FleetFixture.vehicleId(i), v);
+        }
+        for (int i = 0; i < sessions; i++) subscribers.add(new NullSession("s" + i, null));
+    }
+
+    @Benchmark
+    public void tick() throws Exception {
+        for (Map.Entry<String, Map<String, Object>> e : fleet.entrySet()) {
+            Map<String, Object> v = e.getValue();
+            String status = (String) v.getOrDefault("status", "available");
+            double battery = ((Number) v.getOrDefault("batteryLevel", 50)).doubleValue();
+            double range = ((Number) v.getOrDefault("range", 200)).doubleValue();
+
+            if ("on-trip".equals(status)) {
+                battery = Math.max(0, battery - 0.5);
+                range = Math.max(0, range - 1.5);
+            } else if ("charging".equals(status)) {
+                battery = Math.min(100, battery + 0.7);
+                range = Math.min(500, battery * 3);
+                if (battery >= 99) v.put("status", "available");
+            } else {
+                battery = Math.max(0, battery - 0.05);
+            }
+
+            v.put("batteryLevel", battery);
+            v.put("range", (int) range);
+            v.put("lastUpdate", Instant.now().toString());
+
+            Map<String, Object> payload = new HashMap<>(v);
+            payload.put("type", "vehicle_update");
+            broadcast(mapper.writeValueAsString(payload));
+        }
+    }
+
+    private void broadcast(String payload) {
+        subscribers.forEach(sess -> {
+            try {
+                if (sess.isOpen()) sess.sendMessage(new TextMessage(payload));
+            } catch (Exception ignored) {}
+        });
+    }
+}
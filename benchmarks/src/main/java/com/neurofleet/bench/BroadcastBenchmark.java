@@ -0,0 +1,72 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.TelemetryFrameEncoder;
+import com.neurofleet.websocket.RawWebSocketHandler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server-side fan-out to connected clients. {@code eventFrame} queues one small event frame on every session, the
+ * path maintenance alerts and geofence events take; {@code deltaFrames} encodes and queues one tick's delta frames
+ * after every vehicle moved. Sessions accept frames instantly, so this is the cost the tick thread pays, not the
+ * network's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class BroadcastBenchmark {
+
+    @Param({"100", "1000"})
+    int sessions;
+
+    @Param({"json", "binary"})
+    String format;
+
+    private FleetFixture fleet;
+    private TelemetryFrameEncoder encoder;
+    private TextMessage event;
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(10000);
+        encoder = new TelemetryFrameEncoder(fleet.store);
+        String protocol = "binary".equals(format) ? RawWebSocketHandler.BINARY_PROTOCOL : RawWebSocketHandler.JSON_PROTOCOL;
+        for (int i = 0; i < sessions; i++) fleet.sockets.afterConnectionEstablished(new NullSession("s" + i, protocol));
+        event = new TextMessage(("{\"type\":\"geofence_events\",\"events\":[{\"vehicleId\":\"veh-1\",\"fenceId\":\"fence-1\","
+                + "\"kind\":\"enter\",\"timestamp\":\"" + Instant.now() + "\"}]}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    /** Moves every vehicle before each delta pass so the frames carry the whole fleet, as a busy tick does. */
+    @State(Scope.Thread)
+    public static class Moved {
+        private final Random random = new Random(3);
+
+        @Setup(Level.Invocation)
+        public void move(BroadcastBenchmark benchmark) {
+            benchmark.fleet.jitter(random);
+        }
+    }
+
+    @Benchmark
+    public void eventFrame() {
+        fleet.sockets.broadcast(event);
+    }
+
+    @Benchmark
+    public void deltaFrames(Moved moved) {
+        encoder.publishDelta(System.currentTimeMillis() * 1_000_000L, fleet.sockets.subscriptions());
+    }
+}
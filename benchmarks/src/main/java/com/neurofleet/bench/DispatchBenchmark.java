@@ -0,0 +1,57 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.DispatchService;
+import com.neurofleet.service.FleetStateStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One dispatch window: matching a batch of bookings to the nearest suitable vehicles by straight-line distance.
+ * Assigned vehicles are put back to available after each solve so every operation sees the same fleet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class DispatchBenchmark {
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    @Param({"100", "1000"})
+    int batch;
+
+    private FleetFixture fleet;
+    private DispatchService dispatch;
+    private List<DispatchService.PendingBooking> bookings;
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+        dispatch = new DispatchService(fleet.store, null, null, null, null, 15, 8, 5000, 120_000, false);
+        Random random = new Random(23);
+        bookings = new ArrayList<>(batch);
+        for (int i = 0; i < batch; i++) {
+            bookings.add(new DispatchService.PendingBooking("booking-" + i, FleetFixture.randomLatitude(random),
+                    FleetFixture.randomLongitude(random), random.nextInt(60), i % 5 == 0 ? "van" : "", System.nanoTime()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public int solve() {
+        List<DispatchService.Assignment> assignments = dispatch.solve(bookings);
+        for (DispatchService.Assignment a : assignments) fleet.store.setStatus(a.slot(), FleetStateStore.STATUS_AVAILABLE);
+        return assignments.size();
+    }
+}
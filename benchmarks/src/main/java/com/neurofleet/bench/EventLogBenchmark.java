@@ -0,0 +1,78 @@
+package com.neurofleet.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.eventlog.EventLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local event log: appending a status change and reading an entity's latest 50 events, the query behind the
+ * history endpoints. Appends go to a fresh log each iteration so the segment files stay bounded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class EventLogBenchmark {
+
+    private static final int ENTITIES = 5000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @State(Scope.Benchmark)
+    public static class Append {
+        Path dir;
+        EventLog log;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void open() throws Exception {
+            dir = Files.createTempDirectory("neurofleet-eventlog");
+            log = new EventLog(MAPPER, dir.toString(), 16 * 1024 * 1024, 65536, 1000, 0, 0, "");
+        }
+
+        @TearDown(Level.Iteration)
+        public void close() {
+            log.shutdown();
+            FleetFixture.deleteRecursively(dir);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Tail {
+        Path dir;
+        EventLog log;
+        int next;
+
+        @Setup(Level.Trial)
+        public void fill() throws Exception {
+            dir = Files.createTempDirectory("neurofleet-eventlog");
+            log = new EventLog(MAPPER, dir.toString(), 16 * 1024 * 1024, 65536, 1000, 0, 0, "");
+            for (int i = 0; i < 200 * ENTITIES; i++) {
+                log.append(EventLog.Entity.VEHICLE, FleetFixture.vehicleId(i % ENTITIES), "status", Map.of("status", "on-trip", "batteryLevel", i % 100));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            log.shutdown();
+            FleetFixture.deleteRecursively(dir);
+        }
+    }
+
+    @Benchmark
+    public long append(Append state) {
+        int i = state.next++;
+        return state.log.append(EventLog.Entity.VEHICLE, FleetFixture.vehicleId(i % ENTITIES), "status",
+                Map.of("status", "on-trip", "batteryLevel", i % 100));
+    }
+
+    @Benchmark
+    public EventLog.Page tail(Tail state) {
+        return state.log.tail(EventLog.Entity.VEHICLE, FleetFixture.vehicleId(state.next++ % ENTITIES), 50, null);
+    }
+}
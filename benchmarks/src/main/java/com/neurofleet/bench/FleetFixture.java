@@ -0,0 +1,155 @@
+package com.neurofleet.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.cluster.ClusterService;
+import com.neurofleet.eventlog.EventLog;
+import com.neurofleet.geofence.GeofenceEngine;
+import com.neurofleet.ingest.IngestService;
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.service.MaintenanceEngine;
+import com.neurofleet.service.TelemetryService;
+import com.neurofleet.timeseries.TelemetryHistoryStore;
+import com.neurofleet.websocket.RawWebSocketHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * The tick pipeline wired by hand the way Spring wires it in dev mode: no Firestore, no cluster peers, the
+ * default {@code application.properties} values, and history and events kept in a scratch directory. Vehicles are
+ * spread over a 50 km square around the city centre with a 60/30/10 available/on-trip/charging mix.
+ */
+public final class FleetFixture implements AutoCloseable {
+
+    public static final double CENTER_LAT = 28.6139;
+    public static final double CENTER_LON = 77.2090;
+    public static final double SPAN_DEGREES = 0.45;
+    private static final String[] STATUSES = {"available", "available", "available", "available", "available", "available",
+            "on-trip", "on-trip", "on-trip", "charging"};
+
+    public final FleetStateStore store;
+    public final RawWebSocketHandler sockets;
+    public final EventLog eventLog;
+    public final TelemetryHistoryStore history;
+    public final MaintenanceEngine maintenance;
+    public final GeofenceEngine geofences;
+    public final ClusterService cluster;
+    public final IngestService ingest;
+    public final TelemetryService telemetry;
+    private final Path dir;
+
+    public FleetFixture(int vehicles) throws IOException {
+        this(vehicles, new CompositeMeterRegistry());
+    }
+
+    /** A registry with no children records nothing, which is the baseline for the instrumentation overhead runs. */
+    public FleetFixture(int vehicles, MeterRegistry registry) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        dir = Files.createTempDirectory("neurofleet-bench");
+        store = new FleetStateStore(0.005);
+        sockets = new RawWebSocketHandler(32, "coalesce", 10000, registry);
+        eventLog = new EventLog(mapper, dir.resolve("eventlog").toString(), 16 * 1024 * 1024, 65536, 1000, 0, 0, "");
+        history = new TelemetryHistoryStore(store, true, "", 120, 64 * 1024 * 1024, 10000, 24, 30, 365);
+        maintenance = new MaintenanceEngine(store, 70, 0.5, 0.8, 168, 24, 1, 72);
+        geofences = new GeofenceEngine(store, eventLog, null, null, 0.01, 4096, 300);
+        cluster = new ClusterService(store, sockets, mapper, false, "", 7400, "", "localhost", "", "", 128, 1000, 5000, 64, 32);
+        ingest = new IngestService(store, cluster, 1, 65536, 1024, 100, 15000, "bench");
+        telemetry = new TelemetryService(store, sockets, history, maintenance, geofences, cluster, ingest, mapper,
+                5000, 10000, 64, 0, registry);
+        Random random = new Random(42);
+        for (int i = 0; i < vehicles; i++) telemetry.addOrInitVehicle(vehicleId(i), attributes(i, random));
+    }
+
+    public static String vehicleId(int i) {
+        return "veh-" + i;
+    }
+
+    /** A vehicle document as the REST API stores it, with a random position and status. */
+    public static Map<String, Object> attributes(int i, Random random) {
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("make", i % 2 == 0 ? "Tata" : "Mahindra");
+        doc.put("model", "EV-" + i % 7);
+        doc.put("licensePlate", "DL-" + (10000 + i));
+        doc.put("vehicleType", i % 4 == 0 ? "van" : "sedan");
+        doc.put("year", 2020 + i % 5);
+        doc.put("latitude", randomLatitude(random));
+        doc.put("longitude", randomLongitude(random));
+        doc.put("batteryLevel", 20 + random.nextInt(80));
+        doc.put("batteryHealth", 70 + random.nextInt(30));
+        doc.put("range", 100 + random.nextInt(300));
+        doc.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+        return doc;
+    }
+
+    public static double randomLatitude(Random random) {
+        return CENTER_LAT + (random.nextDouble() - 0.5) * SPAN_DEGREES;
+    }
+
+    public static double randomLongitude(Random random) {
+        return CENTER_LON + (random.nextDouble() - 0.5) * SPAN_DEGREES;
+    }
+
+    /** Adds {@code count} fences, two thirds circles of 0.3-2 km and the rest quadrilaterals of similar size. */
+    public void addGeofences(int count, Random random) {
+        for (int i = 0; i < count; i++) geofences.put("fence-" + i, geofence(i, random));
+    }
+
+    public static Map<String, Object> geofence(int i, Random random) {
+        double lat = randomLatitude(random);
+        double lon = randomLongitude(random);
+        double radiusKm = 0.3 + random.nextDouble() * 1.7;
+        Map<String, Object> doc = new HashMap<>();
+        doc.put("name", "Zone " + i);
+        doc.put("type", i % 2 == 0 ? "depot" : "restricted");
+        if (i % 3 != 2) {
+            doc.put("center", Map.of("latitude", lat, "longitude", lon));
+            doc.put("radiusKm", radiusKm);
+        } else {
+            double d = radiusKm / 111.32;
+            doc.put("coordinates", List.of(point(lat - d, lon - d), point(lat - d * 0.7, lon + d),
+                    point(lat + d, lon + d * 0.8), point(lat + d * 0.9, lon - d * 1.1)));
+        }
+        return doc;
+    }
+
+    private static Map<String, Object> point(double lat, double lon) {
+        return Map.of("latitude", lat, "longitude", lon);
+    }
+
+    /** Nudges every vehicle by up to ~50 m, as a tick of driving would, without running the rest of the tick. */
+    public void jitter(Random random) {
+        store.forEachLive(0, store.highWater(), slot -> store.setPosition(slot,
+                store.latitude(slot) + (random.nextDouble() - 0.5) * 9e-4,
+                store.longitude(slot) + (random.nextDouble() - 0.5) * 9e-4));
+    }
+
+    public Path dir() {
+        return dir;
+    }
+
+    @Override
+    public void close() {
+        telemetry.shutdown();
+        ingest.shutdown();
+        cluster.shutdown();
+        sockets.shutdown();
+        history.shutdown();
+        eventLog.shutdown();
+        deleteRecursively(dir);
+    }
+
+    public static void deleteRecursively(Path root) {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
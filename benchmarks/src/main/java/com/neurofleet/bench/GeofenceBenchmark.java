@@ -0,0 +1,72 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.geofence.Geofence;
+import com.neurofleet.service.FleetStateStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pass of fence membership over the whole fleet after every vehicle moved: the engine's cell index with
+ * enter/exit/dwell tracking ({@code engine}) versus testing every vehicle against every fence ({@code naive}), which
+ * only counts memberships. Both include the same move step.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class GeofenceBenchmark {
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    @Param({"100", "1000"})
+    int fences;
+
+    private FleetFixture fleet;
+    private Geofence[] shapes;
+    private final Random random = new Random(5);
+    private long nowMs = System.currentTimeMillis();
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+        fleet.addGeofences(fences, new Random(9));
+        Random same = new Random(9);
+        shapes = new Geofence[fences];
+        for (int i = 0; i < fences; i++) shapes[i] = Geofence.parse("fence-" + i, i, FleetFixture.geofence(i, same), 300_000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public int engine() {
+        fleet.jitter(random);
+        long now = nowMs += 5000;
+        FleetStateStore store = fleet.store;
+        fleet.geofences.beginTick(store.highWater());
+        store.forEachLive(0, store.highWater(), slot -> fleet.geofences.check(slot, now));
+        return fleet.geofences.endTick(id -> true).size();
+    }
+
+    @Benchmark
+    public int naive() {
+        fleet.jitter(random);
+        FleetStateStore store = fleet.store;
+        int[] inside = {0};
+        store.forEachLive(0, store.highWater(), slot -> {
+            double lat = store.latitude(slot);
+            double lon = store.longitude(slot);
+            for (Geofence fence : shapes) {
+                if (fence.contains(lat, lon)) inside[0]++;
+            }
+        });
+        return inside[0];
+    }
+}
@@ -0,0 +1,97 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.timeseries.TelemetryHistoryStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The telemetry history store: {@code recordTick} appends one point per vehicle, as each tick does, and the range
+ * benchmarks read one vehicle's last hour of 5 s points, raw or rolled up to one-minute means. Points are kept on
+ * the heap; the ingest store is rebuilt each iteration so memory stays bounded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HistoryStoreBenchmark {
+
+    private static final int VEHICLES = 10000;
+    private static final long STEP_MS = 5000;
+
+    @State(Scope.Benchmark)
+    public static class Ingest {
+        FleetFixture fleet;
+        TelemetryHistoryStore history;
+        long timestamp;
+        final Random random = new Random(1);
+
+        @Setup(Level.Trial)
+        public void fleet() throws Exception {
+            fleet = new FleetFixture(VEHICLES);
+        }
+
+        @Setup(Level.Iteration)
+        public void store() throws Exception {
+            history = new TelemetryHistoryStore(fleet.store, true, "", 120, 64 * 1024 * 1024, 10000, 24, 30, 365);
+            timestamp = System.currentTimeMillis();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            fleet.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Query {
+        FleetFixture fleet;
+        long to;
+        int next;
+
+        @Setup(Level.Trial)
+        public void fill() throws Exception {
+            fleet = new FleetFixture(1000);
+            Random random = new Random(2);
+            to = System.currentTimeMillis();
+            FleetStateStore store = fleet.store;
+            for (long t = to - 3_600_000; t <= to; t += STEP_MS) {
+                fleet.jitter(random);
+                long now = t;
+                store.forEachLive(0, store.highWater(), slot -> fleet.history.record(slot, now));
+            }
+        }
+
+        String vehicle() {
+            return FleetFixture.vehicleId(next++ % 1000);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            fleet.close();
+        }
+    }
+
+    @Benchmark
+    public void recordTick(Ingest state) {
+        long now = state.timestamp += STEP_MS;
+        FleetStateStore store = state.fleet.store;
+        state.fleet.jitter(state.random);
+        store.forEachLive(0, store.highWater(), slot -> state.history.record(slot, now));
+    }
+
+    @Benchmark
+    public Map<String, Object> rangeRaw(Query state) {
+        return state.fleet.history.range(state.vehicle(), state.to - 3_600_000, state.to, null, null);
+    }
+
+    @Benchmark
+    public Map<String, Object> rangeMinuteMeans(Query state) {
+        return state.fleet.history.range(state.vehicle(), state.to - 3_600_000, state.to, 60_000L, List.of("latitude", "longitude", "batteryLevel"));
+    }
+}
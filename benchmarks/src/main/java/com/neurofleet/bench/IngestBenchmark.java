@@ -0,0 +1,71 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.ingest.IngestService;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and queueing one 1,000-report device batch, as {@code POST /api/ingest} does, in the packed binary and the
+ * CSV line formats. The ring consumer applies reports on its own thread meanwhile; run with {@code -t 4} for
+ * several producers claiming ring entries concurrently. Reports per second is 1,000 times the operation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class IngestBenchmark {
+
+    private static final int BATCH = 1000;
+    private static final int BATCHES = 16;
+
+    @Param({"binary", "lines"})
+    String format;
+
+    private FleetFixture fleet;
+    private IngestService ingest;
+    private final ByteBuffer[] binary = new ByteBuffer[BATCHES];
+    private final String[] lines = new String[BATCHES];
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(10000);
+        ingest = fleet.ingest;
+        Random random = new Random(19);
+        for (int b = 0; b < BATCHES; b++) {
+            ByteBuffer buffer = ByteBuffer.allocate(BATCH * 64);
+            StringBuilder text = new StringBuilder(BATCH * 48);
+            for (int n = 0; n < BATCH; n++) {
+                byte[] id = FleetFixture.vehicleId(random.nextInt(10000)).getBytes(StandardCharsets.UTF_8);
+                double lat = FleetFixture.randomLatitude(random);
+                double lon = FleetFixture.randomLongitude(random);
+                float battery = 20 + random.nextInt(80);
+                buffer.put((byte) id.length).put(id).putDouble(lat).putDouble(lon).putFloat(battery).put((byte) 0).putLong(0);
+                text.append(new String(id, StandardCharsets.UTF_8)).append(',').append(lat).append(',').append(lon).append(',').append(battery).append('\n');
+            }
+            binary[b] = buffer.flip();
+            lines[b] = text.toString();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public IngestService.Result batch(Cursor cursor) {
+        int b = cursor.next++ & (BATCHES - 1);
+        return "binary".equals(format) ? ingest.ingestBinary(binary[b].duplicate()) : ingest.ingestLines(lines[b]);
+    }
+}
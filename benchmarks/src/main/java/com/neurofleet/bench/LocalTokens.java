@@ -0,0 +1,73 @@
+package com.neurofleet.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.*;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+
+/**
+ * Mints RS256 ID tokens that the backend's {@code LocalKeyTokenVerifier} accepts when run with
+ * {@code app.auth.local-issuer=}{@value #ISSUER} and {@code app.auth.local-audience=}{@value #AUDIENCE}.
+ * {@link #open} keeps the key pair in a directory ({@code private.der}, {@code public.pem}) so a running backend
+ * and later harness runs share it.
+ */
+public final class LocalTokens {
+
+    public static final String ISSUER = "neurofleet-loadtest";
+    public static final String AUDIENCE = "neurofleet-backend";
+
+    private static final Base64.Encoder URL = Base64.getUrlEncoder().withoutPadding();
+    private static final String HEADER = URL.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    private final KeyPair keys;
+
+    public LocalTokens(KeyPair keys) {
+        this.keys = keys;
+    }
+
+    public static LocalTokens generate() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return new LocalTokens(generator.generateKeyPair());
+    }
+
+    /** Loads the key pair from {@code dir}, creating and saving a new one if there is none yet. */
+    public static LocalTokens open(Path dir) throws IOException, GeneralSecurityException {
+        Path privateKey = dir.resolve("private.der");
+        Path publicKey = dir.resolve("public.pem");
+        if (Files.exists(privateKey) && Files.exists(publicKey)) {
+            KeyFactory rsa = KeyFactory.getInstance("RSA");
+            String pem = Files.readString(publicKey).replaceAll("-----[A-Z ]+-----", "");
+            return new LocalTokens(new KeyPair(
+                    rsa.generatePublic(new X509EncodedKeySpec(Base64.getMimeDecoder().decode(pem))),
+                    rsa.generatePrivate(new PKCS8EncodedKeySpec(Files.readAllBytes(privateKey)))));
+        }
+        LocalTokens tokens = generate();
+        Files.createDirectories(dir);
+        Files.write(privateKey, tokens.keys.getPrivate().getEncoded());
+        Files.writeString(publicKey, "-----BEGIN PUBLIC KEY-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(tokens.keys.getPublic().getEncoded())
+                + "\n-----END PUBLIC KEY-----\n");
+        return tokens;
+    }
+
+    public PublicKey publicKey() {
+        return keys.getPublic();
+    }
+
+    /** A token for {@code uid}, with a {@code role} claim when {@code role} is not null, valid for {@code ttlSeconds}. */
+    public String mint(String uid, String role, long ttlSeconds) throws GeneralSecurityException {
+        long now = System.currentTimeMillis() / 1000;
+        String claims = "{\"iss\":\"" + ISSUER + "\",\"aud\":\"" + AUDIENCE + "\",\"sub\":\"" + uid + "\",\"iat\":" + now + ",\"exp\":" + (now + ttlSeconds)
+                + (role != null ? ",\"role\":\"" + role + "\"" : "") + "}";
+        String signed = HEADER + "." + URL.encodeToString(claims.getBytes(StandardCharsets.UTF_8));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initSign(keys.getPrivate());
+        signature.update(signed.getBytes(StandardCharsets.US_ASCII));
+        return signed + "." + URL.encodeToString(signature.sign());
+    }
+}
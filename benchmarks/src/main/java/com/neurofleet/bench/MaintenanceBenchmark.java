@@ -0,0 +1,54 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.service.MaintenanceEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One tick of maintenance scoring: updating every vehicle's battery statistics and risk, then collecting the alerts
+ * for vehicles that changed level. Batteries drift a little between ticks so the statistics keep moving.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class MaintenanceBenchmark {
+
+    private static final long TICK_NANOS = 5_000_000_000L;
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    private FleetFixture fleet;
+    private final Random random = new Random(13);
+    private long nowNanos = System.currentTimeMillis() * 1_000_000L;
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public List<MaintenanceEngine.Alert> tick() {
+        long now = nowNanos += TICK_NANOS;
+        FleetStateStore store = fleet.store;
+        MaintenanceEngine maintenance = fleet.maintenance;
+        maintenance.beginTick(store.highWater(), TICK_NANOS);
+        store.forEachLive(0, store.highWater(), slot -> {
+            store.setBattery(slot, Math.max(0, Math.min(100, store.battery(slot) + random.nextDouble() - 0.55)));
+            maintenance.update(slot, now);
+        });
+        return maintenance.endTick();
+    }
+}
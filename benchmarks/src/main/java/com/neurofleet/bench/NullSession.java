@@ -0,0 +1,55 @@
+package com.neurofleet.bench;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** A WebSocket session that accepts every frame instantly and only counts them, to isolate server-side fan-out. */
+public class NullSession implements WebSocketSession {
+
+    public static final LongAdder FRAMES = new LongAdder();
+    public static final LongAdder BYTES = new LongAdder();
+
+    private final String id;
+    private final String protocol;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile boolean open = true;
+
+    public NullSession(String id, String protocol) {
+        this.id = id;
+        this.protocol = protocol;
+    }
+
+    @Override public String getId() { return id; }
+    @Override public URI getUri() { return URI.create("ws://localhost/"); }
+    @Override public HttpHeaders getHandshakeHeaders() { return new HttpHeaders(); }
+    @Override public Map<String, Object> getAttributes() { return attributes; }
+    @Override public Principal getPrincipal() { return null; }
+    @Override public InetSocketAddress getLocalAddress() { return null; }
+    @Override public InetSocketAddress getRemoteAddress() { return null; }
+    @Override public String getAcceptedProtocol() { return protocol; }
+    @Override public void setTextMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getTextMessageSizeLimit() { return Integer.MAX_VALUE; }
+    @Override public void setBinaryMessageSizeLimit(int messageSizeLimit) {}
+    @Override public int getBinaryMessageSizeLimit() { return Integer.MAX_VALUE; }
+    @Override public List<WebSocketExtension> getExtensions() { return List.of(); }
+    @Override public boolean isOpen() { return open; }
+    @Override public void close() { open = false; }
+    @Override public void close(CloseStatus status) { open = false; }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        FRAMES.increment();
+        BYTES.add(message.getPayloadLength());
+    }
+}
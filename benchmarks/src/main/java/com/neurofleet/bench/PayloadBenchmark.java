@@ -0,0 +1,59 @@
+package com.neurofleet.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.neurofleet.service.TelemetryFrameEncoder;
+import com.neurofleet.websocket.TelemetrySubscription;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing the whole fleet's telemetry three ways: {@code restJson} is what {@code GET /api/vehicles/telemetry/all}
+ * does (views as maps, then Jackson databind), {@code jsonFrame} is the streaming JSON snapshot frame and
+ * {@code packedFrame} the {@code neurofleet.bin.v1} one. Payload sizes are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class PayloadBenchmark {
+
+    private static final TelemetrySubscription BINARY = TelemetrySubscription.ALL.withFormat(TelemetrySubscription.Format.BINARY);
+
+    @Param({"1000", "10000"})
+    int vehicles;
+
+    private FleetFixture fleet;
+    private TelemetryFrameEncoder encoder;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+        encoder = new TelemetryFrameEncoder(fleet.store);
+        System.out.printf("%n%d vehicles: REST JSON %,d bytes, JSON frame %,d bytes, packed frame %,d bytes%n", vehicles,
+                restJson().length, jsonFrame().length, packedFrame().length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public byte[] restJson() throws Exception {
+        return mapper.writeValueAsBytes(fleet.telemetry.getAllTelemetry());
+    }
+
+    @Benchmark
+    public byte[] jsonFrame() {
+        return encoder.encodeSnapshot(TelemetrySubscription.ALL);
+    }
+
+    @Benchmark
+    public byte[] packedFrame() {
+        return encoder.encodePackedSnapshot(BINARY);
+    }
+}
@@ -0,0 +1,71 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.security.RateLimitFilter;
+import com.neurofleet.security.RateLimiter;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost {@link RateLimiter} adds to an admitted request: the bare GCRA check, the same from 4 threads sharing
+ * the buckets, and a whole pass through {@link RateLimitFilter} on a bulkheaded route. The limits are set high enough
+ * that nothing is refused, as at normal request rates; {@code callers} distinct keys are used round-robin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class RateLimitBenchmark {
+
+    @Param({"1", "10000"})
+    int callers;
+
+    private RateLimiter limiter;
+    private RateLimitFilter filter;
+    private String[] keys;
+    private String[] addresses;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(true, 1e9, 1_000_000, 100_000, "GET /api/vehicles=1000,GET /api/*/*/history=1000",
+                new CompositeMeterRegistry());
+        filter = new RateLimitFilter(limiter);
+        keys = new String[callers];
+        addresses = new String[callers];
+        for (int i = 0; i < callers; i++) {
+            keys[i] = "uid:user-" + i;
+            addresses[i] = "10." + (i >> 16 & 255) + "." + (i >> 8 & 255) + "." + (i & 255);
+        }
+    }
+
+    @Benchmark
+    public long acquire(Cursor cursor) {
+        return limiter.acquire(keys[cursor.next++ % callers]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long acquireContended(Cursor cursor) {
+        return limiter.acquire(keys[cursor.next++ % callers]);
+    }
+
+    @Benchmark
+    public int filter(Cursor cursor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/vehicles");
+        request.setRemoteAddr(addresses[cursor.next++ % callers]);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response.getStatus();
+    }
+}
@@ -0,0 +1,93 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.routing.RoadGraph;
+import com.neurofleet.routing.RoutingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-to-point routes and a 10x10 ETA matrix on a synthetic city: a square grid of intersections 150 m apart with
+ * a random speed per street and one in twenty streets missing. {@code landmarks=0} is plain A*, otherwise ALT.
+ * Throughput mode reports queries per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RoutingBenchmark {
+
+    private static final double STEP_DEGREES = 150 / 111_320.0;
+    private static final int PAIRS = 1024;
+
+    @Param({"200", "400"})
+    int side;
+
+    @Param({"0", "8"})
+    int landmarks;
+
+    private RoutingService routing;
+    private final double[][] from = new double[PAIRS][];
+    private final double[][] to = new double[PAIRS][];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(17);
+        RoadGraph.Builder builder = new RoadGraph.Builder();
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                builder.addNode(FleetFixture.CENTER_LAT + (r - side / 2) * STEP_DEGREES, FleetFixture.CENTER_LON + (c - side / 2) * STEP_DEGREES);
+            }
+        }
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int node = r * side + c;
+                if (c + 1 < side) street(builder, random, node, node + 1);
+                if (r + 1 < side) street(builder, random, node, node + side);
+            }
+        }
+        routing = new RoutingService(builder.build(), "grid-" + side, 1.0, landmarks);
+        double span = (side - 1) * STEP_DEGREES;
+        for (int i = 0; i < PAIRS; i++) {
+            from[i] = point(random, span);
+            to[i] = point(random, span);
+        }
+    }
+
+    private static void street(RoadGraph.Builder builder, Random random, int a, int b) {
+        if (random.nextInt(20) == 0) return;
+        double speedMps = 8 + random.nextDouble() * 14;
+        int timeMs = (int) (150 / speedMps * 1000);
+        builder.addEdge(a, b, 150, timeMs);
+        builder.addEdge(b, a, 150, timeMs);
+    }
+
+    private double[] point(Random random, double span) {
+        double origin = (side / 2) * STEP_DEGREES;
+        return new double[]{FleetFixture.CENTER_LAT - origin + random.nextDouble() * span,
+                FleetFixture.CENTER_LON - origin + random.nextDouble() * span};
+    }
+
+    @Benchmark
+    public Map<String, Object> route() {
+        int i = next++ & (PAIRS - 1);
+        return routing.route(from[i][0], from[i][1], to[i][0], to[i][1]);
+    }
+
+    @Benchmark
+    public Object matrix10x10() {
+        int i = (next += 10) & (PAIRS - 1);
+        double[][] sources = new double[10][];
+        double[][] targets = new double[10][];
+        for (int j = 0; j < 10; j++) {
+            sources[j] = from[(i + j) & (PAIRS - 1)];
+            targets[j] = to[(i + j) & (PAIRS - 1)];
+        }
+        return routing.matrix(sources, targets);
+    }
+}
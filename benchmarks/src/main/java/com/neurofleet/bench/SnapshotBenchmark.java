@@ -0,0 +1,53 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.FleetSnapshotService;
+import com.neurofleet.service.FleetStateStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm-restart snapshots: writing the live fleet to disk, and restoring it into an empty store at startup. The
+ * restore reads a file the page cache already holds, so it is the warm figure; the first start after a reboot pays
+ * for the disk read as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SnapshotBenchmark {
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    private FleetFixture fleet;
+    private FleetSnapshotService snapshots;
+    private String dir;
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+        dir = fleet.dir().resolve("snapshot").toString();
+        snapshots = new FleetSnapshotService(fleet.store, fleet.telemetry, null, true, dir, 1, 1000);
+        snapshots.scheduledWrite();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public void write() {
+        snapshots.scheduledWrite();
+    }
+
+    @Benchmark
+    public int restore() {
+        FleetStateStore store = new FleetStateStore(0.005);
+        new FleetSnapshotService(store, null, null, true, dir, 1, 1000).warmStart();
+        return store.size();
+    }
+}
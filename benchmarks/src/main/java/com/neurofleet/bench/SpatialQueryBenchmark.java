@@ -0,0 +1,82 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.service.FleetStateStore;
+import com.neurofleet.service.GeoGridIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The k-nearest available vehicles around a point, through the grid index versus a scan of every slot. Both
+ * apply the same status filter and return the same slots.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class SpatialQueryBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    @Param({"1", "5"})
+    double radiusKm;
+
+    private FleetFixture fleet;
+    private final double[] lat = new double[QUERIES];
+    private final double[] lon = new double[QUERIES];
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        fleet = new FleetFixture(vehicles);
+        Random random = new Random(11);
+        for (int i = 0; i < QUERIES; i++) {
+            lat[i] = FleetFixture.randomLatitude(random);
+            lon[i] = FleetFixture.randomLongitude(random);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public void grid(Blackhole bh) {
+        int q = next++ & (QUERIES - 1);
+        FleetStateStore store = fleet.store;
+        store.nearestSlots(lat[q], lon[q], radiusKm, K, slot -> store.status(slot) == FleetStateStore.STATUS_AVAILABLE,
+                (slot, distance) -> bh.consume(slot));
+    }
+
+    @Benchmark
+    public void linearScan(Blackhole bh) {
+        int q = next++ & (QUERIES - 1);
+        FleetStateStore store = fleet.store;
+        int[] best = new int[K];
+        double[] bestKm = new double[K];
+        int[] found = {0};
+        store.forEachLive(0, store.highWater(), slot -> {
+            if (store.status(slot) != FleetStateStore.STATUS_AVAILABLE) return;
+            double km = GeoGridIndex.haversineKm(lat[q], lon[q], store.latitude(slot), store.longitude(slot));
+            if (km > radiusKm || (found[0] == K && km >= bestKm[K - 1])) return;
+            int i = found[0] < K ? found[0]++ : K - 1;
+            while (i > 0 && bestKm[i - 1] > km) {
+                best[i] = best[i - 1];
+                bestKm[i] = bestKm[i - 1];
+                i--;
+            }
+            best[i] = slot;
+            bestKm[i] = km;
+        });
+        for (int i = 0; i < found[0]; i++) bh.consume(best[i]);
+    }
+}
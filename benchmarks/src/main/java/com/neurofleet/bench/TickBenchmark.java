@@ -0,0 +1,61 @@
+package com.neurofleet.bench;
+
+import com.neurofleet.websocket.RawWebSocketHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full {@code TelemetryService.tick()}: simulation, history, maintenance, geofences, delta frames and the fleet
+ * summary, with {@code sessions} connected clients (half JSON, half binary) receiving the frames.
+ * <p>
+ * {@code metrics=none} runs against a registry that records nothing; {@code metrics=prometheus} against the registry
+ * production scrapes. The difference between the two is the instrumentation overhead, which must stay under 1%.
+ * Run with {@code -prof gc} for allocation per tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TickBenchmark {
+
+    @Param({"10000", "100000"})
+    int vehicles;
+
+    @Param({"0", "100"})
+    int sessions;
+
+    @Param({"none", "prometheus"})
+    String metrics;
+
+    private FleetFixture fleet;
+
+    @Setup
+    public void setUp() throws Exception {
+        MeterRegistry registry = "prometheus".equals(metrics)
+                ? new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)
+                : new CompositeMeterRegistry();
+        fleet = new FleetFixture(vehicles, registry);
+        fleet.addGeofences(200, new java.util.Random(7));
+        for (int i = 0; i < sessions; i++) {
+            String protocol = i % 2 == 0 ? RawWebSocketHandler.JSON_PROTOCOL : RawWebSocketHandler.BINARY_PROTOCOL;
+            fleet.sockets.afterConnectionEstablished(new NullSession("s" + i, protocol));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fleet.close();
+    }
+
+    @Benchmark
+    public void tick() throws Exception {
+        fleet.telemetry.tick();
+    }
+}
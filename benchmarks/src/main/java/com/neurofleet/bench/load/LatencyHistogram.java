@@ -0,0 +1,84 @@
+package com.neurofleet.bench.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in microseconds with log-linear buckets: exact below 64 us, then 32 buckets per power
+ * of two, so any percentile is within about 3% of the true value. Covers up to about 19 hours.
+ */
+final class LatencyHistogram {
+
+    private static final int LINEAR = 64;
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 36;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + (MAX_EXPONENT - 6 + 1) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void recordNanos(long nanos) {
+        record(Math.max(0, nanos / 1000));
+    }
+
+    void record(long micros) {
+        counts.incrementAndGet(index(Math.min(micros, (1L << (MAX_EXPONENT + 1)) - 1)));
+        total.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    long count() {
+        return total.sum();
+    }
+
+    private static int index(long micros) {
+        if (micros < LINEAR) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - 6) * SUB_BUCKETS + sub;
+    }
+
+    /** Upper bound of the bucket, so reported percentiles never understate. */
+    private static long upperBound(int index) {
+        if (index < LINEAR) return index;
+        int exponent = (index - LINEAR) / SUB_BUCKETS + 6;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    long percentile(double p) {
+        long n = total.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(p / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), max.get());
+        }
+        return max.get();
+    }
+
+    /** Count, mean and p50/p90/p99/p99.9/max, all in milliseconds. */
+    Map<String, Object> summary() {
+        long n = total.sum();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("count", n);
+        m.put("meanMs", n == 0 ? 0.0 : millis(sum.sum() / (double) n));
+        m.put("p50Ms", millis(percentile(50)));
+        m.put("p90Ms", millis(percentile(90)));
+        m.put("p99Ms", millis(percentile(99)));
+        m.put("p999Ms", millis(percentile(99.9)));
+        m.put("maxMs", millis(max.get()));
+        return m;
+    }
+
+    private static double millis(double micros) {
+        return Math.round(micros) / 1000.0;
+    }
+}
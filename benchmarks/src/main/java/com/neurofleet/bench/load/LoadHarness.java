@@ -0,0 +1,457 @@
+package com.neurofleet.bench.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.neurofleet.bench.FleetFixture;
+import com.neurofleet.bench.LocalTokens;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives a running backend with simulated users and map clients and writes a JSON report that can be compared
+ * across commits:
+ * <pre>
+ *   java -cp benchmarks/target/benchmarks.jar com.neurofleet.bench.load.LoadHarness keys loadtest-keys
+ *   java -cp benchmarks/target/benchmarks.jar com.neurofleet.bench.load.LoadHarness --url http://localhost:3001 \
+ *        --key-dir loadtest-keys --seed-vehicles 5000 --http-clients 500 --ws-clients 2000 --seconds 60 \
+ *        --label "$(git rev-parse --short HEAD)"
+ *   java -cp benchmarks/target/benchmarks.jar com.neurofleet.bench.load.LoadHarness compare base.json head.json
+ * </pre>
+ * The backend must accept tokens signed with the key in {@code --key-dir} (the {@code loadtest} profile with
+ * {@code app.auth.local-public-key}); see
+ * {@code benchmarks/README.md}. Each HTTP client is a closed loop: pick an operation from {@code --mix}, wait for the
+ * response, think {@code --think-ms}, repeat. WebSocket clients subscribe to the whole fleet ({@code --ws-format}
+ * json, binary or mixed) and measure each delta frame's delay from the start of the tick that produced it. Only the
+ * {@code --seconds} after the {@code --warmup} seconds are reported.
+ */
+public class LoadHarness {
+
+    private static final String DEFAULT_MIX = "nearby:25,within:10,telemetry:20,vehicle:10,list:5,fleet:10,history:5,book:10,bookings:5";
+
+    private final Map<String, String> opts;
+    private final String url;
+    private final int thinkMs;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, daemon("load-think"));
+    private final List<Operation> operations = new ArrayList<>();
+    private int totalWeight;
+    private List<String> vehicleIds = List.of();
+    private LocalTokens tokens;
+    private String adminToken;
+
+    private volatile boolean stopping;
+    private volatile Map<String, OperationStats> stats = new ConcurrentHashMap<>();
+    private volatile SocketStats socketStats = new SocketStats();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<WebSocket> sockets = new CopyOnWriteArrayList<>();
+
+    private LoadHarness(Map<String, String> opts) {
+        this.opts = opts;
+        this.url = opts.getOrDefault("url", "http://localhost:3001");
+        this.thinkMs = Integer.parseInt(opts.getOrDefault("think-ms", "100"));
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Integer.parseInt(opts.getOrDefault("io-threads", "8")), daemon("load-io")))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 3 && args[0].equals("compare")) {
+            Report.compare(Path.of(args[1]), Path.of(args[2]));
+            return;
+        }
+        if (args.length == 2 && args[0].equals("keys")) {
+            LocalTokens.open(Path.of(args[1]));
+            System.out.println("Load-test key pair in " + args[1] + "; start the backend with --spring.profiles.active=loadtest"
+                    + " --app.auth.local-public-key=" + Path.of(args[1], "public.pem")
+                    + " --app.auth.local-issuer=" + LocalTokens.ISSUER + " --app.auth.local-audience=" + LocalTokens.AUDIENCE);
+            return;
+        }
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) opts.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        new LoadHarness(opts).run();
+        System.exit(0);
+    }
+
+    /** One REST call in the mix; {@code request} builds it for a given client. */
+    private record Operation(String name, int weight, java.util.function.Function<VirtualUser, HttpRequest> request) {}
+
+    private static final class VirtualUser {
+        final int index;
+        final String uid;
+        final String authorization;
+        final Random random;
+
+        VirtualUser(int index, String uid, String token) {
+            this.index = index;
+            this.uid = uid;
+            this.authorization = "Bearer " + token;
+            this.random = new Random(index);
+        }
+    }
+
+    private static final class OperationStats {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder ok = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final Map<Integer, LongAdder> statuses = new ConcurrentSkipListMap<>();
+    }
+
+    private static final class SocketStats {
+        final LatencyHistogram deltaLag = new LatencyHistogram();
+        final LongAdder frames = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder closed = new LongAdder();
+    }
+
+    private void run() throws Exception {
+        int httpClients = Integer.parseInt(opts.getOrDefault("http-clients", "200"));
+        int wsClients = Integer.parseInt(opts.getOrDefault("ws-clients", "1000"));
+        int warmup = Integer.parseInt(opts.getOrDefault("warmup", "10"));
+        int seconds = Integer.parseInt(opts.getOrDefault("seconds", "60"));
+        tokens = LocalTokens.open(Path.of(opts.getOrDefault("key-dir", "loadtest-keys")));
+        adminToken = tokens.mint("load-admin", "admin", 24 * 3600);
+
+        seed(Integer.parseInt(opts.getOrDefault("seed-vehicles", "0")));
+        vehicleIds = fetchVehicleIds();
+        if (vehicleIds.isEmpty()) throw new IllegalStateException("The backend has no live vehicles; run with --seed-vehicles against a Firestore-backed backend");
+        defineOperations(opts.getOrDefault("mix", DEFAULT_MIX));
+        System.out.printf("Target %s: %,d vehicles, %d HTTP clients (think %d ms), %d WebSocket clients, %ds warmup + %ds%n",
+                url, vehicleIds.size(), httpClients, thinkMs, wsClients, warmup, seconds);
+
+        connectSockets(wsClients, opts.getOrDefault("ws-format", "mixed"), Integer.parseInt(opts.getOrDefault("ws-ramp-per-sec", "200")));
+        for (int i = 0; i < httpClients; i++) {
+            VirtualUser user = new VirtualUser(i, "load-user-" + i, tokens.mint("load-user-" + i, null, 24 * 3600));
+            // Spread the first requests over one think time so the clients do not start in lockstep.
+            scheduler.schedule(() -> next(user), thinkMs > 0 ? user.random.nextInt(thinkMs) : 0, TimeUnit.MILLISECONDS);
+        }
+
+        for (int s = 1; s <= warmup; s++) {
+            Thread.sleep(1000);
+            System.out.printf("warmup %2ds  %s%n", s, progress());
+        }
+        stats = new ConcurrentHashMap<>();
+        socketStats = new SocketStats();
+        long started = System.nanoTime();
+        Instant startedAt = Instant.now();
+        for (int s = 1; s <= seconds; s++) {
+            Thread.sleep(1000);
+            if (s % 5 == 0 || s == seconds) System.out.printf("t=%3ds  %s%n", s, progress());
+        }
+        double elapsed = (System.nanoTime() - started) / 1e9;
+        Map<String, OperationStats> measured = stats;
+        SocketStats socketsMeasured = socketStats;
+        stopping = true;
+        for (int i = 0; i < 100 && inFlight.get() > 0; i++) Thread.sleep(100);
+        for (WebSocket socket : sockets) socket.abort();
+
+        Map<String, Object> report = report(startedAt, elapsed, httpClients, wsClients, measured, socketsMeasured);
+        Path out = Path.of(opts.getOrDefault("out", "results/load-" + report.get("label") + ".json"));
+        if (out.getParent() != null) Files.createDirectories(out.getParent());
+        mapper.writeValue(out.toFile(), report);
+        Report.print(report);
+        System.out.println("Report written to " + out);
+    }
+
+    /** Creates vehicles through the API from 16 threads, backing off as the rate limiter asks. */
+    private void seed(int count) throws Exception {
+        if (count <= 0) return;
+        System.out.printf("Seeding %,d vehicles%n", count);
+        Random random = new Random(42);
+        ExecutorService workers = Executors.newFixedThreadPool(16, daemon("load-seed"));
+        LongAdder failed = new LongAdder();
+        for (int i = 0; i < count; i++) {
+            byte[] body = mapper.writeValueAsBytes(FleetFixture.attributes(i, random));
+            HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/vehicles"))
+                    .header("Authorization", "Bearer " + adminToken).header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+            workers.execute(() -> {
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    while (response.statusCode() == 429) {
+                        Thread.sleep(1000L * Long.parseLong(response.headers().firstValue("Retry-After").orElse("1")));
+                        response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    }
+                    if (response.statusCode() != 201) failed.increment();
+                } catch (Exception e) {
+                    failed.increment();
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        if (failed.sum() > 0) System.out.printf("%,d vehicle creations failed%n", failed.sum());
+    }
+
+    private List<String> fetchVehicleIds() throws Exception {
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url + "/api/vehicles/telemetry/all"))
+                .header("Authorization", "Bearer " + adminToken).build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) throw new IllegalStateException("GET /api/vehicles/telemetry/all returned " + response.statusCode());
+        List<String> ids = new ArrayList<>();
+        for (Object v : mapper.readValue(response.body(), List.class)) ids.add(String.valueOf(((Map<?, ?>) v).get("id")));
+        return ids;
+    }
+
+    private void defineOperations(String mix) {
+        Map<String, java.util.function.Function<VirtualUser, HttpRequest>> all = new LinkedHashMap<>();
+        all.put("nearby", u -> get(u, "/api/vehicles/nearby?lat=" + lat(u) + "&lon=" + lon(u) + "&radius=3&k=10"));
+        all.put("within", u -> {
+            double lat = lat(u), lon = lon(u);
+            return get(u, "/api/vehicles/within?minLat=" + lat + "&minLon=" + lon + "&maxLat=" + (lat + 0.02) + "&maxLon=" + (lon + 0.02) + "&limit=200");
+        });
+        all.put("telemetry", u -> get(u, "/api/vehicles/" + vehicle(u) + "/telemetry"));
+        all.put("vehicle", u -> get(u, "/api/vehicles/" + vehicle(u)));
+        all.put("list", u -> get(u, "/api/vehicles?limit=50&fields=make,model,status"));
+        all.put("fleet", u -> get(u, "/api/fleet/stats"));
+        all.put("history", u -> get(u, "/api/vehicles/" + vehicle(u) + "/telemetry/range?fields=latitude,longitude"));
+        all.put("bookings", u -> get(u, "/api/bookings/customer/" + u.uid + "?limit=20"));
+        all.put("book", u -> {
+            String body = "{\"customerId\":\"" + u.uid + "\",\"pickupLatitude\":" + lat(u) + ",\"pickupLongitude\":" + lon(u)
+                    + ",\"estimatedDistance\":" + (2 + u.random.nextInt(20)) + "}";
+            return request(u, "/api/bookings").header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        });
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            if (!all.containsKey(kv[0])) throw new IllegalArgumentException("Unknown operation '" + kv[0] + "'; expected one of " + all.keySet());
+            int weight = Integer.parseInt(kv[1]);
+            if (weight <= 0) continue;
+            operations.add(new Operation(kv[0], weight, all.get(kv[0])));
+            totalWeight += weight;
+        }
+    }
+
+    private HttpRequest.Builder request(VirtualUser user, String path) {
+        return HttpRequest.newBuilder(URI.create(url + path)).timeout(Duration.ofSeconds(30)).header("Authorization", user.authorization);
+    }
+
+    private HttpRequest get(VirtualUser user, String path) {
+        return request(user, path).GET().build();
+    }
+
+    private static double lat(VirtualUser user) {
+        return FleetFixture.randomLatitude(user.random);
+    }
+
+    private static double lon(VirtualUser user) {
+        return FleetFixture.randomLongitude(user.random);
+    }
+
+    private String vehicle(VirtualUser user) {
+        return vehicleIds.get(user.random.nextInt(vehicleIds.size()));
+    }
+
+    private void next(VirtualUser user) {
+        if (stopping) return;
+        int pick = user.random.nextInt(totalWeight);
+        Operation op = operations.get(0);
+        for (Operation o : operations) {
+            if ((pick -= o.weight()) < 0) {
+                op = o;
+                break;
+            }
+        }
+        Operation chosen = op;
+        HttpRequest request = chosen.request().apply(user);
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long nanos = System.nanoTime() - start;
+            inFlight.decrementAndGet();
+            record(chosen.name(), response != null ? response.statusCode() : -1, nanos);
+            if (!stopping) scheduler.schedule(() -> next(user), thinkMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void record(String operation, int status, long nanos) {
+        OperationStats s = stats.computeIfAbsent(operation, k -> new OperationStats());
+        s.statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+        // Shed load (429, 503) is a deliberate answer, not a failure; its latency is kept apart from served requests.
+        if (status == 429 || status == 503) {
+            s.rejected.increment();
+        } else if (status < 200 || status >= 500 || status == 401 || status == 403) {
+            s.failed.increment();
+        } else {
+            s.ok.increment();
+            s.latency.recordNanos(nanos);
+        }
+    }
+
+    private void connectSockets(int count, String format, int perSecond) throws InterruptedException {
+        if (count <= 0) return;
+        String base = url.replaceFirst("^http", "ws") + "/";
+        long pause = 1_000_000_000L / Math.max(1, perSecond);
+        LongAdder failed = new LongAdder();
+        for (int i = 0; i < count; i++) {
+            boolean binary = format.equals("binary") || (format.equals("mixed") && i % 2 == 1);
+            client.newWebSocketBuilder().connectTimeout(Duration.ofSeconds(10))
+                    .buildAsync(URI.create(binary ? base + "?format=binary" : base), new Subscriber())
+                    .whenComplete((socket, error) -> {
+                        if (error != null) failed.increment();
+                        else sockets.add(socket);
+                    });
+            TimeUnit.NANOSECONDS.sleep(pause);
+        }
+        for (int i = 0; i < 100 && sockets.size() + failed.sum() < count; i++) Thread.sleep(100);
+        System.out.printf("%,d WebSocket clients connected, %,d failed%n", sockets.size(), failed.sum());
+    }
+
+    /** Counts frames and, for delta frames, the delay from the tick timestamp in the header to the last byte. */
+    private final class Subscriber implements WebSocket.Listener {
+        private final StringBuilder head = new StringBuilder();
+        private long tickMillis;
+        private boolean firstPart = true;
+
+        @Override
+        public CompletionStage<?> onText(WebSocket socket, CharSequence data, boolean last) {
+            if (head.length() < 96) head.append(data, 0, Math.min(data.length(), 96 - head.length()));
+            socketStats.bytes.add(data.length());
+            if (last) {
+                String h = head.toString();
+                frameDone(h.startsWith("{\"type\":\"fleet_delta\"") ? jsonTimestamp(h) : 0);
+                head.setLength(0);
+            }
+            socket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onBinary(WebSocket socket, ByteBuffer data, boolean last) {
+            int at = data.position();
+            // Packed header: u8 version, u8 type (2 = delta), u16 statuses, i64 seq, i64 epochMillis
+            if (firstPart) tickMillis = data.remaining() >= 20 && data.get(at + 1) == 2 ? data.getLong(at + 12) : 0;
+            firstPart = last;
+            socketStats.bytes.add(data.remaining());
+            if (last) frameDone(tickMillis);
+            socket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket socket, int status, String reason) {
+            if (!stopping) socketStats.closed.increment();
+            return null;
+        }
+
+        private void frameDone(long tickMillis) {
+            SocketStats s = socketStats;
+            s.frames.increment();
+            if (tickMillis > 0) s.deltaLag.record(Math.max(0, System.currentTimeMillis() - tickMillis) * 1000);
+        }
+    }
+
+    private static long jsonTimestamp(String head) {
+        int at = head.indexOf("\"ts\":\"");
+        int end = at < 0 ? -1 : head.indexOf('"', at + 6);
+        if (end < 0) return 0;
+        try {
+            return Instant.parse(head.substring(at + 6, end)).toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private String progress() {
+        long requests = 0, rejected = 0, failed = 0;
+        for (OperationStats s : stats.values()) {
+            requests += s.ok.sum();
+            rejected += s.rejected.sum();
+            failed += s.failed.sum();
+        }
+        SocketStats ws = socketStats;
+        return String.format("requests %,d  rejected %,d  failed %,d  in flight %d  | frames %,d  delta lag p99 %.0f ms  closed %d",
+                requests, rejected, failed, inFlight.get(), ws.frames.sum(), ws.deltaLag.percentile(99) / 1000.0, ws.closed.sum());
+    }
+
+    private Map<String, Object> report(Instant startedAt, double elapsed, int httpClients, int wsClients,
+                                       Map<String, OperationStats> measured, SocketStats ws) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", opts.getOrDefault("label", startedAt.toString().replace(':', '-')));
+        report.put("startedAt", startedAt.toString());
+        report.put("url", url);
+        report.put("seconds", Math.round(elapsed * 10) / 10.0);
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("vehicles", vehicleIds.size());
+        config.put("httpClients", httpClients);
+        config.put("thinkMs", thinkMs);
+        config.put("wsClients", wsClients);
+        config.put("wsFormat", opts.getOrDefault("ws-format", "mixed"));
+        config.put("mix", opts.getOrDefault("mix", DEFAULT_MIX));
+        report.put("config", config);
+
+        Map<String, Object> ops = new TreeMap<>();
+        long total = 0;
+        for (Map.Entry<String, OperationStats> e : measured.entrySet()) {
+            OperationStats s = e.getValue();
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("throughputPerSec", Math.round(s.ok.sum() / elapsed * 10) / 10.0);
+            m.put("ok", s.ok.sum());
+            m.put("rejected", s.rejected.sum());
+            m.put("failed", s.failed.sum());
+            m.putAll(s.latency.summary());
+            Map<String, Long> statuses = new TreeMap<>();
+            s.statuses.forEach((code, n) -> statuses.put(String.valueOf(code), n.sum()));
+            m.put("statuses", statuses);
+            ops.put(e.getKey(), m);
+            total += s.ok.sum();
+        }
+        report.put("throughputPerSec", Math.round(total / elapsed * 10) / 10.0);
+        report.put("operations", ops);
+
+        Map<String, Object> sockets = new LinkedHashMap<>();
+        sockets.put("connected", this.sockets.size());
+        sockets.put("closedByServer", ws.closed.sum());
+        sockets.put("framesPerSec", Math.round(ws.frames.sum() / elapsed * 10) / 10.0);
+        sockets.put("megabytesPerSec", Math.round(ws.bytes.sum() / elapsed / 1e5) / 10.0);
+        sockets.put("deltaLag", ws.deltaLag.summary());
+        report.put("websocket", sockets);
+        report.put("server", serverStats());
+        return report;
+    }
+
+    /** The backend's own view of the run: tick timings, session queues, token cache, dispatch and caches. */
+    private Map<String, Object> serverStats() {
+        Map<String, Object> server = new LinkedHashMap<>();
+        for (String path : List.of("/api/vehicles/telemetry/stats", "/api/vehicles/telemetry/sessions", "/api/auth/token-cache/stats",
+                "/api/auth/rate-limit/stats", "/api/bookings/dispatch/stats", "/api/vehicles/cache/stats", "/api/vehicles/writes/stats")) {
+            try {
+                HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(URI.create(url + path))
+                        .header("Authorization", "Bearer " + adminToken).timeout(Duration.ofSeconds(10)).build(),
+                        HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() != 200) continue;
+                @SuppressWarnings("unchecked")
+                Map<String, Object> m = mapper.readValue(response.body(), Map.class);
+                m.remove("perSession");
+                server.put(path, m);
+            } catch (Exception e) {
+                server.put(path, Map.of("error", String.valueOf(e.getMessage())));
+            }
+        }
+        return server;
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
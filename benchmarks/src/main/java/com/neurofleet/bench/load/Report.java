@@ -0,0 +1,82 @@
+package com.neurofleet.bench.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeSet;
+
+/** Prints a load report, or the per-operation difference between two of them. */
+final class Report {
+
+    /** Throughput drops or p99 rises beyond this fraction are flagged as regressions. */
+    private static final double REGRESSION = 0.10;
+
+    private Report() {}
+
+    static void print(Map<String, Object> report) {
+        System.out.printf("%n%-10s %10s %8s %8s %9s %9s %9s %9s%n", "operation", "req/s", "rejected", "failed", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        operations(report).forEach((name, m) -> System.out.printf("%-10s %10.1f %8d %8d %9.2f %9.2f %9.2f %9.2f%n", name,
+                number(m, "throughputPerSec"), (long) number(m, "rejected"), (long) number(m, "failed"),
+                number(m, "p50Ms"), number(m, "p90Ms"), number(m, "p99Ms"), number(m, "maxMs")));
+        Map<String, Object> ws = child(report, "websocket");
+        Map<String, Object> lag = child(ws, "deltaLag");
+        System.out.printf("%nWebSocket: %d connected, %d closed by server, %.0f frames/s, %.1f MB/s, delta lag p50 %.1f ms p99 %.1f ms max %.1f ms%n",
+                (long) number(ws, "connected"), (long) number(ws, "closedByServer"), number(ws, "framesPerSec"),
+                number(ws, "megabytesPerSec"), number(lag, "p50Ms"), number(lag, "p99Ms"), number(lag, "maxMs"));
+    }
+
+    static void compare(Path basePath, Path headPath) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> base = mapper.readValue(basePath.toFile(), Map.class);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> head = mapper.readValue(headPath.toFile(), Map.class);
+        System.out.printf("%s -> %s%n%n", base.get("label"), head.get("label"));
+        System.out.printf("%-10s %22s %22s %22s%n", "operation", "req/s", "p50 ms", "p99 ms");
+        Map<String, Map<String, Object>> before = operations(base);
+        Map<String, Map<String, Object>> after = operations(head);
+        int regressions = 0;
+        TreeSet<String> names = new TreeSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String name : names) {
+            Map<String, Object> b = before.getOrDefault(name, Map.of());
+            Map<String, Object> a = after.getOrDefault(name, Map.of());
+            boolean regressed = change(b, a, "throughputPerSec") < -REGRESSION || change(b, a, "p99Ms") > REGRESSION;
+            if (regressed) regressions++;
+            System.out.printf("%-10s %22s %22s %22s%s%n", name, delta(b, a, "throughputPerSec"), delta(b, a, "p50Ms"),
+                    delta(b, a, "p99Ms"), regressed ? "  REGRESSION" : "");
+        }
+        Map<String, Object> b = child(child(base, "websocket"), "deltaLag");
+        Map<String, Object> a = child(child(head, "websocket"), "deltaLag");
+        boolean regressed = change(b, a, "p99Ms") > REGRESSION;
+        if (regressed) regressions++;
+        System.out.printf("%-10s %22s %22s %22s%s%n", "ws lag", "", delta(b, a, "p50Ms"), delta(b, a, "p99Ms"), regressed ? "  REGRESSION" : "");
+        System.out.printf("%n%d regression(s) beyond %.0f%%%n", regressions, REGRESSION * 100);
+    }
+
+    private static String delta(Map<String, Object> base, Map<String, Object> head, String key) {
+        double change = change(base, head, key);
+        return String.format("%.1f -> %.1f (%+.0f%%)", number(base, key), number(head, key), Double.isNaN(change) ? 0 : change * 100);
+    }
+
+    private static double change(Map<String, Object> base, Map<String, Object> head, String key) {
+        double b = number(base, key);
+        return b == 0 ? Double.NaN : (number(head, key) - b) / b;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Map<String, Object>> operations(Map<String, Object> report) {
+        return (Map<String, Map<String, Object>>) (Map<String, ?>) child(report, "operations");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> child(Map<String, Object> m, String key) {
+        return m.get(key) instanceof Map<?, ?> c ? (Map<String, Object>) c : Map.of();
+    }
+
+    private static double number(Map<String, Object> m, String key) {
+        return m.get(key) instanceof Number n ? n.doubleValue() : 0;
+    }
+}
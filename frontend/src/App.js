@@ -4,6 +4,7 @@ import VehicleList from './VehicleList';
 import VehicleForm from './VehicleForm';
 import UpdateForm from './UpdateForm';
 import VehicleMap from './VehicleMap';
+import FleetStats from './FleetStats';
 import AuthComponent from './AuthComponent';
 import AdminPanel from './AdminPanel';
 import Profile from './Profile';
@@ -64,28 +65,7 @@ function AppContent() {
           <div className="dashboard-layout">
             <div className="dashboard-main">
               <VehicleMap />
-              <div className="dashboard-stats">
-                <div className="stat-card">
-                  <h3>Total Vehicles</h3>
-                  <div className="stat-value">{Math.floor(Math.random() * 50) + 20}</div>
-                  <div className="stat-label">Active Fleet</div>
-                </div>
-                <div className="stat-card">
-                  <h3>On Trip</h3>
-                  <div className="stat-value">{Math.floor(Math.random() * 15) + 5}</div>
-                  <div className="stat-label">Currently in use</div>
-                </div>
-                <div className="stat-card">
-                  <h3>Available</h3>
-                  <div className="stat-value">{Math.floor(Math.random() * 20) + 10}</div>
-                  <div className="stat-label">Ready for service</div>
-                </div>
-                <div className="stat-card">
-                  <h3>Charging</h3>
-                  <div className="stat-value">{Math.floor(Math.random() * 8) + 2}</div>
-                  <div className="stat-label">At charging stations</div>
-                </div>
-              </div>
+              <FleetStats />
             </div>
             <div className="dashboard-sidebar">
               <VehicleList refreshTrigger={refreshList} onEdit={handleEdit} />
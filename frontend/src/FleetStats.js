@@ -0,0 +1,65 @@
+import React, { useState, useEffect, useContext } from 'react';
+import axios from 'axios';
+import { AuthContext } from './AuthContext';
+
+// Dashboard cards backed by the server's incrementally maintained fleet aggregates
+function FleetStats() {
+  const { currentUser } = useContext(AuthContext);
+  const [stats, setStats] = useState(null);
+
+  useEffect(() => {
+    const fetchStats = async () => {
+      if (!currentUser) return;
+      try {
+        const token = await currentUser.getIdToken();
+        const response = await axios.get('http://localhost:3001/api/fleet/stats', {
+          headers: { Authorization: `Bearer ${token}` }
+        });
+        setStats(response.data);
+      } catch (err) {
+        console.error('Failed to fetch fleet stats:', err);
+      }
+    };
+    fetchStats();
+  }, [currentUser]);
+
+  // The server pushes a fresh fleet_summary frame periodically; no need to poll
+  useEffect(() => {
+    const ws = new WebSocket('ws://localhost:3001');
+    ws.onmessage = (event) => {
+      const data = JSON.parse(event.data);
+      if (data.type === 'fleet_summary') setStats(data);
+    };
+    return () => ws.close();
+  }, []);
+
+  const count = (status) => (stats ? stats.byStatus[status] || 0 : '—');
+  const percent = (share) => (share === null || share === undefined ? '—' : `${Math.round(share * 100)}%`);
+
+  return (
+    <div className="dashboard-stats">
+      <div className="stat-card">
+        <h3>Total Vehicles</h3>
+        <div className="stat-value">{stats ? stats.vehicles : '—'}</div>
+        <div className="stat-label">Avg battery {stats && stats.battery.average !== null ? `${stats.battery.average}%` : '—'}</div>
+      </div>
+      <div className="stat-card">
+        <h3>On Trip</h3>
+        <div className="stat-value">{count('on-trip')}</div>
+        <div className="stat-label">Utilization {percent(stats && stats.utilization['1h'])} over 1h</div>
+      </div>
+      <div className="stat-card">
+        <h3>Available</h3>
+        <div className="stat-value">{count('available')}</div>
+        <div className="stat-label">Ready for service</div>
+      </div>
+      <div className="stat-card">
+        <h3>Charging</h3>
+        <div className="stat-value">{count('charging')}</div>
+        <div className="stat-label">At charging stations</div>
+      </div>
+    </div>
+  );
+}
+
+export default FleetStats;
@@ -22,12 +22,17 @@ function PredictiveMaintenance() {
       try {
         setLoading(true);
         const token = await currentUser.getIdToken();
-        const response = await axios.get('http://localhost:3001/api/vehicles', {
-          headers: { Authorization: `Bearer ${token}` }
-        });
-
-        // Generate maintenance data for each vehicle
+        const headers = { Authorization: `Bearer ${token}` };
+        const [response, scores] = await Promise.all([
+          axios.get('http://localhost:3001/api/vehicles', { headers }),
+          axios.get('http://localhost:3001/api/maintenance', { headers, params: { limit: 1000 } })
+        ]);
+        const scoreById = new Map(scores.data.map(s => [s.id, s]));
+
+        // Battery health, risk and time to service come from the server's scoring engine; the other
+        // components are still simulated here until the backend tracks them.
         const vehiclesWithMaintenance = response.data.map(vehicle => {
+          const score = scoreById.get(vehicle.id);
           const mileage = vehicle.mileage || Math.floor(Math.random() * 100000);
           const lastServiceMileage = mileage - Math.floor(Math.random() * 10000);
           const mileageSinceService = mileage - lastServiceMileage;
@@ -36,26 +41,35 @@ function PredictiveMaintenance() {
           const engineHealth = Math.max(0, 100 - (mileageSinceService / 100) - Math.random() * 20);
           const brakeHealth = Math.max(0, 100 - (mileageSinceService / 120) - Math.random() * 15);
           const tireHealth = Math.max(0, 100 - (mileageSinceService / 80) - Math.random() * 25);
-          const batteryHealth = Math.max(0, 100 - (mileageSinceService / 150) - Math.random() * 10);
+          const batteryHealth = score ? score.metrics.batteryHealth : Math.max(0, 100 - (mileageSinceService / 150) - Math.random() * 10);
           const transmissionHealth = Math.max(0, 100 - (mileageSinceService / 200) - Math.random() * 15);
 
           // Calculate overall health
-          const overallHealth = (engineHealth + brakeHealth + tireHealth + batteryHealth + transmissionHealth) / 5;
+          const overallHealth = score ? score.overallHealth : (engineHealth + brakeHealth + tireHealth + batteryHealth + transmissionHealth) / 5;
 
           // Determine maintenance status
-          let maintenanceStatus = 'healthy';
-          if (overallHealth < 30) maintenanceStatus = 'critical';
-          else if (overallHealth < 70) maintenanceStatus = 'due';
+          let maintenanceStatus = score ? score.maintenanceStatus : 'healthy';
+          if (!score && overallHealth < 30) maintenanceStatus = 'critical';
+          else if (!score && overallHealth < 70) maintenanceStatus = 'due';
 
           // Generate predictions
           const predictions = [];
           if (engineHealth < 40) predictions.push({ component: 'Engine', daysUntilService: Math.floor((40 - engineHealth) * 10), severity: 'high' });
           if (brakeHealth < 50) predictions.push({ component: 'Brakes', daysUntilService: Math.floor((50 - brakeHealth) * 8), severity: 'medium' });
           if (tireHealth < 30) predictions.push({ component: 'Tires', daysUntilService: Math.floor((30 - tireHealth) * 5), severity: 'high' });
-          if (batteryHealth < 60) predictions.push({ component: 'Battery', daysUntilService: Math.floor((60 - batteryHealth) * 12), severity: 'low' });
+          if (score && score.predictedServiceHours !== null) {
+            predictions.push({
+              component: 'Battery',
+              daysUntilService: Math.floor(score.predictedServiceHours / 24),
+              severity: score.maintenanceStatus === 'critical' ? 'high' : score.maintenanceStatus === 'due' ? 'medium' : 'low'
+            });
+          } else if (!score && batteryHealth < 60) {
+            predictions.push({ component: 'Battery', daysUntilService: Math.floor((60 - batteryHealth) * 12), severity: 'low' });
+          }
 
           return {
             ...vehicle,
+            riskScore: score ? score.riskScore : null,
             mileage,
             lastServiceMileage,
             mileageSinceService,
@@ -106,6 +120,25 @@ function PredictiveMaintenance() {
     fetchMaintenanceData();
   }, [currentUser]);
 
+  // Level changes scored on the server arrive as maintenance_alerts frames on the telemetry socket.
+  useEffect(() => {
+    const ws = new WebSocket('ws://localhost:3001');
+    ws.onmessage = (event) => {
+      const data = JSON.parse(event.data);
+      if (data.type !== 'maintenance_alerts') return;
+      const raised = data.alerts
+        .filter(a => a.maintenanceStatus !== 'healthy')
+        .map(a => ({
+          id: `${a.vehicleId}-${data.timestamp}`,
+          type: a.maintenanceStatus,
+          message: `Vehicle ${a.vehicleId} is now ${a.maintenanceStatus} (risk ${a.riskScore})`,
+          timestamp: new Date(data.timestamp).toISOString()
+        }));
+      if (raised.length) setAlerts(prev => [...raised, ...prev].slice(0, 50));
+    };
+    return () => ws.close();
+  }, []);
+
   // Pie chart component
   const PieChart = ({ data, size = 200 }) => {
     const total = data.healthy + data.due + data.critical;
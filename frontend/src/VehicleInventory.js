@@ -83,11 +83,18 @@ function VehicleInventory() {
     ws.onmessage = (event) => {
       try {
         const data = JSON.parse(event.data);
-        if (data.type === 'vehicle_update') {
+        if (data.type === 'fleet_snapshot' || data.type === 'fleet_delta') {
+          // Delta frames carry only the changed fields of changed vehicles; ts stamps the whole frame
+          const updates = new Map(data.vehicles.map(v => [v.id, v]));
+          const removed = new Set(data.removed || []);
           setVehicles(prevVehicles => 
-            prevVehicles.map(vehicle => 
-              vehicle.id === data.id ? { ...vehicle, ...data } : vehicle
-            )
+            prevVehicles
+              .filter(vehicle => !removed.has(vehicle.id))
+              .map(vehicle => 
+                updates.has(vehicle.id)
+                  ? { ...vehicle, ...updates.get(vehicle.id), lastUpdate: data.ts }
+                  : vehicle
+              )
           );
         }
       } catch (error) {
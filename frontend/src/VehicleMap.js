@@ -245,13 +245,12 @@ function MapComponent({ vehicles, center, zoom, geofences, selectedVehicle, onVe
     
     // Create new geofences
     geofences.forEach(geofence => {
-      const { id, name, coordinates, type } = geofence;
+      const { id, name, coordinates, center, radiusKm, type } = geofence;
       
-      // Convert coordinates to LatLng objects
-      const path = coordinates.map(coord => ({
-        lat: coord.latitude,
-        lng: coord.longitude
-      }));
+      // Convert coordinates to LatLng objects; circles are anchored at their center
+      const path = coordinates
+        ? coordinates.map(coord => ({ lat: coord.latitude, lng: coord.longitude }))
+        : [{ lat: center.latitude, lng: center.longitude }];
       
       // Set polygon options based on geofence type
       let fillColor, strokeColor;
@@ -273,9 +272,10 @@ function MapComponent({ vehicles, center, zoom, geofences, selectedVehicle, onVe
           strokeColor = '#7e22ce';
       }
       
-      // Create polygon
-      const polygon = new window.google.maps.Polygon({
-        paths: path,
+      // Create polygon or circle
+      const shape = coordinates ? { paths: path } : { center: path[0], radius: radiusKm * 1000 };
+      const polygon = new window.google.maps[coordinates ? 'Polygon' : 'Circle']({
+        ...shape,
         strokeColor,
         strokeOpacity: 0.8,
         strokeWeight: 2,
@@ -381,47 +381,17 @@ function VehicleMap() {
       }
     };
     
-    // Fetch geofences (mock data for now)
     const fetchGeofences = async () => {
-      // In a real implementation, this would be an API call
-      // For now, we'll use mock data
-      const mockGeofences = [
-        {
-          id: 'geo-1',
-          name: 'Downtown Operational Zone',
-          type: 'operational',
-          coordinates: [
-            { latitude: 28.6339, longitude: 77.2190 },
-            { latitude: 28.6339, longitude: 77.2290 },
-            { latitude: 28.6239, longitude: 77.2290 },
-            { latitude: 28.6239, longitude: 77.2190 }
-          ]
-        },
-        {
-          id: 'geo-2',
-          name: 'Airport Restricted Area',
-          type: 'restricted',
-          coordinates: [
-            { latitude: 28.5539, longitude: 77.1090 },
-            { latitude: 28.5639, longitude: 77.1090 },
-            { latitude: 28.5639, longitude: 77.1190 },
-            { latitude: 28.5539, longitude: 77.1190 }
-          ]
-        },
-        {
-          id: 'geo-3',
-          name: 'Central Charging Hub',
-          type: 'charging',
-          coordinates: [
-            { latitude: 28.6039, longitude: 77.2390 },
-            { latitude: 28.6039, longitude: 77.2410 },
-            { latitude: 28.6019, longitude: 77.2410 },
-            { latitude: 28.6019, longitude: 77.2390 }
-          ]
-        }
-      ];
-      
-      setGeofences(mockGeofences);
+      if (!currentUser) return;
+      try {
+        const token = await currentUser.getIdToken();
+        const response = await axios.get('http://localhost:3001/api/geofences', {
+          headers: { Authorization: `Bearer ${token}` }
+        });
+        setGeofences(response.data);
+      } catch (err) {
+        console.error('Failed to fetch geofences:', err);
+      }
     };
     
     fetchVehicles();
@@ -440,37 +410,25 @@ function VehicleMap() {
 
     ws.onmessage = (event) => {
       const data = JSON.parse(event.data);
-      if (data.type === 'vehicle_update') {
+      if (data.type === 'fleet_snapshot' || data.type === 'fleet_delta') {
+        // Delta frames carry only the changed fields of changed vehicles; ts stamps the whole frame
+        const removed = new Set(data.removed || []);
         setVehicles(prevVehicles => {
-          // Find if vehicle already exists
-          const existingIndex = prevVehicles.findIndex(v => v.id === data.id);
-          
-          if (existingIndex >= 0) {
-            // Update existing vehicle
-            const updatedVehicles = [...prevVehicles];
-            updatedVehicles[existingIndex] = {
-              ...updatedVehicles[existingIndex],
-              latitude: data.latitude,
-              longitude: data.longitude,
-              speed: data.speed,
-              lastUpdated: new Date().toISOString()
-            };
-            return updatedVehicles;
-          } else {
-            // Add new vehicle
-            return [...prevVehicles, {
-              id: data.id,
-              make: 'Unknown',
-              model: 'Vehicle',
-              licensePlate: 'TBD',
-              status: 'active',
-              latitude: data.latitude,
-              longitude: data.longitude,
-              speed: data.speed,
-              batteryLevel: Math.floor(Math.random() * 100),
-              lastUpdated: new Date().toISOString()
-            }];
-          }
+          const byId = new Map(prevVehicles.filter(v => !removed.has(v.id)).map(v => [v.id, v]));
+          data.vehicles.forEach(update => {
+            const existing = byId.get(update.id);
+            byId.set(update.id, existing
+              ? { ...existing, ...update, lastUpdated: data.ts }
+              : {
+                  make: 'Unknown',
+                  model: 'Vehicle',
+                  licensePlate: 'TBD',
+                  status: 'active',
+                  ...update,
+                  lastUpdated: data.ts
+                });
+          });
+          return Array.from(byId.values());
         });
       }
     };
@@ -495,20 +453,34 @@ function VehicleMap() {
     try {
       setLoading(true);
       const token = await currentUser.getIdToken();
-      
-      setTimeout(() => {
-        const mockHistoricalData = vehicles.map(vehicle => ({
-          ...vehicle,
-          latitude: vehicle.latitude + (Math.random() * 0.05 - 0.025),
-          longitude: vehicle.longitude + (Math.random() * 0.05 - 0.025),
-          speed: Math.floor(Math.random() * 40),
-          batteryLevel: Math.floor(Math.random() * 80) + 20,
-          timestamp: new Date(historyDate).toISOString()
-        }));
-        
-        setVehicles(mockHistoricalData);
-        setLoading(false);
-      }, 1000);
+      const from = new Date(historyDate).getTime();
+      const to = from + 24 * 60 * 60 * 1000;
+
+      // One day-wide bucket per vehicle: last known position and status, mean battery for that day.
+      const historical = await Promise.all(vehicles.map(async (vehicle) => {
+        try {
+          const response = await axios.get(`http://localhost:3001/api/vehicles/${vehicle.id}/telemetry/range`, {
+            params: { from, to, step: '1d' },
+            headers: { Authorization: `Bearer ${token}` }
+          });
+          const h = response.data;
+          if (!h.count) return null;
+          const last = h.count - 1;
+          return {
+            ...vehicle,
+            latitude: h.latitude[last],
+            longitude: h.longitude[last],
+            batteryLevel: Math.round(h.batteryLevel[last]),
+            status: h.status[last],
+            timestamp: new Date(h.timestamps[last]).toISOString()
+          };
+        } catch (err) {
+          return null;
+        }
+      }));
+
+      setVehicles(historical.filter(Boolean));
+      setLoading(false);
     } catch (err) {
       console.error('Failed to fetch historical data:', err);
       setError('Failed to load historical data.');